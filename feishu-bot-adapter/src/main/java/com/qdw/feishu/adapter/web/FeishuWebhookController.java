@@ -0,0 +1,62 @@
+package com.qdw.feishu.adapter.web;
+
+import com.qdw.feishu.app.listener.ReceiveMessageListenerExe;
+import com.qdw.feishu.domain.gateway.EventCallbackGateway;
+import com.qdw.feishu.domain.gateway.EventCallbackResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 飞书事件回调入口（webhook 模式）
+ *
+ * 飞书事件通过 HTTP POST 推送到本服务，验签解密后立即应答，
+ * 消息交给与长连接模式相同的处理流水线异步处理。
+ * 无状态，可多实例部署在负载均衡之后。
+ */
+@Slf4j
+@RestController
+@ConditionalOnProperty(name = "feishu.mode", havingValue = "webhook")
+public class FeishuWebhookController {
+
+    private final EventCallbackGateway eventCallbackGateway;
+    private final String callbackPath;
+
+    @Autowired
+    public FeishuWebhookController(EventCallbackGateway eventCallbackGateway,
+                                   ReceiveMessageListenerExe receiveMessageListenerExe,
+                                   @Value("${feishu.webhook.path:/webhook/event}") String callbackPath) {
+        this.eventCallbackGateway = eventCallbackGateway;
+        this.callbackPath = callbackPath;
+        // 被限流的消息抛出拒绝异常，回调应答 503 让飞书稍后重新投递
+        this.eventCallbackGateway.registerMessageHandler(message -> {
+            if (!receiveMessageListenerExe.execute(message)) {
+                throw new RejectedExecutionException("Message rejected by admission control: " + message.getMessageId());
+            }
+        });
+        log.info("飞书事件回调模式已启用");
+    }
+
+    @PostMapping("${feishu.webhook.path:/webhook/event}")
+    public ResponseEntity<byte[]> onEvent(@RequestHeader HttpHeaders headers,
+                                          @RequestBody(required = false) byte[] body) {
+        EventCallbackResponse response = eventCallbackGateway.handle(
+            callbackPath,
+            headers,
+            body != null ? body : new byte[0]
+        );
+
+        return ResponseEntity.status(response.getStatusCode())
+            .header(HttpHeaders.CONTENT_TYPE, response.getContentType())
+            .body(response.getBody());
+    }
+}
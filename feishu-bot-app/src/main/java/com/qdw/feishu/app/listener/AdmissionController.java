@@ -0,0 +1,145 @@
+package com.qdw.feishu.app.listener;
+
+import com.qdw.feishu.domain.gateway.FeishuGateway;
+import com.qdw.feishu.domain.message.Message;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 入站消息准入控制器
+ *
+ * 位于处理流水线入口，负责过载时的平滑降级：
+ * - 全局在途消息上限（排队 + 处理中），超出即拒绝
+ * - 排队时延目标：最早排队的消息已等待的时长超过目标时拒绝新消息
+ *   （直接读取通道队首的入队时间，队列排空后自然回落，处理卡住时持续增长，无需维护共享的统计状态）
+ * - 被拒绝的消息回复一条简短的繁忙提示，提示发送在独立的小线程池中执行，满了直接丢弃
+ * - 统计准入和拒绝计数
+ */
+@Slf4j
+@Component
+public class AdmissionController {
+
+    private final FeishuGateway feishuGateway;
+    private final OrderedIngestionExecutor ingestionExecutor;
+    private final int maxInFlight;
+    private final long queueLatencyTargetNanos;
+    private final String busyReply;
+
+    private final Semaphore permits;
+    private final ThreadPoolExecutor busyReplyExecutor;
+
+    private final LongAdder acceptedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public AdmissionController(FeishuGateway feishuGateway,
+                               OrderedIngestionExecutor ingestionExecutor,
+                               @Value("${feishu.admission.max-in-flight:200}") int maxInFlight,
+                               @Value("${feishu.admission.queue-latency-target-ms:5000}") long queueLatencyTargetMs,
+                               @Value("${feishu.admission.busy-reply:🤖 机器人繁忙，请稍后再试}") String busyReply) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("feishu.admission.max-in-flight must be positive: " + maxInFlight);
+        }
+        this.feishuGateway = feishuGateway;
+        this.ingestionExecutor = ingestionExecutor;
+        this.maxInFlight = maxInFlight;
+        this.queueLatencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(queueLatencyTargetMs);
+        this.busyReply = busyReply;
+        this.permits = new Semaphore(maxInFlight);
+        this.busyReplyExecutor = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(50),
+            r -> {
+                Thread t = new Thread(r, "admission-busy-reply");
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.DiscardPolicy()
+        );
+    }
+
+    /**
+     * 尝试准入一条消息
+     * 准入成功后调用方必须在处理结束时调用 {@link #release()}
+     *
+     * @return 是否准入
+     */
+    public boolean tryAdmit(Message message) {
+        if (queueLatencyTargetNanos > 0 && ingestionExecutor.getOldestQueuedNanos() > queueLatencyTargetNanos) {
+            reject(message, "queue latency above target");
+            return false;
+        }
+        if (!permits.tryAcquire()) {
+            reject(message, "in-flight limit reached");
+            return false;
+        }
+        acceptedCount.increment();
+        return true;
+    }
+
+    /**
+     * 释放一个在途名额
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * 已准入的消息在后续环节被拒绝（如通道队列已满）
+     * 释放名额并按拒绝处理
+     */
+    public void rejectAdmitted(Message message, String reason) {
+        acceptedCount.decrement();
+        release();
+        reject(message, reason);
+    }
+
+    private void reject(Message message, String reason) {
+        rejectedCount.increment();
+        log.warn("Message shed by admission control ({}): messageId={}, inFlight={}, queueLatencyMs={}",
+            reason, message.getMessageId(), getInFlight(), getQueueLatencyMillis());
+        try {
+            busyReplyExecutor.execute(() -> {
+                try {
+                    feishuGateway.sendDirectReply(message, busyReply);
+                } catch (Exception e) {
+                    log.debug("Failed to send busy reply: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 执行器已关闭，忽略
+        }
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /**
+     * 最早排队消息已等待的时长（毫秒）
+     */
+    public long getQueueLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ingestionExecutor.getOldestQueuedNanos());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        busyReplyExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,102 @@
+package com.qdw.feishu.app.listener;
+
+import com.qdw.feishu.domain.gateway.JournalEntry;
+import com.qdw.feishu.domain.gateway.MessageJournalGateway;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动时重放消息日志中未完成的消息
+ * 先于事件监听器启动执行，使重放消息排在新消息之前
+ *
+ * - 重放次数达到 feishu.journal.max-attempts 的消息转入死信，避免每次启动都被同一条消息拖垮
+ * - 通道已满时不阻塞启动线程，剩余消息按原顺序在后台定时重试提交
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class MessageJournalReplayer implements ApplicationRunner {
+
+    private static final long RETRY_DELAY_MS = 50;
+
+    private final MessageJournalGateway messageJournalGateway;
+    private final ReceiveMessageListenerExe receiveMessageListenerExe;
+    private final int maxAttempts;
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "journal-replay");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public MessageJournalReplayer(MessageJournalGateway messageJournalGateway,
+                                  ReceiveMessageListenerExe receiveMessageListenerExe,
+                                  @Value("${feishu.journal.max-attempts:3}") int maxAttempts) {
+        this.messageJournalGateway = messageJournalGateway;
+        this.receiveMessageListenerExe = receiveMessageListenerExe;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<JournalEntry> pending = messageJournalGateway.recoverPending();
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        log.info("发现 {} 条未完成的消息，开始重放", pending.size());
+        Deque<JournalEntry> remaining = new ArrayDeque<>();
+        for (JournalEntry entry : pending) {
+            if (maxAttempts > 0 && entry.getAttempts() >= maxAttempts) {
+                deadLetter(entry);
+            } else {
+                remaining.add(entry);
+            }
+        }
+        dispatch(remaining);
+    }
+
+    /**
+     * 按顺序提交重放；遇到通道已满时停止，稍后从该条继续
+     */
+    private void dispatch(Deque<JournalEntry> remaining) {
+        while (!remaining.isEmpty()) {
+            if (!receiveMessageListenerExe.replay(remaining.peekFirst())) {
+                try {
+                    retryScheduler.schedule(() -> dispatch(remaining), RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    log.warn("应用关闭，剩余 {} 条消息下次启动再重放", remaining.size());
+                }
+                return;
+            }
+            remaining.pollFirst();
+        }
+        log.info("未完成消息已全部提交重放");
+    }
+
+    private void deadLetter(JournalEntry entry) {
+        try {
+            messageJournalGateway.deadLetter(entry);
+        } catch (Exception e) {
+            log.error("消息转入死信失败: sequence={}", entry.getSequence(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,169 @@
+package com.qdw.feishu.app.listener;
+
+import com.qdw.feishu.domain.message.Message;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * 有序分片的入站消息执行器
+ *
+ * 按话题ID（无话题时按会话ID）把消息哈希到固定数量的单线程通道上：
+ * 同一会话内的消息严格按接收顺序处理，不同会话之间并行处理。
+ * 每个通道使用有界队列，队列满时拒绝提交，避免突发流量下线程和内存无限增长。
+ * 排队任务记录入队时间，供准入控制读取最早排队任务的等待时长。
+ */
+@Slf4j
+@Component
+public class OrderedIngestionExecutor {
+
+    private final ThreadPoolExecutor[] lanes;
+    private final LongSupplier nanoClock;
+
+    @Autowired
+    public OrderedIngestionExecutor(@Value("${feishu.ingestion.lanes:8}") int laneCount,
+                                    @Value("${feishu.ingestion.queue-capacity:200}") int queueCapacity) {
+        this(laneCount, queueCapacity, System::nanoTime);
+    }
+
+    OrderedIngestionExecutor(int laneCount, int queueCapacity, LongSupplier nanoClock) {
+        if (laneCount <= 0) {
+            throw new IllegalArgumentException("feishu.ingestion.lanes must be positive: " + laneCount);
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("feishu.ingestion.queue-capacity must be positive: " + queueCapacity);
+        }
+
+        this.nanoClock = nanoClock;
+        this.lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            final int laneIndex = i;
+            AtomicInteger threadSeq = new AtomicInteger();
+            lanes[i] = new ThreadPoolExecutor(
+                1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "ingest-lane-" + laneIndex + "-" + threadSeq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+            );
+        }
+        log.info("Ingestion executor initialized: lanes={}, queueCapacity={}", laneCount, queueCapacity);
+    }
+
+    /**
+     * 提交消息处理任务到消息所属的通道
+     *
+     * @param message 入站消息，用于计算分片键
+     * @param task    处理任务
+     * @throws RejectedExecutionException 通道队列已满或执行器已关闭
+     */
+    public void submit(Message message, Runnable task) {
+        String key = resolveKey(message);
+        int laneIndex = laneOf(key);
+        try {
+            lanes[laneIndex].execute(new QueuedTask(task, nanoClock.getAsLong()));
+        } catch (RejectedExecutionException e) {
+            log.warn("Ingestion lane {} is full, rejecting message: key={}, messageId={}",
+                laneIndex, key, message.getMessageId());
+            throw e;
+        }
+    }
+
+    /**
+     * 计算分片键：优先话题ID，其次会话ID，最后消息ID
+     */
+    static String resolveKey(Message message) {
+        if (message.getTopicId() != null && !message.getTopicId().isEmpty()) {
+            return message.getTopicId();
+        }
+        if (message.getChatId() != null && !message.getChatId().isEmpty()) {
+            return message.getChatId();
+        }
+        return message.getMessageId() != null ? message.getMessageId() : "";
+    }
+
+    int laneOf(String key) {
+        return Math.floorMod(key.hashCode(), lanes.length);
+    }
+
+    /**
+     * 获取通道数量
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * 获取所有通道中排队等待的任务总数
+     */
+    public int getQueuedCount() {
+        int total = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            total += lane.getQueue().size();
+        }
+        return total;
+    }
+
+    /**
+     * 获取所有通道中最早排队任务已等待的时长（纳秒），没有排队任务时返回 0
+     * 只查看各通道队首，开销与通道数成正比
+     */
+    public long getOldestQueuedNanos() {
+        long now = nanoClock.getAsLong();
+        long oldest = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            if (lane.getQueue().peek() instanceof QueuedTask head) {
+                oldest = Math.max(oldest, now - head.enqueuedAt);
+            }
+        }
+        return oldest;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            try {
+                if (!lane.awaitTermination(10, TimeUnit.SECONDS)) {
+                    lane.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                lane.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("Ingestion executor shut down");
+    }
+
+    /**
+     * 带入队时间的排队任务
+     */
+    private static final class QueuedTask implements Runnable {
+        private final Runnable task;
+        private final long enqueuedAt;
+
+        private QueuedTask(Runnable task, long enqueuedAt) {
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+}
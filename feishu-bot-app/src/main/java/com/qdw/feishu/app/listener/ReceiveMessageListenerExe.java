@@ -3,13 +3,17 @@ package com.qdw.feishu.app.listener;
 import com.qdw.feishu.app.router.CommandRouter;
 import com.qdw.feishu.domain.exception.MessageBizException;
 import com.qdw.feishu.domain.gateway.FeishuGateway;
+import com.qdw.feishu.domain.gateway.JournalEntry;
+import com.qdw.feishu.domain.gateway.MessageJournalGateway;
 import com.qdw.feishu.domain.message.Message;
+import com.qdw.feishu.domain.message.MessageStatus;
 import com.qdw.feishu.domain.service.BotMessageService;
 import com.qdw.feishu.domain.service.MessageDeduplicator;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * 接收消息监听器执行器
  * 处理从长连接接收到的消息
@@ -21,36 +25,146 @@ public class ReceiveMessageListenerExe {
     private final BotMessageService botMessageService;
     private final CommandRouter commandRouter;
     private final MessageDeduplicator messageDeduplicator;
+    private final OrderedIngestionExecutor ingestionExecutor;
+    private final AdmissionController admissionController;
+    private final MessageJournalGateway messageJournalGateway;
 
     public ReceiveMessageListenerExe(BotMessageService botMessageService,
                                     CommandRouter commandRouter,
-                                    MessageDeduplicator messageDeduplicator) {
+                                    MessageDeduplicator messageDeduplicator,
+                                    OrderedIngestionExecutor ingestionExecutor,
+                                    AdmissionController admissionController,
+                                    MessageJournalGateway messageJournalGateway) {
         this.botMessageService = botMessageService;
         this.commandRouter = commandRouter;
         this.messageDeduplicator = messageDeduplicator;
+        this.ingestionExecutor = ingestionExecutor;
+        this.admissionController = admissionController;
+        this.messageJournalGateway = messageJournalGateway;
+    }
+
+    /**
+     * 接收消息
+     * 先去重（重复投递不占用准入名额，也不会收到繁忙提示），再经过准入控制并写入消息日志，
+     * 最后按话题/会话分片提交到有序通道，避免阻塞接收线程，同时保证同一会话内的处理顺序
+     *
+     * @return 是否已接收（重复投递也视为已接收）；被准入控制或处理通道拒绝时返回 false，
+     *         webhook 模式据此要求飞书重新投递
+     */
+    public boolean execute(Message message) {
+        if (messageDeduplicator.isProcessed(message.getEventId())) {
+            log.info("消息已处理过，跳过: eventId={}, messageId={}", message.getEventId(), message.getMessageId());
+            return true;
+        }
+        if (!admissionController.tryAdmit(message)) {
+            return false;
+        }
+
+        long sequence = appendJournal(message);
+        message.onProcessed(() -> {
+            completeJournal(sequence);
+            messageDeduplicator.markCompleted(message.getEventId());
+        });
+        try {
+            ingestionExecutor.submit(message, () -> {
+                try {
+                    handle(message, sequence);
+                } finally {
+                    admissionController.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            completeJournal(sequence);
+            admissionController.rejectAdmitted(message, "ingestion lane full");
+            return false;
+        }
+        return true;
     }
 
     /**
-     * 处理接收到的消息
-     * 异步处理避免阻塞接收线程
+     * 重新处理崩溃前未完成的消息
+     * 不经过准入控制；开始处理时记录一次重放，供下次启动判断是否转入死信
+     * 去重只看精确集合，不查询也不写入持久化过滤器：日志中的消息本就是未完成的，过滤器误判会导致消息丢失
+     *
+     * @return 是否已提交；通道已满时返回 false，由调用方稍后重试
      */
-    @Async
-    public void execute(Message message) {
+    public boolean replay(JournalEntry entry) {
+        Message message = entry.getMessage();
+        long sequence = entry.getSequence();
+        message.onProcessed(() -> completeJournal(sequence));
+        try {
+            ingestionExecutor.submit(message, () -> {
+                if (messageDeduplicator.isProcessed(message.getEventId(), false)) {
+                    completeJournal(sequence);
+                    return;
+                }
+                recordAttempt(sequence);
+                handle(message, sequence);
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 处理消息并维护日志：正常处理的消息在 markProcessed（含后台任务结束）时标记完成并写入去重过滤器；
+     * 处理失败的消息立即标记完成，不在重启后重放，日志只用于找回崩溃时中断的消息
+     */
+    private void handle(Message message, long sequence) {
+        if (!process(message) || message.getStatus() != MessageStatus.PROCESSED) {
+            completeJournal(sequence);
+        }
+    }
+
+    private long appendJournal(Message message) {
+        try {
+            return messageJournalGateway.append(message);
+        } catch (Exception e) {
+            log.warn("写入消息日志失败，继续处理: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    private void recordAttempt(long sequence) {
+        if (sequence < 0) {
+            return;
+        }
+        try {
+            messageJournalGateway.recordAttempt(sequence);
+        } catch (Exception e) {
+            log.warn("记录消息重放失败: sequence={}", sequence, e);
+        }
+    }
+
+    private void completeJournal(long sequence) {
+        if (sequence < 0) {
+            return;
+        }
+        try {
+            messageJournalGateway.complete(sequence);
+        } catch (Exception e) {
+            log.warn("标记消息日志完成失败: sequence={}", sequence, e);
+        }
+    }
+
+    /**
+     * 处理接收到的消息（在所属通道线程中执行）
+     *
+     * @return 是否正常处理结束（未抛出异常）
+     */
+    boolean process(Message message) {
         log.info("=== 收到新消息 ===");
         log.info("事件ID: {}", message.getEventId());
         log.info("发送者: {}", message.getSender());
         log.info("消息内容: {}", message.getDisplayContent());
         log.info("消息ID: {}", message.getMessageId());
 
-        if (messageDeduplicator.isProcessed(message.getEventId())) {
-            log.info("消息已处理过，跳过");
-            log.info("=== 消息处理流程结束 ===\n");
-            return;
-        }
-
+        boolean handled = false;
         try {
             log.info("开始处理消息...");
             botMessageService.handleMessage(message);
+            handled = true;
             log.info("消息处理成功");
         } catch (MessageBizException e) {
             log.warn("业务异常: {}", e.getMessage());
@@ -59,5 +173,6 @@ public class ReceiveMessageListenerExe {
         }
 
         log.info("=== 消息处理流程结束 ===\n");
+        return handled;
     }
 }
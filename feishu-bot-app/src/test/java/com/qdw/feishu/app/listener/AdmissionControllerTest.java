@@ -0,0 +1,118 @@
+package com.qdw.feishu.app.listener;
+
+import com.qdw.feishu.domain.gateway.FeishuGateway;
+import com.qdw.feishu.domain.gateway.UserInfo;
+import com.qdw.feishu.domain.message.ChatHistory;
+import com.qdw.feishu.domain.message.Message;
+import com.qdw.feishu.domain.message.SendResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControllerTest {
+
+    private final AtomicLong now = new AtomicLong(0);
+    private final OrderedIngestionExecutor executor = new OrderedIngestionExecutor(1, 10, now::get);
+    private final CountDownLatch busyReplies = new CountDownLatch(1);
+    private final AdmissionController controller = new AdmissionController(
+        new BusyReplyRecorder(), executor, 3, 5000, "busy");
+
+    @AfterEach
+    void tearDown() {
+        controller.shutdown();
+        executor.shutdown();
+    }
+
+    private static Message message(String messageId) {
+        Message message = new Message();
+        message.setMessageId(messageId);
+        message.setChatId("chat_1");
+        return message;
+    }
+
+    @Test
+    @DisplayName("在途消息达到上限时拒绝并回复繁忙提示，释放后恢复准入")
+    void testTryAdmit_inFlightLimit() throws Exception {
+        assertTrue(controller.tryAdmit(message("om_1")));
+        assertTrue(controller.tryAdmit(message("om_2")));
+        assertTrue(controller.tryAdmit(message("om_3")));
+        assertFalse(controller.tryAdmit(message("om_4")));
+        assertEquals(3, controller.getInFlight());
+        assertEquals(1, controller.getRejectedCount());
+        assertTrue(busyReplies.await(5, TimeUnit.SECONDS));
+
+        controller.release();
+        assertTrue(controller.tryAdmit(message("om_5")));
+    }
+
+    @Test
+    @DisplayName("最早排队消息等待超过目标时拒绝，队列排空后立即恢复，无需新的出队样本")
+    void testTryAdmit_queueLatencyTarget() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch drained = new CountDownLatch(1);
+        executor.submit(message("om_1"), () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.submit(message("om_2"), drained::countDown);
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(4000));
+        assertTrue(controller.tryAdmit(message("om_3")));
+        controller.release();
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(2000));
+        assertEquals(6000, controller.getQueueLatencyMillis());
+        assertFalse(controller.tryAdmit(message("om_4")));
+
+        release.countDown();
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        assertEquals(0, controller.getQueueLatencyMillis());
+        assertTrue(controller.tryAdmit(message("om_5")));
+    }
+
+    private final class BusyReplyRecorder implements FeishuGateway {
+
+        @Override
+        public SendResult sendDirectReply(Message message, String content) {
+            busyReplies.countDown();
+            return null;
+        }
+
+        @Override
+        public SendResult sendReply(String receiveOpenId, String content) {
+            return null;
+        }
+
+        @Override
+        public SendResult sendMessage(Message message, String content, String topicId) {
+            return null;
+        }
+
+        @Override
+        public SendResult updateMessage(String messageId, String content) {
+            return null;
+        }
+
+        @Override
+        public UserInfo getUserInfo(String openId) {
+            return null;
+        }
+
+        @Override
+        public ChatHistory listMessages(String chatId, String threadId, Integer pageSize, String pageToken) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.qdw.feishu.app.listener;
+
+import com.qdw.feishu.domain.message.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderedIngestionExecutorTest {
+
+    private OrderedIngestionExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static Message message(String topicId, String chatId, String messageId) {
+        Message message = new Message();
+        message.setTopicId(topicId);
+        message.setChatId(chatId);
+        message.setMessageId(messageId);
+        return message;
+    }
+
+    /**
+     * 找一个与 key 落在不同通道上的话题 ID
+     */
+    private String topicOnOtherLane(String key) {
+        for (int i = 0; ; i++) {
+            String candidate = "topic_" + i;
+            if (executor.laneOf(candidate) != executor.laneOf(key)) {
+                return candidate;
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("同一话题的消息按提交顺序串行处理")
+    void testSubmit_sameTopicKeepsOrder() throws Exception {
+        executor = new OrderedIngestionExecutor(4, 500);
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(200);
+
+        for (int i = 0; i < 200; i++) {
+            int seq = i;
+            executor.submit(message("topic_a", "chat_1", "om_" + i), () -> {
+                processed.add(seq);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, processed);
+    }
+
+    @Test
+    @DisplayName("不同通道的话题并行处理，一个话题阻塞不影响其他话题")
+    void testSubmit_otherLanesNotBlocked() throws Exception {
+        executor = new OrderedIngestionExecutor(4, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherDone = new CountDownLatch(1);
+
+        executor.submit(message("topic_a", null, "om_1"), () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.submit(message(topicOnOtherLane("topic_a"), null, "om_2"), otherDone::countDown);
+
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("通道队列已满时拒绝提交，执行中和排队中的任务不受影响")
+    void testSubmit_rejectsWhenLaneFull() throws Exception {
+        executor = new OrderedIngestionExecutor(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch queuedDone = new CountDownLatch(1);
+
+        executor.submit(message("topic_a", null, "om_1"), () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.submit(message("topic_a", null, "om_2"), queuedDone::countDown);
+        assertEquals(1, executor.getQueuedCount());
+
+        assertThrows(RejectedExecutionException.class,
+            () -> executor.submit(message("topic_b", null, "om_3"), () -> { }));
+
+        release.countDown();
+        assertTrue(queuedDone.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("最早排队任务的等待时长取各通道队首的入队时间，队列排空后归零")
+    void testGetOldestQueuedNanos() throws Exception {
+        AtomicLong now = new AtomicLong(1_000);
+        executor = new OrderedIngestionExecutor(1, 10, now::get);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch drained = new CountDownLatch(2);
+
+        executor.submit(message("topic_a", null, "om_1"), () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(0, executor.getOldestQueuedNanos());
+
+        executor.submit(message("topic_a", null, "om_2"), drained::countDown);
+        now.addAndGet(500);
+        executor.submit(message("topic_a", null, "om_3"), drained::countDown);
+        now.addAndGet(300);
+        assertEquals(800, executor.getOldestQueuedNanos());
+
+        release.countDown();
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        assertEquals(0, executor.getOldestQueuedNanos());
+    }
+
+    @Test
+    @DisplayName("分片键优先使用话题 ID，其次会话 ID，最后消息 ID")
+    void testResolveKey() {
+        assertEquals("topic_1", OrderedIngestionExecutor.resolveKey(message("topic_1", "chat_1", "om_1")));
+        assertEquals("chat_1", OrderedIngestionExecutor.resolveKey(message("", "chat_1", "om_1")));
+        assertEquals("om_1", OrderedIngestionExecutor.resolveKey(message(null, null, "om_1")));
+        assertEquals("", OrderedIngestionExecutor.resolveKey(message(null, null, null)));
+    }
+
+    @Test
+    @DisplayName("通道数和队列容量必须为正数")
+    void testConstructor_rejectsInvalidConfig() {
+        assertThrows(IllegalArgumentException.class, () -> new OrderedIngestionExecutor(0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new OrderedIngestionExecutor(2, 0));
+    }
+}
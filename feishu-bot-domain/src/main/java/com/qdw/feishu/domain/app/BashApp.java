@@ -1,22 +1,25 @@
 package com.qdw.feishu.domain.app;
 
 import com.qdw.feishu.domain.command.CommandWhitelistValidator;
+import com.qdw.feishu.domain.core.InFlightTasks;
 import com.qdw.feishu.domain.gateway.FeishuGateway;
 import com.qdw.feishu.domain.history.BashHistoryManager;
 import com.qdw.feishu.domain.history.CommandExecution;
 import com.qdw.feishu.domain.message.Message;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -26,10 +29,22 @@ import java.util.stream.Collectors;
 public class BashApp implements FishuAppI {
 
     private static final String WORKSPACE_DIR = ".workspace";
+    private static final long SYNC_TIMEOUT_SECONDS = 5;
+    private static final long MAX_RUNTIME_SECONDS = 300;
+
+    /**
+     * 读取进程输出的线程，阻塞在进程输出上，与进程数量一致
+     */
+    private static final Executor OUTPUT_READER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "bash-output");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private final CommandWhitelistValidator validator;
     private final BashHistoryManager historyManager;
     private final FeishuGateway feishuGateway;
+    private final InFlightTasks<String> runningCommands = new InFlightTasks<>();
 
     public BashApp(CommandWhitelistValidator validator,
                     BashHistoryManager historyManager,
@@ -87,20 +102,35 @@ public class BashApp implements FishuAppI {
         }
 
         long startTime = System.nanoTime();
-        String result = null;
+        String result;
+        CompletableFuture<String> task;
+
+        try {
+            // 同一条消息（重投或重放）的命令仍在执行时复用该进程；其他消息即使命令相同也单独执行
+            task = runningCommands.submit(taskKey(message), () -> startCommand(command));
+        } catch (UncheckedIOException e) {
+            log.error("Command execution failed", e);
+            historyManager.recordExecution(command, "错误: " + e.getCause().getMessage(), false);
+            return "错误：" + e.getCause().getMessage();
+        }
 
         try {
             // Try sync execution with 5 second timeout
-            result = executeCommandSync(message, command, 5, TimeUnit.SECONDS);
+            result = task.get(SYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
         } catch (TimeoutException e) {
-            // Command takes >5 seconds - send "执行中..." and continue async
+            // Command takes >5 seconds - send "执行中..." and wait for the same process in background
             feishuGateway.sendMessage(message, "命令正在执行中，结果将稍后返回...",
                                       message.getTopicId());
-            executeCommandAsync(message, command);
+            message.continueInBackground(task.whenComplete((output, error) -> sendResult(message, output, error)));
             return null;
+        } catch (ExecutionException e) {
+            log.error("Command execution failed", e.getCause());
+            return "错误：" + e.getCause().getMessage();
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("Command execution failed", e);
-            historyManager.recordExecution(command, "错误: " + e.getMessage(), false);
             return "错误：" + e.getMessage();
         }
 
@@ -115,42 +145,35 @@ public class BashApp implements FishuAppI {
         return result;
     }
 
-    @Async("bashExecutor")
-    public void executeCommandAsync(Message message, String command) {
-        try {
-            File workspaceDir = ensureWorkspaceExists();
-            String baseCommand = extractBaseCommand(command);
-            String[] args = getArgsAsArray(command);
-
-            java.util.List<String> commandList = new java.util.ArrayList<>();
-            commandList.add(baseCommand);
-            commandList.addAll(java.util.Arrays.asList(args));
-
-            ProcessBuilder pb = new ProcessBuilder(commandList);
-            pb.directory(workspaceDir);
-            pb.redirectErrorStream(true);
-
-            Process process = pb.start();
-            String output = readProcessOutput(process);
-            int exitCode = process.waitFor();
-
-            boolean success = exitCode == 0;
-            String truncatedOutput = truncateOutput(output);
-            historyManager.recordExecution(command, truncatedOutput, success);
-
-            String result = output.isEmpty() ? "命令执行完成，无输出" : output;
-
-            feishuGateway.sendMessage(message, result, message.getTopicId());
+    /**
+     * 执行中命令的标识：消息 ID，没有时用事件 ID；都没有时不复用
+     */
+    private static String taskKey(Message message) {
+        String messageId = message.getMessageId();
+        return messageId != null && !messageId.isEmpty() ? messageId : message.getEventId();
+    }
 
+    private void sendResult(Message message, String output, Throwable error) {
+        try {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+                log.error("Async command execution failed", cause);
+                feishuGateway.sendMessage(message, "错误：" + cause.getMessage(), message.getTopicId());
+                return;
+            }
+            feishuGateway.sendMessage(message, output, message.getTopicId());
         } catch (Exception e) {
-            log.error("Async command execution failed", e);
-            historyManager.recordExecution(command, "错误: " + e.getMessage(), false);
-            feishuGateway.sendMessage(message, "错误：" + e.getMessage(), message.getTopicId());
+            log.error("Failed to send async command result", e);
         }
     }
 
-    private String executeCommandSync(Message message, String command,
-                                      long timeout, TimeUnit unit) throws Exception {
+    /**
+     * 启动命令进程，读取输出直到进程结束并记录历史
+     *
+     * 进程只启动一次：同步等待超时后后台继续等待同一个进程，超过 {@link #MAX_RUNTIME_SECONDS} 才终止。
+     */
+    private CompletableFuture<String> startCommand(String command) {
         File workspaceDir = ensureWorkspaceExists();
         String baseCommand = extractBaseCommand(command);
         String[] args = getArgsAsArray(command);
@@ -163,26 +186,34 @@ public class BashApp implements FishuAppI {
         pb.directory(workspaceDir);
         pb.redirectErrorStream(true);
 
-        Process process = pb.start();
-
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        Future<String> future = executor.submit(() -> readProcessOutput(process));
-
+        Process process;
         try {
-            String output = future.get(timeout, unit);
-            int exitCode = process.waitFor();
-
-            boolean success = exitCode == 0;
-            String truncatedOutput = truncateOutput(output);
-            historyManager.recordExecution(command, truncatedOutput, success);
-
-            return output.isEmpty() ? "命令执行完成，无输出" : output;
-        } catch (TimeoutException e) {
-            process.destroyForcibly();
-            throw e;
-        } finally {
-            executor.shutdownNow();
+            process = pb.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+
+        return CompletableFuture.supplyAsync(() -> readProcessOutput(process), OUTPUT_READER)
+            .orTimeout(MAX_RUNTIME_SECONDS, TimeUnit.SECONDS)
+            .handle((output, error) -> {
+                if (error != null) {
+                    process.destroyForcibly();
+                    String reason = error instanceof TimeoutException
+                        ? "命令执行超过 " + MAX_RUNTIME_SECONDS + " 秒，已终止" : error.getMessage();
+                    historyManager.recordExecution(command, "错误: " + reason, false);
+                    throw new CompletionException(new IllegalStateException(reason, error));
+                }
+
+                boolean success;
+                try {
+                    success = process.waitFor() == 0;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    success = false;
+                }
+                historyManager.recordExecution(command, truncateOutput(output), success);
+                return output.isEmpty() ? "命令执行完成，无输出" : output;
+            });
     }
 
     private File ensureWorkspaceExists() {
@@ -16,6 +16,8 @@ public class HelpApp implements FishuAppI {
     @Lazy
     private AppRegistry appRegistry;
 
+    private volatile String cachedHelpText;
+
     @Override
     public String getAppId() {
         return "help";
@@ -47,6 +49,26 @@ public class HelpApp implements FishuAppI {
         log.info("应用 ID: {}", getAppId());
         log.info("输入消息: {}", message.getContent());
 
+        String result = getHelpText();
+        log.info("HelpApp.execute 完成，返回帮助信息");
+        log.info("=== HelpApp.execute 结束 ===");
+
+        return result;
+    }
+
+    /**
+     * 帮助文本只依赖已注册的应用，首次使用时生成后缓存
+     */
+    private String getHelpText() {
+        String text = cachedHelpText;
+        if (text == null) {
+            text = buildHelpText();
+            cachedHelpText = text;
+        }
+        return text;
+    }
+
+    private String buildHelpText() {
         StringBuilder helpText = new StringBuilder();
         helpText.append("飞书机器人命令帮助\n\n");
 
@@ -71,12 +93,7 @@ public class HelpApp implements FishuAppI {
         helpText.append("💡 提示：\n");
         helpText.append("   - 发送任意非命令消息也会显示此帮助信息\n");
         helpText.append("   - 命令和别名不区分大小写（如 /Bash、/BASH、/bash 都可以）");
-
-        String result = helpText.toString();
-        log.info("HelpApp.execute 完成，返回帮助信息");
-        log.info("=== HelpApp.execute 结束 ===");
-
-        return result;
+        return helpText.toString();
     }
 
     @Override
@@ -10,11 +10,25 @@ import org.springframework.stereotype.Component;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * 应用注册表
+ *
+ * 启动时构建不可变的命令索引：
+ * - appId 与所有别名（不区分大小写）组成前缀树，命令解析为一次逐字符探测，不产生临时对象
+ * - 未知命令时基于前缀树给出“你是不是想输入”的候选
+ * - 帮助文本、可用命令列表等固定文本在启动时预先生成
+ */
 @Slf4j
 @Component
 public class AppRegistry {
 
+    private static final int MAX_SUGGESTIONS = 3;
+
     private final Map<String, FishuAppI> apps;
+    private final List<FishuAppI> appList;
+    private final TrieNode commandIndex;
+    private final String appHelp;
+    private final String availableCommands;
 
     @Autowired
     @Lazy
@@ -25,12 +39,24 @@ public class AppRegistry {
         log.info("检测到的应用类数量: {}", allApps.size());
         allApps.forEach(app -> log.info("  - {} ({})", app.getAppName(), app.getAppId()));
 
-        this.apps = allApps.stream()
+        this.apps = Collections.unmodifiableMap(allApps.stream()
             .collect(Collectors.toMap(
                 FishuAppI::getAppId,
                 app -> app,
-                (existing, replacement) -> existing
-            ));
+                (existing, replacement) -> existing,
+                LinkedHashMap::new
+            )));
+        this.appList = List.copyOf(apps.values());
+        this.commandIndex = buildCommandIndex(appList);
+
+        this.appHelp = appList.stream()
+            .map(app -> String.format("%s - %s",
+                app.getTriggerCommand(), app.getDescription()))
+            .collect(Collectors.joining("\n"));
+        String commands = appList.stream()
+            .flatMap(app -> app.getAllTriggerCommands().stream())
+            .collect(Collectors.joining(", "));
+        this.availableCommands = commands.isEmpty() ? "无" : commands;
 
         log.info("应用注册完成，共注册 {} 个应用: {}",
             apps.size(), apps.keySet());
@@ -41,18 +67,179 @@ public class AppRegistry {
         return Optional.ofNullable(apps.get(appId));
     }
 
+    /**
+     * 获取所有应用（不可变列表，按注册顺序）
+     */
     public List<FishuAppI> getAllApps() {
-        return new ArrayList<>(apps.values());
+        return appList;
+    }
+
+    /**
+     * 根据命令前缀或别名查找应用（不区分大小写，不含 /）
+     *
+     * @param command 命令前缀
+     * @return 找到的应用，如果不存在则返回 null
+     */
+    public FishuAppI findByCommand(CharSequence command) {
+        if (command == null || command.length() == 0) {
+            return null;
+        }
+        TrieNode node = commandIndex;
+        for (int i = 0; i < command.length() && node != null; i++) {
+            node = node.child(Character.toLowerCase(command.charAt(i)));
+        }
+        return node != null ? node.app : null;
+    }
+
+    /**
+     * 为未知命令给出候选命令
+     * 优先返回与输入共享最长前缀的命令，其次返回输入的前缀本身即为命令的情况
+     *
+     * @param command 未知命令（不含 /）
+     * @return 候选命令（含 /），最多 3 个
+     */
+    public List<String> suggestCommands(String command) {
+        if (command == null || command.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> onPath = new ArrayList<>();
+        TrieNode node = commandIndex;
+        TrieNode deepest = null;
+        int depth = 0;
+        while (depth < command.length()) {
+            TrieNode next = node.child(Character.toLowerCase(command.charAt(depth)));
+            if (next == null) {
+                break;
+            }
+            node = next;
+            deepest = node;
+            depth++;
+            if (node.command != null && depth < command.length()) {
+                onPath.add(node.command);
+            }
+        }
+        if (deepest == null) {
+            return Collections.emptyList();
+        }
+
+        Set<String> suggestions = new LinkedHashSet<>();
+        deepest.collect(suggestions, MAX_SUGGESTIONS);
+        for (int i = onPath.size() - 1; i >= 0 && suggestions.size() < MAX_SUGGESTIONS; i--) {
+            suggestions.add(onPath.get(i));
+        }
+        return suggestions.stream().map(c -> "/" + c).toList();
     }
 
     public String getAppHelp() {
-        return apps.values().stream()
-            .map(app -> String.format("%s - %s",
-                app.getTriggerCommand(), app.getDescription()))
-            .collect(Collectors.joining("\n"));
+        return appHelp;
+    }
+
+    /**
+     * 获取所有可用命令（含别名），逗号分隔
+     */
+    public String getAvailableCommands() {
+        return availableCommands;
+    }
+
+    /**
+     * 生成未知命令提示
+     *
+     * @param command 未知命令（不含 /）
+     */
+    public String getUnknownCommandReply(String command) {
+        StringBuilder reply = new StringBuilder(96 + availableCommands.length());
+        reply.append("❌ 未找到应用: `").append(command).append("`\n\n");
+        List<String> suggestions = suggestCommands(command);
+        if (!suggestions.isEmpty()) {
+            reply.append("🤔 你是不是想输入: ").append(String.join(", ", suggestions)).append("\n\n");
+        }
+        reply.append("📋 可用应用列表:\n").append(availableCommands).append("\n\n")
+            .append("💡 提示: 请使用正确的命令前缀");
+        return reply.toString();
     }
 
     public ReplyMode getDefaultReplyMode() {
         return replyProperties != null ? replyProperties.getMode() : ReplyMode.DEFAULT;
     }
+
+    /**
+     * 构建命令前缀树：appId 优先于别名，先注册的应用优先
+     */
+    private static TrieNode buildCommandIndex(List<FishuAppI> apps) {
+        TrieNode root = new TrieNode();
+        for (FishuAppI app : apps) {
+            root.insert(app.getAppId().toLowerCase(Locale.ROOT), app);
+        }
+        for (FishuAppI app : apps) {
+            for (String alias : app.getAppAliases()) {
+                root.insert(alias.toLowerCase(Locale.ROOT), app);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * 前缀树节点，子节点按字符有序存放，查找时二分
+     */
+    private static final class TrieNode {
+        private char[] keys = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+        private FishuAppI app;
+        private String command;
+
+        private TrieNode child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private void insert(String key, FishuAppI target) {
+            TrieNode node = this;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                int index = Arrays.binarySearch(node.keys, c);
+                if (index < 0) {
+                    index = -index - 1;
+                    node.keys = insertAt(node.keys, index, c);
+                    node.children = insertAt(node.children, index, new TrieNode());
+                }
+                node = node.children[index];
+            }
+            if (node.app == null) {
+                node.app = target;
+                node.command = key;
+            } else if (node.app != target) {
+                log.warn("命令冲突: {} 已被应用 {} 占用，忽略应用 {}",
+                    key, node.app.getAppId(), target.getAppId());
+            }
+        }
+
+        private void collect(Set<String> out, int limit) {
+            if (out.size() >= limit) {
+                return;
+            }
+            if (command != null) {
+                out.add(command);
+            }
+            for (TrieNode child : children) {
+                child.collect(out, limit);
+            }
+        }
+
+        private static char[] insertAt(char[] array, int index, char value) {
+            char[] result = new char[array.length + 1];
+            System.arraycopy(array, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            return result;
+        }
+
+        private static TrieNode[] insertAt(TrieNode[] array, int index, TrieNode value) {
+            TrieNode[] result = new TrieNode[array.length + 1];
+            System.arraycopy(array, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            return result;
+        }
+    }
 }
@@ -0,0 +1,101 @@
+package com.qdw.feishu.domain.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * 熔断器
+ *
+ * 由真实请求的结果驱动：
+ * - CLOSED：请求正常放行，连续失败达到阈值后打开
+ * - OPEN：请求直接拒绝，打开时长结束后转为半开
+ * - HALF_OPEN：只放行一个试探请求，成功则关闭，失败则重新打开
+ *
+ * 每个放行的请求结束时必须调用 onSuccess / onFailure / onIgnored 之一报告结果。
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this(name, failureThreshold, openDuration, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, Duration openDuration, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openDuration.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * 请求是否可以放行；打开状态下不发起任何调用，立即返回 false
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            log.info("熔断器半开，放行试探请求: {}", name);
+        } else if (trialInFlight) {
+            return false;
+        }
+        trialInFlight = true;
+        return true;
+    }
+
+    /**
+     * 请求成功
+     */
+    public synchronized void onSuccess() {
+        failures = 0;
+        trialInFlight = false;
+        if (state != State.CLOSED) {
+            log.info("熔断器关闭，服务恢复: {}", name);
+            state = State.CLOSED;
+        }
+    }
+
+    /**
+     * 请求失败（服务不可达或服务端错误）
+     */
+    public synchronized void onFailure() {
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && ++failures >= failureThreshold)) {
+            log.warn("熔断器打开: {}, {}ms 内快速失败", name, openMillis);
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            failures = 0;
+        }
+    }
+
+    /**
+     * 请求结束但不能说明服务状态（如长任务响应超时），半开状态下允许下一个试探请求
+     */
+    public synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
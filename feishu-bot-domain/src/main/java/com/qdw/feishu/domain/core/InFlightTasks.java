@@ -0,0 +1,76 @@
+package com.qdw.feishu.domain.core;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 执行中任务登记表
+ *
+ * 同步等待超时后，调用方不应重新提交同一任务，而是挂到仍在执行的任务上等待结果：
+ * 按 key 登记任务的 Future，同一 key 的任务未结束时再次提交直接返回已有的 Future，任务结束后自动移除。
+ * key 应标识一次请求（如消息 ID），而不是请求内容，否则内容相同的不同请求会拿到同一个结果。
+ *
+ * 返回的 Future 由所有提交者共享，只能等待（get / whenComplete），不能 cancel 或 complete。
+ *
+ * @param <T> 任务结果类型
+ */
+public class InFlightTasks<T> {
+
+    private final Map<String, CompletableFuture<T>> running = new ConcurrentHashMap<>();
+
+    /**
+     * 提交任务
+     *
+     * @param key 任务标识，为 null 时不登记，总是启动新任务
+     * @param starter 启动任务并返回其 Future，仅在没有同 key 任务执行中时调用
+     * @return 执行中的同 key 任务，或新启动的任务
+     */
+    public CompletableFuture<T> submit(String key, Supplier<CompletableFuture<T>> starter) {
+        if (key == null) {
+            return starter.get();
+        }
+        CompletableFuture<T> existing = running.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        CompletableFuture<T> placeholder = new CompletableFuture<>();
+        existing = running.putIfAbsent(key, placeholder);
+        if (existing != null) {
+            return existing;
+        }
+
+        // 先占位再启动，starter 在登记表之外执行，启动失败时移除占位
+        try {
+            starter.get().whenComplete((result, error) -> {
+                running.remove(key, placeholder);
+                if (error != null) {
+                    placeholder.completeExceptionally(error);
+                } else {
+                    placeholder.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.remove(key, placeholder);
+            placeholder.completeExceptionally(e);
+            throw e;
+        }
+        return placeholder;
+    }
+
+    /**
+     * 是否有同 key 任务执行中
+     */
+    public boolean isRunning(String key) {
+        return running.containsKey(key);
+    }
+
+    /**
+     * 执行中的任务数
+     */
+    public int size() {
+        return running.size();
+    }
+}
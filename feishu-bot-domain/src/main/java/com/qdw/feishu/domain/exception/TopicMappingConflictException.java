@@ -0,0 +1,12 @@
+package com.qdw.feishu.domain.exception;
+
+import com.alibaba.cola.exception.SysException;
+
+/**
+ * 话题映射并发修改冲突：重试次数用尽后仍有其他写入者抢先更新
+ */
+public class TopicMappingConflictException extends SysException {
+    public TopicMappingConflictException(String topicId, int attempts) {
+        super("TOPIC_MAPPING_CONFLICT", "话题映射并发修改冲突: topicId=" + topicId + ", attempts=" + attempts);
+    }
+}
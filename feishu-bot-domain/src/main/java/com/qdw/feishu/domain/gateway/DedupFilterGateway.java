@@ -0,0 +1,27 @@
+package com.qdw.feishu.domain.gateway;
+
+/**
+ * 去重概率过滤器网关接口
+ * 持久化的近似集合（如布隆过滤器），重启后仍能识别近期处理过的事件
+ */
+public interface DedupFilterGateway {
+
+    /**
+     * 是否启用
+     * @return 未启用时去重器只使用内存精确集合
+     */
+    boolean isEnabled();
+
+    /**
+     * 判断事件是否可能已处理
+     * @param eventId 事件ID
+     * @return false 表示一定未处理；true 表示可能已处理（存在一定误判率）
+     */
+    boolean mightContain(String eventId);
+
+    /**
+     * 记录事件已处理
+     * @param eventId 事件ID
+     */
+    void put(String eventId);
+}
@@ -0,0 +1,29 @@
+package com.qdw.feishu.domain.gateway;
+
+import com.qdw.feishu.domain.message.Message;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 飞书事件回调网关接口
+ * 定义 HTTP 回调（webhook）模式下的事件接入：验签、解密、URL 校验和事件分发
+ */
+public interface EventCallbackGateway {
+
+    /**
+     * 注册消息处理器
+     * @param messageHandler 消息处理器
+     */
+    void registerMessageHandler(Consumer<Message> messageHandler);
+
+    /**
+     * 处理一次事件回调请求
+     * @param path 请求路径
+     * @param headers 请求头
+     * @param body 原始请求体
+     * @return 需要返回给飞书的响应
+     */
+    EventCallbackResponse handle(String path, Map<String, List<String>> headers, byte[] body);
+}
@@ -0,0 +1,16 @@
+package com.qdw.feishu.domain.gateway;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 事件回调响应值对象
+ */
+@Data
+@AllArgsConstructor
+public class EventCallbackResponse {
+
+    private int statusCode;
+    private String contentType;
+    private byte[] body;
+}
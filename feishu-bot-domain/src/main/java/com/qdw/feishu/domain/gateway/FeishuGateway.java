@@ -40,6 +40,18 @@ public interface FeishuGateway {
      */
     SendResult sendDirectReply(Message message, String content);
 
+    /**
+     * 编辑机器人已发送的文本消息
+     *
+     * 飞书限制单条消息的编辑次数，超出或消息已撤回时返回失败结果而不抛出异常，
+     * 调用方可以改为发送新消息。
+     *
+     * @param messageId 消息 ID
+     * @param content 新的消息内容
+     * @return 编辑结果
+     */
+    SendResult updateMessage(String messageId, String content);
+
     /**
      * 获取用户信息
      *
@@ -0,0 +1,19 @@
+package com.qdw.feishu.domain.gateway;
+
+import com.qdw.feishu.domain.message.Message;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 消息日志条目值对象
+ */
+@Data
+@AllArgsConstructor
+public class JournalEntry {
+
+    private long sequence;
+    private Message message;
+
+    /** 崩溃恢复后已开始重放的次数 */
+    private int attempts;
+}
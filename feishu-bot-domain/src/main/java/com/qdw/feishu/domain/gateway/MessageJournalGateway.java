@@ -0,0 +1,44 @@
+package com.qdw.feishu.domain.gateway;
+
+import com.qdw.feishu.domain.message.Message;
+
+import java.util.List;
+
+/**
+ * 入站消息日志网关接口
+ * 消息分发前先写入日志，处理完成后标记完成；进程崩溃重启后可找回未完成的消息重新处理，
+ * 反复重放仍未完成的消息（如每次都导致崩溃）转入死信，不再重放
+ */
+public interface MessageJournalGateway {
+
+    /**
+     * 追加一条待处理消息
+     * @param message 已解析的消息
+     * @return 日志序号，用于完成标记
+     */
+    long append(Message message);
+
+    /**
+     * 标记消息处理完成
+     * @param sequence 日志序号
+     */
+    void complete(long sequence);
+
+    /**
+     * 获取启动时尚未完成的消息（按写入顺序）
+     * @return 未完成的日志条目
+     */
+    List<JournalEntry> recoverPending();
+
+    /**
+     * 记录一次重放开始，下次启动时计入条目的重放次数
+     * @param sequence 日志序号
+     */
+    void recordAttempt(long sequence);
+
+    /**
+     * 放弃重放：把消息写入死信并标记完成
+     * @param entry 重放次数已达上限的条目
+     */
+    void deadLetter(JournalEntry entry);
+}
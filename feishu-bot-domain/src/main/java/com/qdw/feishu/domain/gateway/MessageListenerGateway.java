@@ -26,6 +26,12 @@ public interface MessageListenerGateway {
      */
     ConnectionStatus getConnectionStatus();
 
+    /**
+     * 获取累计断线时长（包含当前正在进行的断线）
+     * @return 断线总时长（毫秒）
+     */
+    long getDisconnectedMillis();
+
     enum ConnectionStatus {
         DISCONNECTED,
         CONNECTING,
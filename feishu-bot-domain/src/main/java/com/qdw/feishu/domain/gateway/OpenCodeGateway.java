@@ -1,5 +1,9 @@
 package com.qdw.feishu.domain.gateway;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
 /**
  * OpenCode Gateway 接口
  *
@@ -18,6 +22,76 @@ public interface OpenCodeGateway {
      */
     String executeCommand(String prompt, String sessionId, int timeoutSeconds) throws Exception;
 
+    /**
+     * 异步执行 OpenCode 命令
+     *
+     * 实现应在等待响应期间不占用线程；默认实现在公共线程池中调用 {@link #executeCommand}。
+     *
+     * @return 执行结果的 Future，超时时结果为 null，执行异常时以该异常失败
+     */
+    default CompletableFuture<String> executeCommandAsync(String prompt, String sessionId, int timeoutSeconds) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return executeCommand(prompt, sessionId, timeoutSeconds);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * 流式执行 OpenCode 命令
+     *
+     * 执行过程中每当回复内容变化，都以截至目前的完整内容回调 onContent（在网关的 IO 线程上调用，回调不应阻塞）。
+     * 默认实现等待完整结果后回调一次。
+     *
+     * @param prompt 提示词
+     * @param sessionId 会话 ID（可为 null，如果是新会话）
+     * @param timeoutSeconds 超时时间（秒），0 表示无限制
+     * @param onContent 内容回调
+     * @return 最终结果，如果超时返回 null
+     * @throws Exception 执行异常
+     */
+    default String streamCommand(String prompt, String sessionId, int timeoutSeconds,
+                                 Consumer<String> onContent) throws Exception {
+        String result = executeCommand(prompt, sessionId, timeoutSeconds);
+        if (result != null) {
+            onContent.accept(result);
+        }
+        return result;
+    }
+
+    /**
+     * 异步流式执行 OpenCode 命令
+     *
+     * 回调约定与 {@link #streamCommand} 相同；默认实现在公共线程池中调用 {@link #streamCommand}。
+     *
+     * @return 最终结果的 Future，超时时结果为 null
+     */
+    default CompletableFuture<String> streamCommandAsync(String prompt, String sessionId, int timeoutSeconds,
+                                                         Consumer<String> onContent) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return streamCommand(prompt, sessionId, timeoutSeconds, onContent);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * 创建新会话
+     *
+     * @return 会话 ID，创建失败返回 null
+     */
+    String createSession();
+
+    /**
+     * 清除缓存的查询结果（会话列表等），会话创建或重置后调用；默认实现不缓存，无需处理
+     */
+    default void invalidateCache() {
+    }
+
     /**
      * 列出所有会话
      *
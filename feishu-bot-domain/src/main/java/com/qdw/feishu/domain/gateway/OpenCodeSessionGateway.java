@@ -7,7 +7,7 @@ import java.util.Optional;
 /**
  * OpenCode 会话管理 Gateway 接口
  *
- * 定义会话持久化的抽象，基于 TopicMapping.metadata 实现
+ * 定义会话持久化的抽象，按 opencode.session.storage 选择基于 TopicMapping.metadata 或独立会话表的实现
  */
 public interface OpenCodeSessionGateway {
 
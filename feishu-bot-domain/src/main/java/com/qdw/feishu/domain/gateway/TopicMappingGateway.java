@@ -1,8 +1,14 @@
 package com.qdw.feishu.domain.gateway;
 
+import com.qdw.feishu.domain.exception.TopicMappingConflictException;
 import com.qdw.feishu.domain.model.TopicMapping;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * 话题映射 Gateway 接口
@@ -12,6 +18,11 @@ import java.util.Optional;
  */
 public interface TopicMappingGateway {
 
+    /**
+     * update 在版本冲突时的最大尝试次数
+     */
+    int MAX_UPDATE_ATTEMPTS = 5;
+
     /**
      * 保存话题映射
      * 
@@ -19,6 +30,69 @@ public interface TopicMappingGateway {
      */
     void save(TopicMapping mapping);
 
+    /**
+     * 批量保存话题映射
+     * 默认逐条保存，支持事务的存储可覆盖为单次批量提交
+     *
+     * @param mappings 话题映射实体集合
+     */
+    default void saveAll(Collection<TopicMapping> mappings) {
+        mappings.forEach(this::save);
+    }
+
+    /**
+     * 按版本号条件保存：仅当存储中的版本仍等于 mapping.getVersion() 时写入，成功后版本号加一
+     * 版本号为 0 表示新话题，仅在话题不存在时插入
+     * 默认直接保存（单进程、无并发写入的存储）
+     *
+     * @param mapping 话题映射实体
+     * @return 是否写入成功，false 表示已被其他写入者修改
+     */
+    default boolean compareAndSave(TopicMapping mapping) {
+        save(mapping);
+        return true;
+    }
+
+    /**
+     * 批量条件写入，逐条按 {@link #compareAndSave} 的语义比较版本，成功的映射版本号加一
+     * 默认逐条写入，支持事务的存储可覆盖为单次批量提交
+     *
+     * @param mappings 话题映射实体集合
+     * @return 因版本冲突（或话题已被删除）未写入的映射
+     */
+    default List<TopicMapping> compareAndSaveAll(Collection<TopicMapping> mappings) {
+        List<TopicMapping> conflicts = new ArrayList<>();
+        for (TopicMapping mapping : mappings) {
+            if (!compareAndSave(mapping)) {
+                conflicts.add(mapping);
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * 读取-修改-条件写入，版本冲突时重新读取最新数据并重放修改
+     *
+     * @param topicId 话题 ID
+     * @param change 对最新映射的修改，冲突时可能被调用多次
+     * @return 修改后的映射，话题不存在时返回 Optional.empty()
+     * @throws TopicMappingConflictException 重试 {@link #MAX_UPDATE_ATTEMPTS} 次仍然冲突
+     */
+    default Optional<TopicMapping> update(String topicId, Consumer<TopicMapping> change) {
+        for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+            Optional<TopicMapping> current = findByTopicId(topicId);
+            if (current.isEmpty()) {
+                return Optional.empty();
+            }
+            TopicMapping mapping = current.get();
+            change.accept(mapping);
+            if (compareAndSave(mapping)) {
+                return Optional.of(mapping);
+            }
+        }
+        throw new TopicMappingConflictException(topicId, MAX_UPDATE_ATTEMPTS);
+    }
+
     /**
      * 根据话题 ID 查找映射
      * 
@@ -33,4 +107,38 @@ public interface TopicMappingGateway {
      * @param topicId 话题 ID
      */
     void delete(String topicId);
+
+    /**
+     * 查找最后活跃时间早于 cutoff 的映射，按活跃时间升序，用于冷数据归档
+     * 默认不支持，返回空列表
+     *
+     * @param cutoff 活跃时间阈值（毫秒时间戳）
+     * @param limit 最多返回条数
+     * @return 不活跃的话题映射
+     */
+    default List<TopicMapping> findInactiveBefore(long cutoff, int limit) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 删除指定话题中最后活跃时间仍早于 cutoff 的映射
+     * 归档期间重新活跃的话题不会被删除
+     *
+     * @param topicIds 话题 ID 集合
+     * @param cutoff 活跃时间阈值（毫秒时间戳）
+     * @return 实际删除的数量
+     */
+    default int deleteInactiveBefore(Collection<String> topicIds, long cutoff) {
+        return 0;
+    }
+
+    /**
+     * 按话题 ID 升序分页读取全部映射（键集分页），用于导出和跨存储迁移
+     * 每页都是独立查询，不持有长事务，读取期间存储可以继续写入
+     *
+     * @param afterTopicId 上一页最后一个话题 ID，null 表示从头开始
+     * @param limit 每页最多条数
+     * @return 话题 ID 大于 afterTopicId 的映射，返回空列表表示已读完
+     */
+    List<TopicMapping> scan(String afterTopicId, int limit);
 }
@@ -1,10 +1,16 @@
 package com.qdw.feishu.domain.message;
 
 import com.alibaba.cola.exception.BizException;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * 消息领域实体
@@ -45,6 +51,18 @@ public class Message {
     /** 状态 */
     private MessageStatus status;
 
+    /** 应用在后台继续执行的任务（如流式回复），全部结束后才触发处理完成回调 */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient CompletableFuture<Void> backgroundWork;
+
+    /** 处理完成回调（如消息日志的完成标记），只触发一次 */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient Runnable processedCallback;
+
     public Message(String messageId, String content, Sender sender) {
         this.messageId = messageId;
         this.content = content;
@@ -68,9 +86,52 @@ public class Message {
 
     /**
      * 领域业务逻辑：标记已处理
+     * 有后台任务时，处理完成回调在后台任务全部结束后触发
      */
     public void markProcessed() {
         this.status = MessageStatus.PROCESSED;
+        CompletableFuture<Void> work;
+        synchronized (this) {
+            work = backgroundWork;
+        }
+        if (work == null) {
+            fireProcessed();
+        } else {
+            work.whenComplete((result, error) -> fireProcessed());
+        }
+    }
+
+    /**
+     * 登记应用返回后仍在后台继续的任务
+     * 任务无论成功失败，结束后才视为消息处理完成
+     *
+     * @param work 后台任务
+     */
+    public void continueInBackground(CompletionStage<?> work) {
+        CompletableFuture<Void> done = work.toCompletableFuture().handle((result, error) -> null);
+        synchronized (this) {
+            backgroundWork = backgroundWork == null ? done : CompletableFuture.allOf(backgroundWork, done);
+        }
+    }
+
+    /**
+     * 注册处理完成回调，在 {@link #markProcessed()} 且后台任务全部结束后触发一次
+     *
+     * @param callback 回调
+     */
+    public synchronized void onProcessed(Runnable callback) {
+        this.processedCallback = callback;
+    }
+
+    private void fireProcessed() {
+        Runnable callback;
+        synchronized (this) {
+            callback = processedCallback;
+            processedCallback = null;
+        }
+        if (callback != null) {
+            callback.run();
+        }
     }
 
     /**
@@ -1,18 +1,38 @@
 package com.qdw.feishu.domain.model;
 
 import com.alibaba.cola.exception.BizException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * 话题映射领域实体
  *
  * 封装话题 ID 与应用 ID 的映射关系，用于持久化话题上下文
+ *
+ * metadata 的解析结果缓存在实体上：首次通过 {@link TopicMetadata} 访问时解析一次，
+ * 修改只作用于解析后的树并记录修改过的 命名空间/键，读取 {@link #getMetadata()} 时才重新序列化。
+ * 从存储加载的实体（{@link #markMetadataPersisted()}）可以只把修改过的键增量写回。
  */
+@Slf4j
 @Data
 @NoArgsConstructor
 public class TopicMapping {
 
+    private static final ObjectMapper METADATA_MAPPER = new ObjectMapper();
+
     /** 话题 ID */
     private String topicId;
 
@@ -28,6 +48,33 @@ public class TopicMapping {
     /** 元数据（JSON 字符串，存储应用特定的任意数据） */
     private String metadata;
 
+    /** 版本号：每次写入存储加一，0 表示尚未保存，用于条件更新 */
+    private long version;
+
+    /** 解析后的 metadata，首次访问时解析 */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient ObjectNode metadataTree;
+
+    /** metadataTree 有尚未序列化到 metadata 字段的修改 */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient boolean metadataStale;
+
+    /** metadata 字段与存储中的内容一致，之后的修改都记录在 dirtyMetadataPaths 中 */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient boolean metadataTracked;
+
+    /** 自加载以来修改过的路径 */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient Set<MetadataPath> dirtyMetadataPaths;
+
     /**
      * 创建话题映射（不含元数据）
      *
@@ -81,6 +128,203 @@ public class TopicMapping {
      * @return 如果 metadata 不为空且不为空字符串，返回 true
      */
     public boolean hasMetadata() {
-        return metadata != null && !metadata.isEmpty();
+        return getMetadata() != null && !getMetadata().isEmpty();
+    }
+
+    /**
+     * 获取 metadata JSON 字符串，解析后的树有修改时先序列化
+     */
+    public String getMetadata() {
+        if (metadataStale) {
+            try {
+                metadata = METADATA_MAPPER.writeValueAsString(metadataTree);
+            } catch (Exception e) {
+                log.error("Failed to serialize metadata: topicId={}", topicId, e);
+            }
+            metadataStale = false;
+        }
+        return metadata;
+    }
+
+    /**
+     * 整体替换 metadata，之后只能整体写回
+     */
+    public void setMetadata(String metadata) {
+        this.metadata = metadata;
+        this.metadataTree = null;
+        this.metadataStale = false;
+        this.metadataTracked = false;
+        this.dirtyMetadataPaths = null;
+    }
+
+    /**
+     * 标记当前 metadata 与存储一致，由存储在加载后调用
+     */
+    public void markMetadataPersisted() {
+        getMetadata();
+        metadataTracked = true;
+        dirtyMetadataPaths = null;
+    }
+
+    /**
+     * metadata 是否可以增量写回（自加载以来的修改都已记录）
+     */
+    public boolean isMetadataTracked() {
+        return metadataTracked;
+    }
+
+    /**
+     * 自加载以来修改过的路径及其当前值，只在 {@link #isMetadataTracked()} 时有意义
+     *
+     * @return 修改列表，命名空间级修改排在键级修改之前
+     */
+    public List<MetadataChange> getMetadataChanges() {
+        if (dirtyMetadataPaths == null || dirtyMetadataPaths.isEmpty()) {
+            return List.of();
+        }
+        List<MetadataChange> changes = new ArrayList<>(dirtyMetadataPaths.size());
+        for (MetadataPath path : dirtyMetadataPaths) {
+            if (path.key() == null) {
+                changes.add(change(path, metadataTree.get(path.namespace())));
+            }
+        }
+        for (MetadataPath path : dirtyMetadataPaths) {
+            if (path.key() != null) {
+                JsonNode namespace = metadataTree.get(path.namespace());
+                changes.add(change(path, namespace != null ? namespace.get(path.key()) : null));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * 复制实体，包括尚未序列化的 metadata 修改和修改记录
+     */
+    public TopicMapping copy() {
+        TopicMapping copy = new TopicMapping();
+        copy.topicId = topicId;
+        copy.appId = appId;
+        copy.createdAt = createdAt;
+        copy.lastActiveAt = lastActiveAt;
+        copy.version = version;
+        copy.metadata = metadata;
+        copy.metadataTree = metadataTree != null ? metadataTree.deepCopy() : null;
+        copy.metadataStale = metadataStale;
+        copy.metadataTracked = metadataTracked;
+        copy.dirtyMetadataPaths = dirtyMetadataPaths != null ? new LinkedHashSet<>(dirtyMetadataPaths) : null;
+        return copy;
+    }
+
+    /**
+     * 把另一份映射上的 metadata 修改重放到本映射上（条件更新冲突后合并用）
+     *
+     * @param changes 修改列表，见 {@link #getMetadataChanges()}
+     */
+    public void applyMetadataChanges(List<MetadataChange> changes) {
+        ObjectNode root = metadataTree();
+        for (MetadataChange change : changes) {
+            JsonNode value = change.isRemoval() ? null : readValue(change.valueJson());
+            if (change.key() == null) {
+                if (value == null) {
+                    root.remove(change.namespace());
+                } else {
+                    root.set(change.namespace(), value);
+                }
+                markMetadataChanged(change.namespace(), null);
+                continue;
+            }
+            JsonNode namespace = root.get(change.namespace());
+            String changedKey = change.key();
+            if (!(namespace instanceof ObjectNode)) {
+                if (value == null) {
+                    continue;
+                }
+                namespace = root.putObject(change.namespace());
+                changedKey = null;
+            }
+            if (value == null) {
+                ((ObjectNode) namespace).remove(change.key());
+            } else {
+                ((ObjectNode) namespace).set(change.key(), value);
+            }
+            markMetadataChanged(change.namespace(), changedKey);
+        }
+    }
+
+    /**
+     * 解析后的 metadata 树，首次访问时解析；内容不是 JSON 对象时以空对象代替，之后只能整体写回
+     */
+    ObjectNode metadataTree() {
+        if (metadataTree == null) {
+            metadataTree = parseMetadata();
+        }
+        return metadataTree;
+    }
+
+    /**
+     * 记录一次修改
+     *
+     * @param namespace 应用命名空间
+     * @param key 键，null 表示整个命名空间
+     */
+    void markMetadataChanged(String namespace, String key) {
+        metadataStale = true;
+        if (!metadataTracked) {
+            return;
+        }
+        if (dirtyMetadataPaths == null) {
+            dirtyMetadataPaths = new LinkedHashSet<>();
+        }
+        dirtyMetadataPaths.add(new MetadataPath(namespace, key));
+    }
+
+    private ObjectNode parseMetadata() {
+        if (metadata == null || metadata.isEmpty()) {
+            return METADATA_MAPPER.createObjectNode();
+        }
+        try {
+            JsonNode parsed = METADATA_MAPPER.readTree(metadata);
+            if (parsed instanceof ObjectNode object) {
+                return object;
+            }
+        } catch (Exception e) {
+            log.warn("Failed to parse metadata: {}", metadata, e);
+        }
+        metadataTracked = false;
+        return METADATA_MAPPER.createObjectNode();
+    }
+
+    private static JsonNode readValue(String json) {
+        try {
+            return METADATA_MAPPER.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid metadata value: " + json, e);
+        }
+    }
+
+    private static MetadataChange change(MetadataPath path, JsonNode value) {
+        try {
+            String json = value != null ? METADATA_MAPPER.writeValueAsString(value) : null;
+            return new MetadataChange(path.namespace(), path.key(), json);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize metadata value: " + path, e);
+        }
+    }
+
+    private record MetadataPath(String namespace, String key) {
+    }
+
+    /**
+     * 一处 metadata 修改
+     *
+     * @param namespace 应用命名空间
+     * @param key 键，null 表示整个命名空间
+     * @param valueJson 当前值的 JSON，null 表示已删除
+     */
+    public record MetadataChange(String namespace, String key, String valueJson) {
+
+        public boolean isRemoval() {
+            return valueJson == null;
+        }
     }
 }
@@ -4,7 +4,6 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
-import java.util.Optional;
 
 import java.util.Optional;
 
@@ -12,6 +11,9 @@ import java.util.Optional;
  * TopicMapping Metadata 操作工具类
  *
  * 提供类型安全的 metadata 访问接口
+ *
+ * 直接读写 TopicMapping 上缓存的解析结果，多次 of() 不会重复解析；
+ * 每次修改记录到 TopicMapping 的修改路径中，序列化推迟到持久化时
  */
 @Slf4j
 public class TopicMetadata {
@@ -19,7 +21,6 @@ public class TopicMetadata {
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
     private final TopicMapping mapping;
-    private JsonNode metadataNode;
 
     /**
      * 从 TopicMapping 创建 TopicMetadata
@@ -36,42 +37,31 @@ public class TopicMetadata {
      */
     private TopicMetadata(TopicMapping mapping) {
         this.mapping = mapping;
-        this.metadataNode = parseMetadata(mapping.getMetadata());
     }
 
     /**
-     * 解析 metadata JSON 字符串
+     * 获取当前应用的命名空间节点（只读），不存在时返回空节点且不修改 metadata
      */
-    private JsonNode parseMetadata(String metadata) {
-        if (metadata == null || metadata.isEmpty()) {
-            return objectMapper.createObjectNode();
-        }
-
-        try {
-            return objectMapper.readTree(metadata);
-        } catch (Exception e) {
-            log.warn("Failed to parse metadata: {}", metadata, e);
-            return objectMapper.createObjectNode();
-        }
+    private JsonNode getAppNode() {
+        JsonNode appNode = mapping.metadataTree().get(mapping.getAppId());
+        return appNode != null ? appNode : objectMapper.createObjectNode();
     }
 
     /**
-     * 获取当前应用的命名空间节点
+     * 获取当前应用的命名空间节点用于修改，并记录修改的键
+     *
+     * @param key 修改的键，null 表示整个命名空间
      */
-    private ObjectNode getAppNode() {
+    private ObjectNode editAppNode(String key) {
         String appId = mapping.getAppId();
-
-        if (metadataNode.isObject()) {
-            ObjectNode root = (ObjectNode) metadataNode;
-
-            if (!root.has(appId)) {
-                root.putObject(appId);
-            }
-
-            return (ObjectNode) root.get(appId);
+        ObjectNode root = mapping.metadataTree();
+        JsonNode appNode = root.get(appId);
+        if (!(appNode instanceof ObjectNode)) {
+            appNode = root.putObject(appId);
+            key = null;
         }
-
-        return objectMapper.createObjectNode();
+        mapping.markMetadataChanged(appId, key);
+        return (ObjectNode) appNode;
     }
 
     /**
@@ -82,7 +72,7 @@ public class TopicMetadata {
      * @return this（支持链式调用）
      */
     public TopicMetadata set(String key, String value) {
-        getAppNode().put(key, value);
+        editAppNode(key).put(key, value);
         return this;
     }
 
@@ -94,7 +84,7 @@ public class TopicMetadata {
      * @return this
      */
     public TopicMetadata set(String key, int value) {
-        getAppNode().put(key, value);
+        editAppNode(key).put(key, value);
         return this;
     }
 
@@ -106,7 +96,7 @@ public class TopicMetadata {
      * @return this
      */
     public TopicMetadata set(String key, long value) {
-        getAppNode().put(key, value);
+        editAppNode(key).put(key, value);
         return this;
     }
 
@@ -118,7 +108,7 @@ public class TopicMetadata {
      * @return this
      */
     public TopicMetadata set(String key, boolean value) {
-        getAppNode().put(key, value);
+        editAppNode(key).put(key, value);
         return this;
     }
 
@@ -132,7 +122,7 @@ public class TopicMetadata {
     public TopicMetadata set(String key, Object value) {
         try {
             String json = objectMapper.writeValueAsString(value);
-            getAppNode().set(key, objectMapper.readTree(json));
+            editAppNode(key).set(key, objectMapper.readTree(json));
             return this;
         } catch (Exception e) {
             log.error("Failed to serialize value for key: {}", key, e);
@@ -224,7 +214,9 @@ public class TopicMetadata {
      * @return this
      */
     public TopicMetadata remove(String key) {
-        getAppNode().remove(key);
+        if (getAppNode().has(key)) {
+            editAppNode(key).remove(key);
+        }
         return this;
     }
 
@@ -244,26 +236,20 @@ public class TopicMetadata {
      * @return this
      */
     public TopicMetadata clear() {
-        getAppNode().removeAll();
+        editAppNode(null).removeAll();
         return this;
     }
 
     /**
-     * 将修改保存回 TopicMapping
+     * 获取待保存的 TopicMapping
      *
-     * 重要：修改后必须调用此方法，否则不会持久化
+     * 修改已直接作用于 TopicMapping，JSON 在存储读取 metadata 时才序列化；
+     * 修改后仍需把返回的 TopicMapping 交给 TopicMappingGateway 保存
      *
      * @return 更新后的 TopicMapping
      */
     public TopicMapping save() {
-        try {
-            String json = objectMapper.writeValueAsString(metadataNode);
-            mapping.setMetadata(json);
-            return mapping;
-        } catch (Exception e) {
-            log.error("Failed to serialize metadata", e);
-            return mapping;
-        }
+        return mapping;
     }
 
     /**
@@ -281,6 +267,6 @@ public class TopicMetadata {
      * @return JsonNode
      */
     public JsonNode getJsonNode() {
-        return metadataNode;
+        return mapping.metadataTree();
     }
 }
@@ -6,6 +6,7 @@ import com.qdw.feishu.domain.gateway.FeishuGateway;
 import com.qdw.feishu.domain.gateway.OpenCodeGateway;
 import com.qdw.feishu.domain.message.Message;
 import com.qdw.feishu.domain.topic.TopicCommandValidator;
+import com.qdw.feishu.domain.topic.TopicContext;
 import com.qdw.feishu.domain.topic.TopicState;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -100,8 +101,16 @@ public class OpenCodeCommandHandler {
             return TopicState.NON_TOPIC;
         }
 
+        Optional<TopicContext> context = TopicContext.currentFor(topicId);
+        Optional<TopicState> cached = context.flatMap(TopicContext::getState);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
         boolean hasSession = sessionManager.getSessionId(topicId).isPresent();
-        return hasSession ? TopicState.INITIALIZED : TopicState.UNINITIALIZED;
+        TopicState state = hasSession ? TopicState.INITIALIZED : TopicState.UNINITIALIZED;
+        context.ifPresent(ctx -> ctx.setState(state));
+        return state;
     }
 
     private boolean hasActiveSession(Message message) {
@@ -0,0 +1,222 @@
+package com.qdw.feishu.domain.opencode;
+
+import com.qdw.feishu.domain.gateway.FeishuGateway;
+import com.qdw.feishu.domain.message.SendResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * OpenCode 流式回复
+ *
+ * 先发送一条占位回复，之后随 OpenCode 输出不断编辑这条消息。
+ * - 编辑按间隔节流：间隔内到达的内容合并，间隔结束时只发送最新内容
+ * - 飞书限制单条消息的编辑次数，预留最后一次给最终结果；每编辑 {@link #EDITS_PER_STEP} 次间隔翻倍，
+ *   让编辑次数覆盖更长的执行时间
+ * - 编辑在独立的调度线程上执行，不阻塞读取 OpenCode 事件流的线程
+ */
+@Slf4j
+public class OpenCodeReplyStreamer implements AutoCloseable {
+
+    /**
+     * 每编辑多少次后编辑间隔翻倍
+     */
+    static final int EDITS_PER_STEP = 5;
+
+    /**
+     * 间隔最多翻倍的次数
+     */
+    private static final int MAX_INTERVAL_SHIFT = 3;
+
+    /**
+     * 中间内容的最大长度，与最终结果的截断长度一致
+     */
+    private static final int MAX_PARTIAL_LENGTH = 2000;
+
+    private static final String PARTIAL_SUFFIX = "\n\n⏳ 生成中...";
+
+    private final FeishuGateway feishuGateway;
+    private final boolean enabled;
+    private final long intervalMillis;
+    private final int maxEdits;
+    private final int timeoutSeconds;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier clock;
+
+    public OpenCodeReplyStreamer(FeishuGateway feishuGateway, boolean enabled, Duration updateInterval,
+                                 int maxEdits, int timeoutSeconds) {
+        this(feishuGateway, enabled, updateInterval, maxEdits, timeoutSeconds,
+            Executors.newScheduledThreadPool(2, runnable -> {
+                Thread thread = new Thread(runnable, "opencode-stream-edit");
+                thread.setDaemon(true);
+                return thread;
+            }),
+            System::currentTimeMillis);
+    }
+
+    OpenCodeReplyStreamer(FeishuGateway feishuGateway, boolean enabled, Duration updateInterval,
+                          int maxEdits, int timeoutSeconds, ScheduledExecutorService scheduler, LongSupplier clock) {
+        this.feishuGateway = feishuGateway;
+        this.enabled = enabled;
+        this.intervalMillis = updateInterval.toMillis();
+        this.maxEdits = Math.max(1, maxEdits);
+        this.timeoutSeconds = timeoutSeconds;
+        this.scheduler = scheduler;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    /**
+     * 为已发送的占位消息开始一次流式回复
+     *
+     * @param messageId 占位消息 ID
+     * @return 接收 OpenCode 输出的回复对象
+     */
+    public Reply start(String messageId) {
+        return new Reply(messageId);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 一条正在流式编辑的回复
+     *
+     * accept 接收截至目前的完整内容，可在任意线程调用；complete 写入最终结果，之后到达的内容被忽略。
+     */
+    public final class Reply implements Consumer<String> {
+
+        private final String messageId;
+        private final Object editLock = new Object();
+
+        private String latest;
+        private boolean scheduled;
+        private volatile boolean finished;
+        private volatile int edits;
+        private volatile long lastEditAt;
+        private String lastSent;
+
+        private Reply(String messageId) {
+            this.messageId = messageId;
+        }
+
+        public String getMessageId() {
+            return messageId;
+        }
+
+        /**
+         * 最近一次收到的内容，未收到时为 null
+         */
+        public synchronized String getContent() {
+            return latest;
+        }
+
+        @Override
+        public void accept(String content) {
+            long delay;
+            synchronized (this) {
+                latest = content;
+                if (scheduled || finished || !hasPartialBudget()) {
+                    return;
+                }
+                scheduled = true;
+                delay = nextEditDelay();
+            }
+            scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * 写入最终结果
+         *
+         * @param text 最终展示的内容
+         * @return 编辑成功返回 true；编辑次数用尽或编辑失败时返回 false，调用方应改为发送新消息
+         */
+        public boolean complete(String text) {
+            finished = true;
+            synchronized (editLock) {
+                if (text.equals(lastSent)) {
+                    return true;
+                }
+                if (edits >= maxEdits) {
+                    return false;
+                }
+                return edit(text);
+            }
+        }
+
+        private void flush() {
+            String content;
+            synchronized (this) {
+                content = latest;
+            }
+            synchronized (editLock) {
+                if (!finished && hasPartialBudget()) {
+                    String text = renderPartial(content);
+                    if (!text.equals(lastSent)) {
+                        edit(text);
+                    }
+                }
+            }
+
+            long delay;
+            synchronized (this) {
+                if (finished || !hasPartialBudget() || Objects.equals(latest, content)) {
+                    scheduled = false;
+                    return;
+                }
+                delay = nextEditDelay();
+            }
+            scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private boolean edit(String text) {
+            edits++;
+            lastEditAt = clock.getAsLong();
+            try {
+                SendResult result = feishuGateway.updateMessage(messageId, text);
+                if (result.isSuccess()) {
+                    lastSent = text;
+                    return true;
+                }
+                log.warn("编辑流式回复失败: messageId={}, edits={}, error={}", messageId, edits, result.getErrorMessage());
+            } catch (Exception e) {
+                log.warn("编辑流式回复异常: messageId={}, edits={}", messageId, edits, e);
+            }
+            return false;
+        }
+
+        /**
+         * 中间内容最多使用 maxEdits - 1 次编辑，最后一次留给最终结果
+         */
+        private boolean hasPartialBudget() {
+            return edits < maxEdits - 1;
+        }
+
+        private long nextEditDelay() {
+            long interval = intervalMillis << Math.min(edits / EDITS_PER_STEP, MAX_INTERVAL_SHIFT);
+            return Math.max(0, lastEditAt + interval - clock.getAsLong());
+        }
+
+        private String renderPartial(String content) {
+            if (content.length() > MAX_PARTIAL_LENGTH) {
+                content = content.substring(0, MAX_PARTIAL_LENGTH - 50) + "\n\n...(输出过长，已截断)";
+            }
+            return content + PARTIAL_SUFFIX;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.qdw.feishu.domain.opencode;
 import com.qdw.feishu.domain.gateway.OpenCodeGateway;
 import com.qdw.feishu.domain.gateway.OpenCodeSessionGateway;
 import com.qdw.feishu.domain.message.Message;
+import com.qdw.feishu.domain.topic.TopicContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -143,6 +144,7 @@ public class OpenCodeSessionManager {
     public void saveSession(String topicId, String sessionId) {
         if (topicId != null && !topicId.isEmpty()) {
             sessionGateway.saveSession(topicId, sessionId);
+            resetCachedState(topicId);
             log.info("已更新会话映射: topicId={}, sessionId={}", topicId, sessionId);
         }
     }
@@ -153,10 +155,19 @@ public class OpenCodeSessionManager {
     public void clearSession(String topicId) {
         if (topicId != null && !topicId.isEmpty()) {
             sessionGateway.clearSession(topicId);
+            resetCachedState(topicId);
+            openCodeGateway.invalidateCache();
             log.info("已清除旧会话: topicId={}", topicId);
         }
     }
 
+    /**
+     * 会话绑定变化后，丢弃上下文中已推导的话题状态
+     */
+    private void resetCachedState(String topicId) {
+        TopicContext.currentFor(topicId).ifPresent(context -> context.setState(null));
+    }
+
     /**
      * 获取话题绑定的会话 ID
      */
@@ -1,16 +1,30 @@
 package com.qdw.feishu.domain.opencode;
 
+import com.qdw.feishu.domain.core.InFlightTasks;
 import com.qdw.feishu.domain.gateway.FeishuGateway;
 import com.qdw.feishu.domain.gateway.OpenCodeGateway;
 import com.qdw.feishu.domain.message.Message;
+import com.qdw.feishu.domain.message.SendResult;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
 /**
  * OpenCode 任务执行器
  *
- * 负责执行 OpenCode 任务，支持同步和异步两种模式
+ * 负责执行 OpenCode 任务，支持流式和同步两种模式，同步等待超时后转为后台等待
+ *
+ * 话题中的消息默认使用流式模式：立即回复一条占位消息，后台订阅 OpenCode 事件流，
+ * 随输出不断编辑这条消息（见 {@link OpenCodeReplyStreamer}）；不在话题中或占位消息发送失败时使用同步模式。
  */
 @Slf4j
 @Component
@@ -18,20 +32,29 @@ public class OpenCodeTaskExecutor {
 
     private static final long SYNC_TIMEOUT_MS = 30000;  // 同步超时：30秒
     private static final long ASYNC_THRESHOLD_MS = 5000;  // 异步阈值：5秒
+    private static final int TASK_TIMEOUT_SECONDS = 90;  // 请求总超时：同步 30 秒 + 后台 60 秒
+    private static final String STREAM_PLACEHOLDER = "⏳ 思考中...";
 
     private final OpenCodeGateway openCodeGateway;
     private final FeishuGateway feishuGateway;
     private final OpenCodeResponseFormatter responseFormatter;
     private final OpenCodeSessionManager sessionManager;
+    private final OpenCodeReplyStreamer replyStreamer;
+    private final Executor opencodeExecutor;
+    private final InFlightTasks<String> inFlightTasks = new InFlightTasks<>();
 
     public OpenCodeTaskExecutor(OpenCodeGateway openCodeGateway,
                                  FeishuGateway feishuGateway,
                                  OpenCodeResponseFormatter responseFormatter,
-                                 OpenCodeSessionManager sessionManager) {
+                                 OpenCodeSessionManager sessionManager,
+                                 OpenCodeReplyStreamer replyStreamer,
+                                 @Qualifier("opencodeExecutor") Executor opencodeExecutor) {
         this.openCodeGateway = openCodeGateway;
         this.feishuGateway = feishuGateway;
         this.responseFormatter = responseFormatter;
         this.sessionManager = sessionManager;
+        this.replyStreamer = replyStreamer;
+        this.opencodeExecutor = opencodeExecutor;
     }
 
     /**
@@ -105,21 +128,107 @@ public class OpenCodeTaskExecutor {
       * @param message 消息对象
       * @param prompt 提示词
       * @param sessionId 会话 ID（null 表示新会话）
-      * @return 执行结果
+      * @return 执行结果；流式模式下回复已由执行器发送，返回空字符串
       */
     public String executeTask(Message message, String prompt, String sessionId) {
+        String topicId = message.getTopicId();
+        if (replyStreamer.isEnabled() && topicId != null && !topicId.isEmpty()) {
+            return executeStreaming(message, prompt, sessionId);
+        }
+        return executeBlocking(message, prompt, sessionId);
+    }
+
+    /**
+     * 流式执行：新会话先在当前线程创建并保存（随话题上下文一起写回），
+     * 发送占位消息后异步订阅事件流，等待期间不占用线程，结束后在 opencodeExecutor 上写入最终结果
+     */
+    private String executeStreaming(Message message, String prompt, String sessionId) {
+        String topicId = message.getTopicId();
+        boolean newSession = sessionId == null;
+
+        SendResult placeholder;
+        try {
+            if (newSession) {
+                sessionId = openCodeGateway.createSession();
+                if (sessionId == null) {
+                    return "❌ 创建会话失败";
+                }
+                sessionManager.saveSession(topicId, sessionId);
+                log.info("保存会话ID: topicId={}, sessionId={}", topicId, sessionId);
+            }
+            placeholder = feishuGateway.sendMessage(message, STREAM_PLACEHOLDER, topicId);
+        } catch (Exception e) {
+            log.error("OpenCode 流式执行准备失败", e);
+            return "❌ 执行失败: " + e.getMessage();
+        }
+
+        if (placeholder == null || !placeholder.isSuccess() || placeholder.getMessageId() == null) {
+            log.warn("占位消息发送失败，改为同步执行: topicId={}", topicId);
+            return executeBlocking(message, prompt, sessionId);
+        }
+
+        OpenCodeReplyStreamer.Reply reply = replyStreamer.start(placeholder.getMessageId());
+        String streamSessionId = sessionId;
+        message.continueInBackground(
+            whenDone(openCodeGateway.streamCommandAsync(prompt, sessionId, replyStreamer.getTimeoutSeconds(), reply),
+                (result, error) ->
+                    completeReply(message, reply, streamResult(streamSessionId, newSession, reply, result, error))));
+        return "";
+    }
+
+    /**
+     * 事件流结束后的最终展示内容
+     */
+    private String streamResult(String sessionId, boolean newSession, OpenCodeReplyStreamer.Reply reply,
+                                String result, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+            log.error("OpenCode 流式执行失败", cause);
+            return "❌ 执行失败: " + cause.getMessage();
+        }
+        if (result != null) {
+            return responseFormatter.format(result, newSession ? sessionId : null);
+        }
+        if (reply.getContent() != null) {
+            log.warn("流式执行超时，返回部分输出: sessionId={}", sessionId);
+            return responseFormatter.format(reply.getContent(), null) + "\n\n⚠️ 任务执行超时，以上为部分输出。";
+        }
+        log.warn("流式执行超时: sessionId={}", sessionId);
+        return "⚠️ 任务执行超时，请稍后重试或尝试简化问题。";
+    }
+
+    private void completeReply(Message message, OpenCodeReplyStreamer.Reply reply, String text) {
+        if (reply.complete(text)) {
+            return;
+        }
+        log.info("无法编辑流式回复，发送新消息: messageId={}", reply.getMessageId());
+        try {
+            feishuGateway.sendMessage(message, text, message.getTopicId());
+        } catch (Exception e) {
+            log.error("发送最终结果失败: topicId={}", message.getTopicId(), e);
+        }
+    }
+
+    /**
+     * 同步等待（30秒），超时后转为后台等待同一个请求的结果
+     *
+     * 请求只提交一次：超时只结束当前线程的等待，请求本身继续异步执行（不占用线程），
+     * 结束后在 opencodeExecutor 上把结果发到话题中。
+     * 同一条消息（重投或重放）的请求仍在执行时直接复用；内容相同的不同消息各自执行。
+     */
+    private String executeBlocking(Message message, String prompt, String sessionId) {
         long startTime = System.nanoTime();
 
+        CompletableFuture<String> task = inFlightTasks.submit(taskKey(message),
+            () -> openCodeGateway.executeCommandAsync(prompt, sessionId, TASK_TIMEOUT_SECONDS));
+
         try {
-            // 尝试同步执行（30秒超时）
-            String result = openCodeGateway.executeCommand(prompt, sessionId, 30);
+            String result = task.get(SYNC_TIMEOUT_MS, TimeUnit.MILLISECONDS);
 
             if (result == null) {
-                // 执行时间超过30秒，转为异步执行
-                log.info("任务执行超过30秒，转为异步执行");
-                feishuGateway.sendMessage(message, "⏳ 任务正在执行中，请稍候...", message.getTopicId());
-                executeAsync(message, prompt, sessionId);
-                return "⏳ 任务已在后台执行中，请稍候...";
+                log.warn("任务执行超时（{}秒），返回错误提示", TASK_TIMEOUT_SECONDS);
+                return "⚠️ 任务执行超时，请稍后重试或尝试简化问题。";
             }
 
             long durationMs = (System.nanoTime() - startTime) / 1_000_000;
@@ -129,54 +238,100 @@ public class OpenCodeTaskExecutor {
                 feishuGateway.sendMessage(message, "⏳ 任务执行中...", message.getTopicId());
             }
 
-            // 提取并保存 sessionID
-            String extractedSessionId = responseFormatter.extractSessionId(result);
-            if (extractedSessionId != null && message.getTopicId() != null) {
-                sessionManager.saveSession(message.getTopicId(), extractedSessionId);
-                log.info("保存会话ID: topicId={}, sessionId={}",
-                        message.getTopicId(), extractedSessionId);
-            }
-
-            return responseFormatter.format(result, extractedSessionId);
+            return formatResult(message, result);
 
+        } catch (TimeoutException e) {
+            // 执行时间超过30秒，不再重新提交，挂到执行中的请求上等待结果
+            log.info("任务执行超过30秒，转为后台等待结果");
+            feishuGateway.sendMessage(message, "⏳ 任务正在执行中，请稍候...", message.getTopicId());
+            message.continueInBackground(whenDone(task, (result, error) -> deliverResult(message, result, error)));
+            return "⏳ 任务已在后台执行中，请稍候...";
+        } catch (ExecutionException e) {
+            log.error("OpenCode 执行失败", e.getCause());
+            return "❌ 执行失败: " + e.getCause().getMessage();
         } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             log.error("OpenCode 执行失败", e);
             return "❌ 执行失败: " + e.getMessage();
         }
     }
 
     /**
-      * 异步执行 OpenCode 任务
-      * 使用较长超时时间（60秒），避免用户等待过久
-      */
-    @Async("opencodeExecutor")
-    public void executeAsync(Message message, String prompt, String sessionId) {
+     * 任务结束后在 opencodeExecutor 上执行后续处理（发送飞书消息），不占用 HTTP 响应线程；
+     * 线程池已满时退回在完成任务的线程上执行，保证结果不丢失
+     *
+     * @return 后续处理执行完毕时完成
+     */
+    private CompletableFuture<Void> whenDone(CompletableFuture<String> task, BiConsumer<String, Throwable> action) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        task.whenComplete((result, error) -> {
+            Runnable run = () -> {
+                try {
+                    action.accept(result, error);
+                } finally {
+                    done.complete(null);
+                }
+            };
+            try {
+                opencodeExecutor.execute(run);
+            } catch (RejectedExecutionException e) {
+                log.warn("OpenCode 执行线程池已满，在当前线程处理结果");
+                run.run();
+            }
+        });
+        return done;
+    }
+
+    /**
+     * 后台等待结束后发送结果
+     */
+    private void deliverResult(Message message, String result, Throwable error) {
         try {
-            String result = openCodeGateway.executeCommand(prompt, sessionId, 60);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+                log.error("后台执行失败", cause);
+                feishuGateway.sendMessage(message, "❌ 执行失败: " + cause.getMessage(), message.getTopicId());
+                return;
+            }
 
             if (result == null) {
-                log.warn("异步执行超时（60秒），返回错误提示");
+                log.warn("后台执行超时（{}秒），返回错误提示", TASK_TIMEOUT_SECONDS);
                 feishuGateway.sendMessage(message,
                     "⚠️ 任务执行超时，请稍后重试或尝试简化问题。", message.getTopicId());
                 return;
             }
 
-            // 提取并保存 sessionID
-            String extractedSessionId = responseFormatter.extractSessionId(result);
-            if (extractedSessionId != null && message.getTopicId() != null) {
-                sessionManager.saveSession(message.getTopicId(), extractedSessionId);
-            }
-
-            String formatted = responseFormatter.format(result, extractedSessionId);
-            feishuGateway.sendMessage(message, formatted, message.getTopicId());
+            feishuGateway.sendMessage(message, formatResult(message, result), message.getTopicId());
 
         } catch (Exception e) {
-            log.error("异步执行失败", e);
-            // 立即响应错误给用户
-            feishuGateway.sendMessage(message, "❌ 执行失败: " + e.getMessage(), message.getTopicId());
+            log.error("发送后台执行结果失败: topicId={}", message.getTopicId(), e);
         }
     }
 
+    /**
+     * 提取并保存 sessionID，格式化结果
+     */
+    private String formatResult(Message message, String result) {
+        String extractedSessionId = responseFormatter.extractSessionId(result);
+        if (extractedSessionId != null && message.getTopicId() != null) {
+            sessionManager.saveSession(message.getTopicId(), extractedSessionId);
+            log.info("保存会话ID: topicId={}, sessionId={}",
+                    message.getTopicId(), extractedSessionId);
+        }
+        return responseFormatter.format(result, extractedSessionId);
+    }
+
+    /**
+     * 执行中请求的标识：消息 ID，没有时用事件 ID；都没有时不复用
+     */
+    private static String taskKey(Message message) {
+        String messageId = message.getMessageId();
+        return messageId != null && !messageId.isEmpty() ? messageId : message.getEventId();
+    }
+
     /**
      * 构建初始化成功响应
      */
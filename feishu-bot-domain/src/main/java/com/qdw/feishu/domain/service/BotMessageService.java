@@ -13,6 +13,8 @@ import com.qdw.feishu.domain.model.TopicMapping;
 import com.qdw.feishu.domain.reply.ReplyStrategy;
 import com.qdw.feishu.domain.reply.ReplyStrategyFactory;
 import com.qdw.feishu.domain.router.AppRouter;
+import com.qdw.feishu.domain.topic.TopicContext;
+import com.qdw.feishu.domain.topic.UnknownTopicReplyLimiter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -25,17 +27,20 @@ public class BotMessageService {
     private final AppRegistry appRegistry;
     private final TopicMappingGateway topicMappingGateway;
     private final ReplyStrategyFactory replyStrategyFactory;
+    private final UnknownTopicReplyLimiter unknownTopicReplyLimiter;
 
     public BotMessageService(FeishuGateway feishuGateway,
                             AppRouter appRouter,
                             AppRegistry appRegistry,
                             TopicMappingGateway topicMappingGateway,
-                            ReplyStrategyFactory replyStrategyFactory) {
+                            ReplyStrategyFactory replyStrategyFactory,
+                            UnknownTopicReplyLimiter unknownTopicReplyLimiter) {
         this.feishuGateway = feishuGateway;
         this.appRouter = appRouter;
         this.appRegistry = appRegistry;
         this.topicMappingGateway = topicMappingGateway;
         this.replyStrategyFactory = replyStrategyFactory;
+        this.unknownTopicReplyLimiter = unknownTopicReplyLimiter;
     }
 
     private String extractAppId(String content) {
@@ -54,26 +59,18 @@ public class BotMessageService {
      * @return 找到的应用，如果不存在则返回 null
      */
     private FishuAppI findAppByCommandOrAlias(String command) {
-        String commandLower = command.toLowerCase();
-
-        for (FishuAppI app : appRegistry.getAllApps()) {
-            if (app.getAppId().equalsIgnoreCase(commandLower)) {
-                return app;
-            }
-
-            for (String alias : app.getAppAliases()) {
-                if (alias.equalsIgnoreCase(commandLower)) {
-                    log.info("通过别名找到应用: command={}, alias={}, appId={}",
-                            command, alias, app.getAppId());
-                    return app;
-                }
-            }
+        FishuAppI app = appRegistry.findByCommand(command);
+        if (app != null && !app.getAppId().equalsIgnoreCase(command)) {
+            log.info("通过别名找到应用: command={}, appId={}", command, app.getAppId());
         }
-
-        return null;
+        return app;
     }
 
     private void handleUnknownTopic(Message message) {
+        if (!unknownTopicReplyLimiter.tryAcquire(message.getTopicId())) {
+            log.debug("话题已失效提示已在间隔内发送过，跳过: topicId={}", message.getTopicId());
+            return;
+        }
         String errorReply = "话题已失效，请重新发送命令触发应用。";
         SendResult result = feishuGateway.sendMessage(message, errorReply, null);
         if (!result.isSuccess()) {
@@ -88,10 +85,17 @@ public class BotMessageService {
         }
     }
 
+    /**
+     * 处理消息
+     *
+     * 话题消息的映射只在入口加载一次，放入绑定到当前线程的 {@link TopicContext}，
+     * 应用处理过程中对映射的读写都经过上下文，结束时统一保存一次。
+     */
     public SendResult handleMessage(Message message) {
         log.info("=== BotMessageService.handleMessage 开始 ===");
         log.info("消息内容: {}", message.getDisplayContent());
 
+        TopicContext context = null;
         try {
             message.validate();
             log.info("消息验证通过");
@@ -105,6 +109,7 @@ public class BotMessageService {
                 var mapping = topicMappingGateway.findByTopicId(topicId);
                 if (mapping.isPresent()) {
                     TopicMapping topicMapping = mapping.get();
+                    context = TopicContext.open(topicId, topicMapping);
                     String appId = topicMapping.getAppId();
                     log.info("找到话题映射: topicId={}, appId={}", topicId, appId);
                     app = appRegistry.getApp(appId).orElse(null);
@@ -115,8 +120,7 @@ public class BotMessageService {
                         return SendResult.failure("应用不可用");
                     }
                     inTopicWithMapping = true;
-                    topicMapping.activate();
-                    topicMappingGateway.save(topicMapping);
+                    context.activate();
                 } else {
                     log.warn("话题映射不存在: topicId={}，降级为默认处理", topicId);
                     handleUnknownTopic(message);
@@ -141,17 +145,7 @@ public class BotMessageService {
                         if (app == null) {
                             log.warn("应用不存在: command={}", command);
 
-                            String availableApps = appRegistry.getAllApps().stream()
-                                    .flatMap(a -> a.getAllTriggerCommands().stream())
-                                    .reduce((a, b) -> a + ", " + b)
-                                    .orElse("无");
-
-                            String errorMessage = String.format(
-                                    "❌ 未找到应用: `%s`\n\n" +
-                                    "📋 可用应用列表:\n%s\n\n" +
-                                    "💡 提示: 请使用正确的命令前缀",
-                                    command, availableApps
-                            );
+                            String errorMessage = appRegistry.getUnknownCommandReply(command);
 
                             log.info("发送应用不存在提示: {}", errorMessage);
                             feishuGateway.sendDirectReply(message, errorMessage);
@@ -186,9 +180,13 @@ public class BotMessageService {
                 }
             }
 
+            if (context == null) {
+                context = TopicContext.open(null, null);
+            }
             String replyContent = app.execute(message);
             if (replyContent == null || replyContent.isEmpty()) {
-                log.warn("应用返回空回复");
+                // 流式回复等场景下应用已自行发送回复
+                log.info("应用未返回回复内容，跳过发送");
                 message.markProcessed();
                 return SendResult.failure("应用返回空回复");
             }
@@ -208,8 +206,10 @@ public class BotMessageService {
                 log.info("发送回复成功: topicId={}", result.getThreadId());
 
                 String actualThreadId = result.getThreadId();
-                // 只要返回了 threadId，就应该保存话题映射（无论哪种回复模式）
-                if (actualThreadId != null && !actualThreadId.isEmpty()) {
+                // 只要返回了新的 threadId，就应该保存话题映射（无论哪种回复模式）
+                // 回复仍在当前话题中时映射已在上下文里，不能用新建的映射覆盖已有 metadata
+                if (actualThreadId != null && !actualThreadId.isEmpty()
+                        && !actualThreadId.equals(context.getTopicId())) {
                     log.info("获取到飞书返回的 threadId: {}", actualThreadId);
                     TopicMapping mapping = new TopicMapping(actualThreadId, app.getAppId());
                     topicMappingGateway.save(mapping);
@@ -230,6 +230,21 @@ public class BotMessageService {
         } catch (Exception e) {
             log.error("系统异常: 消息处理失败", e);
             throw new MessageSysException("MESSAGE_HANDLE_FAILED", "消息处理失败", e);
+        } finally {
+            if (context != null) {
+                flushContext(context);
+                context.close();
+            }
+        }
+    }
+
+    private void flushContext(TopicContext context) {
+        try {
+            if (context.flush(topicMappingGateway)) {
+                log.debug("话题上下文已保存: topicId={}", context.getTopicId());
+            }
+        } catch (Exception e) {
+            log.error("保存话题上下文失败: topicId={}", context.getTopicId(), e);
         }
     }
 }
@@ -1,23 +1,75 @@
 package com.qdw.feishu.domain.service;
 
+import com.qdw.feishu.domain.gateway.DedupFilterGateway;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
-import java.time.Instant;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
 
 /**
  * 消息去重器
  * 基于 event_id 判断消息是否已处理
- * 使用内存缓存，设置过期时间为 5 分钟
+ *
+ * 使用按时间分桶的环形结构：
+ * - 每个桶保存一个时间片（默认 1 分钟）内处理过的 event_id
+ * - 查询只检查窗口内的几个桶，O(1)，不再每次全量扫描
+ * - 过期通过整桶丢弃完成，只在跨入新时间片时发生，不在热路径上逐条清理
+ * - 条目总数有上限，超过时提前丢弃最旧的桶；当前时间片的桶不会被丢弃（否则刚登记的事件会立即失效），
+ *   因此全部条目都在当前时间片时允许暂时超出上限
+ * - 每个桶单独计数，桶在锁内换下后扣减其最终计数，换下后仍在写入的线程不会造成总数漂移
+ *
+ * 启用持久化概率过滤器（{@link DedupFilterGateway}）时：
+ * - 先查过滤器再查精确集合，命中即视为重复，重启后重投递的事件也能被拦下；误判率由过滤器配置的 fpp 控制
+ * - 过滤器只在消息处理成功后通过 {@link #markCompleted(String)} 写入，处理失败或崩溃中断的事件不会被记为已处理
+ * - 日志重放通过 {@link #isProcessed(String, boolean)} 完全跳过过滤器
  */
 @Slf4j
 @Component
 public class MessageDeduplicator {
 
-    private final ConcurrentHashMap<String, Instant> processedEvents = new ConcurrentHashMap<>();
     private static final Duration CACHE_TTL = Duration.ofMinutes(5);
+    private static final Duration BUCKET_SPAN = Duration.ofMinutes(1);
+    private static final int DEFAULT_MAX_ENTRIES = 200_000;
+
+    private final long bucketMillis;
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final DedupFilterGateway dedupFilter;
+    private final AtomicReferenceArray<Bucket> ring;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public MessageDeduplicator() {
+        this(null);
+    }
+
+    @Autowired
+    public MessageDeduplicator(DedupFilterGateway dedupFilter) {
+        this(CACHE_TTL, BUCKET_SPAN, DEFAULT_MAX_ENTRIES, System::currentTimeMillis, dedupFilter);
+    }
+
+    MessageDeduplicator(Duration ttl, Duration bucketSpan, int maxEntries, LongSupplier clock) {
+        this(ttl, bucketSpan, maxEntries, clock, null);
+    }
+
+    MessageDeduplicator(Duration ttl, Duration bucketSpan, int maxEntries, LongSupplier clock,
+                        DedupFilterGateway dedupFilter) {
+        this.bucketMillis = bucketSpan.toMillis();
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.dedupFilter = dedupFilter != null && dedupFilter.isEnabled() ? dedupFilter : null;
+        // 额外多一个桶，保证条目至少保留完整的 TTL
+        int bucketCount = (int) ((ttl.toMillis() + bucketMillis - 1) / bucketMillis) + 1;
+        this.ring = new AtomicReferenceArray<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            ring.set(i, new Bucket(Long.MIN_VALUE));
+        }
+    }
 
     /**
      * 检查消息是否已处理
@@ -25,58 +77,200 @@ public class MessageDeduplicator {
      * 如果未处理或已过期，标记为已处理并返回 false
      */
     public boolean isProcessed(String eventId) {
+        return isProcessed(eventId, true);
+    }
+
+    /**
+     * 检查消息是否已处理
+     *
+     * @param useFilter 是否查询持久化过滤器；过滤器命中时视为已处理
+     */
+    public boolean isProcessed(String eventId, boolean useFilter) {
         if (eventId == null || eventId.isEmpty()) {
             log.warn("EventId is null or empty, treating as not processed");
             return false;
         }
 
-        Instant now = Instant.now();
-
-        Instant processedTime = processedEvents.get(eventId);
-        if (processedTime != null && processedTime.plus(CACHE_TTL).isAfter(now)) {
-            log.debug("Event {} already processed at {}", eventId, processedTime);
+        if (useFilter && dedupFilter != null && mightContain(eventId)) {
+            log.info("Event {} found in persistent dedup filter, possibly processed before restart", eventId);
             return true;
         }
 
-        processedEvents.put(eventId, now);
-        log.debug("Event {} marked as processed at {}", eventId, now);
+        long epoch = clock.getAsLong() / bucketMillis;
+        Bucket current = currentBucket(epoch);
+
+        long oldestLive = epoch - ring.length() + 1;
+        for (int i = 0; i < ring.length(); i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != current && bucket.epoch >= oldestLive && bucket.eventIds.contains(eventId)) {
+                log.debug("Event {} already processed", eventId);
+                return true;
+            }
+        }
+
+        if (!current.eventIds.add(eventId)) {
+            log.debug("Event {} already processed", eventId);
+            return true;
+        }
 
-        cleanupExpiredEntries(now);
+        if (current.countAdded() && size.incrementAndGet() > maxEntries) {
+            evictOldest(epoch);
+        }
 
+        log.debug("Event {} marked as processed", eventId);
         return false;
     }
 
     /**
-     * 清理过期的缓存条目
+     * 消息处理成功后调用，将事件写入持久化过滤器
+     */
+    public void markCompleted(String eventId) {
+        if (dedupFilter == null || eventId == null || eventId.isEmpty()) {
+            return;
+        }
+        putFilter(eventId);
+    }
+
+    private boolean mightContain(String eventId) {
+        try {
+            return dedupFilter.mightContain(eventId);
+        } catch (Exception e) {
+            log.warn("Dedup filter lookup failed, falling back to in-memory dedup", e);
+            return false;
+        }
+    }
+
+    private void putFilter(String eventId) {
+        try {
+            dedupFilter.put(eventId);
+        } catch (Exception e) {
+            log.warn("Failed to record event in dedup filter", e);
+        }
+    }
+
+    /**
+     * 获取当前时间片对应的桶，跨入新时间片时整桶替换
      */
-    private void cleanupExpiredEntries(Instant now) {
-        int removedCount = 0;
-        for (String key : processedEvents.keySet()) {
-            Instant processedTime = processedEvents.get(key);
-            if (processedTime == null || processedTime.plus(CACHE_TTL).isBefore(now)) {
-                processedEvents.remove(key);
-                removedCount++;
+    private Bucket currentBucket(long epoch) {
+        int slot = (int) Math.floorMod(epoch, (long) ring.length());
+        Bucket bucket = ring.get(slot);
+        if (bucket.epoch == epoch) {
+            return bucket;
+        }
+        synchronized (ring) {
+            bucket = ring.get(slot);
+            if (bucket.epoch != epoch) {
+                Bucket fresh = new Bucket(epoch);
+                ring.set(slot, fresh);
+                int expired = retire(bucket);
+                if (expired > 0) {
+                    log.debug("Expired {} event entries", expired);
+                }
+                bucket = fresh;
             }
+            return bucket;
         }
+    }
 
-        if (removedCount > 0) {
-            log.debug("Cleaned up {} expired event entries", removedCount);
+    /**
+     * 超过容量上限时丢弃最旧的非空桶，当前时间片的桶不参与淘汰
+     */
+    private void evictOldest(long currentEpoch) {
+        synchronized (ring) {
+            if (size.get() <= maxEntries) {
+                return;
+            }
+            int oldestSlot = -1;
+            for (int i = 0; i < ring.length(); i++) {
+                Bucket bucket = ring.get(i);
+                if (bucket.epoch < currentEpoch && !bucket.eventIds.isEmpty()
+                        && (oldestSlot < 0 || bucket.epoch < ring.get(oldestSlot).epoch)) {
+                    oldestSlot = i;
+                }
+            }
+            if (oldestSlot < 0) {
+                return;
+            }
+            Bucket evicted = ring.get(oldestSlot);
+            ring.set(oldestSlot, new Bucket(evicted.epoch));
+            int count = retire(evicted);
+            log.warn("Dedup cache over capacity ({}), evicted {} oldest entries", maxEntries, count);
         }
     }
 
+    /**
+     * 换下一个桶并从总数中扣减其最终计数（调用方持有 ring 锁）
+     *
+     * @return 桶中被丢弃的条目数
+     */
+    private int retire(Bucket bucket) {
+        int count = bucket.retire();
+        size.addAndGet(-count);
+        return count;
+    }
+
     /**
      * 获取缓存大小（用于监控）
      */
     public int getCacheSize() {
-        return processedEvents.size();
+        return Math.max(0, size.get());
     }
 
     /**
      * 手动清理所有缓存（用于测试或特殊情况）
      */
     public void clearAll() {
-        int size = processedEvents.size();
-        processedEvents.clear();
-        log.info("Cleared all {} cached events", size);
+        int cleared = 0;
+        synchronized (ring) {
+            for (int i = 0; i < ring.length(); i++) {
+                Bucket bucket = ring.get(i);
+                ring.set(i, new Bucket(Long.MIN_VALUE));
+                cleared += retire(bucket);
+            }
+        }
+        log.info("Cleared all {} cached events", cleared);
+    }
+
+    /**
+     * 单个时间片的 event_id 集合
+     */
+    private static final class Bucket {
+        private static final int RETIRED = -1;
+
+        private final long epoch;
+        private final Set<String> eventIds = ConcurrentHashMap.newKeySet();
+        /** 已计入总数的条目数，换下后为 RETIRED */
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * 新条目写入后计数
+         *
+         * @return 是否计入总数；桶已换下时返回 false，条目随桶一起丢弃
+         */
+        private boolean countAdded() {
+            while (true) {
+                int current = count.get();
+                if (current == RETIRED) {
+                    return false;
+                }
+                if (count.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 换下桶，之后的写入不再计数
+         *
+         * @return 换下时的最终计数
+         */
+        private int retire() {
+            int last = count.getAndSet(RETIRED);
+            return last == RETIRED ? 0 : last;
+        }
     }
 }
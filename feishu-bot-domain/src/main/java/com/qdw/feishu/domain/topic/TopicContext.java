@@ -0,0 +1,169 @@
+package com.qdw.feishu.domain.topic;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.domain.model.TopicMetadata;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 单条消息处理期间的话题上下文
+ *
+ * 由 BotMessageService 在处理一条消息时创建，并绑定到当前线程：
+ * - 话题映射只加载一次，metadata 只解析一次，之后的读写都作用于同一份对象
+ * - 写操作只标记为脏，消息处理结束时统一保存一次
+ * - 话题状态（TopicState）推导一次后缓存
+ *
+ * 不在消息处理线程中的调用（如异步任务）拿不到上下文，应直接访问存储。
+ */
+public final class TopicContext implements AutoCloseable {
+
+    private static final ThreadLocal<TopicContext> CURRENT = new ThreadLocal<>();
+
+    private final String topicId;
+    private final TopicMapping mapping;
+    private TopicMetadata metadata;
+    private TopicState state;
+    private boolean dirty;
+
+    private TopicContext(String topicId, TopicMapping mapping) {
+        this.topicId = topicId;
+        this.mapping = mapping;
+    }
+
+    /**
+     * 创建上下文并绑定到当前线程
+     *
+     * @param topicId 话题 ID，非话题消息为 null
+     * @param mapping 已加载的话题映射，可为 null
+     * @return 上下文，处理结束后必须 close
+     */
+    public static TopicContext open(String topicId, TopicMapping mapping) {
+        TopicContext context = new TopicContext(topicId, mapping);
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * 获取当前线程绑定的上下文
+     */
+    public static Optional<TopicContext> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    /**
+     * 获取当前线程中属于指定话题且已加载映射的上下文
+     *
+     * @param topicId 话题 ID
+     * @return 上下文，不匹配时返回 Optional.empty()
+     */
+    public static Optional<TopicContext> currentFor(String topicId) {
+        TopicContext context = CURRENT.get();
+        if (context == null || context.mapping == null || topicId == null || !topicId.equals(context.topicId)) {
+            return Optional.empty();
+        }
+        return Optional.of(context);
+    }
+
+    public String getTopicId() {
+        return topicId;
+    }
+
+    public Optional<TopicMapping> getMapping() {
+        return Optional.ofNullable(mapping);
+    }
+
+    /**
+     * 获取解析后的 metadata，首次访问时解析
+     *
+     * @throws IllegalStateException 上下文没有话题映射时
+     */
+    public TopicMetadata getMetadata() {
+        if (mapping == null) {
+            throw new IllegalStateException("No topic mapping in context");
+        }
+        if (metadata == null) {
+            metadata = TopicMetadata.of(mapping);
+        }
+        return metadata;
+    }
+
+    public Optional<TopicState> getState() {
+        return Optional.ofNullable(state);
+    }
+
+    public void setState(TopicState state) {
+        this.state = state;
+    }
+
+    /**
+     * 更新话题活跃时间，随 flush 一并保存
+     */
+    public void activate() {
+        if (mapping != null) {
+            mapping.activate();
+            dirty = true;
+        }
+    }
+
+    /**
+     * 标记映射或 metadata 已修改，需要在 flush 时保存
+     */
+    public void markDirty() {
+        if (mapping != null) {
+            dirty = true;
+        }
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * 有修改时保存一次话题映射
+     *
+     * @param gateway 话题映射存储
+     * @return 是否执行了保存
+     */
+    public boolean flush(TopicMappingGateway gateway) {
+        if (!dirty || mapping == null) {
+            return false;
+        }
+        if (!gateway.compareAndSave(mapping)) {
+            mergeConcurrentUpdate(gateway);
+        }
+        dirty = false;
+        return true;
+    }
+
+    /**
+     * 保存时发现映射已被其他写入者修改：在最新数据上重放本次处理的 metadata 修改和活跃时间；
+     * 修改无法逐项重放（metadata 被整体替换）时在最新数据上替换整个 metadata 文档，
+     * 其余字段仍以最新数据为准，且同样经过条件写入
+     */
+    private void mergeConcurrentUpdate(TopicMappingGateway gateway) {
+        boolean tracked = mapping.isMetadataTracked();
+        List<TopicMapping.MetadataChange> changes = tracked ? mapping.getMetadataChanges() : List.of();
+        String document = tracked ? null : mapping.getMetadata();
+        long lastActiveAt = mapping.getLastActiveAt();
+        gateway.update(topicId, latest -> {
+            if (tracked) {
+                latest.applyMetadataChanges(changes);
+            } else {
+                latest.setMetadata(document);
+            }
+            latest.setLastActiveAt(Math.max(latest.getLastActiveAt(), lastActiveAt));
+        });
+    }
+
+    /**
+     * 解除与当前线程的绑定
+     */
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.qdw.feishu.domain.topic;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * "话题已失效"提示的按话题限流
+ *
+ * 不是由机器人创建的话题（或映射已被清理的话题）里，每条消息都会查不到映射。
+ * 同一话题在间隔内只提示一次，其余消息静默丢弃，避免持续调用飞书发送接口。
+ * 记录的话题数有上限，超出后按 LRU 淘汰。
+ */
+public class UnknownTopicReplyLimiter {
+
+    private final long intervalMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Long> lastReplyAt;
+
+    public UnknownTopicReplyLimiter(Duration interval, int maxTopics) {
+        this(interval, maxTopics, System::currentTimeMillis);
+    }
+
+    UnknownTopicReplyLimiter(Duration interval, int maxTopics, LongSupplier clock) {
+        this.intervalMillis = interval.toMillis();
+        this.clock = clock;
+        int capacity = Math.max(1, maxTopics);
+        this.lastReplyAt = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 判断本次是否允许向该话题发送提示，允许时记录发送时间
+     *
+     * @param topicId 话题 ID
+     * @return 距上次提示已超过间隔（或从未提示）时返回 true
+     */
+    public synchronized boolean tryAcquire(String topicId) {
+        long now = clock.getAsLong();
+        Long last = lastReplyAt.get(topicId);
+        if (last != null && now - last < intervalMillis) {
+            return false;
+        }
+        lastReplyAt.put(topicId, now);
+        return true;
+    }
+
+    public synchronized int size() {
+        return lastReplyAt.size();
+    }
+}
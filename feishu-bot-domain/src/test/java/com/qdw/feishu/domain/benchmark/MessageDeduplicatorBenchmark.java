@@ -0,0 +1,78 @@
+package com.qdw.feishu.domain.benchmark;
+
+import com.qdw.feishu.domain.service.MessageDeduplicator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息去重基准测试
+ *
+ * 先向去重器预热 windowSize 个事件（模拟 5 分钟窗口内的流量），
+ * 再测量新事件和重复事件的单次判定耗时。
+ *
+ * 运行方式（需先执行 mvn test-compile）：直接运行 main 方法。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageDeduplicatorBenchmark {
+
+    @Param({"10000", "100000"})
+    private int windowSize;
+
+    private MessageDeduplicator deduplicator;
+    private String[] freshIds;
+    private int cursor;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        deduplicator = new MessageDeduplicator();
+        for (int i = 0; i < windowSize; i++) {
+            deduplicator.isProcessed("seed_" + i);
+        }
+        freshIds = new String[1 << 20];
+        for (int i = 0; i < freshIds.length; i++) {
+            freshIds[i] = "fresh_" + i;
+        }
+        cursor = 0;
+    }
+
+    @Benchmark
+    public boolean newEvent() {
+        String id = freshIds[cursor++ & (freshIds.length - 1)];
+        return deduplicator.isProcessed(id);
+    }
+
+    @Benchmark
+    public boolean duplicateEvent() {
+        return deduplicator.isProcessed("seed_" + (cursor++ % windowSize));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(MessageDeduplicatorBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
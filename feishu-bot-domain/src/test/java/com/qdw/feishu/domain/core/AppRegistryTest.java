@@ -0,0 +1,121 @@
+package com.qdw.feishu.domain.core;
+
+import com.qdw.feishu.domain.app.FishuAppI;
+import com.qdw.feishu.domain.message.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppRegistryTest {
+
+    private FishuAppI bashApp;
+    private FishuAppI openCodeApp;
+    private FishuAppI helpApp;
+    private AppRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        bashApp = new StubApp("bash", List.of("sh"));
+        openCodeApp = new StubApp("opencode", List.of("oc", "code"));
+        helpApp = new StubApp("help", List.of("h", "?", "man"));
+        registry = new AppRegistry(List.of(bashApp, openCodeApp, helpApp));
+    }
+
+    @Test
+    @DisplayName("通过 appId 和别名查找应用，不区分大小写")
+    void testFindByCommand_appIdAndAliases() {
+        assertSame(bashApp, registry.findByCommand("bash"));
+        assertSame(bashApp, registry.findByCommand("BaSh"));
+        assertSame(openCodeApp, registry.findByCommand("oc"));
+        assertSame(openCodeApp, registry.findByCommand("CODE"));
+        assertSame(helpApp, registry.findByCommand("?"));
+    }
+
+    @Test
+    @DisplayName("前缀或不存在的命令不匹配任何应用")
+    void testFindByCommand_unknown() {
+        assertNull(registry.findByCommand("ba"));
+        assertNull(registry.findByCommand("bashx"));
+        assertNull(registry.findByCommand("unknown"));
+        assertNull(registry.findByCommand(""));
+        assertNull(registry.findByCommand(null));
+    }
+
+    @Test
+    @DisplayName("未知命令给出共享前缀的候选命令")
+    void testSuggestCommands_sharedPrefix() {
+        assertEquals(List.of("/opencode"), registry.suggestCommands("open"));
+        assertEquals(List.of("/bash"), registry.suggestCommands("bsh"));
+        assertTrue(registry.suggestCommands("bashx").contains("/bash"));
+        assertTrue(registry.suggestCommands("xyz").isEmpty());
+    }
+
+    @Test
+    @DisplayName("未知命令提示包含候选和全部可用命令")
+    void testGetUnknownCommandReply() {
+        String reply = registry.getUnknownCommandReply("opne");
+
+        assertTrue(reply.contains("未找到应用: `opne`"));
+        assertTrue(reply.contains("/opencode"));
+        assertTrue(reply.contains(registry.getAvailableCommands()));
+    }
+
+    @Test
+    @DisplayName("可用命令列表与帮助文本在启动时生成，保持注册顺序")
+    void testPrecomputedTexts() {
+        assertEquals("/bash, /sh, /opencode, /oc, /code, /help, /h, /?, /man",
+            registry.getAvailableCommands());
+        assertEquals("/bash - bash desc\n/opencode - opencode desc\n/help - help desc",
+            registry.getAppHelp());
+        assertSame(registry.getAllApps(), registry.getAllApps());
+        assertThrows(UnsupportedOperationException.class, () -> registry.getAllApps().add(bashApp));
+    }
+
+    @Test
+    @DisplayName("别名与其他应用的 appId 冲突时 appId 优先")
+    void testFindByCommand_appIdWinsOverAlias() {
+        FishuAppI shApp = new StubApp("sh", List.of());
+        AppRegistry conflicted = new AppRegistry(List.of(bashApp, shApp));
+
+        assertSame(shApp, conflicted.findByCommand("sh"));
+    }
+
+    private static final class StubApp implements FishuAppI {
+        private final String appId;
+        private final List<String> aliases;
+
+        private StubApp(String appId, List<String> aliases) {
+            this.appId = appId;
+            this.aliases = aliases;
+        }
+
+        @Override
+        public String getAppId() {
+            return appId;
+        }
+
+        @Override
+        public String getAppName() {
+            return appId;
+        }
+
+        @Override
+        public String getDescription() {
+            return appId + " desc";
+        }
+
+        @Override
+        public String execute(Message message) {
+            return appId;
+        }
+
+        @Override
+        public List<String> getAppAliases() {
+            return aliases;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.qdw.feishu.domain.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(10_000);
+    private final CircuitBreaker breaker = new CircuitBreaker("opencode", 3, Duration.ofSeconds(30), now::get);
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+    }
+
+    @Test
+    @DisplayName("连续失败达到阈值后打开，打开期间直接拒绝")
+    void testOpensAfterConsecutiveFailures() {
+        fail(2);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        now.addAndGet(29_999);
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("打开时长结束后只放行一个试探请求，成功后关闭")
+    void testHalfOpen_trialSuccessCloses() {
+        fail(3);
+        now.addAndGet(30_000);
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("试探请求失败重新打开，结果不确定时放行下一个试探请求")
+    void testHalfOpen_trialFailureReopens() {
+        fail(3);
+        now.addAndGet(30_000);
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onIgnored();
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        now.addAndGet(30_000);
+        assertTrue(breaker.tryAcquire());
+    }
+}
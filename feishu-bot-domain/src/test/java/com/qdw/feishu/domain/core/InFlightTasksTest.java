@@ -0,0 +1,70 @@
+package com.qdw.feishu.domain.core;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InFlightTasksTest {
+
+    private final InFlightTasks<String> tasks = new InFlightTasks<>();
+    private final AtomicInteger starts = new AtomicInteger();
+
+    private CompletableFuture<String> start(CompletableFuture<String> work) {
+        starts.incrementAndGet();
+        return work;
+    }
+
+    @Test
+    @DisplayName("同步等待超时后再次提交，挂到执行中的任务上而不是重新启动")
+    void testSubmit_attachesToRunningTask() throws Exception {
+        CompletableFuture<String> work = new CompletableFuture<>();
+
+        CompletableFuture<String> first = tasks.submit("ses_1\nhello", () -> start(work));
+        assertThrows(TimeoutException.class, () -> first.get(10, TimeUnit.MILLISECONDS));
+
+        CompletableFuture<String> second = tasks.submit("ses_1\nhello", () -> start(new CompletableFuture<>()));
+        assertSame(first, second);
+        assertEquals(1, starts.get());
+
+        work.complete("done");
+        assertEquals("done", second.get());
+        assertFalse(tasks.isRunning("ses_1\nhello"));
+    }
+
+    @Test
+    @DisplayName("任务结束后相同 key 重新启动，不同 key 互不影响")
+    void testSubmit_restartsAfterCompletion() throws Exception {
+        tasks.submit("a", () -> start(CompletableFuture.completedFuture("1"))).get();
+        assertEquals(0, tasks.size());
+
+        assertEquals("2", tasks.submit("a", () -> start(CompletableFuture.completedFuture("2"))).get());
+        tasks.submit("b", () -> start(new CompletableFuture<>()));
+        tasks.submit(null, () -> start(new CompletableFuture<>()));
+
+        assertEquals(4, starts.get());
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    @DisplayName("任务失败时所有等待者收到同一异常，启动失败不留下登记")
+    void testSubmit_failure() {
+        CompletableFuture<String> work = new CompletableFuture<>();
+        CompletableFuture<String> task = tasks.submit("a", () -> start(work));
+        work.completeExceptionally(new IllegalStateException("boom"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, task::get);
+        assertEquals("boom", e.getCause().getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> tasks.submit("b", () -> {
+            throw new IllegalArgumentException("cannot start");
+        }));
+        assertFalse(tasks.isRunning("b"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.qdw.feishu.domain.message;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageTest {
+
+    @Test
+    @DisplayName("没有后台任务时标记已处理立即触发完成回调，且只触发一次")
+    void testMarkProcessed_firesCallbackOnce() {
+        Message message = new Message();
+        AtomicInteger fired = new AtomicInteger();
+        message.onProcessed(fired::incrementAndGet);
+
+        message.markProcessed();
+        message.markProcessed();
+
+        assertEquals(MessageStatus.PROCESSED, message.getStatus());
+        assertEquals(1, fired.get());
+    }
+
+    @Test
+    @DisplayName("有后台任务时等所有后台任务结束（包括失败）才触发完成回调")
+    void testMarkProcessed_waitsForBackgroundWork() {
+        Message message = new Message();
+        AtomicInteger fired = new AtomicInteger();
+        message.onProcessed(fired::incrementAndGet);
+        CompletableFuture<String> stream = new CompletableFuture<>();
+        CompletableFuture<String> command = new CompletableFuture<>();
+        message.continueInBackground(stream);
+        message.continueInBackground(command);
+
+        message.markProcessed();
+        assertEquals(MessageStatus.PROCESSED, message.getStatus());
+        assertEquals(0, fired.get());
+
+        stream.complete("done");
+        assertEquals(0, fired.get());
+        command.completeExceptionally(new IllegalStateException("failed"));
+        assertEquals(1, fired.get());
+    }
+
+    @Test
+    @DisplayName("后台任务先于标记已处理结束时，在标记时触发完成回调")
+    void testMarkProcessed_backgroundAlreadyDone() {
+        Message message = new Message();
+        AtomicInteger fired = new AtomicInteger();
+        message.onProcessed(fired::incrementAndGet);
+        message.continueInBackground(CompletableFuture.completedFuture("done"));
+
+        assertEquals(0, fired.get());
+        message.markProcessed();
+        assertEquals(1, fired.get());
+    }
+}
@@ -0,0 +1,86 @@
+package com.qdw.feishu.domain.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicMetadataTest {
+
+    private static TopicMapping loaded(String metadata) {
+        TopicMapping mapping = new TopicMapping("omt_1", "opencode", metadata);
+        mapping.markMetadataPersisted();
+        return mapping;
+    }
+
+    @Test
+    @DisplayName("多次 of() 共用同一份解析结果，修改在序列化前对后续读取可见")
+    void testOf_sharesParsedTree() {
+        TopicMapping mapping = loaded("{\"opencode\":{\"sessionId\":\"ses_1\"}}");
+
+        TopicMetadata.of(mapping).set("sessionId", "ses_2");
+
+        assertEquals("ses_2", TopicMetadata.of(mapping).getString("sessionId").orElseThrow());
+        assertEquals("{\"opencode\":{\"sessionId\":\"ses_2\"}}", mapping.getMetadata());
+    }
+
+    @Test
+    @DisplayName("只记录修改过的键，读取不产生修改")
+    void testChanges_onlyDirtyKeys() {
+        TopicMapping mapping = loaded("{\"opencode\":{\"sessionId\":\"ses_1\",\"count\":1},\"bash\":{\"cwd\":\"/\"}}");
+        TopicMetadata metadata = TopicMetadata.of(mapping);
+
+        metadata.getString("sessionId");
+        metadata.has("missing");
+        assertTrue(mapping.getMetadataChanges().isEmpty());
+
+        metadata.set("count", 2).remove("sessionId");
+
+        List<TopicMapping.MetadataChange> changes = mapping.getMetadataChanges();
+        assertEquals(2, changes.size());
+        assertEquals(new TopicMapping.MetadataChange("opencode", "count", "2"), changes.get(0));
+        assertTrue(changes.get(1).isRemoval());
+        assertEquals("sessionId", changes.get(1).key());
+    }
+
+    @Test
+    @DisplayName("命名空间不存在时记录为整个命名空间的修改")
+    void testChanges_newNamespace() {
+        TopicMapping mapping = loaded("{\"bash\":{\"cwd\":\"/\"}}");
+
+        TopicMetadata.of(mapping).set("sessionId", "ses_1");
+
+        assertEquals(List.of(new TopicMapping.MetadataChange("opencode", null, "{\"sessionId\":\"ses_1\"}")),
+            mapping.getMetadataChanges());
+    }
+
+    @Test
+    @DisplayName("整体替换 metadata 后不再支持增量写回")
+    void testSetMetadata_disablesTracking() {
+        TopicMapping mapping = loaded("{}");
+        TopicMetadata.of(mapping).set("sessionId", "ses_1");
+
+        mapping.setMetadata("{\"opencode\":{}}");
+
+        assertFalse(mapping.isMetadataTracked());
+        assertTrue(mapping.getMetadataChanges().isEmpty());
+        assertFalse(TopicMetadata.of(mapping).has("sessionId"));
+    }
+
+    @Test
+    @DisplayName("副本保留未序列化的修改和修改记录，且与原对象互不影响")
+    void testCopy_keepsPendingChanges() {
+        TopicMapping mapping = loaded("{\"opencode\":{\"count\":1}}");
+        TopicMetadata.of(mapping).set("count", 2);
+
+        TopicMapping copy = mapping.copy();
+        TopicMetadata.of(mapping).set("count", 3);
+
+        assertTrue(copy.isMetadataTracked());
+        assertEquals(2, TopicMetadata.of(copy).getInt("count").orElseThrow());
+        assertEquals("{\"opencode\":{\"count\":2}}", copy.getMetadata());
+        assertEquals(1, copy.getMetadataChanges().size());
+    }
+}
@@ -0,0 +1,119 @@
+package com.qdw.feishu.domain.opencode;
+
+import com.qdw.feishu.domain.gateway.FeishuGateway;
+import com.qdw.feishu.domain.message.SendResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OpenCodeReplyStreamerTest {
+
+    private FeishuGateway feishuGateway;
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+    private final AtomicLong now = new AtomicLong(10_000);
+
+    @BeforeEach
+    void setUp() {
+        feishuGateway = mock(FeishuGateway.class);
+        when(feishuGateway.updateMessage(anyString(), anyString()))
+            .thenAnswer(invocation -> SendResult.success(invocation.getArgument(0)));
+    }
+
+    /**
+     * 调度器只记录任务和延迟，由测试手动执行
+     */
+    private OpenCodeReplyStreamer streamer(int maxEdits) {
+        ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+        when(scheduler.schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS))).thenAnswer(invocation -> {
+            tasks.add(invocation.getArgument(0));
+            delays.add(invocation.getArgument(1));
+            return mock(ScheduledFuture.class);
+        });
+        return new OpenCodeReplyStreamer(feishuGateway, true, Duration.ofSeconds(1), maxEdits, 600, scheduler, now::get);
+    }
+
+    private void runNext() {
+        tasks.remove(0).run();
+    }
+
+    @Test
+    @DisplayName("首个内容立即编辑，间隔内到达的内容合并为一次编辑")
+    void testAccept_coalescesWithinInterval() {
+        OpenCodeReplyStreamer.Reply reply = streamer(20).start("om_1");
+
+        reply.accept("a");
+        assertEquals(0L, delays.get(0));
+        reply.accept("ab");
+        reply.accept("abc");
+        assertEquals(1, tasks.size());
+
+        runNext();
+        verify(feishuGateway).updateMessage(eq("om_1"), startsWith("abc"));
+        assertTrue(tasks.isEmpty());
+
+        now.addAndGet(200);
+        reply.accept("abcd");
+        reply.accept("abcde");
+        assertEquals(800L, delays.get(1));
+        now.addAndGet(800);
+        runNext();
+        verify(feishuGateway).updateMessage(eq("om_1"), startsWith("abcde"));
+        verify(feishuGateway, times(2)).updateMessage(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("中间内容最多用到 maxEdits - 1 次编辑，最终结果使用最后一次")
+    void testComplete_reservesLastEdit() {
+        OpenCodeReplyStreamer.Reply reply = streamer(3).start("om_1");
+
+        for (int i = 0; i < 5; i++) {
+            reply.accept("part " + i);
+            if (!tasks.isEmpty()) {
+                now.addAndGet(1000);
+                runNext();
+            }
+        }
+        verify(feishuGateway, times(2)).updateMessage(anyString(), anyString());
+
+        assertTrue(reply.complete("final"));
+        verify(feishuGateway).updateMessage("om_1", "final");
+
+        reply.accept("late");
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    @DisplayName("编辑失败时 complete 返回 false，由调用方改发新消息")
+    void testComplete_editFailure() {
+        when(feishuGateway.updateMessage(anyString(), anyString())).thenReturn(SendResult.failure("edit limit"));
+        OpenCodeReplyStreamer.Reply reply = streamer(20).start("om_1");
+
+        assertFalse(reply.complete("final"));
+    }
+
+    @Test
+    @DisplayName("每编辑 EDITS_PER_STEP 次后编辑间隔加倍")
+    void testInterval_widensWithEdits() {
+        OpenCodeReplyStreamer.Reply reply = streamer(20).start("om_1");
+
+        for (int i = 0; i <= OpenCodeReplyStreamer.EDITS_PER_STEP; i++) {
+            reply.accept("content " + i);
+            runNext();
+        }
+        assertEquals(1000L, delays.get(1));
+        assertEquals(2000L, delays.get(OpenCodeReplyStreamer.EDITS_PER_STEP));
+    }
+}
@@ -0,0 +1,237 @@
+package com.qdw.feishu.domain.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.qdw.feishu.domain.gateway.DedupFilterGateway;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MessageDeduplicatorTest {
+
+    private AtomicLong now;
+    private MessageDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(Duration.ofHours(1).toMillis());
+        deduplicator = new MessageDeduplicator(
+            Duration.ofMinutes(5), Duration.ofMinutes(1), 1000, now::get);
+    }
+
+    @Test
+    @DisplayName("首次出现的事件未处理，重复出现的事件已处理")
+    void testIsProcessed_duplicateDetected() {
+        assertFalse(deduplicator.isProcessed("ev_1"));
+        assertTrue(deduplicator.isProcessed("ev_1"));
+        assertFalse(deduplicator.isProcessed("ev_2"));
+        assertEquals(2, deduplicator.getCacheSize());
+    }
+
+    @Test
+    @DisplayName("空 eventId 不参与去重")
+    void testIsProcessed_emptyEventId() {
+        assertFalse(deduplicator.isProcessed(null));
+        assertFalse(deduplicator.isProcessed(""));
+        assertFalse(deduplicator.isProcessed(""));
+        assertEquals(0, deduplicator.getCacheSize());
+    }
+
+    @Test
+    @DisplayName("窗口内跨时间片的重复事件仍被识别")
+    void testIsProcessed_duplicateAcrossBuckets() {
+        assertFalse(deduplicator.isProcessed("ev_1"));
+
+        now.addAndGet(Duration.ofMinutes(4).toMillis());
+
+        assertTrue(deduplicator.isProcessed("ev_1"));
+    }
+
+    @Test
+    @DisplayName("超过 TTL 后整桶过期，事件可再次处理")
+    void testIsProcessed_expiresAfterTtl() {
+        assertFalse(deduplicator.isProcessed("ev_1"));
+
+        now.addAndGet(Duration.ofMinutes(7).toMillis());
+
+        assertFalse(deduplicator.isProcessed("ev_1"));
+        assertTrue(deduplicator.isProcessed("ev_1"));
+    }
+
+    @Test
+    @DisplayName("条目数超过上限时丢弃最旧的桶")
+    void testIsProcessed_hardCapacityBound() {
+        for (int i = 0; i < 600; i++) {
+            deduplicator.isProcessed("old_" + i);
+        }
+        now.addAndGet(Duration.ofMinutes(1).toMillis());
+        for (int i = 0; i < 600; i++) {
+            deduplicator.isProcessed("new_" + i);
+        }
+
+        assertTrue(deduplicator.getCacheSize() <= 1000);
+        assertTrue(deduplicator.isProcessed("new_1"));
+        assertFalse(deduplicator.isProcessed("old_1"));
+    }
+
+    @Test
+    @DisplayName("当前时间片的桶不会因超过上限被丢弃")
+    void testIsProcessed_neverEvictsCurrentBucket() {
+        for (int i = 0; i < 1500; i++) {
+            assertFalse(deduplicator.isProcessed("ev_" + i));
+        }
+
+        assertEquals(1500, deduplicator.getCacheSize());
+        assertTrue(deduplicator.isProcessed("ev_0"));
+        assertTrue(deduplicator.isProcessed("ev_1499"));
+    }
+
+    @Test
+    @DisplayName("并发写入同时跨时间片轮转和淘汰，条目计数保持精确")
+    void testIsProcessed_concurrentRotationKeepsExactSize() throws InterruptedException {
+        MessageDeduplicator small = new MessageDeduplicator(
+            Duration.ofMinutes(5), Duration.ofMinutes(1), 500, now::get);
+        int threadCount = 8;
+        int perThread = 5000;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread[] writers = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            int id = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    small.isProcessed("ev_" + id + "_" + i);
+                }
+            });
+        }
+        Thread ticker = new Thread(() -> {
+            while (writing.get()) {
+                now.addAndGet(Duration.ofSeconds(20).toMillis());
+                Thread.yield();
+            }
+        });
+
+        ticker.start();
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        writing.set(false);
+        ticker.join();
+
+        // 之后每个时间片写入一条，环上所有旧桶都被换下，计数不应残留被丢弃的条目
+        now.addAndGet(Duration.ofMinutes(10).toMillis());
+        for (int i = 0; i < 6; i++) {
+            assertFalse(small.isProcessed("ev_tick_" + i));
+            now.addAndGet(Duration.ofMinutes(1).toMillis());
+        }
+        assertEquals(6, small.getCacheSize());
+
+        small.clearAll();
+        assertEquals(0, small.getCacheSize());
+    }
+
+    @Test
+    @DisplayName("clearAll 清空所有缓存")
+    void testClearAll() {
+        deduplicator.isProcessed("ev_1");
+        deduplicator.isProcessed("ev_2");
+
+        deduplicator.clearAll();
+
+        assertEquals(0, deduplicator.getCacheSize());
+        assertFalse(deduplicator.isProcessed("ev_1"));
+    }
+
+    @Test
+    @DisplayName("并发处理同一事件只有一次判定为未处理")
+    void testIsProcessed_concurrentSameEvent() throws InterruptedException {
+        int threadCount = 8;
+        AtomicLong firstSeen = new AtomicLong();
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                if (!deduplicator.isProcessed("ev_concurrent")) {
+                    firstSeen.incrementAndGet();
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, firstSeen.get());
+    }
+
+    @Test
+    @DisplayName("检查时不写入持久化过滤器，处理成功后才写入")
+    void testMarkCompleted_writesFilterOnlyAfterSuccess() {
+        DedupFilterGateway filter = mock(DedupFilterGateway.class);
+        when(filter.isEnabled()).thenReturn(true);
+        when(filter.mightContain("ev_1")).thenReturn(false);
+        MessageDeduplicator withFilter = new MessageDeduplicator(
+            Duration.ofMinutes(5), Duration.ofMinutes(1), 1000, now::get, filter);
+
+        assertFalse(withFilter.isProcessed("ev_1"));
+        verify(filter, never()).put(anyString());
+
+        withFilter.markCompleted("ev_1");
+        verify(filter).put("ev_1");
+    }
+
+    @Test
+    @DisplayName("持久化过滤器命中但内存未命中时视为已处理（如重启后重投递）")
+    void testIsProcessed_filterHitAfterRestart() {
+        DedupFilterGateway filter = mock(DedupFilterGateway.class);
+        when(filter.isEnabled()).thenReturn(true);
+        when(filter.mightContain("ev_1")).thenReturn(true);
+        MessageDeduplicator withFilter = new MessageDeduplicator(
+            Duration.ofMinutes(5), Duration.ofMinutes(1), 1000, now::get, filter);
+
+        assertTrue(withFilter.isProcessed("ev_1"));
+        assertTrue(withFilter.isProcessed("ev_1"));
+
+        verify(filter, never()).put(anyString());
+    }
+
+    @Test
+    @DisplayName("日志重放去重跳过持久化过滤器")
+    void testIsProcessed_replaySkipsFilter() {
+        DedupFilterGateway filter = mock(DedupFilterGateway.class);
+        when(filter.isEnabled()).thenReturn(true);
+        MessageDeduplicator withFilter = new MessageDeduplicator(
+            Duration.ofMinutes(5), Duration.ofMinutes(1), 1000, now::get, filter);
+
+        assertFalse(withFilter.isProcessed("ev_1", false));
+        assertTrue(withFilter.isProcessed("ev_1", false));
+
+        verify(filter, never()).mightContain(anyString());
+        verify(filter, never()).put(anyString());
+    }
+
+    @Test
+    @DisplayName("过滤器未启用时只使用内存去重")
+    void testIsProcessed_disabledFilterIgnored() {
+        DedupFilterGateway filter = mock(DedupFilterGateway.class);
+        when(filter.isEnabled()).thenReturn(false);
+        MessageDeduplicator withFilter = new MessageDeduplicator(
+            Duration.ofMinutes(5), Duration.ofMinutes(1), 1000, now::get, filter);
+
+        assertFalse(withFilter.isProcessed("ev_1"));
+        assertTrue(withFilter.isProcessed("ev_1"));
+        withFilter.markCompleted("ev_1");
+
+        verify(filter, never()).mightContain(anyString());
+        verify(filter, never()).put(anyString());
+    }
+}
@@ -0,0 +1,140 @@
+package com.qdw.feishu.domain.topic;
+
+import com.qdw.feishu.domain.exception.TopicMappingConflictException;
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.domain.model.TopicMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicContextTest {
+
+    private VersionedGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        gateway = new VersionedGateway();
+        TopicMapping mapping = new TopicMapping("omt_1", "opencode", "{\"opencode\":{\"count\":1}}");
+        assertTrue(gateway.compareAndSave(mapping));
+    }
+
+    @Test
+    @DisplayName("保存时版本已变化，在最新数据上重放本次修改，不覆盖其他写入")
+    void testFlush_mergesConcurrentUpdate() {
+        TopicMapping loaded = gateway.findByTopicId("omt_1").orElseThrow();
+        try (TopicContext context = TopicContext.open("omt_1", loaded)) {
+            context.getMetadata().set("sessionId", "ses_1");
+            context.markDirty();
+
+            gateway.update("omt_1", other -> TopicMetadata.of(other).set("count", 2));
+
+            assertTrue(context.flush(gateway));
+        }
+
+        TopicMetadata stored = TopicMetadata.of(gateway.findByTopicId("omt_1").orElseThrow());
+        assertEquals("ses_1", stored.getString("sessionId").orElseThrow());
+        assertEquals(2, stored.getInt("count").orElseThrow());
+        assertEquals(3, gateway.findByTopicId("omt_1").orElseThrow().getVersion());
+    }
+
+    @Test
+    @DisplayName("metadata 被整体替换后保存冲突，在最新数据上替换文档并条件写入，不覆盖其他字段的并发修改")
+    void testFlush_replacesDocumentOnLatest() {
+        long later = System.currentTimeMillis() + 60_000;
+        TopicMapping loaded = gateway.findByTopicId("omt_1").orElseThrow();
+        try (TopicContext context = TopicContext.open("omt_1", loaded)) {
+            loaded.setMetadata("{\"opencode\":{\"sessionId\":\"ses_2\"}}");
+            context.markDirty();
+
+            gateway.update("omt_1", other -> other.setLastActiveAt(later));
+
+            assertTrue(context.flush(gateway));
+        }
+
+        TopicMapping stored = gateway.findByTopicId("omt_1").orElseThrow();
+        assertEquals("{\"opencode\":{\"sessionId\":\"ses_2\"}}", stored.getMetadata());
+        assertEquals(later, stored.getLastActiveAt());
+        assertEquals(3, stored.getVersion());
+    }
+
+    @Test
+    @DisplayName("update 冲突时重读重试，超过次数后抛出冲突异常")
+    void testUpdate_retriesThenFails() {
+        gateway.conflictsLeft = TopicMappingGateway.MAX_UPDATE_ATTEMPTS - 1;
+        Optional<TopicMapping> updated = gateway.update("omt_1", m -> TopicMetadata.of(m).set("count", 5));
+        assertEquals(5, TopicMetadata.of(updated.orElseThrow()).getInt("count").orElseThrow());
+
+        gateway.conflictsLeft = TopicMappingGateway.MAX_UPDATE_ATTEMPTS;
+        assertThrows(TopicMappingConflictException.class,
+            () -> gateway.update("omt_1", m -> TopicMetadata.of(m).set("count", 6)));
+    }
+
+    @Test
+    @DisplayName("话题不存在时 update 返回空")
+    void testUpdate_missingTopic() {
+        assertTrue(gateway.update("omt_missing", m -> fail("不应执行修改")).isEmpty());
+    }
+
+    /**
+     * 按版本号条件写入的内存存储；conflictsLeft 大于 0 时模拟其他写入者抢先更新
+     */
+    private static class VersionedGateway implements TopicMappingGateway {
+        private final Map<String, TopicMapping> store = new HashMap<>();
+        private int conflictsLeft;
+
+        @Override
+        public void save(TopicMapping mapping) {
+            TopicMapping current = store.get(mapping.getTopicId());
+            TopicMapping copy = mapping.copy();
+            copy.setVersion(current != null ? current.getVersion() + 1 : 1);
+            store.put(mapping.getTopicId(), copy);
+        }
+
+        @Override
+        public boolean compareAndSave(TopicMapping mapping) {
+            TopicMapping current = store.get(mapping.getTopicId());
+            long version = current != null ? current.getVersion() : 0;
+            if (conflictsLeft > 0) {
+                conflictsLeft--;
+                return false;
+            }
+            if (version != mapping.getVersion()) {
+                return false;
+            }
+            mapping.getMetadata();
+            mapping.setVersion(version + 1);
+            mapping.markMetadataPersisted();
+            store.put(mapping.getTopicId(), mapping.copy());
+            return true;
+        }
+
+        @Override
+        public Optional<TopicMapping> findByTopicId(String topicId) {
+            return Optional.ofNullable(store.get(topicId)).map(TopicMapping::copy);
+        }
+
+        @Override
+        public void delete(String topicId) {
+            store.remove(topicId);
+        }
+
+        @Override
+        public List<TopicMapping> scan(String afterTopicId, int limit) {
+            return store.values().stream()
+                .filter(m -> afterTopicId == null || m.getTopicId().compareTo(afterTopicId) > 0)
+                .sorted(Comparator.comparing(TopicMapping::getTopicId))
+                .limit(limit)
+                .map(TopicMapping::copy)
+                .toList();
+        }
+    }
+}
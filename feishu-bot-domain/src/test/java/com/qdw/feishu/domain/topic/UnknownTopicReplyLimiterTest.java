@@ -0,0 +1,54 @@
+package com.qdw.feishu.domain.topic;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnknownTopicReplyLimiterTest {
+
+    private AtomicLong now;
+    private UnknownTopicReplyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong(Duration.ofHours(1).toMillis());
+        limiter = new UnknownTopicReplyLimiter(Duration.ofMinutes(10), 2, now::get);
+    }
+
+    @Test
+    @DisplayName("同一话题在间隔内只允许提示一次")
+    void testTryAcquire_limitedWithinInterval() {
+        assertTrue(limiter.tryAcquire("omt_1"));
+        assertFalse(limiter.tryAcquire("omt_1"));
+
+        now.addAndGet(Duration.ofMinutes(9).toMillis());
+        assertFalse(limiter.tryAcquire("omt_1"));
+
+        now.addAndGet(Duration.ofMinutes(1).toMillis());
+        assertTrue(limiter.tryAcquire("omt_1"));
+    }
+
+    @Test
+    @DisplayName("不同话题互不影响")
+    void testTryAcquire_independentTopics() {
+        assertTrue(limiter.tryAcquire("omt_1"));
+        assertTrue(limiter.tryAcquire("omt_2"));
+        assertFalse(limiter.tryAcquire("omt_2"));
+    }
+
+    @Test
+    @DisplayName("超出容量时淘汰最久未访问的话题")
+    void testTryAcquire_evictsEldest() {
+        assertTrue(limiter.tryAcquire("omt_1"));
+        assertTrue(limiter.tryAcquire("omt_2"));
+        assertTrue(limiter.tryAcquire("omt_3"));
+
+        assertEquals(2, limiter.size());
+        assertTrue(limiter.tryAcquire("omt_1"));
+    }
+}
@@ -3,13 +3,16 @@ package com.qdw.feishu.infrastructure.config;
 import com.qdw.feishu.domain.core.AppRegistry;
 import com.qdw.feishu.domain.gateway.FeishuGateway;
 import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.opencode.OpenCodeReplyStreamer;
 import com.qdw.feishu.domain.reply.ReplyStrategy;
 import com.qdw.feishu.domain.reply.ReplyStrategyFactory;
 import com.qdw.feishu.domain.router.AppRouter;
 import com.qdw.feishu.domain.service.BotMessageService;
+import com.qdw.feishu.domain.topic.UnknownTopicReplyLimiter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
 import java.util.List;
 
 @Configuration
@@ -20,12 +23,27 @@ public class DomainServiceConfig {
         return new ReplyStrategyFactory(strategies);
     }
 
+    @Bean
+    public UnknownTopicReplyLimiter unknownTopicReplyLimiter(TopicMappingProperties properties) {
+        TopicMappingProperties.UnknownTopic config = properties.getUnknownTopic();
+        return new UnknownTopicReplyLimiter(Duration.ofSeconds(config.getReplyIntervalSeconds()), config.getMaxSize());
+    }
+
+    @Bean
+    public OpenCodeReplyStreamer openCodeReplyStreamer(FeishuGateway feishuGateway, OpenCodeProperties properties) {
+        OpenCodeProperties.Stream config = properties.getStream();
+        return new OpenCodeReplyStreamer(feishuGateway, config.isEnabled(),
+                Duration.ofMillis(config.getUpdateIntervalMs()), config.getMaxEdits(), config.getTimeoutSeconds());
+    }
+
     @Bean
     public BotMessageService botMessageService(FeishuGateway feishuGateway, 
                                               AppRouter appRouter, 
                                               AppRegistry appRegistry, 
                                               TopicMappingGateway topicMappingGateway,
-                                              ReplyStrategyFactory replyStrategyFactory) {
-        return new BotMessageService(feishuGateway, appRouter, appRegistry, topicMappingGateway, replyStrategyFactory);
+                                              ReplyStrategyFactory replyStrategyFactory,
+                                              UnknownTopicReplyLimiter unknownTopicReplyLimiter) {
+        return new BotMessageService(feishuGateway, appRouter, appRegistry, topicMappingGateway,
+                replyStrategyFactory, unknownTopicReplyLimiter);
     }
 }
@@ -70,6 +70,21 @@ public class FeishuProperties implements FeishuConfig {
     public static class Listener implements ListenerConfig {
         private boolean enabled = false;
 
+        /**
+         * 连接存活检查间隔（秒）：每隔该时长检查一次连接线程是否异常退出
+         */
+        private int heartbeatInterval = 30;
+
+        /**
+         * 断线重连配置
+         */
+        private Reconnect reconnect = new Reconnect();
+
+        /**
+         * 超时配置
+         */
+        private Timeout timeout = new Timeout();
+
         @Override
         public boolean isEnabled() {
             return enabled;
@@ -78,5 +93,55 @@ public class FeishuProperties implements FeishuConfig {
         public void setEnabled(boolean enabled) {
             this.enabled = enabled;
         }
+
+        public int getHeartbeatInterval() {
+            return heartbeatInterval;
+        }
+
+        public void setHeartbeatInterval(int heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+        }
+
+        public Reconnect getReconnect() {
+            return reconnect;
+        }
+
+        public void setReconnect(Reconnect reconnect) {
+            this.reconnect = reconnect;
+        }
+
+        public Timeout getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Timeout timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    @Data
+    public static class Reconnect {
+        /**
+         * 首次重连延迟（毫秒）
+         */
+        private long initialDelay = 1000;
+
+        /**
+         * 最大重连延迟（毫秒）
+         */
+        private long maxDelay = 30000;
+
+        /**
+         * 指数退避的重连次数，超过后按 maxDelay 间隔持续重试；小于等于 0 表示始终指数退避
+         */
+        private int maxAttempts = 10;
+    }
+
+    @Data
+    public static class Timeout {
+        /**
+         * 建立连接超时（毫秒）
+         */
+        private long connect = 10000;
     }
 }
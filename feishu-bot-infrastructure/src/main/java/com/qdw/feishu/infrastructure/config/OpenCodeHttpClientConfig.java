@@ -0,0 +1,57 @@
+package com.qdw.feishu.infrastructure.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OpenCode HTTP 客户端配置
+ *
+ * 所有 OpenCode 请求共用一个 HttpClient：
+ * - 连接池复用长连接，优先 HTTP/2，同一连接上多路复用并发请求
+ * - 异步响应在固定的小线程池上处理，等待响应期间不占用线程
+ * - 重试退避和流式超时由调度线程定时触发，不让线程 sleep
+ *
+ * 空闲连接的保活时间由 JVM 参数 jdk.httpclient.keepalive.timeout 控制（默认 1200 秒）。
+ */
+@Configuration
+public class OpenCodeHttpClientConfig {
+
+    @Bean(name = "opencodeHttpExecutor", destroyMethod = "shutdown")
+    public ExecutorService opencodeHttpExecutor(OpenCodeProperties properties) {
+        return Executors.newFixedThreadPool(Math.max(1, properties.getHttp().getThreads()),
+            daemonThreads("opencode-http-"));
+    }
+
+    @Bean(name = "opencodeHttpClient")
+    public HttpClient opencodeHttpClient(OpenCodeProperties properties,
+                                         @Qualifier("opencodeHttpExecutor") ExecutorService executor) {
+        return HttpClient.newBuilder()
+            .version(properties.getHttp().isHttp2Enabled() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(properties.getConnectTimeout()))
+            .executor(executor)
+            .build();
+    }
+
+    @Bean(name = "opencodeHttpScheduler", destroyMethod = "shutdownNow")
+    public ScheduledExecutorService opencodeHttpScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(daemonThreads("opencode-http-timer-"));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
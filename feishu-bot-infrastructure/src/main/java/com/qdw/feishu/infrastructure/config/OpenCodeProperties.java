@@ -60,6 +60,11 @@ public class OpenCodeProperties {
      */
     private boolean healthCheckEnabled = true;
 
+    /**
+     * 后台健康探测间隔（秒）
+     */
+    private int healthCheckIntervalSeconds = 10;
+
     /**
      * 默认超时时间（秒）- 用于兼容旧代码
      * @deprecated 使用 requestTimeout
@@ -77,6 +82,117 @@ public class OpenCodeProperties {
      */
     private boolean asyncEnabled = true;
 
+    /**
+     * 会话存储配置
+     */
+    private Session session = new Session();
+
+    /**
+     * 流式回复配置
+     */
+    private Stream stream = new Stream();
+
+    /**
+     * HTTP 客户端配置
+     */
+    private Http http = new Http();
+
+    /**
+     * 熔断配置
+     */
+    private Breaker breaker = new Breaker();
+
+    /**
+     * 查询缓存配置
+     */
+    private Cache cache = new Cache();
+
+    @Data
+    public static class Session {
+        /**
+         * 存储方式：topic-mapping（存于话题映射 metadata）, sqlite（独立会话表）
+         * 切换到 sqlite 时首次启动从话题映射导入已有会话；反向切换不会同步
+         */
+        private String storage = "topic-mapping";
+
+        /**
+         * sqlite 存储的数据库文件路径
+         */
+        private String sqlitePath = "data/opencode-sessions.db";
+    }
+
+    @Data
+    public static class Stream {
+        /**
+         * 是否启用流式回复（话题中先回复占位消息，随输出编辑该消息）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 两次编辑之间的最小间隔（毫秒），编辑次数增多后自动加倍
+         */
+        private long updateIntervalMs = 1000;
+
+        /**
+         * 单条回复最多编辑次数（飞书限制单条消息最多编辑 20 次）
+         */
+        private int maxEdits = 20;
+
+        /**
+         * 流式执行超时时间（秒），0 表示无限制
+         */
+        private int timeoutSeconds = 600;
+    }
+
+    @Data
+    public static class Http {
+        /**
+         * 是否优先使用 HTTP/2（服务端不支持时自动回退 HTTP/1.1）
+         */
+        private boolean http2Enabled = true;
+
+        /**
+         * 处理异步响应的线程数，所有 OpenCode 请求共用
+         */
+        private int threads = 4;
+    }
+
+    @Data
+    public static class Breaker {
+        /**
+         * 连续失败多少次后熔断（连接失败、服务端 5xx）
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * 熔断持续时间（秒），期间请求直接失败，结束后放行一个试探请求
+         */
+        private int openSeconds = 30;
+    }
+
+    @Data
+    public static class Cache {
+        /**
+         * 会话列表（sessions）缓存时间（秒），0 表示不缓存
+         */
+        private int sessionsTtlSeconds = 10;
+
+        /**
+         * 项目列表（projects）缓存时间（秒）
+         */
+        private int projectsTtlSeconds = 60;
+
+        /**
+         * 斜杠命令列表（commands）缓存时间（秒）
+         */
+        private int commandsTtlSeconds = 300;
+
+        /**
+         * 服务状态（status）缓存时间（秒）
+         */
+        private int statusTtlSeconds = 5;
+    }
+
     // ===== 以下字段已废弃，仅用于兼容 CLI 模式 =====
 
     /**
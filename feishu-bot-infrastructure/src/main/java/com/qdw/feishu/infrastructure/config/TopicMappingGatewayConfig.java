@@ -0,0 +1,68 @@
+package com.qdw.feishu.infrastructure.config;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.infrastructure.gateway.ArchivingTopicMappingGateway;
+import com.qdw.feishu.infrastructure.gateway.CachingTopicMappingGateway;
+import com.qdw.feishu.infrastructure.gateway.TopicMappingArchive;
+import com.qdw.feishu.infrastructure.gateway.UnknownTopicCachingGateway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * 话题映射网关装配
+ *
+ * 具体存储（file / sqlite / mmap / jdbc）注册为 topicMappingStore，按配置由内向外包装：
+ * 存储 → 归档恢复（retention.enabled）→ 缓存（cache.enabled，含未知话题缓存），最外层作为首选的 TopicMappingGateway。
+ * 关闭缓存时仍单独装配未知话题缓存。
+ * jdbc 存储供多实例共享，本地缓存会让其他实例的写入长时间不可见，因此即使 cache.enabled 为 true
+ * 也不装配缓存和未知话题缓存，每次查询都访问数据库。
+ */
+@Configuration
+public class TopicMappingGatewayConfig {
+
+    private static final String JDBC = "'${feishu.topic-mapping.storage-type:sqlite}' == 'jdbc'";
+
+    private static final String CACHE_ENABLED = "${feishu.topic-mapping.cache.enabled:true} and !(" + JDBC + ")";
+
+    private static final String UNKNOWN_TOPIC_ONLY = "!${feishu.topic-mapping.cache.enabled:true} and !(" + JDBC + ")";
+
+    @Bean
+    @Primary
+    @ConditionalOnExpression(CACHE_ENABLED)
+    public CachingTopicMappingGateway cachingTopicMappingGateway(
+            @Qualifier("topicMappingStore") TopicMappingGateway store,
+            ObjectProvider<TopicMappingArchive> archive,
+            TopicMappingProperties properties) {
+        return new CachingTopicMappingGateway(withArchive(store, archive), properties.getCache(),
+            properties.getUnknownTopic());
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnExpression(UNKNOWN_TOPIC_ONLY)
+    public UnknownTopicCachingGateway unknownTopicCachingGateway(
+            @Qualifier("topicMappingStore") TopicMappingGateway store,
+            ObjectProvider<TopicMappingArchive> archive,
+            TopicMappingProperties properties) {
+        return new UnknownTopicCachingGateway(withArchive(store, archive), properties.getUnknownTopic());
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnExpression("(" + JDBC + ") and ${feishu.topic-mapping.retention.enabled:false}")
+    public ArchivingTopicMappingGateway archivingTopicMappingGateway(
+            @Qualifier("topicMappingStore") TopicMappingGateway store,
+            TopicMappingArchive archive) {
+        return new ArchivingTopicMappingGateway(store, archive);
+    }
+
+    private static TopicMappingGateway withArchive(TopicMappingGateway store,
+                                                   ObjectProvider<TopicMappingArchive> archive) {
+        TopicMappingArchive topicArchive = archive.getIfAvailable();
+        return topicArchive != null ? new ArchivingTopicMappingGateway(store, topicArchive) : store;
+    }
+}
@@ -0,0 +1,240 @@
+package com.qdw.feishu.infrastructure.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 话题映射存储配置属性
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "feishu.topic-mapping")
+public class TopicMappingProperties {
+
+    /**
+     * 存储类型：file, sqlite, mmap, jdbc
+     */
+    private String storageType = "sqlite";
+
+    /**
+     * 文件存储配置
+     */
+    private FileStore file = new FileStore();
+
+    /**
+     * SQLite 存储配置
+     */
+    private Sqlite sqlite = new Sqlite();
+
+    /**
+     * 内存映射 KV 存储配置
+     */
+    private Mmap mmap = new Mmap();
+
+    /**
+     * JDBC 存储配置（多实例共享）
+     */
+    private Jdbc jdbc = new Jdbc();
+
+    /**
+     * 读写缓存配置
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * 冷数据归档配置
+     */
+    private Retention retention = new Retention();
+
+    /**
+     * 未知话题（无映射）处理配置
+     */
+    private UnknownTopic unknownTopic = new UnknownTopic();
+
+    @Data
+    public static class FileStore {
+        /**
+         * 快照文件路径，变更日志写在同目录的 .log 文件中
+         */
+        private String path = "/tmp/feishu-topic-mappings.json";
+
+        /**
+         * 变更日志累计多少条记录后压缩为新快照
+         */
+        private int compactThreshold = 10000;
+
+        /**
+         * 每条变更记录写入后是否 fsync
+         */
+        private boolean syncOnWrite = false;
+    }
+
+    @Data
+    public static class Sqlite {
+        /**
+         * 数据库文件路径
+         */
+        private String path = "feishu-topic-mappings.db";
+
+        /**
+         * 日志模式：WAL 允许读写并发，DELETE 为 SQLite 默认模式
+         */
+        private String journalMode = "WAL";
+
+        /**
+         * 同步级别：WAL 模式下 NORMAL 只在检查点时 fsync，进程崩溃不丢数据
+         */
+        private String synchronous = "NORMAL";
+
+        /**
+         * 数据库被锁时的等待时间（毫秒）
+         */
+        private int busyTimeoutMs = 5000;
+
+        /**
+         * 写线程单个事务最多合并的写操作数
+         */
+        private int writeBatchSize = 256;
+
+        /**
+         * 写队列容量，写满时调用方阻塞等待
+         */
+        private int writeQueueCapacity = 10000;
+
+        /**
+         * 连接池最大连接数（含写线程占用的一个连接）
+         */
+        private int maxPoolSize = 4;
+    }
+
+    @Data
+    public static class Mmap {
+        /**
+         * 数据段文件目录
+         */
+        private String path = "data/topic-mapping-kv";
+
+        /**
+         * 单个数据段文件大小（字节）
+         */
+        private long segmentSize = 64L * 1024 * 1024;
+
+        /**
+         * 刷盘策略：none, batch, always
+         */
+        private String fsync = "batch";
+
+        /**
+         * batch 模式下的刷盘间隔（毫秒）
+         */
+        private long flushIntervalMs = 10;
+
+        /**
+         * 已写满的段中失效数据占比达到该值时压缩
+         */
+        private double compactGarbageRatio = 0.5;
+
+        /**
+         * 压缩检查间隔（秒）
+         */
+        private long compactIntervalSeconds = 60;
+    }
+
+    @Data
+    public static class Jdbc {
+        /**
+         * 连接地址，本地多进程可用 H2 的 AUTO_SERVER 模式或共享的 SQLite 文件
+         */
+        private String url = "jdbc:h2:file:./data/topic-mappings;AUTO_SERVER=TRUE";
+
+        /**
+         * 用户名
+         */
+        private String username = "sa";
+
+        /**
+         * 密码
+         */
+        private String password = "";
+
+        /**
+         * 驱动类名，为空时根据连接地址推断
+         */
+        private String driverClassName;
+
+        /**
+         * 连接池最大连接数
+         */
+        private int maxPoolSize = 10;
+    }
+
+    @Data
+    public static class Cache {
+        /**
+         * 是否启用缓存；storage-type 为 jdbc（多实例共享）时不生效，始终不装配缓存
+         */
+        private boolean enabled = true;
+
+        /**
+         * 最大缓存条目数，超出后按 LRU 淘汰
+         */
+        private int maxSize = 10000;
+
+        /**
+         * 缓存条目有效期（秒），过期后重新从存储加载
+         */
+        private long ttlSeconds = 600;
+
+        /**
+         * 脏数据批量回写间隔（毫秒）
+         */
+        private long flushIntervalMs = 1000;
+    }
+
+    @Data
+    public static class Retention {
+        /**
+         * 是否启用不活跃话题归档
+         */
+        private boolean enabled = false;
+
+        /**
+         * 话题不活跃超过该天数后移入归档
+         */
+        private int ttlDays = 90;
+
+        /**
+         * 归档扫描间隔（分钟）
+         */
+        private long sweepIntervalMinutes = 60;
+
+        /**
+         * 单次归档的最大条数，每批写成一个归档段
+         */
+        private int batchSize = 1000;
+
+        /**
+         * 归档段存放目录
+         */
+        private String archiveDir = "data/topic-archive";
+    }
+
+    @Data
+    public static class UnknownTopic {
+        /**
+         * 最多记住的未知话题数，超出后按 LRU 淘汰
+         */
+        private int maxSize = 10000;
+
+        /**
+         * 未命中结果的缓存时间（秒），期间同一话题的查询不访问存储；0 表示不缓存，jdbc 存储不启用
+         */
+        private long ttlSeconds = 300;
+
+        /**
+         * 同一话题"话题已失效"提示的最小发送间隔（秒）
+         */
+        private long replyIntervalSeconds = 600;
+    }
+}
@@ -0,0 +1,93 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 归档感知的话题映射装饰器
+ *
+ * 热数据未命中时查找冷数据归档，找到则写回热数据后返回，对调用方透明；
+ * 删除时同时在归档中记录，避免已删除的话题被再次恢复。
+ * 恢复按新话题条件插入，多个实例同时恢复同一话题时只有一个写入，其余读取已恢复的数据。
+ */
+@Slf4j
+public class ArchivingTopicMappingGateway implements TopicMappingGateway {
+
+    private final TopicMappingGateway delegate;
+    private final TopicMappingArchive archive;
+
+    public ArchivingTopicMappingGateway(TopicMappingGateway delegate, TopicMappingArchive archive) {
+        this.delegate = delegate;
+        this.archive = archive;
+    }
+
+    @Override
+    public void save(TopicMapping mapping) {
+        delegate.save(mapping);
+    }
+
+    @Override
+    public boolean compareAndSave(TopicMapping mapping) {
+        return delegate.compareAndSave(mapping);
+    }
+
+    @Override
+    public void saveAll(Collection<TopicMapping> mappings) {
+        delegate.saveAll(mappings);
+    }
+
+    @Override
+    public List<TopicMapping> compareAndSaveAll(Collection<TopicMapping> mappings) {
+        return delegate.compareAndSaveAll(mappings);
+    }
+
+    @Override
+    public Optional<TopicMapping> findByTopicId(String topicId) {
+        Optional<TopicMapping> hot = delegate.findByTopicId(topicId);
+        if (hot.isPresent()) {
+            return hot;
+        }
+
+        Optional<TopicMapping> archived = archive.find(topicId);
+        if (archived.isEmpty()) {
+            return archived;
+        }
+
+        TopicMapping mapping = archived.get();
+        mapping.setVersion(0);
+        if (!delegate.compareAndSave(mapping)) {
+            return delegate.findByTopicId(topicId);
+        }
+        log.info("话题映射已从归档恢复: topicId={}, appId={}", mapping.getTopicId(), mapping.getAppId());
+        return archived;
+    }
+
+    @Override
+    public void delete(String topicId) {
+        delegate.delete(topicId);
+        archive.forget(topicId);
+    }
+
+    @Override
+    public List<TopicMapping> findInactiveBefore(long cutoff, int limit) {
+        return delegate.findInactiveBefore(cutoff, limit);
+    }
+
+    /**
+     * 只读取热数据，归档段与存储类型无关，迁移存储时直接保留归档目录
+     */
+    @Override
+    public List<TopicMapping> scan(String afterTopicId, int limit) {
+        return delegate.scan(afterTopicId, limit);
+    }
+
+    @Override
+    public int deleteInactiveBefore(Collection<String> topicIds, long cutoff) {
+        return delegate.deleteInactiveBefore(topicIds, cutoff);
+    }
+}
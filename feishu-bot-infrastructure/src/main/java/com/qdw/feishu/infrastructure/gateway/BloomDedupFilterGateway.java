@@ -0,0 +1,297 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.DedupFilterGateway;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于轮转布隆过滤器的持久化去重
+ *
+ * 结构：
+ * - 若干代布隆过滤器组成环，新事件写入当前代，查询检查所有代
+ * - 每代覆盖 window / (generations - 1) 的时间，到期后清空最旧的一代作为新的当前代，
+ *   因此事件至少保留一个完整窗口
+ * - 位数组直接存放在内存映射文件中，后台周期性 force 落盘，重启时原样恢复
+ *
+ * 文件格式：
+ * [int 魔数][int 代数][long 每代位数][int 哈希函数个数][long 每代时长][int 当前代]
+ * [long × 代数 各代起始时间][位数组 × 代数]
+ *
+ * 配置（每代预计写入量、误判率、窗口、代数）变化导致位数组尺寸不一致时，丢弃旧文件重新创建。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "feishu.dedup.bloom.enabled", havingValue = "true")
+public class BloomDedupFilterGateway implements DedupFilterGateway {
+
+    private static final int MAGIC = 0x424C4D31;
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_GENERATIONS = 4;
+    private static final int OFFSET_BITS = 8;
+    private static final int OFFSET_HASHES = 16;
+    private static final int OFFSET_SPAN = 20;
+    private static final int OFFSET_CURRENT = 28;
+    private static final int OFFSET_STARTS = 32;
+
+    private final Path path;
+    private final int generations;
+    private final long bitsPerGeneration;
+    private final int hashFunctions;
+    private final long generationSpanMillis;
+    private final long flushIntervalMs;
+
+    private final int bitsOffset;
+    private final int wordsPerGeneration;
+    private final Object writeLock = new Object();
+
+    private MappedByteBuffer buffer;
+    private volatile int current;
+    private volatile boolean dirty;
+    private ScheduledExecutorService flusher;
+
+    public BloomDedupFilterGateway(
+            @Value("${feishu.dedup.bloom.path:data/dedup.bloom}") String path,
+            @Value("${feishu.dedup.bloom.window-minutes:30}") long windowMinutes,
+            @Value("${feishu.dedup.bloom.generations:3}") int generations,
+            @Value("${feishu.dedup.bloom.expected-insertions:100000}") long expectedInsertions,
+            @Value("${feishu.dedup.bloom.fpp:0.000001}") double fpp,
+            @Value("${feishu.dedup.bloom.flush-interval-ms:1000}") long flushIntervalMs) {
+        if (generations < 2) {
+            throw new IllegalArgumentException("feishu.dedup.bloom.generations must be >= 2: " + generations);
+        }
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("feishu.dedup.bloom.fpp must be in (0, 1): " + fpp);
+        }
+
+        this.path = Paths.get(path);
+        this.generations = generations;
+        this.generationSpanMillis = Math.max(1, TimeUnit.MINUTES.toMillis(windowMinutes) / (generations - 1));
+        this.flushIntervalMs = Math.max(100, flushIntervalMs);
+
+        // m = -n·ln(p) / (ln2)^2，k = m/n·ln2；位数按 64 对齐
+        long n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.bitsPerGeneration = ((bits + 63) / 64) * 64;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitsPerGeneration / n * Math.log(2)));
+        this.wordsPerGeneration = (int) (bitsPerGeneration / 64);
+        this.bitsOffset = OFFSET_STARTS + 8 * generations;
+    }
+
+    @PostConstruct
+    public void init() {
+        long fileSize = bitsOffset + (long) generations * wordsPerGeneration * 8;
+        try {
+            if (this.path.getParent() != null) {
+                Files.createDirectories(this.path.getParent());
+            }
+            boolean exists = Files.exists(this.path) && Files.size(this.path) == fileSize;
+            try (FileChannel channel = FileChannel.open(this.path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (!exists) {
+                    channel.truncate(0);
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to map dedup bloom file: " + this.path, e);
+        }
+
+        if (headerMatches()) {
+            current = buffer.getInt(OFFSET_CURRENT);
+            log.info("Dedup bloom filter restored: path={}, generations={}, bitsPerGeneration={}, hashes={}",
+                path.toAbsolutePath(), generations, bitsPerGeneration, hashFunctions);
+        } else {
+            resetFile();
+            log.info("Dedup bloom filter created: path={}, generations={}, bitsPerGeneration={}, hashes={}",
+                path.toAbsolutePath(), generations, bitsPerGeneration, hashFunctions);
+        }
+        rotateIfNeeded(System.currentTimeMillis());
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dedup-bloom-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean mightContain(String eventId) {
+        rotateIfNeeded(System.currentTimeMillis());
+        long hash = hash64(eventId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int g = 0; g < generations; g++) {
+            if (generationContains(g, h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void put(String eventId) {
+        long now = System.currentTimeMillis();
+        rotateIfNeeded(now);
+        long hash = hash64(eventId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        synchronized (writeLock) {
+            int base = bitsOffset + current * wordsPerGeneration * 8;
+            for (int i = 1; i <= hashFunctions; i++) {
+                long bit = bitIndex(h1, h2, i);
+                int offset = base + (int) (bit >>> 6) * 8;
+                long word = buffer.getLong(offset);
+                long mask = 1L << (bit & 63);
+                if ((word & mask) == 0) {
+                    buffer.putLong(offset, word | mask);
+                }
+            }
+            dirty = true;
+        }
+    }
+
+    private boolean generationContains(int generation, int h1, int h2) {
+        int base = bitsOffset + generation * wordsPerGeneration * 8;
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = bitIndex(h1, h2, i);
+            long word = buffer.getLong(base + (int) (bit >>> 6) * 8);
+            if ((word & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 双重哈希生成第 i 个位下标（Kirsch-Mitzenmacher）
+     */
+    private long bitIndex(int h1, int h2, int i) {
+        int combined = h1 + i * h2;
+        if (combined < 0) {
+            combined = ~combined;
+        }
+        return combined % bitsPerGeneration;
+    }
+
+    /**
+     * 当前代到期后清空最旧的一代并切换过去；长时间停机后启动会连续轮转
+     */
+    private void rotateIfNeeded(long now) {
+        int gen = current;
+        if (now - buffer.getLong(OFFSET_STARTS + gen * 8) < generationSpanMillis) {
+            return;
+        }
+        synchronized (writeLock) {
+            for (int i = 0; i < generations; i++) {
+                long start = buffer.getLong(OFFSET_STARTS + current * 8);
+                if (now - start < generationSpanMillis) {
+                    break;
+                }
+                int next = (current + 1) % generations;
+                clearGeneration(next);
+                // 停机期间跳过的时间按整代推进，避免新一代起始时间落后
+                long nextStart = start + generationSpanMillis;
+                if (now - nextStart >= generationSpanMillis) {
+                    nextStart = now;
+                }
+                buffer.putLong(OFFSET_STARTS + next * 8, nextStart);
+                buffer.putInt(OFFSET_CURRENT, next);
+                current = next;
+                dirty = true;
+            }
+        }
+    }
+
+    private void clearGeneration(int generation) {
+        int base = bitsOffset + generation * wordsPerGeneration * 8;
+        for (int w = 0; w < wordsPerGeneration; w++) {
+            buffer.putLong(base + w * 8, 0L);
+        }
+    }
+
+    private boolean headerMatches() {
+        return buffer.getInt(OFFSET_MAGIC) == MAGIC
+            && buffer.getInt(OFFSET_GENERATIONS) == generations
+            && buffer.getLong(OFFSET_BITS) == bitsPerGeneration
+            && buffer.getInt(OFFSET_HASHES) == hashFunctions
+            && buffer.getLong(OFFSET_SPAN) == generationSpanMillis
+            && buffer.getInt(OFFSET_CURRENT) >= 0
+            && buffer.getInt(OFFSET_CURRENT) < generations;
+    }
+
+    private void resetFile() {
+        for (int g = 0; g < generations; g++) {
+            clearGeneration(g);
+            buffer.putLong(OFFSET_STARTS + g * 8, 0L);
+        }
+        buffer.putLong(OFFSET_STARTS, System.currentTimeMillis());
+        buffer.putInt(OFFSET_GENERATIONS, generations);
+        buffer.putLong(OFFSET_BITS, bitsPerGeneration);
+        buffer.putInt(OFFSET_HASHES, hashFunctions);
+        buffer.putLong(OFFSET_SPAN, generationSpanMillis);
+        buffer.putInt(OFFSET_CURRENT, 0);
+        buffer.putInt(OFFSET_MAGIC, MAGIC);
+        current = 0;
+        buffer.force();
+    }
+
+    private void flush() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            buffer.force();
+        } catch (Exception e) {
+            log.warn("Failed to flush dedup bloom filter", e);
+        }
+    }
+
+    /**
+     * 64 位字符串哈希：FNV-1a 累积后用 MurmurHash3 的 fmix64 打散
+     */
+    private static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
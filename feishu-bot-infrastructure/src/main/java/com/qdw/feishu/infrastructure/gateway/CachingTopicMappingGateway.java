@@ -0,0 +1,513 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 话题映射缓存装饰器
+ *
+ * 职责：
+ * - 读：有界 LRU 缓存 + TTL 过期，命中时不访问底层存储
+ * - 写：新建映射、应用变更或元数据（如 OpenCode 会话 ID）变化时同步写入底层存储，进程崩溃不会丢失会话绑定；
+ *   只有已缓存映射的活跃时间更新（lastActiveAt）记入内存脏表，
+ *   由后台线程按 flush-interval-ms 批量条件回写（compareAndSaveAll，按版本比较）；
+ *   存储中的版本已被其他写入者推进时，读取最新版本并把脏数据的活跃时间和 metadata 修改重放上去，
+ *   不会覆盖回写期间发生的更新
+ * - 未命中：记住不存在映射的话题（有界 LRU + TTL），期间重复查询不访问底层存储；
+ *   save 该话题时立即失效
+ * - 条件写入（compareAndSave）：该话题有基于同一版本的脏数据时，把调用方的修改合并到脏数据上一次条件写入，
+ *   不先盲写；冲突时丢弃缓存条目并把脏数据重放到最新版本上，调用方重试时从存储读取最新版本
+ * - 统计命中率和回写延迟
+ *
+ * 多个实例共享同一存储时，其他实例的写入在本地缓存过期前不可见，条件写入会因此冲突并重读；
+ * 未知话题缓存期间其他实例新建的话题也查不到，因此 jdbc（多实例共享）存储不装配缓存。
+ *
+ * 缓存中存放的是副本，调用方修改返回的对象不会影响缓存，直到显式 save。
+ */
+@Slf4j
+public class CachingTopicMappingGateway implements TopicMappingGateway {
+
+    private final TopicMappingGateway delegate;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long flushIntervalMs;
+
+    /** LRU 缓存，受自身锁保护 */
+    private final LinkedHashMap<String, CacheEntry> cache;
+    /** 已确认不存在映射的话题，与 cache 共用同一把锁 */
+    private final LinkedHashMap<String, UnknownEntry> unknown;
+    private final int unknownMaxSize;
+    private final long unknownTtlMillis;
+    /** 待回写的脏数据，回写完成前是该话题的最新状态 */
+    private final Map<String, DirtyEntry> dirty = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder unknownHits = new LongAdder();
+    private final LongAdder flushedEntries = new LongAdder();
+    private volatile long lastFlushLagMillis;
+
+    private ScheduledExecutorService flusher;
+
+    public CachingTopicMappingGateway(TopicMappingGateway delegate,
+                                      TopicMappingProperties.Cache config,
+                                      TopicMappingProperties.UnknownTopic unknownConfig) {
+        this.delegate = delegate;
+        this.maxSize = Math.max(1, config.getMaxSize());
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(1, config.getTtlSeconds()));
+        this.flushIntervalMs = Math.max(10, config.getFlushIntervalMs());
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.unknownMaxSize = Math.max(1, unknownConfig.getMaxSize());
+        this.unknownTtlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, unknownConfig.getTtlSeconds()));
+        this.unknown = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UnknownEntry> eldest) {
+                return size() > unknownMaxSize;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "topic-mapping-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("话题映射缓存已启用: maxSize={}, ttl={}ms, flushInterval={}ms", maxSize, ttlMillis, flushIntervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
+        log.info("话题映射缓存已关闭，脏数据已回写");
+    }
+
+    @Override
+    public void save(TopicMapping mapping) {
+        String topicId = mapping.getTopicId();
+        TopicMapping copy = copyOf(mapping);
+        long now = System.currentTimeMillis();
+
+        CacheEntry cached;
+        synchronized (cache) {
+            unknown.remove(topicId);
+            cached = cache.get(topicId);
+            cache.put(topicId, new CacheEntry(copy, now));
+        }
+
+        boolean knownMapping = cached != null && cached.mapping.getAppId().equals(copy.getAppId());
+        if (knownMapping) {
+            // 整体覆盖语义：以缓存中已知的最新存储版本为回写基准，避免调用方持有旧副本时回写必然冲突
+            copy.setVersion(cached.mapping.getVersion());
+            dirty.merge(topicId, new DirtyEntry(copy, now),
+                (existing, latest) -> new DirtyEntry(latest.mapping, existing.dirtySince));
+            if (metadataChanged(copy, cached.mapping)) {
+                // 元数据变化不等后台回写，随同已积累的活跃时间一起立即条件写入
+                flush(topicId);
+            }
+        } else {
+            // 新话题或应用变更，同步写入，保证重启后映射不丢
+            dirty.remove(topicId);
+            delegate.save(copy);
+            // 存储在写入时推进了版本，缓存中的副本版本已过期，下次读取时重新加载
+            synchronized (cache) {
+                CacheEntry saved = cache.get(topicId);
+                if (saved != null && saved.mapping == copy) {
+                    cache.remove(topicId);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean compareAndSave(TopicMapping mapping) {
+        String topicId = mapping.getTopicId();
+        DirtyEntry pending = dirty.get(topicId);
+        boolean merged = pending != null && pending.mapping.getVersion() == mapping.getVersion();
+
+        TopicMapping copy;
+        if (merged) {
+            // 未回写的修改与本次修改基于同一版本：合并后一次条件写入，存储中的版本不会被提前推进
+            copy = copyOf(pending.mapping);
+            copy.setAppId(mapping.getAppId());
+            replay(copy, mapping);
+        } else {
+            copy = copyOf(mapping);
+        }
+
+        boolean saved = delegate.compareAndSave(copy);
+        if (saved) {
+            if (merged) {
+                dirty.remove(topicId, pending);
+            }
+            synchronized (cache) {
+                unknown.remove(topicId);
+                cache.put(topicId, new CacheEntry(copy, System.currentTimeMillis()));
+            }
+            if (merged) {
+                mapping.setLastActiveAt(copy.getLastActiveAt());
+                mapping.setMetadata(copy.getMetadata());
+            }
+            mapping.setVersion(copy.getVersion());
+            mapping.markMetadataPersisted();
+            return true;
+        }
+
+        synchronized (cache) {
+            cache.remove(topicId);
+        }
+        if (pending != null) {
+            // 存储已被其他写入者推进，脏数据也随之过期：重放到最新版本上，调用方重试时读到的才是最新状态
+            rebase(topicId, pending);
+        }
+        return false;
+    }
+
+    @Override
+    public Optional<TopicMapping> findByTopicId(String topicId) {
+        long now = System.currentTimeMillis();
+        UnknownEntry lookup = null;
+        synchronized (cache) {
+            CacheEntry entry = cache.get(topicId);
+            if (entry != null && now - entry.loadedAt < ttlMillis) {
+                hits.increment();
+                return Optional.of(copyOf(entry.mapping));
+            }
+            UnknownEntry known = unknown.get(topicId);
+            if (known != null && known.confirmedAt >= 0 && now - known.confirmedAt < unknownTtlMillis) {
+                unknownHits.increment();
+                return Optional.empty();
+            }
+            if (unknownTtlMillis > 0 && !dirty.containsKey(topicId)) {
+                // 先占位：查询期间若有 save，占位会被移除，未命中结果不会被记下
+                lookup = new UnknownEntry(-1);
+                unknown.put(topicId, lookup);
+            }
+        }
+
+        DirtyEntry pending = dirty.get(topicId);
+        if (pending != null) {
+            hits.increment();
+            cachePut(topicId, pending.mapping, now);
+            return Optional.of(copyOf(pending.mapping));
+        }
+
+        misses.increment();
+        Optional<TopicMapping> loaded = delegate.findByTopicId(topicId);
+        if (loaded.isPresent()) {
+            cachePut(topicId, copyOf(loaded.get()), now);
+        }
+        if (lookup != null) {
+            synchronized (cache) {
+                if (loaded.isPresent()) {
+                    unknown.remove(topicId, lookup);
+                } else {
+                    unknown.replace(topicId, lookup, new UnknownEntry(now));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public void delete(String topicId) {
+        synchronized (cache) {
+            cache.remove(topicId);
+        }
+        dirty.remove(topicId);
+        delegate.delete(topicId);
+    }
+
+    /**
+     * 先回写脏数据，存储中的活跃时间才是最新的，刚活跃过的话题不会被当作不活跃
+     */
+    @Override
+    public List<TopicMapping> findInactiveBefore(long cutoff, int limit) {
+        flush();
+        return delegate.findInactiveBefore(cutoff, limit);
+    }
+
+    /**
+     * 先回写脏数据，保证分页读取到的是最新状态
+     */
+    @Override
+    public List<TopicMapping> scan(String afterTopicId, int limit) {
+        flush();
+        return delegate.scan(afterTopicId, limit);
+    }
+
+    /**
+     * 有未回写修改的话题刚刚活跃过，不删除；删除后失效缓存，已归档的话题不再从缓存返回或被回写
+     */
+    @Override
+    public int deleteInactiveBefore(Collection<String> topicIds, long cutoff) {
+        List<String> inactive = topicIds.stream()
+            .filter(topicId -> !dirty.containsKey(topicId))
+            .toList();
+        int deleted = delegate.deleteInactiveBefore(inactive, cutoff);
+        synchronized (cache) {
+            inactive.forEach(topicId -> {
+                if (!dirty.containsKey(topicId)) {
+                    cache.remove(topicId);
+                }
+            });
+        }
+        return deleted;
+    }
+
+    /**
+     * 将脏数据批量条件回写到底层存储
+     * 回写的是副本，版本冲突的条目重放到最新版本上；回写期间被再次修改的条目保留，等待下一轮
+     */
+    public void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<TopicMapping> batch = new ArrayList<>(dirty.size());
+        List<Map.Entry<String, DirtyEntry>> taken = new ArrayList<>(dirty.size());
+        long oldest = now;
+        for (Map.Entry<String, DirtyEntry> entry : dirty.entrySet()) {
+            batch.add(copyOf(entry.getValue().mapping));
+            taken.add(Map.entry(entry.getKey(), entry.getValue()));
+            oldest = Math.min(oldest, entry.getValue().dirtySince);
+        }
+
+        Set<TopicMapping> conflicts = Collections.newSetFromMap(new IdentityHashMap<>());
+        conflicts.addAll(delegate.compareAndSaveAll(batch));
+
+        for (int i = 0; i < taken.size(); i++) {
+            Map.Entry<String, DirtyEntry> entry = taken.get(i);
+            if (conflicts.contains(batch.get(i))) {
+                rebase(entry.getKey(), entry.getValue());
+            } else {
+                onFlushed(entry.getKey(), entry.getValue(), batch.get(i));
+            }
+        }
+        flushedEntries.add(batch.size());
+        lastFlushLagMillis = now - oldest;
+        log.debug("话题映射脏数据已回写: {} 条, 冲突 {} 条, 最大延迟 {}ms",
+            batch.size(), conflicts.size(), lastFlushLagMillis);
+    }
+
+    /**
+     * 立即回写单个话题的脏数据，冲突时与批量回写一样重放到最新版本上
+     */
+    private void flush(String topicId) {
+        DirtyEntry entry = dirty.get(topicId);
+        if (entry == null) {
+            return;
+        }
+        TopicMapping written = copyOf(entry.mapping);
+        if (delegate.compareAndSave(written)) {
+            onFlushed(topicId, entry, written);
+        } else {
+            rebase(topicId, entry);
+        }
+    }
+
+    /**
+     * 跟踪了修改记录时按记录判断，否则与缓存中的版本比较整个 metadata
+     */
+    private static boolean metadataChanged(TopicMapping mapping, TopicMapping cached) {
+        if (mapping.isMetadataTracked()) {
+            return !mapping.getMetadataChanges().isEmpty();
+        }
+        return !Objects.equals(mapping.getMetadata(), cached.getMetadata());
+    }
+
+    /**
+     * 回写冲突：其他实例或绕过缓存的写入推进了存储中的版本。
+     * 读取最新版本，重放脏数据的活跃时间和 metadata 修改后再条件写入；话题已删除或改绑其他应用时丢弃脏数据
+     */
+    private void rebase(String topicId, DirtyEntry entry) {
+        for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+            Optional<TopicMapping> latest = delegate.findByTopicId(topicId);
+            if (latest.isEmpty() || !latest.get().getAppId().equals(entry.mapping.getAppId())) {
+                log.info("话题映射已被删除或改绑，丢弃未回写的修改: topicId={}", topicId);
+                discard(topicId, entry);
+                return;
+            }
+            TopicMapping merged = latest.get();
+            replay(merged, entry.mapping);
+            if (delegate.compareAndSave(merged)) {
+                log.debug("话题映射回写冲突，已合并到最新版本: topicId={}, version={}", topicId, merged.getVersion());
+                onFlushed(topicId, entry, merged);
+                return;
+            }
+        }
+        log.warn("话题映射回写持续冲突，保留到下一轮: topicId={}", topicId);
+    }
+
+    /**
+     * 回写成功：脏数据未被再次修改时移出脏表，并用带新版本号的副本替换缓存条目
+     */
+    private void onFlushed(String topicId, DirtyEntry entry, TopicMapping written) {
+        if (!dirty.remove(topicId, entry)) {
+            return;
+        }
+        synchronized (cache) {
+            CacheEntry cached = cache.get(topicId);
+            if (cached != null && cached.mapping == entry.mapping) {
+                cache.put(topicId, new CacheEntry(written, cached.loadedAt));
+            }
+        }
+    }
+
+    private void discard(String topicId, DirtyEntry entry) {
+        if (!dirty.remove(topicId, entry)) {
+            return;
+        }
+        synchronized (cache) {
+            CacheEntry cached = cache.get(topicId);
+            if (cached != null && cached.mapping == entry.mapping) {
+                cache.remove(topicId);
+            }
+        }
+    }
+
+    /**
+     * 把 change 上的活跃时间和 metadata 修改重放到 target 上；metadata 未跟踪修改时整体替换
+     */
+    private static void replay(TopicMapping target, TopicMapping change) {
+        target.setLastActiveAt(Math.max(target.getLastActiveAt(), change.getLastActiveAt()));
+        if (change.isMetadataTracked()) {
+            target.applyMetadataChanges(change.getMetadataChanges());
+        } else {
+            target.setMetadata(change.getMetadata());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("话题映射脏数据回写失败，将在下一轮重试", e);
+        }
+    }
+
+    private void cachePut(String topicId, TopicMapping mapping, long now) {
+        synchronized (cache) {
+            cache.put(topicId, new CacheEntry(mapping, now));
+        }
+    }
+
+    /**
+     * 缓存命中率
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 命中未知话题缓存、未访问底层存储的查询次数
+     */
+    public long getUnknownHitCount() {
+        return unknownHits.sum();
+    }
+
+    public int getUnknownTopicCount() {
+        synchronized (cache) {
+            return unknown.size();
+        }
+    }
+
+    public int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int getDirtyCount() {
+        return dirty.size();
+    }
+
+    public long getFlushedCount() {
+        return flushedEntries.sum();
+    }
+
+    /**
+     * 上一次回写时最旧脏数据的等待时长
+     */
+    public long getLastFlushLagMillis() {
+        return lastFlushLagMillis;
+    }
+
+    /**
+     * 当前最旧脏数据已等待的时长
+     */
+    public long getCurrentFlushLagMillis() {
+        long now = System.currentTimeMillis();
+        long oldest = now;
+        for (DirtyEntry entry : dirty.values()) {
+            oldest = Math.min(oldest, entry.dirtySince);
+        }
+        return now - oldest;
+    }
+
+    /**
+     * 副本保留 metadata 的解析结果和修改记录，回写时存储仍可增量更新
+     */
+    private static TopicMapping copyOf(TopicMapping source) {
+        return source.copy();
+    }
+
+    private record CacheEntry(TopicMapping mapping, long loadedAt) {
+    }
+
+    /**
+     * 未知话题记录；confirmedAt 为负表示查询进行中的占位。
+     * 不使用 record，以便按引用判断占位是否仍是同一个
+     */
+    private static final class UnknownEntry {
+        private final long confirmedAt;
+
+        private UnknownEntry(long confirmedAt) {
+            this.confirmedAt = confirmedAt;
+        }
+    }
+
+    private record DirtyEntry(TopicMapping mapping, long dirtySince) {
+    }
+}
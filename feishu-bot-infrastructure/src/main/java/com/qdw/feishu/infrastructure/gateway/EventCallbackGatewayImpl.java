@@ -0,0 +1,111 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.lark.oapi.core.request.EventReq;
+import com.lark.oapi.core.response.EventResp;
+import com.lark.oapi.event.EventDispatcher;
+import com.lark.oapi.service.im.ImService;
+import com.lark.oapi.service.im.v1.model.P2MessageReceiveV1;
+import com.qdw.feishu.domain.gateway.EventCallbackGateway;
+import com.qdw.feishu.domain.gateway.EventCallbackResponse;
+import com.qdw.feishu.domain.gateway.MessageEventParser;
+import com.qdw.feishu.domain.message.Message;
+import com.qdw.feishu.infrastructure.config.FeishuProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * 飞书事件回调网关实现
+ *
+ * 复用 SDK 的 EventDispatcher 完成签名校验、encrypt-key 解密、
+ * verification-token 校验以及 url_verification challenge 响应，
+ * 解析出的消息交给与长连接模式相同的 MessageEventParser 和下游处理器。
+ *
+ * 应答状态码决定飞书是否重新投递：
+ * - 事件无法解析或不符合领域规则（如消息内容为空、超长）时重投也不会成功，记录日志后应答 200
+ * - 下游拒绝接收（准入控制限流、处理通道已满）时应答 503，由飞书按其重试策略重新投递
+ * - 其他异常应答 500
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "feishu.mode", havingValue = "webhook")
+public class EventCallbackGatewayImpl implements EventCallbackGateway {
+
+    private static final String CONTENT_TYPE_JSON = "application/json; charset=utf-8";
+
+    private final EventDispatcher eventDispatcher;
+    private final MessageEventParser messageEventParser;
+    private volatile Consumer<Message> messageHandler;
+
+    public EventCallbackGatewayImpl(FeishuProperties properties,
+                                    MessageEventParser messageEventParser) {
+        this.messageEventParser = messageEventParser;
+
+        this.eventDispatcher = EventDispatcher.newBuilder(
+            properties.getVerificationToken(),
+            properties.getEncryptKey()
+        ).onP2MessageReceiveV1(new ImService.P2MessageReceiveV1Handler() {
+            @Override
+            public void handle(P2MessageReceiveV1 event) throws Exception {
+                log.info("Received message event via webhook");
+
+                Consumer<Message> handler = messageHandler;
+                if (handler == null) {
+                    log.warn("No message handler registered, dropping webhook event");
+                    return;
+                }
+                // 使用防腐层解析事件；同一事件重新投递后解析结果相同，失败时不要求重投
+                Message message;
+                try {
+                    message = messageEventParser.parse(event);
+                } catch (Exception e) {
+                    log.warn("Dropping unprocessable webhook event: {}", e.getMessage());
+                    return;
+                }
+                handler.accept(message);
+            }
+        }).build();
+    }
+
+    @Override
+    public void registerMessageHandler(Consumer<Message> messageHandler) {
+        this.messageHandler = messageHandler;
+    }
+
+    @Override
+    public EventCallbackResponse handle(String path, Map<String, List<String>> headers, byte[] body) {
+        EventReq eventReq = new EventReq();
+        eventReq.setHttpPath(path);
+        eventReq.setHeaders(headers);
+        eventReq.setBody(body);
+
+        try {
+            EventResp eventResp = eventDispatcher.handle(eventReq);
+            return new EventCallbackResponse(
+                eventResp.getStatusCode(),
+                CONTENT_TYPE_JSON,
+                eventResp.getBody()
+            );
+        } catch (RejectedExecutionException e) {
+            log.warn("Feishu event callback rejected, asking for redelivery: {}", e.getMessage());
+            return error(503, e);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // SDK 的 handle 声明抛出 Throwable；Error 不拦截，其余异常应答 500 让飞书重新投递
+            log.error("Failed to handle Feishu event callback", e);
+            return error(500, e);
+        }
+    }
+
+    private static EventCallbackResponse error(int statusCode, Throwable e) {
+        String body = "{\"msg\":\"" + e.getClass().getSimpleName() + "\"}";
+        return new EventCallbackResponse(statusCode, CONTENT_TYPE_JSON, body.getBytes(StandardCharsets.UTF_8));
+    }
+}
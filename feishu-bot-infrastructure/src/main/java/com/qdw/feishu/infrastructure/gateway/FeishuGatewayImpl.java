@@ -13,6 +13,9 @@ import com.lark.oapi.service.im.v1.model.ListMessageReq;
 import com.lark.oapi.service.im.v1.model.ListMessageResp;
 import com.lark.oapi.service.im.v1.model.ReplyMessageReq;
 import com.lark.oapi.service.im.v1.model.ReplyMessageResp;
+import com.lark.oapi.service.im.v1.model.UpdateMessageReq;
+import com.lark.oapi.service.im.v1.model.UpdateMessageReqBody;
+import com.lark.oapi.service.im.v1.model.UpdateMessageResp;
 import com.qdw.feishu.domain.config.FeishuConfig;
 import com.qdw.feishu.domain.gateway.FeishuGateway;
 import com.qdw.feishu.domain.gateway.UserInfo;
@@ -180,6 +183,42 @@ public class FeishuGatewayImpl implements FeishuGateway {
         });
     }
 
+    @Override
+    public SendResult updateMessage(String messageId, String content) {
+        log.debug("Updating message: messageId={}, length={}", messageId, content.length());
+
+        return executeWithRetry("updateMessage", () -> {
+            try {
+                Map<String, String> textContent = new HashMap<>();
+                textContent.put("text", content);
+                String jsonContent = objectMapper.writeValueAsString(textContent);
+
+                UpdateMessageReq req = UpdateMessageReq.newBuilder()
+                    .messageId(messageId)
+                    .updateMessageReqBody(UpdateMessageReqBody.newBuilder()
+                        .msgType("text")
+                        .content(jsonContent)
+                        .build())
+                    .build();
+
+                UpdateMessageResp resp = httpClient.im().message().update(req);
+
+                if (resp.getCode() != 0) {
+                    // 编辑次数用尽、消息已撤回等情况由调用方改发新消息，不作为异常
+                    log.warn("Failed to update message: messageId={}, code={}, msg={}",
+                             messageId, resp.getCode(), resp.getMsg());
+                    return SendResult.failure(resp.getMsg());
+                }
+
+                return SendResult.success(messageId);
+
+            } catch (Exception e) {
+                log.error("Exception updating message", e);
+                throw new SysException("UPDATE_ERROR", "update message failed", e);
+            }
+        });
+    }
+
     /**
      * 创建新话题（发送消息到会话）
      */
@@ -0,0 +1,76 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.lark.oapi.ws.Client;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * 飞书 SDK 长连接客户端的关闭器
+ *
+ * SDK（oapi-sdk 2.5.x）未公开关闭方法，只能通过反射调用内部的 disconnect() 或关闭底层连接 conn。
+ * 内部成员在类加载时解析一次：SDK 升级导致成员不存在时 {@link #isSupported()} 返回 false，
+ * 关闭退化为空操作并只告警一次，不会在每次重连时静默失败。
+ */
+@Slf4j
+final class LarkWsClientCloser {
+
+    private static final Method DISCONNECT = findDisconnect();
+    private static final Field CONN = findConn();
+
+    private LarkWsClientCloser() {
+    }
+
+    static {
+        if (!isSupported()) {
+            log.warn("Feishu SDK ws.Client has no accessible disconnect()/conn, "
+                + "WebSocket clients cannot be closed explicitly and rely on SDK reconnect");
+        }
+    }
+
+    /**
+     * 当前 SDK 版本是否支持显式关闭客户端
+     */
+    static boolean isSupported() {
+        return DISCONNECT != null || CONN != null;
+    }
+
+    /**
+     * 关闭客户端，失败只记录日志
+     */
+    static void close(Client client) {
+        try {
+            if (DISCONNECT != null) {
+                DISCONNECT.invoke(client);
+            } else if (CONN != null) {
+                Object conn = CONN.get(client);
+                if (conn != null) {
+                    conn.getClass().getMethod("close", int.class, String.class).invoke(conn, 1000, "reconnect");
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Failed to close WebSocket client: {}", e.toString());
+        }
+    }
+
+    private static Method findDisconnect() {
+        try {
+            Method method = Client.class.getDeclaredMethod("disconnect");
+            method.setAccessible(true);
+            return method;
+        } catch (NoSuchMethodException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Field findConn() {
+        try {
+            Field field = Client.class.getDeclaredField("conn");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            return null;
+        }
+    }
+}
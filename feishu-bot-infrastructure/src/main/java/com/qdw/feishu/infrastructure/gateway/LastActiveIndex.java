@@ -0,0 +1,66 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 按最后活跃时间排序的话题索引
+ *
+ * 供内存索引型存储（file、mmap）查找不活跃话题：只遍历早于阈值的部分，不需要全量扫描再排序。
+ * 写入由调用方串行化（持有存储的写锁，或在加载期间）；读取可以与写入并发，
+ * 返回的话题 ID 可能已被修改或删除，调用方需读取映射后复核活跃时间。
+ */
+final class LastActiveIndex {
+
+    private final Map<String, Long> lastActiveAt = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> ordered = new ConcurrentSkipListSet<>();
+
+    void put(String topicId, long time) {
+        Long previous = lastActiveAt.put(topicId, time);
+        if (previous != null && previous == time) {
+            return;
+        }
+        ordered.add(new Entry(time, topicId));
+        if (previous != null) {
+            ordered.remove(new Entry(previous, topicId));
+        }
+    }
+
+    void remove(String topicId) {
+        Long previous = lastActiveAt.remove(topicId);
+        if (previous != null) {
+            ordered.remove(new Entry(previous, topicId));
+        }
+    }
+
+    void clear() {
+        lastActiveAt.clear();
+        ordered.clear();
+    }
+
+    /**
+     * 最后活跃时间早于 cutoff 的话题 ID，按活跃时间升序
+     */
+    List<String> before(long cutoff, int limit) {
+        List<String> topicIds = new ArrayList<>(Math.min(limit, 1024));
+        for (Entry entry : ordered.headSet(new Entry(cutoff, ""), false)) {
+            if (topicIds.size() >= limit) {
+                break;
+            }
+            topicIds.add(entry.topicId);
+        }
+        return topicIds;
+    }
+
+    private record Entry(long time, String topicId) implements Comparable<Entry> {
+
+        @Override
+        public int compareTo(Entry other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : topicId.compareTo(other.topicId);
+        }
+    }
+}
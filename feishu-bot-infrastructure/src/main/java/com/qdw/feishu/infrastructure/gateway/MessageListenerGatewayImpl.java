@@ -22,7 +22,7 @@ public class MessageListenerGatewayImpl implements MessageListenerGateway {
     private final FeishuProperties properties;
     private final EventDispatcher eventDispatcher;
     private final MessageEventParser messageEventParser;
-    private Client wsClient;
+    private volatile WsConnectionSupervisor supervisor;
 
     private final AtomicReference<ConnectionStatus> connectionStatus;
     private final AtomicBoolean running;
@@ -55,57 +55,70 @@ public class MessageListenerGatewayImpl implements MessageListenerGateway {
     @Override
     public synchronized void startListening(Consumer<Message> messageHandler) {
         ConnectionStatus currentStatus = connectionStatus.get();
-        if (currentStatus == ConnectionStatus.CONNECTED || currentStatus == ConnectionStatus.CONNECTING) {
+        if (currentStatus != ConnectionStatus.DISCONNECTED) {
             log.warn("Listener already started, status: {}", currentStatus);
             return;
         }
 
         this.messageHandler = messageHandler;
         running.set(true);
-        connectionStatus.set(ConnectionStatus.CONNECTING);
-
-        try {
-            wsClient = new Client.Builder(
-                properties.getAppId(),
-                properties.getAppSecret()
-            ).eventHandler(eventDispatcher)
-             .build();
-
-            log.info("Starting WebSocket connection to Feishu...");
-
-            new Thread(() -> {
-                try {
-                    connectionStatus.set(ConnectionStatus.CONNECTED);
-                    wsClient.start();
-                } catch (Exception e) {
-                    log.error("WebSocket connection failed", e);
-                    connectionStatus.set(ConnectionStatus.DISCONNECTED);
-                    running.set(false);
-                }
-            }, "feishu-ws-listener").start();
-
-            log.info("Feishu WebSocket listener started successfully");
 
-        } catch (Exception e) {
-            connectionStatus.set(ConnectionStatus.DISCONNECTED);
-            running.set(false);
-            log.error("Failed to start WebSocket listener", e);
-            throw new RuntimeException("Failed to start WebSocket listener", e);
-        }
+        log.info("Starting WebSocket connection to Feishu...");
+        supervisor = new WsConnectionSupervisor(
+            this::newClient,
+            properties.getListener(),
+            connectionStatus
+        );
+        supervisor.start();
+        log.info("Feishu WebSocket listener supervisor started");
     }
 
     @Override
     public synchronized void stopListening() {
         running.set(false);
+        if (supervisor != null) {
+            supervisor.stop();
+            supervisor = null;
+        }
         connectionStatus.set(ConnectionStatus.DISCONNECTED);
         messageHandler = null;
-
-        wsClient = null;
         log.info("Feishu WebSocket listener stopped");
     }
 
+    /**
+     * 创建 SDK 长连接客户端
+     * 连接的存活由 SDK 自带的 ping/pong 和自动重连维护，监督器只处理连接线程退出和重建客户端；
+     * 重建前通过 {@link LarkWsClientCloser} 关闭旧客户端，当前 SDK 不支持关闭时为空操作
+     */
+    private WsConnectionSupervisor.WsClient newClient() {
+        Client client = new Client.Builder(
+            properties.getAppId(),
+            properties.getAppSecret()
+        ).eventHandler(eventDispatcher)
+         .autoReconnect(true)
+         .build();
+
+        return new WsConnectionSupervisor.WsClient() {
+            @Override
+            public void start() {
+                client.start();
+            }
+
+            @Override
+            public void close() {
+                LarkWsClientCloser.close(client);
+            }
+        };
+    }
+
     @Override
     public ConnectionStatus getConnectionStatus() {
         return connectionStatus.get();
     }
+
+    @Override
+    public long getDisconnectedMillis() {
+        WsConnectionSupervisor current = supervisor;
+        return current != null ? current.getDisconnectedMillis() : 0;
+    }
 }
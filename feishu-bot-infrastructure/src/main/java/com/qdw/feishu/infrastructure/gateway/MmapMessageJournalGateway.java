@@ -0,0 +1,509 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.JournalEntry;
+import com.qdw.feishu.domain.gateway.MessageJournalGateway;
+import com.qdw.feishu.domain.message.Message;
+import com.qdw.feishu.domain.message.Sender;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 基于内存映射文件的入站消息日志
+ *
+ * 存储格式：
+ * - 日志由若干固定大小的段文件组成（journal-0000000001.log ...），只追加写入
+ * - 每条记录：[int 记录总长度][int CRC32][byte 类型][long 序号][消息内容]
+ * - 类型 APPEND 记录消息内容，类型 COMPLETE 标记对应序号已处理完成，类型 ATTEMPT 记录一次崩溃恢复后的重放
+ * - 记录长度为 0 表示段内数据结束；CRC 不匹配视为崩溃时写了一半的尾部，直接截断
+ *
+ * 刷盘策略（feishu.journal.fsync）：
+ * - none：只写入页缓存，由操作系统决定刷盘时机（进程崩溃不丢，机器掉电可能丢）
+ * - batch：后台线程按 flush-interval-ms 周期批量 force（默认）
+ * - always：每条记录写入后立即 force
+ *
+ * 最旧的段在其中所有消息都已完成后删除。重放次数达到上限的消息追加到目录下的 dead-letter.log 后标记完成。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "feishu.journal.enabled", havingValue = "true")
+public class MmapMessageJournalGateway implements MessageJournalGateway {
+
+    private static final byte TYPE_APPEND = 1;
+    private static final byte TYPE_COMPLETE = 2;
+    private static final byte TYPE_ATTEMPT = 3;
+    /** 长度 + CRC + 类型 + 序号 */
+    private static final int HEADER_SIZE = 4 + 4 + 1 + 8;
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String DEAD_LETTER_FILE = "dead-letter.log";
+
+    enum FsyncMode {
+        NONE, BATCH, ALWAYS
+    }
+
+    private final Path directory;
+    private final long segmentSize;
+    private final FsyncMode fsyncMode;
+    private final long flushIntervalMs;
+
+    private final Object writeLock = new Object();
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Map<Long, Segment> pendingBySequence = new ConcurrentHashMap<>();
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer sequenceBytes = ByteBuffer.allocate(8);
+    private ByteBuffer scratch = ByteBuffer.allocate(16 * 1024);
+
+    private Segment active;
+    private long nextSequence = 1;
+    private volatile boolean dirty;
+    private List<JournalEntry> recovered = new ArrayList<>();
+    private ScheduledExecutorService flusher;
+
+    public MmapMessageJournalGateway(
+            @Value("${feishu.journal.path:data/journal}") String path,
+            @Value("${feishu.journal.segment-size:16777216}") long segmentSize,
+            @Value("${feishu.journal.fsync:batch}") String fsync,
+            @Value("${feishu.journal.flush-interval-ms:10}") long flushIntervalMs) {
+        this.directory = Paths.get(path);
+        this.segmentSize = Math.max(MIN_SEGMENT_SIZE, segmentSize);
+        this.fsyncMode = FsyncMode.valueOf(fsync.trim().toUpperCase(Locale.ROOT));
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            Files.createDirectories(directory);
+            recover();
+            synchronized (writeLock) {
+                long nextIndex = segments.isEmpty() ? 1 : segments.peekLast().index + 1;
+                active = openSegment(nextIndex);
+                segments.addLast(active);
+                deleteCompletedSegments();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to initialize message journal: " + directory, e);
+        }
+
+        if (fsyncMode == FsyncMode.BATCH) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "message-journal-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+
+        log.info("Message journal initialized: path={}, fsync={}, pending={}",
+            directory.toAbsolutePath(), fsyncMode, recovered.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        synchronized (writeLock) {
+            if (active != null) {
+                active.buffer.force();
+            }
+            for (Segment segment : segments) {
+                segment.close();
+            }
+        }
+        log.info("Message journal closed");
+    }
+
+    @Override
+    public long append(Message message) {
+        synchronized (writeLock) {
+            ByteBuffer payload = encode(message);
+            long sequence = nextSequence++;
+            Segment segment = write(TYPE_APPEND, sequence, payload);
+            segment.pending++;
+            pendingBySequence.put(sequence, segment);
+            return sequence;
+        }
+    }
+
+    @Override
+    public void complete(long sequence) {
+        Segment owner = pendingBySequence.remove(sequence);
+        if (owner == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            write(TYPE_COMPLETE, sequence, null);
+            owner.pending--;
+            deleteCompletedSegments();
+        }
+    }
+
+    @Override
+    public void recordAttempt(long sequence) {
+        if (!pendingBySequence.containsKey(sequence)) {
+            return;
+        }
+        synchronized (writeLock) {
+            write(TYPE_ATTEMPT, sequence, null);
+        }
+    }
+
+    @Override
+    public void deadLetter(JournalEntry entry) {
+        Message message = entry.getMessage();
+        String line = String.join("\t",
+            Instant.now().toString(),
+            "sequence=" + entry.getSequence(),
+            "attempts=" + entry.getAttempts(),
+            "eventId=" + message.getEventId(),
+            "messageId=" + message.getMessageId(),
+            "chatId=" + message.getChatId(),
+            "topicId=" + message.getTopicId(),
+            "content=" + escape(message.getContent())) + System.lineSeparator();
+        try {
+            Files.writeString(directory.resolve(DEAD_LETTER_FILE), line, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // 写死信失败时不标记完成，下次启动仍会尝试
+            throw new UncheckedIOException("Failed to write dead letter: sequence=" + entry.getSequence(), e);
+        }
+        log.warn("Journal entry moved to dead letter after {} attempts: sequence={}, messageId={}",
+            entry.getAttempts(), entry.getSequence(), message.getMessageId());
+        complete(entry.getSequence());
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "null";
+        }
+        return value.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
+    }
+
+    @Override
+    public synchronized List<JournalEntry> recoverPending() {
+        List<JournalEntry> result = recovered;
+        recovered = new ArrayList<>();
+        return result;
+    }
+
+    /**
+     * 写入一条记录，返回记录所在的段
+     * 先写记录体，最后写长度字段，保证读取方看到非 0 长度时记录已完整
+     */
+    private Segment write(byte type, long sequence, ByteBuffer payload) {
+        int payloadSize = payload != null ? payload.remaining() : 0;
+        int recordSize = HEADER_SIZE + payloadSize;
+        if (active.buffer.remaining() < recordSize + 4) {
+            roll();
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int start = buffer.position();
+
+        crc.reset();
+        crc.update(type);
+        updateLong(crc, sequenceBytes, sequence);
+        if (payload != null) {
+            crc.update(payload.duplicate());
+        }
+
+        buffer.position(start + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(type);
+        buffer.putLong(sequence);
+        if (payload != null) {
+            buffer.put(payload);
+        }
+        buffer.putInt(start, recordSize);
+
+        if (fsyncMode == FsyncMode.ALWAYS) {
+            buffer.force(start, recordSize);
+        } else {
+            dirty = true;
+        }
+        return active;
+    }
+
+    private void roll() {
+        try {
+            active.buffer.force();
+            Segment next = openSegment(active.index + 1);
+            segments.addLast(next);
+            active = next;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to roll message journal segment", e);
+        }
+    }
+
+    private void flush() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            Segment current = active;
+            if (current != null) {
+                current.buffer.force();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to flush message journal", e);
+        }
+    }
+
+    /**
+     * 从最旧的段开始删除已全部完成的段
+     * 只按顺序删除，保证较新段里的完成标记不会早于它所对应的追加记录被删除
+     */
+    private void deleteCompletedSegments() {
+        while (segments.size() > 1) {
+            Segment oldest = segments.peekFirst();
+            if (oldest == active || oldest.pending > 0) {
+                return;
+            }
+            segments.pollFirst();
+            oldest.close();
+            try {
+                Files.deleteIfExists(oldest.path);
+                log.debug("Deleted completed journal segment {}", oldest.path.getFileName());
+            } catch (IOException e) {
+                log.warn("Failed to delete journal segment {}", oldest.path, e);
+            }
+        }
+    }
+
+    private Segment openSegment(long index) throws IOException {
+        Path path = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(index, path, buffer);
+        }
+    }
+
+    /**
+     * 启动时扫描所有段，找出有追加记录但没有完成标记的消息
+     */
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream
+                .filter(p -> {
+                    String name = p.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                })
+                .sorted()
+                .toList();
+        }
+
+        Map<Long, JournalEntry> pending = new LinkedHashMap<>();
+        Map<Long, Segment> owners = new LinkedHashMap<>();
+        long maxSequence = 0;
+
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long index = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            Segment segment = new Segment(index, file, null);
+            segments.addLast(segment);
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                maxSequence = Math.max(maxSequence, scan(buffer, segment, pending, owners));
+            }
+        }
+
+        for (Map.Entry<Long, Segment> entry : owners.entrySet()) {
+            entry.getValue().pending++;
+            pendingBySequence.put(entry.getKey(), entry.getValue());
+        }
+        recovered = new ArrayList<>(pending.values());
+        nextSequence = maxSequence + 1;
+    }
+
+    private long scan(ByteBuffer buffer, Segment segment,
+                      Map<Long, JournalEntry> pending, Map<Long, Segment> owners) {
+        long maxSequence = 0;
+        CRC32 checksum = new CRC32();
+        ByteBuffer longBuffer = ByteBuffer.allocate(8);
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int recordSize = buffer.getInt();
+            if (recordSize == 0) {
+                break;
+            }
+            if (recordSize < HEADER_SIZE || recordSize > buffer.remaining() + 4) {
+                log.warn("Truncated journal record in {} at offset {}", segment.path.getFileName(), start);
+                break;
+            }
+
+            int storedCrc = buffer.getInt();
+            byte type = buffer.get();
+            long sequence = buffer.getLong();
+            int payloadSize = recordSize - HEADER_SIZE;
+            ByteBuffer payload = buffer.slice(buffer.position(), payloadSize);
+            buffer.position(buffer.position() + payloadSize);
+
+            checksum.reset();
+            checksum.update(type);
+            updateLong(checksum, longBuffer, sequence);
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != storedCrc) {
+                log.warn("Corrupted journal record in {} at offset {}, ignoring tail",
+                    segment.path.getFileName(), start);
+                break;
+            }
+
+            maxSequence = Math.max(maxSequence, sequence);
+            if (type == TYPE_APPEND) {
+                Message message = decode(payload);
+                if (message != null) {
+                    pending.put(sequence, new JournalEntry(sequence, message, 0));
+                    owners.put(sequence, segment);
+                }
+            } else if (type == TYPE_ATTEMPT) {
+                JournalEntry entry = pending.get(sequence);
+                if (entry != null) {
+                    entry.setAttempts(entry.getAttempts() + 1);
+                }
+            } else if (type == TYPE_COMPLETE) {
+                pending.remove(sequence);
+                owners.remove(sequence);
+            }
+        }
+        return maxSequence;
+    }
+
+    private ByteBuffer encode(Message message) {
+        scratch.clear();
+        putString(message.getEventId());
+        putString(message.getMessageId());
+        putString(message.getContent());
+        putString(message.getTopicId());
+        putString(message.getRootId());
+        putString(message.getChatId());
+        Sender sender = message.getSender();
+        putString(sender != null ? sender.getOpenId() : null);
+        putString(sender != null ? sender.getName() : null);
+        scratch.flip();
+        return scratch;
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensureScratch(4);
+            scratch.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureScratch(4 + bytes.length);
+        scratch.putInt(bytes.length);
+        scratch.put(bytes);
+    }
+
+    private void ensureScratch(int extra) {
+        if (scratch.remaining() < extra) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + extra));
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+    }
+
+    private Message decode(ByteBuffer payload) {
+        try {
+            String eventId = getString(payload);
+            String messageId = getString(payload);
+            String content = getString(payload);
+            String topicId = getString(payload);
+            String rootId = getString(payload);
+            String chatId = getString(payload);
+            String openId = getString(payload);
+            String senderName = getString(payload);
+
+            Message message = new Message(messageId, content, new Sender(openId, senderName));
+            message.setEventId(eventId);
+            message.setTopicId(topicId);
+            message.setRootId(rootId);
+            message.setChatId(chatId);
+            return message;
+        } catch (BufferUnderflowException e) {
+            log.warn("Failed to decode journal record: {}", e.getMessage());
+            return null;
+        } catch (RuntimeException e) {
+            log.warn("Skipping invalid journaled message: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void updateLong(CRC32 checksum, ByteBuffer tmp, long value) {
+        tmp.clear();
+        tmp.putLong(value);
+        tmp.flip();
+        checksum.update(tmp);
+    }
+
+    /**
+     * 日志段
+     */
+    private static final class Segment {
+        private final long index;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        /** 本段中尚未完成的追加记录数，受 writeLock 保护 */
+        private int pending;
+
+        private Segment(long index, Path path, MappedByteBuffer buffer) {
+            this.index = index;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private void close() {
+            // MappedByteBuffer 由 GC 释放映射，这里只需确保数据落盘
+            if (buffer != null) {
+                buffer.force();
+            }
+        }
+    }
+}
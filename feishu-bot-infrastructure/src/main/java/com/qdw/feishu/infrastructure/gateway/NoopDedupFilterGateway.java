@@ -0,0 +1,27 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.DedupFilterGateway;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * 未启用持久化去重时使用的空实现
+ */
+@Component
+@ConditionalOnProperty(name = "feishu.dedup.bloom.enabled", havingValue = "false", matchIfMissing = true)
+public class NoopDedupFilterGateway implements DedupFilterGateway {
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean mightContain(String eventId) {
+        return false;
+    }
+
+    @Override
+    public void put(String eventId) {
+    }
+}
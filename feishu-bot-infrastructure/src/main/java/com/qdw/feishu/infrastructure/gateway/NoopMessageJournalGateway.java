@@ -0,0 +1,40 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.JournalEntry;
+import com.qdw.feishu.domain.gateway.MessageJournalGateway;
+import com.qdw.feishu.domain.message.Message;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 关闭消息日志时使用的空实现
+ */
+@Component
+@ConditionalOnProperty(name = "feishu.journal.enabled", havingValue = "false", matchIfMissing = true)
+public class NoopMessageJournalGateway implements MessageJournalGateway {
+
+    @Override
+    public long append(Message message) {
+        return -1;
+    }
+
+    @Override
+    public void complete(long sequence) {
+    }
+
+    @Override
+    public List<JournalEntry> recoverPending() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void recordAttempt(long sequence) {
+    }
+
+    @Override
+    public void deadLetter(JournalEntry entry) {
+    }
+}
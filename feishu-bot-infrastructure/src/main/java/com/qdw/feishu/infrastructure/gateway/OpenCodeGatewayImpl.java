@@ -2,26 +2,51 @@ package com.qdw.feishu.infrastructure.gateway;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.qdw.feishu.domain.core.CircuitBreaker;
 import com.qdw.feishu.domain.gateway.OpenCodeGateway;
 import com.qdw.feishu.infrastructure.config.OpenCodeProperties;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.net.ConnectException;
 import java.net.URI;
-import java.net.URLEncoder;
+import java.net.UnknownHostException;
 import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 /**
  * OpenCode Gateway 实现
  *
- * 通过 HTTP API 与 OpenCode 服务端通信
+ * 通过 HTTP API 与 OpenCode 服务端通信。请求全部通过共享 HttpClient 的 sendAsync 发出，
+ * 等待响应和重试退避期间不占用线程；同步方法只是等待对应的异步结果。
+ *
+ * 服务不可用时快速失败：提交提示词前只读取 {@link OpenCodeHealthMonitor} 缓存的健康状态，
+ * 所有请求经过熔断器，熔断期间不发起调用。
  */
 @Slf4j
 @Component
@@ -29,22 +54,40 @@ public class OpenCodeGatewayImpl implements OpenCodeGateway {
 
     private final OpenCodeProperties properties;
     private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler;
+    private final OpenCodeHealthMonitor healthMonitor;
+    private final CircuitBreaker breaker;
+    private final OpenCodeResponseCache responseCache = new OpenCodeResponseCache();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private static final int MAX_RETRIES = 3;
     private static final long INITIAL_RETRY_DELAY_MS = 1000;
     private static final long MAX_RETRY_DELAY_MS = 8000;
-
-    public OpenCodeGatewayImpl(OpenCodeProperties properties) {
+    private static final String CONNECT_FAILED = "❌ 无法连接到 OpenCode 服务，请确保服务已启动";
+    private static final String BREAKER_OPEN = "OpenCode 服务暂不可用（熔断中）";
+    /** 流式回复拼接完整内容的最小间隔，间隔内的增量合并到下一次拼接 */
+    private static final long RENDER_INTERVAL_MS = 100;
+
+    public OpenCodeGatewayImpl(OpenCodeProperties properties,
+                               @Qualifier("opencodeHttpClient") HttpClient httpClient,
+                               @Qualifier("opencodeHttpScheduler") ScheduledExecutorService scheduler,
+                               OpenCodeHealthMonitor healthMonitor) {
         this.properties = properties;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(properties.getConnectTimeout()))
-                .build();
-        log.info("OpenCode Gateway 初始化完成，服务端: {}", properties.getServerUrl());
+        this.httpClient = httpClient;
+        this.scheduler = scheduler;
+        this.healthMonitor = healthMonitor;
+        this.breaker = new CircuitBreaker("opencode", properties.getBreaker().getFailureThreshold(),
+            Duration.ofSeconds(properties.getBreaker().getOpenSeconds()));
+        log.info("OpenCode Gateway 初始化完成，服务端: {}, HTTP 版本: {}", properties.getServerUrl(), httpClient.version());
     }
 
     @Override
     public String executeCommand(String prompt, String sessionId, int timeoutSeconds) throws Exception {
+        return await(executeCommandAsync(prompt, sessionId, timeoutSeconds));
+    }
+
+    @Override
+    public CompletableFuture<String> executeCommandAsync(String prompt, String sessionId, int timeoutSeconds) {
         if (sessionId == null || sessionId.isEmpty()) {
             return executeInNewSession(prompt, timeoutSeconds);
         } else {
@@ -52,358 +95,359 @@ public class OpenCodeGatewayImpl implements OpenCodeGateway {
         }
     }
 
+    @Override
+    public String createSession() {
+        try {
+            return createSession(null).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public String streamCommand(String prompt, String sessionId, int timeoutSeconds,
+                                Consumer<String> onContent) throws Exception {
+        return await(streamCommandAsync(prompt, sessionId, timeoutSeconds, onContent));
+    }
+
     /**
-     * 在新会话中执行命令
+     * 流式执行命令
+     *
+     * 先订阅 OpenCode 的 SSE 事件流（GET /event），再通过 prompt_async 提交提示词，
+     * 按会话过滤 message.part.updated 等事件，拼出助手回复的当前内容回调给调用方，
+     * 收到会话空闲事件后结束。事件流不可用时退回同步请求。
+     *
+     * 事件流按行推送给订阅者，没有线程阻塞在读取上；超时由调度线程取消订阅。
      */
-    private String executeInNewSession(String prompt, int timeoutSeconds) throws Exception {
-        log.info("创建新会话并执行命令: {}", prompt);
+    @Override
+    public CompletableFuture<String> streamCommandAsync(String prompt, String sessionId, int timeoutSeconds,
+                                                        Consumer<String> onContent) {
+        CompletableFuture<String> session = sessionId == null || sessionId.isEmpty()
+            ? createSession(null)
+            : CompletableFuture.completedFuture(sessionId);
+
+        return session.thenCompose(id -> {
+            if (id == null) {
+                return CompletableFuture.completedFuture("❌ 创建会话失败");
+            }
+            if (!healthMonitor.isHealthy()) {
+                log.warn("OpenCode 服务不可达，跳过请求");
+                return CompletableFuture.completedFuture(CONNECT_FAILED);
+            }
+            return streamInSession(id, prompt, timeoutSeconds, onContent);
+        });
+    }
 
-        String sessionId = createSession(null);
-        if (sessionId == null) {
-            return "❌ 创建会话失败";
+    private CompletableFuture<String> streamInSession(String sessionId, String prompt, int timeoutSeconds,
+                                                      Consumer<String> onContent) {
+        log.info("流式执行命令: sessionId={}, prompt={}", sessionId, prompt);
+
+        // 请求超时只约束响应头的到达，事件流本身的时长由下面的超时取消控制
+        HttpRequest eventRequest = request("/event")
+                .header("Accept", "text/event-stream")
+                .timeout(Duration.ofSeconds(properties.getConnectTimeout()))
+                .GET()
+                .build();
+
+        if (!breaker.tryAcquire()) {
+            log.warn("{}，跳过请求: sessionId={}", BREAKER_OPEN, sessionId);
+            return CompletableFuture.completedFuture(CONNECT_FAILED);
         }
 
-        return sendMessageSync(sessionId, prompt, timeoutSeconds, true);
+        SessionEventStream events = new SessionEventStream(sessionId, onContent);
+        CompletableFuture<Integer> connected = new CompletableFuture<>();
+        httpClient.sendAsync(eventRequest, info -> {
+            record(info.statusCode(), null);
+            connected.complete(info.statusCode());
+            return info.statusCode() == 200
+                ? HttpResponse.BodySubscribers.fromLineSubscriber(events)
+                : HttpResponse.BodySubscribers.discarding();
+        }).whenComplete((response, error) -> {
+            if (error != null && !connected.isDone()) {
+                record(0, unwrap(error));
+                connected.completeExceptionally(unwrap(error));
+            }
+        });
+
+        return connected.thenCompose(status -> {
+            if (status != 200) {
+                log.warn("订阅 OpenCode 事件流失败，状态码: {}，改为同步请求", status);
+                return sendMessage(sessionId, prompt, timeoutSeconds).thenApply(result -> {
+                    if (result != null) {
+                        onContent.accept(result);
+                    }
+                    return result;
+                });
+            }
+
+            if (timeoutSeconds > 0) {
+                events.expireAfter(timeoutSeconds);
+            }
+            return submitPrompt(sessionId, prompt).thenCompose(accepted -> {
+                if (!accepted) {
+                    events.cancel();
+                    return CompletableFuture.completedFuture("❌ OpenCode 服务异常，提交消息失败");
+                }
+                return events.result();
+            });
+        });
+    }
+
+    /**
+     * 在新会话中执行命令
+     */
+    private CompletableFuture<String> executeInNewSession(String prompt, int timeoutSeconds) {
+        log.info("创建新会话并执行命令: {}", prompt);
+
+        return createSession(null).thenCompose(sessionId -> sessionId == null
+            ? CompletableFuture.completedFuture("❌ 创建会话失败")
+            : sendMessage(sessionId, prompt, timeoutSeconds));
     }
 
     /**
      * 在现有会话中执行命令
      */
-    private String executeInExistingSession(String sessionId, String prompt, int timeoutSeconds) throws Exception {
+    private CompletableFuture<String> executeInExistingSession(String sessionId, String prompt, int timeoutSeconds) {
         log.info("在会话 {} 中执行命令: {}", sessionId, prompt);
 
         if (prompt == null || prompt.isEmpty()) {
             return getSessionDetails(sessionId);
         }
 
-        return sendMessageSync(sessionId, prompt, timeoutSeconds, true);
+        return sendMessage(sessionId, prompt, timeoutSeconds);
     }
 
     /**
       * 创建新会话
+      *
+      * 非幂等请求：只在连接失败（请求未发出）时重试
       */
-    private String createSession(String parentID) {
-        return executeWithRetry("createSession", () -> {
-            try {
-                String body = parentID != null
-                    ? String.format("{\"parentID\":\"%s\"}", parentID)
-                    : "{}";
-
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(properties.getServerUrl() + "/session"))
-                        .header("Content-Type", "application/json; charset=utf-8")
-                        .header("Authorization", getAuthHeader())
-                        .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200 || response.statusCode() == 201) {
-                    JsonNode json = objectMapper.readTree(response.body());
-                    if (json.has("id")) {
-                        String sessionId = json.get("id").asText();
-                        log.info("创建会话成功: {}", sessionId);
-                        return sessionId;
-                    }
-                }
-
-                log.error("创建会话失败: {}", response.body());
-                return null;
+    private CompletableFuture<String> createSession(String parentID) {
+        String body = parentID != null
+            ? String.format("{\"parentID\":\"%s\"}", parentID)
+            : "{}";
+
+        HttpRequest request = request("/session")
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build();
 
-            } catch (Exception e) {
-                log.error("创建会话异常", e);
-                throw new RuntimeException("创建会话失败", e);
+        return sendWithRetry("createSession", request, false).handle((response, error) -> {
+            if (error != null) {
+                log.error("创建会话异常", error);
+                throw new RuntimeException("创建会话失败", error);
             }
+            if (response.statusCode() == 200 || response.statusCode() == 201) {
+                String sessionId = readField(response.body(), "id");
+                if (sessionId != null) {
+                    log.info("创建会话成功: {}", sessionId);
+                    responseCache.invalidateAll();
+                    return sessionId;
+                }
+            }
+
+            log.error("创建会话失败: {}", response.body());
+            return null;
         });
     }
 
     /**
-      * 同步发送消息并等待响应
+      * 发送消息并等待响应
+      *
+      * 响应超时返回 null，由调用方转为后台等待；非幂等请求，只在连接失败时重试
       */
-    private String sendMessageSync(String sessionId, String prompt, int timeoutSeconds, boolean returnNullOnTimeout) {
-        // 首先检查服务连通性（如果启用）
-        if (properties.isHealthCheckEnabled() && !isServerHealthy()) {
+    private CompletableFuture<String> sendMessage(String sessionId, String prompt, int timeoutSeconds) {
+        // 首先检查服务连通性（读取后台探测缓存的状态，不发起请求）
+        if (!healthMonitor.isHealthy()) {
             log.warn("OpenCode 服务不可达，跳过请求");
-            return "❌ 无法连接到 OpenCode 服务，请确保服务已启动";
+            return CompletableFuture.completedFuture(CONNECT_FAILED);
         }
 
-        return executeWithRetry("sendMessageSync", () -> {
-            try {
-                String body = String.format(
-                        "{\"parts\":[{\"type\":\"text\",\"text\":\"%s\"}]}",
-                        escapeJson(prompt)
-                );
-
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(properties.getServerUrl() + "/session/" + sessionId + "/message"))
-                        .header("Content-Type", "application/json; charset=utf-8")
-                        .header("Authorization", getAuthHeader())
-                        .timeout(Duration.ofSeconds(timeoutSeconds > 0 ? timeoutSeconds : properties.getRequestTimeout()))
-                        .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString());
+        String body = String.format(
+                "{\"parts\":[{\"type\":\"text\",\"text\":\"%s\"}]}",
+                escapeJson(prompt)
+        );
+
+        HttpRequest request = request("/session/" + sessionId + "/message")
+                .header("Content-Type", "application/json; charset=utf-8")
+                .timeout(Duration.ofSeconds(timeoutSeconds > 0 ? timeoutSeconds : properties.getRequestTimeout()))
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build();
 
+        return sendWithRetry("sendMessage", request, false).handle((response, error) -> {
+            if (error == null) {
                 if (response.statusCode() == 200) {
                     return parseMessageResponse(response.body());
-                } else {
-                    log.error("发送消息失败，状态码: {}, 响应: {}", response.statusCode(), response.body());
-                    return "❌ OpenCode 服务异常 (状态码: " + response.statusCode() + ")";
                 }
-
-            } catch (java.net.http.HttpTimeoutException e) {
-                if (returnNullOnTimeout) {
-                    log.info("请求超时（{}秒），返回null等待异步执行", timeoutSeconds);
-                    return null;
-                } else {
-                    log.error("发送消息超时", e);
-                    throw new RuntimeException("发送消息超时", e);
-                }
-            } catch (Exception e) {
-                log.error("发送消息异常", e);
-                // 对于连接错误等异常，直接返回用户友好的错误消息
-                if (e.getCause() instanceof java.net.ConnectException ||
-                    e.getCause() instanceof java.net.UnknownHostException) {
-                    return "❌ 无法连接到 OpenCode 服务，请确保服务已启动";
-                }
-                throw new RuntimeException("发送消息失败: " + e.getMessage(), e);
+                log.error("发送消息失败，状态码: {}, 响应: {}", response.statusCode(), response.body());
+                return "❌ OpenCode 服务异常 (状态码: " + response.statusCode() + ")";
             }
-        });
-    }
-
-    /**
-      * 检查 OpenCode 服务是否健康
-      */
-    public boolean isServerHealthy() {
-        return executeWithRetry("healthCheck", () -> {
-            try {
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(properties.getServerUrl() + "/global/health"))
-                        .header("Authorization", getAuthHeader())
-                        .timeout(Duration.ofSeconds(5))
-                        .GET()
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    JsonNode json = objectMapper.readTree(response.body());
-                    return json.has("healthy") && json.get("healthy").asBoolean();
-                }
-                return false;
-            } catch (Exception e) {
-                log.warn("健康检查失败: {}", e.getMessage());
-                return false;
+            if (error instanceof HttpTimeoutException && !(error instanceof HttpConnectTimeoutException)) {
+                log.info("请求超时（{}秒），返回null等待异步执行", timeoutSeconds);
+                return null;
             }
+            log.error("发送消息异常", error);
+            // 对于连接错误等异常，直接返回用户友好的错误消息
+            if (isConnectFailure(error)) {
+                return CONNECT_FAILED;
+            }
+            throw new RuntimeException("发送消息失败: " + error.getMessage(), error);
         });
     }
 
     /**
       * 异步发送消息（不等待响应）
+      *
+      * @return 服务端接受消息时返回 true
       */
-    public void sendMessageAsync(String sessionId, String prompt) {
-        try {
-            String body = String.format(
-                    "{\"parts\":[{\"type\":\"text\",\"text\":\"%s\"}]}",
-                    escapeJson(prompt)
-            );
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(properties.getServerUrl() + "/session/" + sessionId + "/prompt_async"))
-                    .header("Content-Type", "application/json; charset=utf-8")
-                    .header("Authorization", getAuthHeader())
-                    .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
-                    .build();
+    public boolean sendMessageAsync(String sessionId, String prompt) {
+        return submitPrompt(sessionId, prompt).join();
+    }
 
-            HttpResponse<String> response = httpClient.send(request,
-                    HttpResponse.BodyHandlers.ofString());
+    /**
+     * 通过 prompt_async 提交消息，服务端接受后立即返回 204
+     */
+    private CompletableFuture<Boolean> submitPrompt(String sessionId, String prompt) {
+        String body = String.format(
+                "{\"parts\":[{\"type\":\"text\",\"text\":\"%s\"}]}",
+                escapeJson(prompt)
+        );
+
+        HttpRequest request = request("/session/" + sessionId + "/prompt_async")
+                .header("Content-Type", "application/json; charset=utf-8")
+                .timeout(Duration.ofSeconds(properties.getRequestTimeout()))
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                .build();
 
+        return sendWithRetry("submitPrompt", request, false).handle((response, error) -> {
+            if (error != null) {
+                log.error("异步发送消息异常", error);
+                return false;
+            }
             if (response.statusCode() == 204) {
                 log.info("异步消息发送成功: sessionId={}", sessionId);
-            } else {
-                log.warn("异步消息发送失败，状态码: {}", response.statusCode());
+                return true;
             }
-
-        } catch (Exception e) {
-            log.error("异步发送消息异常", e);
-        }
+            log.warn("异步消息发送失败，状态码: {}", response.statusCode());
+            return false;
+        });
     }
 
     @Override
     public String listSessions() {
-        return executeWithRetry("listSessions", () -> {
-            try {
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(properties.getServerUrl() + "/session"))
-                        .header("Authorization", getAuthHeader())
-                        .GET()
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    return formatSessionList(response.body());
-                } else {
-                    return "❌ 获取会话列表失败: " + response.body();
-                }
-
-            } catch (Exception e) {
-                log.error("列出会话失败", e);
-                return "❌ 获取会话列表失败: " + e.getMessage();
-            }
-        });
+        return query("listSessions", request("/session").GET().build(), ttl(OpenCodeProperties.Cache::getSessionsTtlSeconds),
+            this::formatSessionList, "❌ 获取会话列表失败: ").join();
     }
 
     @Override
     public String listRecentSessions(String project, int limit) {
-        return executeWithRetry("listRecentSessions", () -> {
-            try {
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(properties.getServerUrl() + "/session"))
-                        .header("Authorization", getAuthHeader())
-                        .GET()
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    return formatProjectSessionList(response.body(), project, limit);
-                } else {
-                    return "❌ 获取会话列表失败: " + response.body();
-                }
-
-            } catch (Exception e) {
-                log.error("列出项目会话失败: project={}", project, e);
-                return "❌ 获取项目会话列表失败: " + e.getMessage();
-            }
-        });
+        return query("listRecentSessions", request("/session").GET().build(), ttl(OpenCodeProperties.Cache::getSessionsTtlSeconds),
+            body -> formatProjectSessionList(body, project, limit), "❌ 获取项目会话列表失败: ").join();
     }
 
     @Override
     public String listProjects() {
-        return executeWithRetry("listProjects", () -> {
-            try {
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(properties.getServerUrl() + "/project"))
-                        .header("Authorization", getAuthHeader())
-                        .GET()
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    return formatProjectList(response.body());
-                } else {
-                    return "❌ 获取项目列表失败: " + response.body();
-                }
-
-            } catch (Exception e) {
-                log.error("列出项目失败", e);
-                return "❌ 获取项目列表失败: " + e.getMessage();
-            }
-        });
+        return query("listProjects", request("/project").GET().build(), ttl(OpenCodeProperties.Cache::getProjectsTtlSeconds),
+            this::formatProjectList, "❌ 获取项目列表失败: ").join();
     }
 
     @Override
     public String listCommands() {
-        return executeWithRetry("listCommands", () -> {
-            try {
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(properties.getServerUrl() + "/command"))
-                        .header("Authorization", getAuthHeader())
-                        .GET()
-                        .build();
-
-                HttpResponse<String> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString());
-
-                if (response.statusCode() == 200) {
-                    return formatCommandList(response.body());
-                } else {
-                    return "❌ 获取命令列表失败: " + response.body();
-                }
-
-            } catch (Exception e) {
-                log.error("列出命令失败", e);
-                return "❌ 获取命令列表失败: " + e.getMessage();
-            }
-        });
+        return query("listCommands", request("/command").GET().build(), ttl(OpenCodeProperties.Cache::getCommandsTtlSeconds),
+            this::formatCommandList, "❌ 获取命令列表失败: ").join();
     }
 
     @Override
     public String getServerStatus() {
-        return executeWithRetry("getServerStatus", () -> {
-            try {
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(properties.getServerUrl() + "/global/health"))
-                        .header("Authorization", getAuthHeader())
-                        .timeout(Duration.ofSeconds(5))
-                        .GET()
-                        .build();
+        HttpRequest request = request("/global/health")
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
 
-                HttpResponse<String> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString());
+        String failure = "❌ OpenCode 服务状态: 无法连接\n\n" +
+                         "服务端: " + properties.getServerUrl() + "\n" +
+                         "错误: ";
+        String status = query("getServerStatus", request, ttl(OpenCodeProperties.Cache::getStatusTtlSeconds),
+            this::formatServerStatus, failure).join();
+        CircuitBreaker.State state = breaker.getState();
+        return state == CircuitBreaker.State.CLOSED ? status : status + "\n熔断状态: " + state;
+    }
 
-                if (response.statusCode() == 200) {
-                    JsonNode json = objectMapper.readTree(response.body());
-                    boolean healthy = json.get("healthy").asBoolean();
-                    String version = json.has("version") ? json.get("version").asText() : "Unknown";
-
-                    if (healthy) {
-                        return "✅ OpenCode 服务状态: 正常运行\n\n" +
-                               "版本: " + version + "\n" +
-                               "服务端: " + properties.getServerUrl();
-                    } else {
-                        return "⚠️ OpenCode 服务状态: 不可用\n\n" +
-                               "服务端: " + properties.getServerUrl();
-                    }
-                } else {
-                    return "❌ OpenCode 服务状态: 无法连接\n\n" +
-                           "服务端: " + properties.getServerUrl() + "\n" +
-                           "错误: " + response.body();
-                }
+    /**
+     * 获取会话详情
+     */
+    private CompletableFuture<String> getSessionDetails(String sessionId) {
+        return query("getSessionDetails", request("/session/" + sessionId).GET().build(), Duration.ZERO,
+            this::formatSessionDetails, "❌ 获取会话详情失败: ");
+    }
 
-            } catch (Exception e) {
-                log.error("检查服务状态失败", e);
-                return "❌ OpenCode 服务状态: 无法连接\n\n" +
-                       "服务端: " + properties.getServerUrl() + "\n" +
-                       "错误: " + e.getMessage();
+    /**
+     * 幂等查询：失败时重试，成功时格式化响应，非 200 或最终失败时返回 failurePrefix 加原因
+     *
+     * 200 响应按请求路径缓存 ttl 时长，同一路径的并发查询只发起一次请求；失败不缓存
+     */
+    private CompletableFuture<String> query(String operation, HttpRequest request, Duration ttl,
+                                            Function<String, String> formatter, String failurePrefix) {
+        CompletableFuture<HttpResponse<String>> response =
+            responseCache.get(request.uri().getPath(), ttl, () -> sendWithRetry(operation, request, true));
+        return response.handle((result, error) -> {
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                log.error("{} 失败", operation, cause);
+                return failurePrefix + (cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+            }
+            if (result.statusCode() == 200) {
+                return formatter.apply(result.body());
             }
+            return failurePrefix + result.body();
         });
     }
 
-    /**
-     * 获取会话详情
-     */
-    private String getSessionDetails(String sessionId) {
-        return executeWithRetry("getSessionDetails", () -> {
-            try {
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(properties.getServerUrl() + "/session/" + sessionId))
-                        .header("Authorization", getAuthHeader())
-                        .GET()
-                        .build();
+    private Duration ttl(ToIntFunction<OpenCodeProperties.Cache> seconds) {
+        return Duration.ofSeconds(seconds.applyAsInt(properties.getCache()));
+    }
 
-                HttpResponse<String> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofString());
+    @Override
+    public void invalidateCache() {
+        responseCache.invalidateAll();
+    }
 
-                if (response.statusCode() == 200) {
-                    return formatSessionDetails(response.body());
-                } else {
-                    return "❌ 获取会话详情失败: " + response.body();
-                }
+    /**
+     * 格式化服务状态
+     */
+    private String formatServerStatus(String jsonResponse) {
+        try {
+            JsonNode json = objectMapper.readTree(jsonResponse);
+            boolean healthy = json.get("healthy").asBoolean();
+            String version = json.has("version") ? json.get("version").asText() : "Unknown";
 
-            } catch (Exception e) {
-                log.error("获取会话详情失败", e);
-                return "❌ 获取会话详情失败: " + e.getMessage();
+            if (healthy) {
+                return "✅ OpenCode 服务状态: 正常运行\n\n" +
+                       "版本: " + version + "\n" +
+                       "服务端: " + properties.getServerUrl();
+            } else {
+                return "⚠️ OpenCode 服务状态: 不可用\n\n" +
+                       "服务端: " + properties.getServerUrl();
             }
-        });
+        } catch (Exception e) {
+            log.error("检查服务状态失败", e);
+            return "❌ OpenCode 服务状态: 无法连接\n\n" +
+                   "服务端: " + properties.getServerUrl() + "\n" +
+                   "错误: " + e.getMessage();
+        }
+    }
+
+    /**
+     * 读取 JSON 对象的顶层字段，解析失败或字段不存在时返回 null
+     */
+    private String readField(String jsonResponse, String field) {
+        try {
+            JsonNode value = objectMapper.readTree(jsonResponse).get(field);
+            return value == null || value.isNull() ? null : value.asText();
+        } catch (Exception e) {
+            log.warn("解析响应失败: {}", e.getMessage());
+            return null;
+        }
     }
 
     /**
@@ -761,66 +805,401 @@ public class OpenCodeGatewayImpl implements OpenCodeGateway {
                    .replace("\t", "\\t");
     }
 
+
     /**
-     * 使用指数退避策略执行带重试的操作
+     * 生成带认证头的请求
      */
-    private <T> T executeWithRetry(String operationName, java.util.function.Supplier<T> operation) {
-        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(properties.getServerUrl() + path))
+                .header("Authorization", getAuthHeader());
+    }
+
+    /**
+     * 异步发送请求，失败时按指数退避重试
+     *
+     * 退避由调度线程定时触发下一次发送，不占用线程等待。连接失败时请求未发出，总是重试；
+     * 其他 IO 异常（含响应超时）只对幂等请求重试，避免重复提交消息或创建会话。
+     * 每次发送前先经过熔断器，熔断期间立即以 ConnectException 失败，不再重试。
+     * 返回的 Future 以原始异常（非 CompletionException）失败。
+     */
+    private CompletableFuture<HttpResponse<String>> sendWithRetry(String operationName, HttpRequest request,
+                                                                  boolean idempotent) {
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        attempt(operationName, request, idempotent, 0, result);
+        return result;
+    }
+
+    private void attempt(String operationName, HttpRequest request, boolean idempotent, int attempt,
+                         CompletableFuture<HttpResponse<String>> result) {
+        if (!breaker.tryAcquire()) {
+            log.debug("{}，跳过请求: {}", BREAKER_OPEN, operationName);
+            result.completeExceptionally(new ConnectException(BREAKER_OPEN));
+            return;
+        }
+
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            Throwable cause = error != null ? unwrap(error) : null;
+            record(response != null ? response.statusCode() : 0, cause);
+            if (cause == null) {
+                result.complete(response);
+                return;
+            }
+
+            boolean retryable = isConnectFailure(cause) || (idempotent && cause instanceof IOException);
+            if (!retryable || attempt == MAX_RETRIES - 1) {
+                if (retryable) {
+                    log.error("{} 重试 {} 次后仍失败: {}", operationName, MAX_RETRIES, cause.toString());
+                }
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            long delay = Math.min(INITIAL_RETRY_DELAY_MS * (1L << attempt), MAX_RETRY_DELAY_MS);
+            log.warn("{} 失败，{}ms 后重试 {}/{}: {}", operationName, delay, attempt + 1, MAX_RETRIES, cause.toString());
             try {
-                return operation.get();
+                scheduler.schedule(() -> attempt(operationName, request, idempotent, attempt + 1, result),
+                    delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    /**
+     * 向熔断器报告一次请求的结果：服务端 5xx 和连接、IO 失败计为失败；
+     * 响应超时说明服务仍在处理（长任务），不计入
+     */
+    private void record(int statusCode, Throwable error) {
+        if (error == null) {
+            if (statusCode >= 500) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+        } else if (error instanceof IOException
+                && (!(error instanceof HttpTimeoutException) || error instanceof HttpConnectTimeoutException)) {
+            breaker.onFailure();
+        } else {
+            breaker.onIgnored();
+        }
+    }
+
+    /**
+     * 连接失败（含连接超时、域名解析失败）：请求没有到达服务端
+     */
+    private static boolean isConnectFailure(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof ConnectException || t instanceof HttpConnectTimeoutException
+                    || t instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * 等待异步结果，以原始异常抛出失败原因
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 单个会话在事件流中的状态
+     *
+     * 事件流是全局的，按 sessionID 过滤；用户消息的 part 同样会出现在流中，
+     * 只拼接 message.updated 中角色为 assistant 的消息下的 part。
+     *
+     * HttpClient 按行依次回调 onNext，事件解析只在回调线程上进行；结果确定后取消订阅，关闭事件流连接。
+     *
+     * 增量（message.part.delta）追加到对应 part 的文本缓冲，不重写整段文本；完整内容最多每
+     * {@link #RENDER_INTERVAL_MS} 拼接一次，间隔内的变化由调度线程补一次拼接，会话结束时再拼接最终结果。
+     * part 状态和拼接受 this 保护。
+     */
+    private final class SessionEventStream implements Flow.Subscriber<String> {
+
+        private final String sessionId;
+        private final Consumer<String> onContent;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final Map<String, String> roles = new HashMap<>();
+        private final Map<String, Part> parts = new LinkedHashMap<>();
+        private final StringBuilder data = new StringBuilder();
+
+        private volatile Flow.Subscription subscription;
+        private volatile ScheduledFuture<?> timeout;
+        private boolean started;
+        private String rendered = "";
+        private boolean renderPending;
+        private long lastRenderAt = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(RENDER_INTERVAL_MS);
+
+        private SessionEventStream(String sessionId, Consumer<String> onContent) {
+            this.sessionId = sessionId;
+            this.onContent = onContent;
+            result.whenComplete((text, error) -> {
+                cancel();
+                ScheduledFuture<?> timer = timeout;
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            });
+        }
+
+        /**
+         * 最终结果：会话空闲时为回复内容，出错时为错误提示，超时或事件流中断时为 null
+         */
+        private CompletableFuture<String> result() {
+            return result;
+        }
+
+        private void expireAfter(int timeoutSeconds) {
+            try {
+                timeout = scheduler.schedule(() -> interrupt("超时"), timeoutSeconds, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException e) {
+                log.warn("无法设置流式执行超时: sessionId={}", sessionId);
+            }
+        }
+
+        private void cancel() {
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (result.isDone()) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (result.isDone()) {
+                return;
+            }
+            if (line.isEmpty()) {
+                if (data.length() > 0) {
+                    onEvent(data.toString());
+                    data.setLength(0);
+                }
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!result.isDone()) {
+                log.warn("事件流读取失败: sessionId={}, error={}", sessionId, throwable.toString());
+            }
+            interrupt("事件流中断");
+        }
+
+        @Override
+        public void onComplete() {
+            interrupt("事件流中断");
+        }
+
+        private void interrupt(String reason) {
+            if (result.complete(null)) {
+                log.info("流式执行未完成（{}）: sessionId={}", reason, sessionId);
+            }
+        }
+
+        private synchronized void onEvent(String data) {
+            JsonNode event;
+            try {
+                event = objectMapper.readTree(data);
             } catch (Exception e) {
-                // 检查异常原因
-                Throwable cause = e.getCause();
-                
-                // 连接失败
-                if (e instanceof java.net.ConnectException || 
-                    cause instanceof java.net.ConnectException) {
-                    if (attempt == MAX_RETRIES - 1) {
-                        log.error("连接失败: 无法连接到 OpenCode 服务");
-                        throw new RuntimeException("❌ 无法连接到 OpenCode 服务，请检查服务是否启动");
+                log.debug("忽略无法解析的事件: {}", data);
+                return;
+            }
+            JsonNode props = event.path("properties");
+
+            switch (event.path("type").asText()) {
+                case "message.updated" -> {
+                    JsonNode info = props.path("info");
+                    if (sessionId.equals(info.path("sessionID").asText())) {
+                        String role = info.path("role").asText();
+                        roles.put(info.path("id").asText(), role);
+                        started |= "assistant".equals(role);
+                        changed();
                     }
-                    log.warn("连接失败，重试 {}/{}", attempt + 1, MAX_RETRIES);
-                    long delay = Math.min(INITIAL_RETRY_DELAY_MS * (1L << attempt), MAX_RETRY_DELAY_MS);
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new RuntimeException("RETRY_INTERRUPTED", ie);
+                }
+                case "message.part.updated" -> {
+                    JsonNode part = props.path("part");
+                    if (part instanceof ObjectNode node && sessionId.equals(node.path("sessionID").asText())) {
+                        parts.put(node.path("id").asText(), new Part(node));
+                        changed();
+                    }
+                }
+                case "message.part.delta" -> {
+                    Part part = parts.get(props.path("partID").asText());
+                    if (part != null && sessionId.equals(props.path("sessionID").asText())) {
+                        part.append(props.path("field").asText("text"), props.path("delta").asText());
+                        changed();
+                    }
+                }
+                case "session.status" -> {
+                    if (sessionId.equals(props.path("sessionID").asText())) {
+                        String status = props.path("status").path("type").asText();
+                        started |= "busy".equals(status);
+                        if ("idle".equals(status) && started) {
+                            finish();
+                        }
                     }
                 }
-                // 请求超时
-                else if (e instanceof java.net.http.HttpTimeoutException ||
-                         cause instanceof java.net.http.HttpTimeoutException) {
-                    if (attempt == MAX_RETRIES - 1) {
-                        log.error("请求超时: OpenCode 服务响应超时");
-                        throw new RuntimeException("❌ OpenCode 服务响应超时，请稍后重试");
+                case "session.idle" -> {
+                    if (sessionId.equals(props.path("sessionID").asText()) && started) {
+                        finish();
                     }
-                    log.warn("请求超时，重试 {}/{}", attempt + 1, MAX_RETRIES);
-                    long delay = Math.min(INITIAL_RETRY_DELAY_MS * (1L << attempt), MAX_RETRY_DELAY_MS);
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new RuntimeException("RETRY_INTERRUPTED", ie);
+                }
+                case "session.error" -> {
+                    // 不带 sessionID 的错误无法判断属于哪个会话，不结束任何流，由超时或空闲事件兜底
+                    if (sessionId.equals(props.path("sessionID").asText())) {
+                        JsonNode err = props.path("error");
+                        String error = err.path("data").path("message").asText(err.path("name").asText("未知错误"));
+                        log.warn("OpenCode 会话出错: sessionId={}, error={}", sessionId, error);
+                        result.complete("❌ OpenCode 执行出错: " + error);
                     }
                 }
-                // 其他未知错误
-                else {
-                    if (attempt == MAX_RETRIES - 1) {
-                        log.error("未知错误: operation={}, error={}", operationName, e.getMessage(), e);
-                        throw new RuntimeException(operationName + " 失败", e);
+                default -> {
+                }
+            }
+        }
+
+        private void finish() {
+            if (renderPending) {
+                render();
+            }
+            if (rendered.isEmpty()) {
+                log.warn("流式执行完成，但无文本内容");
+                result.complete("✅ 命令已执行，但无返回内容");
+                return;
+            }
+            log.info("流式执行完成，内容长度: {}", rendered.length());
+            result.complete(rendered);
+        }
+
+        /**
+         * 内容有变化：距上次拼接超过间隔时立即拼接，否则安排一次延迟拼接
+         */
+        private void changed() {
+            if (renderPending) {
+                return;
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastRenderAt);
+            if (elapsed >= RENDER_INTERVAL_MS) {
+                render();
+                return;
+            }
+            renderPending = true;
+            try {
+                scheduler.schedule(this::renderPending, RENDER_INTERVAL_MS - elapsed, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                render();
+            }
+        }
+
+        private synchronized void renderPending() {
+            if (renderPending && !result.isDone()) {
+                render();
+            }
+        }
+
+        /**
+         * 按 part 出现顺序拼接助手回复，格式与同步请求的解析结果一致
+         */
+        private void render() {
+            renderPending = false;
+            lastRenderAt = System.nanoTime();
+            StringBuilder text = new StringBuilder();
+            for (Part entry : parts.values()) {
+                ObjectNode part = entry.node;
+                if (!"assistant".equals(roles.get(part.path("messageID").asText()))) {
+                    continue;
+                }
+                switch (part.path("type").asText()) {
+                    case "text" -> {
+                        if (!part.path("synthetic").asBoolean()) {
+                            text.append(entry.field("text")).append("\n");
+                        }
                     }
-                    log.warn("操作失败，重试 {}/{}: {}", attempt + 1, MAX_RETRIES, operationName, e.getMessage());
-                    long delay = Math.min(INITIAL_RETRY_DELAY_MS * (1L << attempt), MAX_RETRY_DELAY_MS);
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new RuntimeException("RETRY_INTERRUPTED", ie);
+                    case "tool" -> {
+                        JsonNode state = part.path("state");
+                        String status = state.path("status").asText();
+                        if ("completed".equals(status)) {
+                            text.append("```\n").append(state.path("output").asText()).append("\n```\n");
+                        } else if ("error".equals(status)) {
+                            text.append("⚠️ ").append(part.path("tool").asText())
+                                .append(": ").append(state.path("error").asText()).append("\n");
+                        } else {
+                            text.append("🔧 ").append(part.path("tool").asText()).append(" 执行中...\n");
+                        }
+                    }
+                    case "tool_use" -> {
+                        JsonNode output = part.path("toolUse").path("output");
+                        if (!output.isMissingNode()) {
+                            text.append("```\n").append(output.asText()).append("\n```\n");
+                        }
+                    }
+                    default -> {
                     }
                 }
             }
+
+            String content = text.toString().trim();
+            if (!content.isEmpty() && !content.equals(rendered)) {
+                rendered = content;
+                onContent.accept(content);
+            }
+        }
+    }
+
+    /**
+     * 事件流中的一个消息 part：最近一次完整更新的内容，加上之后收到的增量
+     */
+    private static final class Part {
+
+        private final ObjectNode node;
+        /** 字段名 → 完整更新的值加上之后的增量 */
+        private final Map<String, StringBuilder> deltas = new HashMap<>();
+
+        private Part(ObjectNode node) {
+            this.node = node;
+        }
+
+        private void append(String field, String delta) {
+            deltas.computeIfAbsent(field, name -> new StringBuilder(node.path(name).asText())).append(delta);
+        }
+
+        private CharSequence field(String field) {
+            StringBuilder value = deltas.get(field);
+            return value != null ? value : node.path(field).asText();
         }
-        throw new RuntimeException("All retry attempts failed for: " + operationName);
     }
 }
@@ -0,0 +1,132 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.qdw.feishu.infrastructure.config.OpenCodeProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OpenCode 健康监测
+ *
+ * 后台定期探测 /global/health 并缓存结果，请求前只读取缓存状态，不再逐个请求探测。
+ * 上一次探测结束后才调度下一次，探测不会堆积；启动时先视为健康，直到首次探测失败。
+ */
+@Slf4j
+@Component
+public class OpenCodeHealthMonitor {
+
+    private final OpenCodeProperties properties;
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long intervalSeconds;
+
+    private volatile boolean healthy = true;
+    private volatile boolean running;
+
+    public OpenCodeHealthMonitor(OpenCodeProperties properties,
+                                 @Qualifier("opencodeHttpClient") HttpClient httpClient,
+                                 @Qualifier("opencodeHttpScheduler") ScheduledExecutorService scheduler) {
+        this.properties = properties;
+        this.httpClient = httpClient;
+        this.scheduler = scheduler;
+        this.intervalSeconds = Math.max(1, properties.getHealthCheckIntervalSeconds());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isHealthCheckEnabled()) {
+            return;
+        }
+        running = true;
+        scheduleProbe(0);
+        log.info("OpenCode 健康监测已启动: interval={}秒", intervalSeconds);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * 缓存的健康状态；未启用健康检查时总是健康
+     */
+    public boolean isHealthy() {
+        return !properties.isHealthCheckEnabled() || healthy;
+    }
+
+    /**
+     * 立即探测一次并更新缓存，只探测一次不重试
+     */
+    public CompletableFuture<Boolean> probe() {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(properties.getServerUrl() + "/global/health"))
+                .timeout(Duration.ofSeconds(5))
+                .GET();
+        if (properties.getPassword() != null && !properties.getPassword().isEmpty()) {
+            String auth = properties.getUsername() + ":" + properties.getPassword();
+            builder.header("Authorization",
+                "Basic " + Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        return httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofString()).handle((response, error) -> {
+            boolean result;
+            if (error != null) {
+                log.debug("健康检查失败: {}", error.toString());
+                result = false;
+            } else {
+                result = response.statusCode() == 200 && isHealthyBody(response.body());
+            }
+            update(result);
+            return result;
+        });
+    }
+
+    private void update(boolean result) {
+        if (healthy != result) {
+            if (result) {
+                log.info("OpenCode 服务恢复可用: {}", properties.getServerUrl());
+            } else {
+                log.warn("OpenCode 服务不可用，请求将快速失败: {}", properties.getServerUrl());
+            }
+        }
+        healthy = result;
+    }
+
+    private boolean isHealthyBody(String body) {
+        try {
+            JsonNode json = objectMapper.readTree(body);
+            return json.has("healthy") && json.get("healthy").asBoolean();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void scheduleProbe(long delaySeconds) {
+        if (!running) {
+            return;
+        }
+        try {
+            scheduler.schedule(() -> probe().whenComplete((result, error) -> scheduleProbe(intervalSeconds)),
+                delaySeconds, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            running = false;
+        }
+    }
+}
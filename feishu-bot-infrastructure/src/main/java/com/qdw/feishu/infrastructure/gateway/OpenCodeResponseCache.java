@@ -0,0 +1,78 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.core.InFlightTasks;
+
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * OpenCode 只读查询的响应缓存
+ *
+ * - 按 key（请求路径）缓存 200 响应，过期时间由调用方按接口传入，TTL 为 0 时不缓存
+ * - 同一 key 的并发请求合并为一次（{@link InFlightTasks}），加载完成后所有等待者拿到同一响应
+ * - invalidateAll 清空缓存并使正在加载的结果作废：之后的请求重新加载，不会挂到失效前发起的请求上
+ *
+ * 只缓存原始响应，格式化由调用方完成，同一路径的不同展示方式（如按项目过滤会话）共用一份缓存。
+ */
+public class OpenCodeResponseCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final InFlightTasks<HttpResponse<String>> loading = new InFlightTasks<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongSupplier clock;
+
+    public OpenCodeResponseCache() {
+        this(System::currentTimeMillis);
+    }
+
+    OpenCodeResponseCache(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * 读取缓存，未命中或已过期时加载
+     *
+     * @param key 缓存 key
+     * @param ttl 缓存时长，不大于 0 时直接加载且不缓存
+     * @param loader 发起请求，只在没有同 key 请求加载中时调用
+     */
+    public CompletableFuture<HttpResponse<String>> get(String key, Duration ttl,
+                                                       Supplier<CompletableFuture<HttpResponse<String>>> loader) {
+        long ttlMillis = ttl.toMillis();
+        if (ttlMillis <= 0) {
+            return loader.get();
+        }
+
+        Entry cached = entries.get(key);
+        if (cached != null && clock.getAsLong() < cached.expiresAt) {
+            return CompletableFuture.completedFuture(cached.response);
+        }
+
+        long current = generation.get();
+        return loading.submit(key + "#" + current, () -> loader.get().whenComplete((response, error) -> {
+            if (error == null && response.statusCode() == 200) {
+                // 加载期间缓存被清空时丢弃结果，也不覆盖清空后重新加载写入的结果；
+                // 在 key 的锁内比较代数，与 invalidateAll 的先递增再清空配合，不会留下失效前的结果
+                Entry entry = new Entry(response, clock.getAsLong() + ttlMillis);
+                entries.compute(key, (k, existing) -> generation.get() == current ? entry : existing);
+            }
+        }));
+    }
+
+    /**
+     * 清空缓存（会话创建、重置后调用）
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    private record Entry(HttpResponse<String> response, long expiresAt) {
+    }
+}
@@ -2,18 +2,22 @@ package com.qdw.feishu.infrastructure.gateway;
 
 import com.qdw.feishu.domain.gateway.OpenCodeSessionGateway;
 import com.qdw.feishu.domain.gateway.TopicMappingGateway;
-import com.qdw.feishu.domain.model.TopicMapping;
 import com.qdw.feishu.domain.model.TopicMetadata;
 import com.qdw.feishu.domain.model.opencode.OpenCodeMetadata;
+import com.qdw.feishu.domain.topic.TopicContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.util.Optional;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * OpenCode 会话管理实现（基于 TopicMapping.metadata）
+ *
+ * 消息处理线程中通过 {@link TopicContext} 读写已加载的映射，不再每次查询存储和解析 JSON；
+ * 其他线程（如异步任务）通过 {@link TopicMappingGateway#update} 按版本号条件写入，冲突时重读重放，不会覆盖并发修改
  */
 @Slf4j
 @Component
@@ -26,49 +30,68 @@ public class OpenCodeSessionGatewayImpl implements OpenCodeSessionGateway {
 
     private final TopicMappingGateway topicMappingGateway;
 
-    private static final String KEY_SESSION_ID = "sessionId";
-    private static final String KEY_LAST_COMMAND = "lastCommand";
-    private static final String KEY_COMMAND_COUNT = "commandCount";
-    private static final String KEY_SESSION_CREATED = "sessionCreatedAt";
-    private static final String KEY_LAST_ACTIVE = "lastActiveAt";
-    private static final String KEY_EXPLICITLY_INITIALIZED = "explicitlyInitialized";
+    static final String KEY_SESSION_ID = "sessionId";
+    static final String KEY_LAST_COMMAND = "lastCommand";
+    static final String KEY_COMMAND_COUNT = "commandCount";
+    static final String KEY_SESSION_CREATED = "sessionCreatedAt";
+    static final String KEY_LAST_ACTIVE = "lastActiveAt";
+    static final String KEY_EXPLICITLY_INITIALIZED = "explicitlyInitialized";
 
     public OpenCodeSessionGatewayImpl(TopicMappingGateway topicMappingGateway) {
         this.topicMappingGateway = topicMappingGateway;
     }
 
+    /**
+     * 读取话题 metadata：当前线程处于该话题的消息处理中时，直接使用上下文中已解析的对象
+     */
+    private Optional<TopicMetadata> loadMetadata(String topicId) {
+        Optional<TopicContext> context = TopicContext.currentFor(topicId);
+        if (context.isPresent()) {
+            return Optional.of(context.get().getMetadata());
+        }
+        return topicMappingGateway.findByTopicId(topicId).map(TopicMetadata::of);
+    }
+
+    /**
+     * 修改话题 metadata：处于消息处理中时只修改上下文并标记为脏，由处理结束时统一保存；
+     * 否则读取最新映射后条件写入，版本冲突时重新执行修改
+     *
+     * @return 话题映射是否存在
+     */
+    private boolean modify(String topicId, Consumer<TopicMetadata> change) {
+        Optional<TopicContext> context = TopicContext.currentFor(topicId);
+        if (context.isPresent()) {
+            change.accept(context.get().getMetadata());
+            context.get().markDirty();
+            return true;
+        }
+        return topicMappingGateway.update(topicId, mapping -> change.accept(TopicMetadata.of(mapping))).isPresent();
+    }
+
     @Override
     public void saveSession(String topicId, String sessionId) {
-        Optional<TopicMapping> mappingOpt = topicMappingGateway.findByTopicId(topicId);
+        boolean found = modify(topicId, metadata -> {
+            metadata.set(KEY_SESSION_ID, sessionId);
+            metadata.set(KEY_LAST_ACTIVE, System.currentTimeMillis());
+        });
 
-        if (mappingOpt.isEmpty()) {
+        if (!found) {
             log.warn("话题映射不存在，无法保存会话: topicId={}", topicId);
             return;
         }
 
-        TopicMapping mapping = mappingOpt.get();
-
-        // 使用 TopicMetadata 工具类修改 metadata
-        TopicMetadata metadata = TopicMetadata.of(mapping);
-        metadata.set(KEY_SESSION_ID, sessionId);
-        metadata.set(KEY_LAST_ACTIVE, System.currentTimeMillis());
-
-        // 保存修改
-        topicMappingGateway.save(metadata.save());
-
         log.info("保存会话: topicId={}, sessionId={}", topicId, sessionId);
     }
 
     @Override
     public Optional<String> getSessionId(String topicId) {
-        Optional<TopicMapping> mappingOpt = topicMappingGateway.findByTopicId(topicId);
+        Optional<TopicMetadata> metadataOpt = loadMetadata(topicId);
 
-        if (mappingOpt.isEmpty()) {
+        if (metadataOpt.isEmpty()) {
             return Optional.empty();
         }
 
-        TopicMapping mapping = mappingOpt.get();
-        TopicMetadata metadata = TopicMetadata.of(mapping);
+        TopicMetadata metadata = metadataOpt.get();
 
         return metadata.getString(KEY_SESSION_ID);
     }
@@ -80,18 +103,10 @@ public class OpenCodeSessionGatewayImpl implements OpenCodeSessionGateway {
 
     @Override
     public void deleteSession(String topicId) {
-        Optional<TopicMapping> mappingOpt = topicMappingGateway.findByTopicId(topicId);
-
-        if (mappingOpt.isEmpty()) {
+        if (!modify(topicId, metadata -> metadata.remove(KEY_SESSION_ID))) {
             return;
         }
 
-        TopicMapping mapping = mappingOpt.get();
-        TopicMetadata metadata = TopicMetadata.of(mapping);
-        metadata.remove(KEY_SESSION_ID);
-
-        topicMappingGateway.save(metadata.save());
-
         log.info("删除会话: topicId={}", topicId);
     }
 
@@ -102,14 +117,13 @@ public class OpenCodeSessionGatewayImpl implements OpenCodeSessionGateway {
 
     @Override
     public Optional<OpenCodeMetadata> getMetadata(String topicId) {
-        Optional<TopicMapping> mappingOpt = topicMappingGateway.findByTopicId(topicId);
+        Optional<TopicMetadata> metadataOpt = loadMetadata(topicId);
 
-        if (mappingOpt.isEmpty()) {
+        if (metadataOpt.isEmpty()) {
             return Optional.empty();
         }
 
-        TopicMapping mapping = mappingOpt.get();
-        TopicMetadata metadata = TopicMetadata.of(mapping);
+        TopicMetadata metadata = metadataOpt.get();
 
         // 从 metadata 中提取所有字段
         OpenCodeMetadata result = new OpenCodeMetadata();
@@ -134,74 +148,52 @@ public class OpenCodeSessionGatewayImpl implements OpenCodeSessionGateway {
 
     @Override
     public void saveMetadata(String topicId, OpenCodeMetadata metadata) {
-        Optional<TopicMapping> mappingOpt = topicMappingGateway.findByTopicId(topicId);
-
-        if (mappingOpt.isEmpty()) {
+        boolean found = modify(topicId, topicMetadata -> {
+            // 保存所有字段
+            topicMetadata.set(KEY_SESSION_ID, metadata.getSessionId());
+            topicMetadata.set(KEY_LAST_COMMAND, metadata.getLastCommand());
+            topicMetadata.set(KEY_COMMAND_COUNT, metadata.getCommandCount());
+            topicMetadata.set(KEY_SESSION_CREATED, metadata.getSessionCreatedAt());
+            topicMetadata.set(KEY_LAST_ACTIVE, metadata.getLastActiveAt());
+        });
+
+        if (!found) {
             log.warn("话题映射不存在，无法保存元数据: topicId={}", topicId);
             return;
         }
 
-        TopicMapping mapping = mappingOpt.get();
-        TopicMetadata topicMetadata = TopicMetadata.of(mapping);
-
-        // 保存所有字段
-        topicMetadata.set(KEY_SESSION_ID, metadata.getSessionId());
-        topicMetadata.set(KEY_LAST_COMMAND, metadata.getLastCommand());
-        topicMetadata.set(KEY_COMMAND_COUNT, metadata.getCommandCount());
-        topicMetadata.set(KEY_SESSION_CREATED, metadata.getSessionCreatedAt());
-        topicMetadata.set(KEY_LAST_ACTIVE, metadata.getLastActiveAt());
-
-        topicMappingGateway.save(topicMetadata.save());
-
         log.info("保存元数据: topicId={}, metadata={}", topicId, metadata);
     }
 
     @Override
     public boolean isExplicitlyInitialized(String topicId) {
-        Optional<TopicMapping> mappingOpt = topicMappingGateway.findByTopicId(topicId);
+        Optional<TopicMetadata> metadataOpt = loadMetadata(topicId);
 
-        if (mappingOpt.isEmpty()) {
+        if (metadataOpt.isEmpty()) {
             return false;
         }
 
-        TopicMapping mapping = mappingOpt.get();
-        TopicMetadata metadata = TopicMetadata.of(mapping);
+        TopicMetadata metadata = metadataOpt.get();
 
         return metadata.getBoolean(KEY_EXPLICITLY_INITIALIZED).orElse(false);
     }
 
     @Override
     public void setExplicitlyInitialized(String topicId) {
-        Optional<TopicMapping> mappingOpt = topicMappingGateway.findByTopicId(topicId);
-
-        if (mappingOpt.isEmpty()) {
+        if (!modify(topicId, metadata -> metadata.set(KEY_EXPLICITLY_INITIALIZED, "true"))) {
             log.warn("话题映射不存在，无法设置显式初始化: topicId={}", topicId);
             return;
         }
 
-        TopicMapping mapping = mappingOpt.get();
-        TopicMetadata metadata = TopicMetadata.of(mapping);
-        metadata.set(KEY_EXPLICITLY_INITIALIZED, "true");
-
-        topicMappingGateway.save(metadata.save());
-
         log.info("设置话题为已显式初始化: topicId={}", topicId);
     }
 
     @Override
     public void clearExplicitlyInitialized(String topicId) {
-        Optional<TopicMapping> mappingOpt = topicMappingGateway.findByTopicId(topicId);
-
-        if (mappingOpt.isEmpty()) {
+        if (!modify(topicId, metadata -> metadata.remove(KEY_EXPLICITLY_INITIALIZED))) {
             return;
         }
 
-        TopicMapping mapping = mappingOpt.get();
-        TopicMetadata metadata = TopicMetadata.of(mapping);
-        metadata.remove(KEY_EXPLICITLY_INITIALIZED);
-
-        topicMappingGateway.save(metadata.save());
-
         log.info("清除话题的显式初始化状态: topicId={}", topicId);
     }
 }
@@ -0,0 +1,282 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.OpenCodeSessionGateway;
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.domain.model.TopicMetadata;
+import com.qdw.feishu.domain.model.opencode.OpenCodeMetadata;
+import com.qdw.feishu.infrastructure.config.OpenCodeProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * OpenCode 会话管理实现（独立 SQLite 会话表）
+ *
+ * 会话字段以独立列存放，不再经过 TopicMapping.metadata 的 JSON 读-改-写：
+ * - 查询会话 / 显式初始化状态是一次主键读取，不解析 JSON
+ * - 修改只更新涉及的列
+ * - 使用独立的小连接池（与话题映射库分开的数据库文件），关闭时释放
+ *
+ * 切换存储：
+ * - 从 topic-mapping 切换过来后的首次启动会从话题映射 metadata 导入已有会话，原有话题继续使用原会话；
+ *   导入成功后记录在单行的 opencode_session_import 表中，之后启动不再扫描话题映射
+ * - 切回 topic-mapping 不会把本表中的会话写回话题映射，切换后这些话题会创建新会话
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(
+    name = "opencode.session.storage",
+    havingValue = "sqlite"
+)
+public class OpenCodeSessionSqliteGateway implements OpenCodeSessionGateway {
+
+    private static final String UPSERT_SESSION_SQL = """
+            INSERT INTO opencode_session (topic_id, session_id, session_created_at, last_active_at)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT(topic_id) DO UPDATE SET
+                session_id = excluded.session_id,
+                last_active_at = excluded.last_active_at
+        """;
+
+    private static final String UPSERT_METADATA_SQL = """
+            INSERT INTO opencode_session
+                (topic_id, session_id, last_command, command_count, session_created_at, last_active_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT(topic_id) DO UPDATE SET
+                session_id = excluded.session_id,
+                last_command = excluded.last_command,
+                command_count = excluded.command_count,
+                session_created_at = excluded.session_created_at,
+                last_active_at = excluded.last_active_at
+        """;
+
+    private static final String SET_INITIALIZED_SQL = """
+            INSERT INTO opencode_session (topic_id, explicitly_initialized, session_created_at, last_active_at)
+            VALUES (?, 1, ?, ?)
+            ON CONFLICT(topic_id) DO UPDATE SET explicitly_initialized = 1
+        """;
+
+    private static final String IMPORT_SQL = """
+            INSERT OR IGNORE INTO opencode_session
+                (topic_id, session_id, last_command, command_count, session_created_at, last_active_at,
+                 explicitly_initialized)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    private static final String MARK_IMPORTED_SQL =
+            "INSERT OR IGNORE INTO opencode_session_import (id, imported_at, imported_count) VALUES (1, ?, ?)";
+
+    private static final int IMPORT_PAGE_SIZE = 500;
+    private static final int MAX_POOL_SIZE = 4;
+
+    private final TopicMappingGateway topicMappingGateway;
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final String dbFilePath;
+
+    public OpenCodeSessionSqliteGateway(OpenCodeProperties properties, TopicMappingGateway topicMappingGateway) {
+        this.topicMappingGateway = topicMappingGateway;
+        this.dbFilePath = properties.getSession().getSqlitePath();
+        this.dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url("jdbc:sqlite:" + dbFilePath + "?journal_mode=WAL&synchronous=NORMAL&busy_timeout=5000")
+                .driverClassName("org.sqlite.JDBC")
+                .build();
+        this.dataSource.setPoolName("opencode-session-sqlite");
+        this.dataSource.setMaximumPoolSize(MAX_POOL_SIZE);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            Path parentDir = Paths.get(dbFilePath).getParent();
+            if (parentDir != null) {
+                Files.createDirectories(parentDir);
+            }
+            jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS opencode_session (
+                    topic_id TEXT PRIMARY KEY NOT NULL,
+                    session_id TEXT,
+                    last_command TEXT,
+                    command_count INTEGER NOT NULL DEFAULT 0,
+                    session_created_at INTEGER NOT NULL,
+                    last_active_at INTEGER NOT NULL,
+                    explicitly_initialized INTEGER NOT NULL DEFAULT 0
+                )
+            """);
+            jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS opencode_session_import (
+                    id INTEGER PRIMARY KEY CHECK (id = 1),
+                    imported_at INTEGER NOT NULL,
+                    imported_count INTEGER NOT NULL
+                )
+            """);
+            log.info("SQLite OpenCode 会话表初始化成功: {}", dbFilePath);
+        } catch (Exception e) {
+            log.error("SQLite OpenCode 会话表初始化失败", e);
+            throw new RuntimeException("Failed to initialize OpenCode session database", e);
+        }
+
+        Integer imported = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM opencode_session_import", Integer.class);
+        if (imported == null || imported == 0) {
+            importFromTopicMappings();
+        }
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        dataSource.close();
+        log.info("SQLite OpenCode 会话连接池已关闭");
+    }
+
+    /**
+     * 从话题映射 metadata 导入已有会话（字段含义与 {@link OpenCodeSessionGatewayImpl} 一致），
+     * 成功后记录导入标记，只执行一次；导入失败不影响启动，不记录标记，下次启动重试
+     * （已导入的行用 INSERT OR IGNORE 跳过，不会覆盖导入后的修改）
+     */
+    private void importFromTopicMappings() {
+        int imported = 0;
+        String after = null;
+        try {
+            List<TopicMapping> page;
+            while (!(page = topicMappingGateway.scan(after, IMPORT_PAGE_SIZE)).isEmpty()) {
+                List<Object[]> rows = new ArrayList<>();
+                for (TopicMapping mapping : page) {
+                    Object[] row = toImportRow(mapping);
+                    if (row != null) {
+                        rows.add(row);
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(IMPORT_SQL, rows);
+                    imported += rows.size();
+                }
+                after = page.get(page.size() - 1).getTopicId();
+            }
+        } catch (Exception e) {
+            log.warn("从话题映射导入 OpenCode 会话失败，已导入 {} 个，下次启动重试: {}", imported, e.getMessage());
+            return;
+        }
+        jdbcTemplate.update(MARK_IMPORTED_SQL, System.currentTimeMillis(), imported);
+        log.info("已从话题映射导入 OpenCode 会话: {} 个", imported);
+    }
+
+    private static Object[] toImportRow(TopicMapping mapping) {
+        TopicMetadata metadata = TopicMetadata.of(mapping);
+        Optional<String> sessionId = metadata.getString(OpenCodeSessionGatewayImpl.KEY_SESSION_ID);
+        boolean initialized = metadata.getBoolean(OpenCodeSessionGatewayImpl.KEY_EXPLICITLY_INITIALIZED).orElse(false);
+        if (sessionId.isEmpty() && !initialized) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        return new Object[]{
+            mapping.getTopicId(),
+            sessionId.orElse(null),
+            metadata.getString(OpenCodeSessionGatewayImpl.KEY_LAST_COMMAND).orElse(null),
+            metadata.getInt(OpenCodeSessionGatewayImpl.KEY_COMMAND_COUNT).orElse(0),
+            metadata.getLong(OpenCodeSessionGatewayImpl.KEY_SESSION_CREATED).orElse(now),
+            metadata.getLong(OpenCodeSessionGatewayImpl.KEY_LAST_ACTIVE).orElse(now),
+            initialized ? 1 : 0
+        };
+    }
+
+    @Override
+    public void saveSession(String topicId, String sessionId) {
+        long now = System.currentTimeMillis();
+        jdbcTemplate.update(UPSERT_SESSION_SQL, topicId, sessionId, now, now);
+        log.info("保存会话: topicId={}, sessionId={}", topicId, sessionId);
+    }
+
+    @Override
+    public Optional<String> getSessionId(String topicId) {
+        List<String> result = jdbcTemplate.queryForList(
+                "SELECT session_id FROM opencode_session WHERE topic_id = ?", String.class, topicId);
+        return result.isEmpty() ? Optional.empty() : Optional.ofNullable(result.get(0));
+    }
+
+    @Override
+    public void updateSession(String topicId, String sessionId) {
+        saveSession(topicId, sessionId);
+    }
+
+    @Override
+    public void deleteSession(String topicId) {
+        int updated = jdbcTemplate.update(
+                "UPDATE opencode_session SET session_id = NULL WHERE topic_id = ?", topicId);
+        if (updated > 0) {
+            log.info("删除会话: topicId={}", topicId);
+        }
+    }
+
+    @Override
+    public void clearSession(String topicId) {
+        deleteSession(topicId);
+    }
+
+    @Override
+    public Optional<OpenCodeMetadata> getMetadata(String topicId) {
+        List<OpenCodeMetadata> result = jdbcTemplate.query("""
+                SELECT session_id, last_command, command_count, session_created_at, last_active_at
+                FROM opencode_session WHERE topic_id = ?
+            """, (rs, rowNum) -> {
+                OpenCodeMetadata metadata = new OpenCodeMetadata();
+                metadata.setSessionId(rs.getString("session_id"));
+                metadata.setLastCommand(rs.getString("last_command"));
+                metadata.setCommandCount(rs.getInt("command_count"));
+                metadata.setSessionCreatedAt(rs.getLong("session_created_at"));
+                metadata.setLastActiveAt(rs.getLong("last_active_at"));
+                return metadata;
+            }, topicId);
+        return result.stream().findFirst();
+    }
+
+    @Override
+    public void saveMetadata(String topicId, OpenCodeMetadata metadata) {
+        jdbcTemplate.update(UPSERT_METADATA_SQL,
+                topicId,
+                metadata.getSessionId(),
+                metadata.getLastCommand(),
+                metadata.getCommandCount(),
+                metadata.getSessionCreatedAt(),
+                metadata.getLastActiveAt());
+        log.info("保存元数据: topicId={}, metadata={}", topicId, metadata);
+    }
+
+    @Override
+    public boolean isExplicitlyInitialized(String topicId) {
+        List<Integer> result = jdbcTemplate.queryForList(
+                "SELECT explicitly_initialized FROM opencode_session WHERE topic_id = ?", Integer.class, topicId);
+        return !result.isEmpty() && result.get(0) != null && result.get(0) == 1;
+    }
+
+    @Override
+    public void setExplicitlyInitialized(String topicId) {
+        long now = System.currentTimeMillis();
+        jdbcTemplate.update(SET_INITIALIZED_SQL, topicId, now, now);
+        log.info("设置话题为已显式初始化: topicId={}", topicId);
+    }
+
+    @Override
+    public void clearExplicitlyInitialized(String topicId) {
+        int updated = jdbcTemplate.update(
+                "UPDATE opencode_session SET explicitly_initialized = 0 WHERE topic_id = ?", topicId);
+        if (updated > 0) {
+            log.info("清除话题的显式初始化状态: topicId={}", topicId);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.google.gson.Gson;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 话题映射冷数据归档
+ *
+ * 存储结构：
+ * - 每次归档写成一个只追加、不再修改的段文件 segment-{序号}.ndjson.gz，每行一个映射的 JSON
+ * - 段文件先写临时文件并 fsync，再原子重命名，崩溃时不会留下半个段
+ * - forgotten.log 记录显式删除的话题（"段序号 话题ID"），避免已删除的话题被恢复
+ *
+ * 启动时扫描全部段建立 topicId → 段序号 的内存索引，查找时只解压对应的段。
+ * 话题恢复到热数据后索引项保留（只在热数据未命中时才会查归档），以便之后删除时能记录到 forgotten.log。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "feishu.topic-mapping.retention.enabled", havingValue = "true")
+public class TopicMappingArchive {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".ndjson.gz";
+    private static final String FORGOTTEN_FILE = "forgotten.log";
+
+    private final Path archiveDir;
+    private final Gson gson = new Gson();
+    private final Map<String, Long> index = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    private long lastSegment;
+
+    public TopicMappingArchive(TopicMappingProperties properties) {
+        this.archiveDir = Paths.get(properties.getRetention().getArchiveDir());
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            Files.createDirectories(archiveDir);
+            List<Path> segments;
+            try (Stream<Path> files = Files.list(archiveDir)) {
+                List<Path> all = files.toList();
+                for (Path path : all) {
+                    if (path.getFileName().toString().endsWith(".tmp")) {
+                        Files.deleteIfExists(path);
+                    }
+                }
+                segments = all.stream().filter(TopicMappingArchive::isSegment).sorted().toList();
+            }
+            for (Path segment : segments) {
+                long seq = segmentSeq(segment);
+                for (TopicMapping mapping : readSegment(segment)) {
+                    index.put(mapping.getTopicId(), seq);
+                }
+                lastSegment = Math.max(lastSegment, seq);
+            }
+            applyForgotten();
+            log.info("话题映射归档已加载: dir={}, segments={}, topics={}",
+                archiveDir.toAbsolutePath(), segments.size(), index.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load topic mapping archive: " + archiveDir, e);
+        }
+    }
+
+    /**
+     * 将一批映射写成新的归档段，返回后数据已落盘
+     */
+    public void append(Collection<TopicMapping> mappings) {
+        if (mappings.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            long seq = lastSegment + 1;
+            Path segment = archiveDir.resolve(segmentName(seq));
+            Path tmp = archiveDir.resolve(segmentName(seq) + ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel));
+                    Writer writer = new OutputStreamWriter(gzip, StandardCharsets.UTF_8);
+                    for (TopicMapping mapping : mappings) {
+                        writer.write(gson.toJson(mapping));
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                    gzip.finish();
+                    channel.force(true);
+                }
+                Files.move(tmp, segment, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write topic mapping archive segment: " + segment, e);
+            }
+            lastSegment = seq;
+            for (TopicMapping mapping : mappings) {
+                index.put(mapping.getTopicId(), seq);
+            }
+            log.info("话题映射已归档: segment={}, count={}", segment.getFileName(), mappings.size());
+        }
+    }
+
+    /**
+     * 在归档中查找话题，只解压索引指向的段
+     */
+    public Optional<TopicMapping> find(String topicId) {
+        Long seq = index.get(topicId);
+        if (seq == null) {
+            return Optional.empty();
+        }
+        try {
+            TopicMapping found = null;
+            for (TopicMapping mapping : readSegment(archiveDir.resolve(segmentName(seq)))) {
+                if (topicId.equals(mapping.getTopicId())) {
+                    found = mapping;
+                }
+            }
+            return Optional.ofNullable(found);
+        } catch (IOException e) {
+            log.warn("读取话题映射归档段失败: segment={}, topicId={}", seq, topicId, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 话题被显式删除，持久记录以免之后被从归档恢复
+     */
+    public void forget(String topicId) {
+        synchronized (writeLock) {
+            if (index.remove(topicId) == null) {
+                return;
+            }
+            String line = lastSegment + " " + topicId + "\n";
+            try {
+                Files.writeString(archiveDir.resolve(FORGOTTEN_FILE), line, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                log.warn("记录已删除话题失败: topicId={}", topicId, e);
+            }
+        }
+    }
+
+    /**
+     * 已归档的话题数（用于监控）
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * 删除记录只作用于记录时已存在的段，之后重新归档的话题仍可恢复
+     */
+    private void applyForgotten() throws IOException {
+        Path forgotten = archiveDir.resolve(FORGOTTEN_FILE);
+        if (!Files.exists(forgotten)) {
+            return;
+        }
+        for (String line : Files.readAllLines(forgotten, StandardCharsets.UTF_8)) {
+            int space = line.indexOf(' ');
+            if (space <= 0) {
+                continue;
+            }
+            long seq = Long.parseLong(line.substring(0, space));
+            String topicId = line.substring(space + 1);
+            index.computeIfPresent(topicId, (id, archivedIn) -> archivedIn <= seq ? null : archivedIn);
+        }
+    }
+
+    private List<TopicMapping> readSegment(Path segment) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(segment)), StandardCharsets.UTF_8))) {
+            return reader.lines()
+                .filter(line -> !line.isBlank())
+                .map(line -> gson.fromJson(line, TopicMapping.class))
+                .toList();
+        }
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long segmentSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String segmentName(long seq) {
+        return String.format("%s%010d%s", SEGMENT_PREFIX, seq, SEGMENT_SUFFIX);
+    }
+}
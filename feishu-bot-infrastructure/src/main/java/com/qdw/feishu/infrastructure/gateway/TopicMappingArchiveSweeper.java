@@ -0,0 +1,121 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 不活跃话题归档任务
+ *
+ * 周期性从热存储中按 last_active_at 升序取出超过 TTL 的映射，
+ * 先写入归档段并落盘，再从热存储删除（删除时复核活跃时间，期间重新活跃的话题保留）。
+ * 读取和删除都经过首选的 TopicMappingGateway：启用缓存时先回写脏数据，有未回写修改的话题不删除，
+ * 删除后同时失效缓存，避免缓存继续返回已归档的话题或把它回写进热存储。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "feishu.topic-mapping.retention.enabled", havingValue = "true")
+public class TopicMappingArchiveSweeper {
+
+    private final TopicMappingGateway topicMappingGateway;
+    private final TopicMappingArchive archive;
+    private final long ttlMillis;
+    private final long sweepIntervalMinutes;
+    private final int batchSize;
+    private final AtomicLong archivedCount = new AtomicLong();
+    private final LongSupplier clock;
+
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public TopicMappingArchiveSweeper(TopicMappingGateway topicMappingGateway,
+                                      TopicMappingArchive archive,
+                                      TopicMappingProperties properties) {
+        this(topicMappingGateway, archive, properties, System::currentTimeMillis);
+    }
+
+    TopicMappingArchiveSweeper(TopicMappingGateway topicMappingGateway,
+                               TopicMappingArchive archive,
+                               TopicMappingProperties properties,
+                               LongSupplier clock) {
+        TopicMappingProperties.Retention retention = properties.getRetention();
+        this.topicMappingGateway = topicMappingGateway;
+        this.archive = archive;
+        this.clock = clock;
+        this.ttlMillis = TimeUnit.DAYS.toMillis(Math.max(1, retention.getTtlDays()));
+        this.sweepIntervalMinutes = Math.max(1, retention.getSweepIntervalMinutes());
+        this.batchSize = Math.max(1, retention.getBatchSize());
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "topic-mapping-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::sweepQuietly, 1, sweepIntervalMinutes, TimeUnit.MINUTES);
+        log.info("话题映射归档任务已启动: ttl={}天, interval={}分钟, batchSize={}",
+            TimeUnit.MILLISECONDS.toDays(ttlMillis), sweepIntervalMinutes, batchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 归档所有超过 TTL 的话题
+     *
+     * @return 本次从热存储移除的数量
+     */
+    public int sweep() {
+        long cutoff = clock.getAsLong() - ttlMillis;
+        int total = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<TopicMapping> batch = topicMappingGateway.findInactiveBefore(cutoff, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            archive.append(batch);
+            int removed = topicMappingGateway.deleteInactiveBefore(
+                batch.stream().map(TopicMapping::getTopicId).toList(), cutoff);
+            total += removed;
+            if (removed == 0 || batch.size() < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            archivedCount.addAndGet(total);
+            log.info("本轮归档不活跃话题映射 {} 个，累计 {} 个", total, archivedCount.get());
+        }
+        return total;
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            log.error("话题映射归档失败，将在下一轮重试", e);
+        }
+    }
+
+    public long getArchivedCount() {
+        return archivedCount.get();
+    }
+}
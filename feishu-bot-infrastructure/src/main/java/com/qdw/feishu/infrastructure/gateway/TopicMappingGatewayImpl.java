@@ -4,22 +4,53 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.qdw.feishu.domain.gateway.TopicMappingGateway;
 import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 话题映射文件存储
+ *
+ * 快照 + 变更日志：
+ * - 每次 save / delete 先向变更日志追加一行 JSON 记录，写入成功后才修改内存；写入失败时截掉写了一半的内容
+ *   并抛出异常，调用方不会误以为已保存。写入代价与映射总数无关
+ * - 日志累计 compact-threshold 条后压缩：在锁内把当前日志轮转为 .log.prev 并取得全量映射的浅拷贝，
+ *   由后台线程写成新快照（临时文件 + fsync + 原子重命名）后删除 .log.prev，写入线程不等待快照落盘
+ * - 启动时先加载快照，再按顺序重放 .log.prev 和日志；日志末尾被截断的半条记录直接丢弃
+ *
+ * 快照格式与旧版全量 JSON 文件一致，升级后旧文件直接作为初始快照加载。
+ * 每次写入版本号加一并随映射一起记录，条件写入在 writeLock 内比较；查询返回副本。
+ * 文件只能由一个进程写入，不支持多实例共享；导出工具通过 {@link #openReadOnly} 在机器人运行时读取。
+ * 映射按话题 ID 有序保存，支持分页导出；另按最后活跃时间维护索引，归档查找不活跃话题时不需要全量排序。
+ */
 @Slf4j
-@Component
+@Component("topicMappingStore")
 @ConditionalOnProperty(
     name = "feishu.topic-mapping.storage-type",
     havingValue = "file",
@@ -27,71 +58,434 @@ import java.util.concurrent.ConcurrentHashMap;
 )
 public class TopicMappingGatewayImpl implements TopicMappingGateway {
 
-    private final Map<String, TopicMapping> mappings = new ConcurrentHashMap<>();
-    private static final String STORAGE_FILE = "/tmp/feishu-topic-mappings.json";
+    private static final String OP_PUT = "put";
+    private static final String OP_DELETE = "del";
+    private static final int READ_ONLY_LOAD_ATTEMPTS = 5;
+
+    private final ConcurrentSkipListMap<String, TopicMapping> mappings = new ConcurrentSkipListMap<>();
+    private final LastActiveIndex activity = new LastActiveIndex();
     private final Gson gson = new Gson();
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final Path prevLogFile;
+    private final int compactThreshold;
+    private final boolean syncOnWrite;
+    private final boolean readOnly;
+    private final Object writeLock = new Object();
+
+    private FileChannel logChannel;
+    private int logRecords;
+    /** 后台压缩进行中，受 writeLock 保护 */
+    private boolean compacting;
+    private ExecutorService compactor;
+
+    public TopicMappingGatewayImpl(TopicMappingProperties properties) {
+        this(properties, false);
+    }
+
+    private TopicMappingGatewayImpl(TopicMappingProperties properties, boolean readOnly) {
+        TopicMappingProperties.FileStore config = properties.getFile();
+        this.snapshotFile = Paths.get(config.getPath());
+        this.logFile = Paths.get(config.getPath() + ".log");
+        this.prevLogFile = Paths.get(config.getPath() + ".log.prev");
+        this.compactThreshold = Math.max(1, config.getCompactThreshold());
+        this.syncOnWrite = config.isSyncOnWrite();
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * 只读加载快照和变更日志：不截断日志末尾、不打开日志写入，可以在机器人运行时读取同一份文件
+     * 读取期间机器人恰好轮转日志或替换快照时，重新读取，避免漏掉 .log.prev 中的记录
+     */
+    public static TopicMappingGatewayImpl openReadOnly(TopicMappingProperties properties) {
+        TopicMappingGatewayImpl gateway = new TopicMappingGatewayImpl(properties, true);
+        for (int attempt = 1; ; attempt++) {
+            List<Object> before = gateway.fileState();
+            try {
+                gateway.loadMappings();
+                if (before.equals(gateway.fileState())) {
+                    return gateway;
+                }
+            } catch (UncheckedIOException e) {
+                if (attempt >= READ_ONLY_LOAD_ATTEMPTS) {
+                    throw e;
+                }
+            }
+            if (attempt >= READ_ONLY_LOAD_ATTEMPTS) {
+                throw new IllegalStateException("Topic mapping files kept changing while loading: " + gateway.snapshotFile);
+            }
+            gateway.mappings.clear();
+            gateway.activity.clear();
+            gateway.logRecords = 0;
+        }
+    }
+
+    /**
+     * 快照、.log.prev 和日志的文件标识，压缩会改变其中至少一项
+     */
+    private List<Object> fileState() {
+        List<Object> state = new ArrayList<>(5);
+        for (Path file : List.of(snapshotFile, prevLogFile, logFile)) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                state.add(attributes.fileKey());
+                state.add(file == logFile ? null : attributes.lastModifiedTime());
+                state.add(file == prevLogFile ? attributes.size() : null);
+            } catch (IOException e) {
+                state.add(null);
+            }
+        }
+        return state;
+    }
 
     @PostConstruct
     public void loadMappings() {
         try {
-            File file = new File(STORAGE_FILE);
-            if (file.exists()) {
-                String json = Files.readString(file.toPath());
-                Type type = new TypeToken<Map<String, TopicMapping>>(){}.getType();
-                Map<String, TopicMapping> loaded = gson.fromJson(json, type);
-                if (loaded != null) {
-                    mappings.putAll(loaded);
-                    log.info("从文件加载话题映射: {} 个", mappings.size());
-                }
-            } else {
-                log.info("话题映射文件不存在，使用空映射");
+            if (snapshotFile.getParent() != null) {
+                Files.createDirectories(snapshotFile.getParent());
             }
-        } catch (Exception e) {
-            log.warn("加载话题映射失败: {}，使用空映射", e.getMessage());
+            loadSnapshot();
+            replayLog(prevLogFile);
+            replayLog(logFile);
+            if (!readOnly) {
+                logChannel = openLog();
+                compactor = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "topic-mapping-compactor");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            log.info("从文件加载话题映射: {} 个（快照 + {} 条变更记录）", mappings.size(), logRecords);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load topic mappings: " + snapshotFile, e);
         }
     }
 
     @PreDestroy
     public void saveMappingsOnShutdown() {
+        if (readOnly) {
+            return;
+        }
+        compactor.shutdown();
         try {
-            saveMappingsToFile();
-            log.info("应用关闭，话题映射已保存到文件");
-        } catch (Exception e) {
-            log.error("保存话题映射失败", e);
+            if (!compactor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("话题映射后台压缩未在 30 秒内结束");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            try {
+                writeSnapshot(rotateLog());
+                Files.deleteIfExists(prevLogFile);
+                logChannel.close();
+                log.info("应用关闭，话题映射已保存到文件");
+            } catch (Exception e) {
+                log.error("保存话题映射失败", e);
+            }
+        }
+    }
+
+    private void loadSnapshot() throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            log.info("话题映射快照不存在，使用空映射");
+            return;
+        }
+        String json = Files.readString(snapshotFile);
+        Type type = new TypeToken<Map<String, TopicMapping>>(){}.getType();
+        Map<String, TopicMapping> loaded = gson.fromJson(json, type);
+        if (loaded != null) {
+            mappings.putAll(loaded);
+            loaded.forEach((topicId, mapping) -> activity.put(topicId, mapping.getLastActiveAt()));
+        }
+    }
+
+    /**
+     * 重放变更日志；最后一条记录没有换行或无法解析时视为写入中断，截掉该部分
+     */
+    private void replayLog(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        int start = 0;
+        int validLength = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+            start = i + 1;
+            if (line.isBlank()) {
+                validLength = start;
+                continue;
+            }
+            LogRecord record;
+            try {
+                record = gson.fromJson(line, LogRecord.class);
+            } catch (Exception e) {
+                log.warn("话题映射变更日志记录损坏，丢弃后续内容: offset={}", validLength);
+                break;
+            }
+            if (record != null) {
+                apply(record);
+                logRecords++;
+            }
+            validLength = start;
+        }
+        if (validLength < bytes.length && !readOnly) {
+            log.warn("话题映射变更日志末尾不完整，截断 {} 字节", bytes.length - validLength);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+    }
+
+    private void apply(LogRecord record) {
+        if (OP_PUT.equals(record.op) && record.mapping != null) {
+            mappings.put(record.mapping.getTopicId(), record.mapping);
+            activity.put(record.mapping.getTopicId(), record.mapping.getLastActiveAt());
+        } else if (OP_DELETE.equals(record.op) && record.topicId != null) {
+            mappings.remove(record.topicId);
+            activity.remove(record.topicId);
+        }
+    }
+
+    /**
+     * 追加一条记录并应用变更，日志过长时交给后台线程压缩
+     * 版本号分配、日志写入与内存变更在同一把锁内完成，保证重放顺序与内存状态一致；
+     * 先写日志后改内存，写入失败时内存保持不变并抛出 {@link UncheckedIOException}
+     */
+    private void appendRecord(LogRecord record) {
+        if (readOnly) {
+            throw new IllegalStateException("Topic mapping file store is opened read-only: " + snapshotFile);
+        }
+        synchronized (writeLock) {
+            if (record.mapping != null) {
+                TopicMapping current = mappings.get(record.mapping.getTopicId());
+                record.mapping.setVersion(current != null ? current.getVersion() + 1 : 1);
+            }
+            writeLine((gson.toJson(record) + "\n").getBytes(StandardCharsets.UTF_8));
+            apply(record);
+            if (++logRecords >= compactThreshold && !compacting) {
+                compacting = true;
+                compactor.execute(this::compactInBackground);
+            }
+        }
+    }
+
+    /**
+     * 写入一行日志，调用方需持有 writeLock；失败时截掉写了一半的内容，避免后续记录接在损坏的行后面
+     */
+    private void writeLine(byte[] line) {
+        long position = -1;
+        try {
+            position = logChannel.size();
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                logChannel.write(buffer);
+            }
+            if (syncOnWrite) {
+                logChannel.force(false);
+            }
+        } catch (IOException e) {
+            if (position >= 0) {
+                try {
+                    logChannel.truncate(position);
+                } catch (IOException truncateError) {
+                    e.addSuppressed(truncateError);
+                }
+            }
+            throw new UncheckedIOException("Failed to append topic mapping record: " + logFile, e);
         }
     }
 
-    private void saveMappingsToFile() {
+    /**
+     * 后台压缩：锁内只轮转日志并浅拷贝映射，序列化和落盘在锁外进行
+     */
+    private void compactInBackground() {
         try {
-            String json = gson.toJson(mappings);
-            Files.writeString(Path.of(STORAGE_FILE), json);
-            log.debug("话题映射已持久化到文件: {} 个", mappings.size());
+            Map<String, TopicMapping> snapshot;
+            synchronized (writeLock) {
+                snapshot = rotateLog();
+            }
+            writeSnapshot(snapshot);
+            Files.deleteIfExists(prevLogFile);
         } catch (Exception e) {
-            log.error("保存话题映射到文件失败", e);
+            log.error("话题映射快照生成失败，下次压缩时重试", e);
+        } finally {
+            synchronized (writeLock) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * 轮转变更日志并返回此刻全量映射的浅拷贝，调用方需持有 writeLock
+     * 已保存的映射对象不再被修改（查询返回副本），浅拷贝即是一致的快照。
+     * 上次压缩失败留下的 .log.prev 仍是恢复所需的记录，此时把当前日志追加到它后面而不是覆盖它。
+     */
+    private Map<String, TopicMapping> rotateLog() throws IOException {
+        if (Files.exists(prevLogFile)) {
+            byte[] pending = Files.readAllBytes(logFile);
+            try (FileChannel prev = FileChannel.open(prevLogFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(pending);
+                while (buffer.hasRemaining()) {
+                    prev.write(buffer);
+                }
+                prev.force(true);
+            }
+            logChannel.truncate(0);
+            logChannel.force(true);
+        } else {
+            logChannel.force(true);
+            logChannel.close();
+            Files.move(logFile, prevLogFile, StandardCopyOption.ATOMIC_MOVE);
+            logChannel = openLog();
         }
+        logRecords = 0;
+        return new TreeMap<>(mappings);
+    }
+
+    /**
+     * 写出全量快照：临时文件 + fsync + 原子重命名
+     * 重命名后、删除 .log.prev 前崩溃也无妨：其中的记录重放到新快照上结果不变
+     */
+    private void writeSnapshot(Map<String, TopicMapping> snapshot) throws IOException {
+        Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        byte[] json = gson.toJson(snapshot).getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(json);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("话题映射快照已生成: {} 个", snapshot.size());
+    }
+
+    private FileChannel openLog() throws IOException {
+        return FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
     }
 
     @Override
     public void save(TopicMapping mapping) {
-        mappings.put(mapping.getTopicId(), mapping);
+        appendRecord(LogRecord.put(mapping));
         log.info("保存话题映射: topicId={}, appId={}", mapping.getTopicId(), mapping.getAppId());
+    }
+
+    /**
+     * 批量写入：逐条追加日志，只在结束时记录一次日志，供导入和缓存回写使用
+     */
+    @Override
+    public void saveAll(Collection<TopicMapping> mappings) {
+        synchronized (writeLock) {
+            for (TopicMapping mapping : mappings) {
+                appendRecord(LogRecord.put(mapping));
+            }
+        }
+        log.debug("批量保存话题映射: {} 条", mappings.size());
+    }
 
-        // 每次保存时都持久化到文件
-        saveMappingsToFile();
+    @Override
+    public boolean compareAndSave(TopicMapping mapping) {
+        LogRecord record = LogRecord.put(mapping);
+        synchronized (writeLock) {
+            TopicMapping current = mappings.get(mapping.getTopicId());
+            long version = current != null ? current.getVersion() : 0;
+            if (version != mapping.getVersion()) {
+                log.debug("话题映射版本冲突: topicId={}, expected={}, actual={}",
+                    mapping.getTopicId(), mapping.getVersion(), version);
+                return false;
+            }
+            appendRecord(record);
+        }
+        mapping.setVersion(mapping.getVersion() + 1);
+        mapping.markMetadataPersisted();
+        return true;
     }
 
     @Override
     public Optional<TopicMapping> findByTopicId(String topicId) {
         log.debug("查找话题映射: topicId={}", topicId);
-        return Optional.ofNullable(mappings.get(topicId));
+        // 返回副本：调用方修改后需显式保存，条件写入才能比较出版本变化
+        return Optional.ofNullable(mappings.get(topicId)).map(TopicMapping::copy);
     }
 
     @Override
     public void delete(String topicId) {
-        mappings.remove(topicId);
+        appendRecord(LogRecord.delete(topicId));
         log.info("删除话题映射: topicId={}", topicId);
+    }
 
-        // 删除后也持久化
-        saveMappingsToFile();
+    @Override
+    public List<TopicMapping> findInactiveBefore(long cutoff, int limit) {
+        List<TopicMapping> result = new ArrayList<>();
+        for (String topicId : activity.before(cutoff, limit)) {
+            TopicMapping mapping = mappings.get(topicId);
+            if (mapping != null && mapping.getLastActiveAt() < cutoff) {
+                result.add(mapping.copy());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<TopicMapping> scan(String afterTopicId, int limit) {
+        Map<String, TopicMapping> tail = afterTopicId == null ? mappings : mappings.tailMap(afterTopicId, false);
+        List<TopicMapping> page = new ArrayList<>(Math.min(limit, 1024));
+        for (TopicMapping mapping : tail.values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(mapping.copy());
+        }
+        return page;
+    }
+
+    @Override
+    public int deleteInactiveBefore(Collection<String> topicIds, long cutoff) {
+        int deleted = 0;
+        synchronized (writeLock) {
+            for (String topicId : topicIds) {
+                TopicMapping mapping = mappings.get(topicId);
+                if (mapping != null && mapping.getLastActiveAt() < cutoff) {
+                    appendRecord(LogRecord.delete(topicId));
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0) {
+            log.info("删除不活跃话题映射: {} 个", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * 变更日志记录：op 为 put 时携带完整映射，为 del 时只携带话题 ID
+     */
+    private static final class LogRecord {
+        private String op;
+        private TopicMapping mapping;
+        private String topicId;
+
+        private static LogRecord put(TopicMapping mapping) {
+            // 保存副本，调用方之后的修改不影响已记录的内容；
+            // Gson 直接读取字段，先把尚未序列化的 metadata 修改写回字段
+            mapping.getMetadata();
+            LogRecord record = new LogRecord();
+            record.op = OP_PUT;
+            record.mapping = mapping.copy();
+            return record;
+        }
+
+        private static LogRecord delete(String topicId) {
+            LogRecord record = new LogRecord();
+            record.op = OP_DELETE;
+            record.topicId = topicId;
+            return record;
+        }
     }
 }
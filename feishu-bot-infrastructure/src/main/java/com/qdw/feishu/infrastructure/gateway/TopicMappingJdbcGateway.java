@@ -0,0 +1,324 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 话题映射 JDBC Gateway 实现，供多个机器人进程共享同一份话题状态
+ *
+ * 连接池访问任意 JDBC 数据库（本地可用 H2 的 AUTO_SERVER 模式或共享的 SQLite 文件），
+ * 建表语句只使用通用类型，不依赖特定数据库的 JSON 函数，metadata 整体写入。
+ *
+ * 并发控制：
+ * - 每次写入 version 加一
+ * - 条件写入（compareAndSave）：版本 0 直接 INSERT，主键冲突即失败；否则 UPDATE ... WHERE version = ?，
+ *   影响行数为 0 即失败，由调用方重读后重试
+ * - 普通保存先 UPDATE，没有该行时 INSERT；与其他进程同时插入导致主键冲突时改为 UPDATE
+ */
+@Slf4j
+@Component("topicMappingStore")
+@ConditionalOnProperty(
+    name = "feishu.topic-mapping.storage-type",
+    havingValue = "jdbc"
+)
+public class TopicMappingJdbcGateway implements TopicMappingGateway {
+
+    private static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS topic_mapping (
+                topic_id VARCHAR(255) NOT NULL PRIMARY KEY,
+                app_id VARCHAR(255) NOT NULL,
+                metadata TEXT,
+                created_at BIGINT NOT NULL,
+                last_active_at BIGINT NOT NULL,
+                version BIGINT DEFAULT 0 NOT NULL
+            )
+        """;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO topic_mapping (topic_id, app_id, metadata, created_at, last_active_at, version)
+            VALUES (?, ?, ?, ?, ?, 1)
+        """;
+
+    private static final String UPDATE_SQL = """
+            UPDATE topic_mapping SET app_id = ?, metadata = ?, last_active_at = ?, version = version + 1
+            WHERE topic_id = ?
+        """;
+
+    private static final String UPDATE_IF_VERSION_SQL = """
+            UPDATE topic_mapping SET app_id = ?, metadata = ?, last_active_at = ?, version = version + 1
+            WHERE topic_id = ? AND version = ?
+        """;
+
+    private static final String SELECT_SQL = """
+            SELECT topic_id, app_id, metadata, created_at, last_active_at, version
+            FROM topic_mapping WHERE topic_id = ?
+        """;
+
+    private static final String SELECT_INACTIVE_SQL = """
+            SELECT topic_id, app_id, metadata, created_at, last_active_at, version
+            FROM topic_mapping WHERE last_active_at < ? ORDER BY last_active_at LIMIT ?
+        """;
+
+    private static final String SELECT_PAGE_SQL = """
+            SELECT topic_id, app_id, metadata, created_at, last_active_at, version
+            FROM topic_mapping WHERE topic_id > ? ORDER BY topic_id LIMIT ?
+        """;
+
+    private static final String DELETE_SQL = "DELETE FROM topic_mapping WHERE topic_id = ?";
+
+    private static final String DELETE_INACTIVE_SQL =
+            "DELETE FROM topic_mapping WHERE topic_id = ? AND last_active_at < ?";
+
+    private static final RowMapper<TopicMapping> MAPPING_ROW_MAPPER = (rs, rowNum) -> {
+        TopicMapping m = new TopicMapping(
+                rs.getString("topic_id"),
+                rs.getString("app_id"),
+                rs.getString("metadata")
+        );
+        m.setCreatedAt(rs.getLong("created_at"));
+        m.setLastActiveAt(rs.getLong("last_active_at"));
+        m.setVersion(rs.getLong("version"));
+        return m;
+    };
+
+    private final TopicMappingProperties.Jdbc config;
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public TopicMappingJdbcGateway(TopicMappingProperties properties) {
+        this.config = properties.getJdbc();
+        this.dataSource = createDataSource();
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            jdbcTemplate.execute(CREATE_TABLE_SQL);
+            addVersionColumnIfMissing();
+            createIndexQuietly("idx_topic_mapping_last_active_at", "last_active_at");
+            log.info("JDBC 话题映射存储初始化成功: {}", config.getUrl());
+        } catch (Exception e) {
+            log.error("JDBC 话题映射存储初始化失败", e);
+            throw new RuntimeException("Failed to initialize JDBC topic mapping store", e);
+        }
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        dataSource.close();
+        log.info("JDBC 话题映射连接池已关闭");
+    }
+
+    private HikariDataSource createDataSource() {
+        DataSourceBuilder<HikariDataSource> builder = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(config.getUrl())
+                .username(config.getUsername())
+                .password(config.getPassword());
+        if (config.getDriverClassName() != null && !config.getDriverClassName().isEmpty()) {
+            builder.driverClassName(config.getDriverClassName());
+        }
+        HikariDataSource hikari = builder.build();
+        hikari.setPoolName("topic-mapping-jdbc");
+        hikari.setMaximumPoolSize(Math.max(1, config.getMaxPoolSize()));
+        return hikari;
+    }
+
+    /**
+     * 与 sqlite 模式共用数据库文件时，旧表没有 version 列，补齐后存量数据的版本为 0
+     */
+    private void addVersionColumnIfMissing() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            for (String table : List.of("topic_mapping", "TOPIC_MAPPING")) {
+                try (ResultSet columns = connection.getMetaData().getColumns(null, null, table, null)) {
+                    boolean tableFound = false;
+                    while (columns.next()) {
+                        tableFound = true;
+                        if ("version".equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                            return;
+                        }
+                    }
+                    if (!tableFound) {
+                        continue;
+                    }
+                }
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("ALTER TABLE topic_mapping ADD COLUMN version BIGINT DEFAULT 0 NOT NULL");
+                }
+                log.info("话题映射表已添加 version 列");
+                return;
+            }
+        }
+    }
+
+    /**
+     * 不是所有数据库都支持 CREATE INDEX IF NOT EXISTS，索引已存在或语法不支持时忽略
+     */
+    private void createIndexQuietly(String name, String column) {
+        try {
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + name + " ON topic_mapping(" + column + ")");
+        } catch (DataAccessException e) {
+            log.debug("跳过创建话题映射索引: {}", name, e);
+        }
+    }
+
+    @Override
+    public void save(TopicMapping mapping) {
+        if (update(mapping) == 0) {
+            try {
+                insert(mapping);
+            } catch (DataIntegrityViolationException e) {
+                // 其他进程已插入该话题，改为覆盖
+                if (update(mapping) == 0) {
+                    throw e;
+                }
+            }
+        }
+        log.info("话题映射已保存到 JDBC 存储: topicId={}, appId={}", mapping.getTopicId(), mapping.getAppId());
+    }
+
+    /**
+     * 批量写入，供缓存回写和导入使用：一个事务内批量 UPDATE，再批量 INSERT 不存在的话题；
+     * 与其他进程同时插入导致主键冲突时整批回滚，改为逐条保存
+     */
+    @Override
+    public void saveAll(Collection<TopicMapping> mappings) {
+        if (mappings.isEmpty()) {
+            return;
+        }
+
+        List<TopicMapping> batch = List.copyOf(mappings);
+        int inserted;
+        try {
+            inserted = transactionTemplate.execute(status -> saveBatch(batch));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("批量插入话题映射主键冲突，改为逐条保存: {} 条", batch.size());
+            batch.forEach(this::save);
+            return;
+        }
+        log.debug("批量保存话题映射到 JDBC 存储: {} 条，新增 {} 条", batch.size(), inserted);
+    }
+
+    private int saveBatch(List<TopicMapping> batch) {
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, batch.stream()
+                .map(mapping -> new Object[]{
+                        mapping.getAppId(), mapping.getMetadata(), mapping.getLastActiveAt(), mapping.getTopicId()})
+                .toList());
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (updated[i] == 0) {
+                TopicMapping mapping = batch.get(i);
+                missing.add(new Object[]{mapping.getTopicId(), mapping.getAppId(), mapping.getMetadata(),
+                        mapping.getCreatedAt(), mapping.getLastActiveAt()});
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, missing);
+        }
+        return missing.size();
+    }
+
+    @Override
+    public boolean compareAndSave(TopicMapping mapping) {
+        boolean saved;
+        if (mapping.getVersion() == 0) {
+            try {
+                insert(mapping);
+                saved = true;
+            } catch (DataIntegrityViolationException e) {
+                if (findByTopicId(mapping.getTopicId()).isEmpty()) {
+                    throw e;
+                }
+                saved = false;
+            }
+        } else {
+            saved = jdbcTemplate.update(UPDATE_IF_VERSION_SQL,
+                    mapping.getAppId(), mapping.getMetadata(), mapping.getLastActiveAt(),
+                    mapping.getTopicId(), mapping.getVersion()) > 0;
+        }
+
+        if (!saved) {
+            log.debug("话题映射版本冲突: topicId={}, version={}", mapping.getTopicId(), mapping.getVersion());
+            return false;
+        }
+        mapping.setVersion(mapping.getVersion() + 1);
+        mapping.markMetadataPersisted();
+        return true;
+    }
+
+    @Override
+    public Optional<TopicMapping> findByTopicId(String topicId) {
+        return jdbcTemplate.query(SELECT_SQL, MAPPING_ROW_MAPPER, topicId).stream().findFirst();
+    }
+
+    @Override
+    public void delete(String topicId) {
+        if (jdbcTemplate.update(DELETE_SQL, topicId) > 0) {
+            log.info("话题映射已从 JDBC 存储删除: topicId={}", topicId);
+        }
+    }
+
+    @Override
+    public List<TopicMapping> findInactiveBefore(long cutoff, int limit) {
+        return jdbcTemplate.query(SELECT_INACTIVE_SQL, MAPPING_ROW_MAPPER, cutoff, limit);
+    }
+
+    @Override
+    public List<TopicMapping> scan(String afterTopicId, int limit) {
+        return jdbcTemplate.query(SELECT_PAGE_SQL, MAPPING_ROW_MAPPER, afterTopicId != null ? afterTopicId : "", limit);
+    }
+
+    @Override
+    public int deleteInactiveBefore(Collection<String> topicIds, long cutoff) {
+        if (topicIds.isEmpty()) {
+            return 0;
+        }
+
+        int[] results = jdbcTemplate.batchUpdate(DELETE_INACTIVE_SQL, topicIds.stream()
+                .map(topicId -> new Object[]{topicId, cutoff})
+                .toList());
+        int deleted = 0;
+        for (int result : results) {
+            deleted += Math.max(0, result);
+        }
+        log.info("不活跃话题映射已从 JDBC 存储删除: {} 个", deleted);
+        return deleted;
+    }
+
+    private int update(TopicMapping mapping) {
+        return jdbcTemplate.update(UPDATE_SQL,
+                mapping.getAppId(), mapping.getMetadata(), mapping.getLastActiveAt(), mapping.getTopicId());
+    }
+
+    private void insert(TopicMapping mapping) {
+        jdbcTemplate.update(INSERT_SQL,
+                mapping.getTopicId(), mapping.getAppId(), mapping.getMetadata(),
+                mapping.getCreatedAt(), mapping.getLastActiveAt());
+    }
+}
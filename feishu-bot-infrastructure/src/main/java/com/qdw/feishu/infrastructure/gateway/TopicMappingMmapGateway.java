@@ -0,0 +1,642 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 话题映射内存映射 KV 存储
+ *
+ * 日志结构（类似 Bitcask）：
+ * - 数据由若干固定大小的段文件组成（kv-0000000001.dat ...），只追加写入，通过内存映射读写
+ * - 每条记录：[int 记录总长度][int CRC32][byte 类型][int 键长度][话题 ID][值]
+ *   类型 PUT 的值为 [long createdAt][long lastActiveAt][应用 ID][metadata][long version]，DELETE 没有值；
+ *   早期写入的记录没有 version，读取为 0
+ * - 先写记录体、最后写长度字段；启动扫描遇到长度为 0 或 CRC 不匹配即视为末尾，半条记录被丢弃
+ * - 内存中只保存 话题 ID → (段, 偏移) 的有序索引，读取时直接从映射内存解码，不经过系统调用
+ *
+ * 刷盘策略与入站消息日志一致（none / batch / always）。
+ * 后台线程把失效数据占比超过阈值的已写满段中仍有效的记录复制到当前段，然后删除该段；
+ * 删除记录只在该段之前还有更早的段时才需要保留。
+ *
+ * 每次写入版本号加一，条件写入在 writeLock 内比较版本；段文件只能由一个进程打开，不支持多实例共享。
+ */
+@Slf4j
+@Component("topicMappingStore")
+@ConditionalOnProperty(
+    name = "feishu.topic-mapping.storage-type",
+    havingValue = "mmap"
+)
+public class TopicMappingMmapGateway implements TopicMappingGateway {
+
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+    /** 长度 + CRC + 类型 */
+    private static final int HEADER_SIZE = 4 + 4 + 1;
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "kv-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    enum FsyncMode {
+        NONE, BATCH, ALWAYS
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncMode fsyncMode;
+    private final long flushIntervalMs;
+    private final double compactGarbageRatio;
+    private final long compactIntervalSeconds;
+
+    private final ConcurrentSkipListMap<String, Location> index = new ConcurrentSkipListMap<>();
+    private final LastActiveIndex activity = new LastActiveIndex();
+    /** 段序号 → 段，受 writeLock 保护 */
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Object writeLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final AtomicLong compactedSegments = new AtomicLong();
+    private ByteBuffer scratch = ByteBuffer.allocate(4 * 1024);
+
+    private Segment active;
+    private volatile boolean dirty;
+    private ScheduledExecutorService flusher;
+    private ScheduledExecutorService compactor;
+
+    public TopicMappingMmapGateway(TopicMappingProperties properties) {
+        TopicMappingProperties.Mmap config = properties.getMmap();
+        this.directory = Paths.get(config.getPath());
+        this.segmentSize = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_SEGMENT_SIZE, config.getSegmentSize()));
+        this.fsyncMode = FsyncMode.valueOf(config.getFsync().trim().toUpperCase(Locale.ROOT));
+        this.flushIntervalMs = Math.max(1, config.getFlushIntervalMs());
+        this.compactGarbageRatio = config.getCompactGarbageRatio();
+        this.compactIntervalSeconds = Math.max(1, config.getCompactIntervalSeconds());
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            Files.createDirectories(directory);
+            synchronized (writeLock) {
+                recover();
+                Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+                if (last != null && last.buffer.capacity() - last.end >= 4 * 1024) {
+                    active = last;
+                    active.buffer.position(active.end);
+                } else {
+                    if (last != null) {
+                        last.buffer.force();
+                    }
+                    active = openSegment(last == null ? 1 : last.index + 1);
+                    segments.put(active.index, active);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to initialize topic mapping kv store: " + directory, e);
+        }
+
+        if (fsyncMode == FsyncMode.BATCH) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "topic-mapping-kv-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "topic-mapping-kv-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(this::compactQuietly,
+            compactIntervalSeconds, compactIntervalSeconds, TimeUnit.SECONDS);
+
+        log.info("话题映射 KV 存储已加载: dir={}, segments={}, topics={}, fsync={}",
+            directory.toAbsolutePath(), segments.size(), index.size(), fsyncMode);
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        synchronized (writeLock) {
+            if (active != null) {
+                active.buffer.force();
+            }
+        }
+        log.info("话题映射 KV 存储已关闭");
+    }
+
+    @Override
+    public void save(TopicMapping mapping) {
+        synchronized (writeLock) {
+            put(mapping);
+        }
+        log.debug("保存话题映射: topicId={}, appId={}", mapping.getTopicId(), mapping.getAppId());
+    }
+
+    @Override
+    public boolean compareAndSave(TopicMapping mapping) {
+        synchronized (writeLock) {
+            Location location = index.get(mapping.getTopicId());
+            long current = location != null ? versionOf(location) : 0;
+            if (current != mapping.getVersion()) {
+                log.debug("话题映射版本冲突: topicId={}, expected={}, actual={}",
+                    mapping.getTopicId(), mapping.getVersion(), current);
+                return false;
+            }
+            put(mapping);
+        }
+        mapping.setVersion(mapping.getVersion() + 1);
+        mapping.markMetadataPersisted();
+        return true;
+    }
+
+    @Override
+    public void saveAll(Collection<TopicMapping> mappings) {
+        synchronized (writeLock) {
+            for (TopicMapping mapping : mappings) {
+                put(mapping);
+            }
+        }
+    }
+
+    @Override
+    public Optional<TopicMapping> findByTopicId(String topicId) {
+        Location location = index.get(topicId);
+        if (location == null) {
+            return Optional.empty();
+        }
+        return Optional.of(read(topicId, location));
+    }
+
+    @Override
+    public void delete(String topicId) {
+        synchronized (writeLock) {
+            remove(topicId);
+        }
+        log.info("删除话题映射: topicId={}", topicId);
+    }
+
+    @Override
+    public List<TopicMapping> findInactiveBefore(long cutoff, int limit) {
+        List<TopicMapping> result = new ArrayList<>();
+        for (String topicId : activity.before(cutoff, limit)) {
+            Location location = index.get(topicId);
+            if (location == null) {
+                continue;
+            }
+            TopicMapping mapping = read(topicId, location);
+            if (mapping.getLastActiveAt() < cutoff) {
+                result.add(mapping);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<TopicMapping> scan(String afterTopicId, int limit) {
+        Map<String, Location> page = afterTopicId == null ? index : index.tailMap(afterTopicId, false);
+        List<TopicMapping> result = new ArrayList<>(Math.min(limit, 1024));
+        for (Map.Entry<String, Location> entry : page.entrySet()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(read(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+
+    @Override
+    public int deleteInactiveBefore(Collection<String> topicIds, long cutoff) {
+        int deleted = 0;
+        synchronized (writeLock) {
+            for (String topicId : topicIds) {
+                Location location = index.get(topicId);
+                if (location != null && read(topicId, location).getLastActiveAt() < cutoff) {
+                    remove(topicId);
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0) {
+            log.info("删除不活跃话题映射: {} 个", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * 压缩失效数据占比超过阈值的已写满段，从最旧的段开始
+     */
+    public void compact() {
+        List<Segment> candidates = new ArrayList<>();
+        synchronized (writeLock) {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.garbageRatio() >= compactGarbageRatio) {
+                    candidates.add(segment);
+                }
+            }
+        }
+        for (Segment segment : candidates) {
+            compactSegment(segment);
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public int getSegmentCount() {
+        synchronized (writeLock) {
+            return segments.size();
+        }
+    }
+
+    public long getCompactedSegmentCount() {
+        return compactedSegments.get();
+    }
+
+    /**
+     * 写入一条 PUT 记录并更新索引，版本号为已有记录的版本加一，调用方需持有 writeLock
+     */
+    private void put(TopicMapping mapping) {
+        Location previous = index.get(mapping.getTopicId());
+        long version = previous != null ? versionOf(previous) + 1 : 1;
+        scratch.clear();
+        putString(mapping.getTopicId());
+        ensureScratch(16);
+        scratch.putLong(mapping.getCreatedAt());
+        scratch.putLong(mapping.getLastActiveAt());
+        putString(mapping.getAppId());
+        putString(mapping.getMetadata());
+        ensureScratch(8);
+        scratch.putLong(version);
+        scratch.flip();
+
+        crc.reset();
+        crc.update(TYPE_PUT);
+        crc.update(scratch.duplicate());
+        Location location = append(TYPE_PUT, (int) crc.getValue(), scratch);
+        track(mapping.getTopicId(), location);
+        activity.put(mapping.getTopicId(), mapping.getLastActiveAt());
+    }
+
+    /**
+     * 写入一条 DELETE 记录并更新索引，调用方需持有 writeLock；话题不存在时不写记录
+     */
+    private void remove(String topicId) {
+        Location previous = index.remove(topicId);
+        if (previous == null) {
+            return;
+        }
+        previous.segment.liveBytes -= previous.size;
+        activity.remove(topicId);
+
+        scratch.clear();
+        putString(topicId);
+        scratch.flip();
+        crc.reset();
+        crc.update(TYPE_DELETE);
+        crc.update(scratch.duplicate());
+        append(TYPE_DELETE, (int) crc.getValue(), scratch);
+    }
+
+    private void track(String topicId, Location location) {
+        location.segment.liveBytes += location.size;
+        Location previous = index.put(topicId, location);
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.size;
+        }
+    }
+
+    /**
+     * 追加一条记录，调用方需持有 writeLock
+     * 先写记录体，最后写长度字段，保证扫描方看到非 0 长度时记录已完整
+     */
+    private Location append(byte type, int checksum, ByteBuffer payload) {
+        int recordSize = HEADER_SIZE + payload.remaining();
+        if (recordSize + 4 > segmentSize) {
+            throw new IllegalArgumentException("Topic mapping record too large: " + recordSize + " bytes");
+        }
+        if (active.buffer.remaining() < recordSize + 4) {
+            roll();
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.putInt(checksum);
+        buffer.put(type);
+        buffer.put(payload);
+        buffer.putInt(start, recordSize);
+        active.end = buffer.position();
+        active.totalBytes += recordSize;
+
+        if (fsyncMode == FsyncMode.ALWAYS) {
+            buffer.force(start, recordSize);
+        } else {
+            dirty = true;
+        }
+        return new Location(active, start, recordSize);
+    }
+
+    private void roll() {
+        try {
+            active.buffer.force();
+            Segment next = openSegment(active.index + 1);
+            segments.put(next.index, next);
+            active = next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll topic mapping kv segment", e);
+        }
+    }
+
+    private void flush() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            Segment current = active;
+            if (current != null) {
+                current.buffer.force();
+            }
+        } catch (Exception e) {
+            log.warn("话题映射 KV 刷盘失败", e);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            log.error("话题映射 KV 压缩失败，将在下一轮重试", e);
+        }
+    }
+
+    /**
+     * 把段内仍有效的记录复制到当前段，再删除该段
+     * 段已写满不再修改，扫描不需要加锁；每条记录在锁内确认仍是最新版本后再复制
+     */
+    private void compactSegment(Segment segment) {
+        int copied = 0;
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(0).limit(segment.end);
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int recordSize = buffer.getInt();
+            int checksum = buffer.getInt();
+            byte type = buffer.get();
+            ByteBuffer payload = buffer.slice(start + HEADER_SIZE, recordSize - HEADER_SIZE);
+            buffer.position(start + recordSize);
+            String topicId = getString(payload.duplicate());
+
+            synchronized (writeLock) {
+                if (type == TYPE_PUT) {
+                    Location current = index.get(topicId);
+                    if (current != null && current.segment == segment && current.offset == start) {
+                        track(topicId, append(TYPE_PUT, checksum, payload));
+                        copied++;
+                    }
+                } else if (type == TYPE_DELETE && !index.containsKey(topicId)
+                        && segments.firstKey() < segment.index) {
+                    // 更早的段里可能还有该话题的 PUT 记录，删除记录需要保留
+                    append(TYPE_DELETE, checksum, payload);
+                }
+            }
+        }
+
+        synchronized (writeLock) {
+            // 复制的记录落盘后才能删除原段
+            active.buffer.force();
+            segments.remove(segment.index);
+        }
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("删除已压缩的话题映射 KV 段失败: {}", segment.path, e);
+        }
+        compactedSegments.incrementAndGet();
+        log.info("话题映射 KV 段已压缩: segment={}, copied={}", segment.path.getFileName(), copied);
+    }
+
+    private Segment openSegment(long segmentIndex) throws IOException {
+        Path path = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+        return mapSegment(segmentIndex, path, segmentSize);
+    }
+
+    private static Segment mapSegment(long segmentIndex, Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new Segment(segmentIndex, path, buffer);
+        }
+    }
+
+    /**
+     * 启动时按顺序扫描所有段，重建索引和每个段的有效数据量
+     */
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream
+                .filter(p -> {
+                    String name = p.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                })
+                .sorted()
+                .toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long segmentIndex = Long.parseLong(
+                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            Segment segment = mapSegment(segmentIndex, file, Files.size(file));
+            segments.put(segmentIndex, segment);
+            scan(segment);
+        }
+    }
+
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        CRC32 checksum = new CRC32();
+        boolean torn = false;
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int recordSize = buffer.getInt();
+            if (recordSize == 0) {
+                break;
+            }
+            if (recordSize < HEADER_SIZE || recordSize > buffer.remaining() + 4) {
+                torn = true;
+                break;
+            }
+            int storedCrc = buffer.getInt();
+            byte type = buffer.get();
+            ByteBuffer payload = buffer.slice(start + HEADER_SIZE, recordSize - HEADER_SIZE);
+            buffer.position(start + recordSize);
+
+            checksum.reset();
+            checksum.update(type);
+            checksum.update(payload.duplicate());
+            if ((int) checksum.getValue() != storedCrc) {
+                torn = true;
+                break;
+            }
+
+            String topicId = getString(payload);
+            segment.totalBytes += recordSize;
+            if (type == TYPE_PUT) {
+                track(topicId, new Location(segment, start, recordSize));
+                // 记录体在话题 ID 之后依次是创建时间和最后活跃时间
+                activity.put(topicId, payload.getLong(payload.position() + 8));
+            } else if (type == TYPE_DELETE) {
+                Location previous = index.remove(topicId);
+                if (previous != null) {
+                    previous.segment.liveBytes -= previous.size;
+                }
+                activity.remove(topicId);
+            }
+            segment.end = start + recordSize;
+        }
+
+        if (torn) {
+            // 清掉崩溃时写了一半的尾部，避免之后追加的记录后面残留旧字节
+            log.warn("话题映射 KV 段末尾不完整，已截断: segment={}, offset={}",
+                segment.path.getFileName(), segment.end);
+            MappedByteBuffer mapped = segment.buffer;
+            for (int i = segment.end; i < mapped.capacity(); i++) {
+                mapped.put(i, (byte) 0);
+            }
+            mapped.force();
+        }
+    }
+
+    private TopicMapping read(String topicId, Location location) {
+        ByteBuffer payload = location.segment.buffer.slice(
+            location.offset + HEADER_SIZE, location.size - HEADER_SIZE);
+        try {
+            payload.position(4 + payload.getInt(0));
+            TopicMapping mapping = new TopicMapping();
+            mapping.setTopicId(topicId);
+            mapping.setCreatedAt(payload.getLong());
+            mapping.setLastActiveAt(payload.getLong());
+            mapping.setAppId(getString(payload));
+            mapping.setMetadata(getString(payload));
+            mapping.setVersion(payload.remaining() >= 8 ? payload.getLong() : 0);
+            return mapping;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalStateException("Corrupted topic mapping record: topicId=" + topicId, e);
+        }
+    }
+
+    /**
+     * 只读取记录中的版本号，跳过字符串不解码
+     */
+    private static long versionOf(Location location) {
+        ByteBuffer payload = location.segment.buffer.slice(
+            location.offset + HEADER_SIZE, location.size - HEADER_SIZE);
+        int position = 4 + payload.getInt(0) + 16;
+        for (int i = 0; i < 2; i++) {
+            int length = payload.getInt(position);
+            position += 4 + Math.max(0, length);
+        }
+        return payload.limit() - position >= 8 ? payload.getLong(position) : 0;
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensureScratch(4);
+            scratch.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensureScratch(4 + bytes.length);
+        scratch.putInt(bytes.length);
+        scratch.put(bytes);
+    }
+
+    private void ensureScratch(int extra) {
+        if (scratch.remaining() < extra) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + extra));
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 记录在段中的位置
+     */
+    private record Location(Segment segment, int offset, int size) {
+    }
+
+    /**
+     * 数据段；end、liveBytes、totalBytes 受 writeLock 保护
+     */
+    private static final class Segment {
+        private final long index;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        /** 最后一条完整记录之后的偏移 */
+        private int end;
+        /** 仍被索引引用的记录字节数 */
+        private long liveBytes;
+        /** 已写入的记录字节数 */
+        private long totalBytes;
+
+        private Segment(long index, Path path, MappedByteBuffer buffer) {
+            this.index = index;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        private double garbageRatio() {
+            return totalBytes == 0 ? 0.0 : 1.0 - (double) liveBytes / totalBytes;
+        }
+    }
+}
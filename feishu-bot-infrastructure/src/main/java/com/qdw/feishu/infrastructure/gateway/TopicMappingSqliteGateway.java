@@ -2,29 +2,59 @@ package com.qdw.feishu.infrastructure.gateway;
 
 import com.qdw.feishu.domain.gateway.TopicMappingGateway;
 import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import javax.sql.DataSource;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 话题映射 SQLite Gateway 实现
  *
  * 使用 SQLite 数据库持久化话题映射，数据文件存储在项目目录中，可以加入版本控制
+ *
+ * 写入路径：
+ * - 连接参数开启 WAL 日志、可配置的 synchronous 与 busy_timeout，读写互不阻塞
+ * - 所有写操作进入队列，由唯一的写线程持有专用连接执行，
+ *   一次取出多个操作合并为一个事务提交（组提交），调用方等待所在事务提交后返回
+ * - 每个操作在各自的保存点内执行，单个操作失败只回滚到它的保存点并通知它的调用方，同批其他操作照常提交
+ * - 写线程复用预编译语句；保存时先尝试只更新 last_active_at，
+ *   仅在新话题或应用、元数据变化时执行 ON CONFLICT DO UPDATE，不再整行删除重插
+ * - 从本库加载的映射记录了 metadata 修改过的键，用 json_remove / json_set 只改这些键，
+ *   不序列化、不重写整个 JSON 文档
+ * - 每次写入 version 加一；条件写入（compareAndSave）在同样的语句上追加 version = ? 条件，
+ *   新话题（版本 0）用 ON CONFLICT DO NOTHING 插入，影响行数为 0 即冲突
+ *
+ * 多个进程可以共享同一个数据库文件（WAL 模式要求在同一台机器的本地文件系统上），
+ * 写锁由 busy_timeout 等待，并发修改由版本号检测。
  */
 @Slf4j
-@Component
+@Component("topicMappingStore")
 @ConditionalOnProperty(
     name = "feishu.topic-mapping.storage-type",
     havingValue = "sqlite",
@@ -32,13 +62,110 @@ import java.util.Optional;
 )
 public class TopicMappingSqliteGateway implements TopicMappingGateway {
 
-    private final JdbcTemplate jdbcTemplate;
+    private static final String TOUCH_SQL = """
+            UPDATE topic_mapping SET last_active_at = ?, version = version + 1
+            WHERE topic_id = ? AND app_id = ? AND metadata IS ?
+        """;
+
+    private static final String TOUCH_TRACKED_SQL = """
+            UPDATE topic_mapping SET last_active_at = ?, version = version + 1
+            WHERE topic_id = ? AND app_id = ?
+        """;
+
+    /** 条件写入追加的版本号条件，作为语句的最后一个参数 */
+    private static final String VERSION_CONDITION = " AND version = ?";
+
+    /** 增量更新语句按删除数、修改数缓存，超出后关闭最久未用的 */
+    private static final int MAX_PATCH_STATEMENTS = 32;
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO topic_mapping (topic_id, app_id, metadata, created_at, last_active_at, version)
+            VALUES (?, ?, ?, ?, ?, 1)
+            ON CONFLICT(topic_id) DO UPDATE SET
+                app_id = excluded.app_id,
+                metadata = excluded.metadata,
+                last_active_at = excluded.last_active_at,
+                version = version + 1
+        """;
+
+    private static final String INSERT_IF_ABSENT_SQL = """
+            INSERT INTO topic_mapping (topic_id, app_id, metadata, created_at, last_active_at, version)
+            VALUES (?, ?, ?, ?, ?, 1)
+            ON CONFLICT(topic_id) DO NOTHING
+        """;
+
+    private static final String UPDATE_IF_VERSION_SQL = """
+            UPDATE topic_mapping SET app_id = ?, metadata = ?, last_active_at = ?, version = version + 1
+            WHERE topic_id = ? AND version = ?
+        """;
+
+    private static final RowMapper<TopicMapping> MAPPING_ROW_MAPPER = (rs, rowNum) -> {
+        TopicMapping m = new TopicMapping(
+                rs.getString("topic_id"),
+                rs.getString("app_id"),
+                rs.getString("metadata")
+        );
+        m.setCreatedAt(rs.getLong("created_at"));
+        m.setLastActiveAt(rs.getLong("last_active_at"));
+        m.setVersion(rs.getLong("version"));
+        m.markMetadataPersisted();
+        return m;
+    };
+
+    private static final String DELETE_SQL = "DELETE FROM topic_mapping WHERE topic_id = ?";
+
+    private static final String DELETE_INACTIVE_SQL =
+            "DELETE FROM topic_mapping WHERE topic_id = ? AND last_active_at < ?";
+
+    private static final String SELECT_SQL =
+            "SELECT topic_id, app_id, metadata, created_at, last_active_at, version FROM topic_mapping WHERE topic_id = ?";
+
+    private static final String SELECT_INACTIVE_SQL = """
+            SELECT topic_id, app_id, metadata, created_at, last_active_at, version FROM topic_mapping
+            WHERE last_active_at < ? ORDER BY last_active_at LIMIT ?
+        """;
+
+    private static final String SELECT_PAGE_SQL = """
+            SELECT topic_id, app_id, metadata, created_at, last_active_at, version FROM topic_mapping
+            WHERE topic_id > ? ORDER BY topic_id LIMIT ?
+        """;
+
+    private final TopicMappingProperties.Sqlite config;
     private final String dbFilePath;
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<WriteOp> writeQueue;
+    private final int writeBatchSize;
 
-    public TopicMappingSqliteGateway(
-            @Value("${feishu.topic-mapping.sqlite.path:feishu-topic-mappings.db}") String dbFilePath) {
-        this.dbFilePath = dbFilePath;
-        this.jdbcTemplate = new JdbcTemplate(createDataSource());
+    private volatile boolean running;
+    private Thread writer;
+    private Connection writeConnection;
+    private PreparedStatement touchStatement;
+    private PreparedStatement touchTrackedStatement;
+    private PreparedStatement touchTrackedIfVersionStatement;
+    private final Map<String, PreparedStatement> patchStatements = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= MAX_PATCH_STATEMENTS) {
+                return false;
+            }
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+    private PreparedStatement upsertStatement;
+    private PreparedStatement insertIfAbsentStatement;
+    private PreparedStatement updateIfVersionStatement;
+    private PreparedStatement deleteStatement;
+    private PreparedStatement deleteInactiveStatement;
+
+    public TopicMappingSqliteGateway(TopicMappingProperties properties) {
+        this.config = properties.getSqlite();
+        this.dbFilePath = config.getPath();
+        this.writeBatchSize = Math.max(1, config.getWriteBatchSize());
+        this.writeQueue = new ArrayBlockingQueue<>(Math.max(1, config.getWriteQueueCapacity()));
+        this.dataSource = createDataSource();
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
     }
 
     @PostConstruct
@@ -46,6 +173,8 @@ public class TopicMappingSqliteGateway implements TopicMappingGateway {
         try {
             ensureDbDirectoryExists();
             createTableIfNotExists();
+            openWriteConnection();
+            startWriter();
             log.info("SQLite 话题映射数据库初始化成功: {}", dbFilePath);
             log.info("当前话题映射数量: {}", count());
         } catch (Exception e) {
@@ -56,17 +185,36 @@ public class TopicMappingSqliteGateway implements TopicMappingGateway {
 
     @PreDestroy
     public void cleanup() {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        dataSource.close();
         log.info("SQLite 话题映射数据库连接关闭");
     }
 
-    private DataSource createDataSource() {
-        String connectionString = "jdbc:sqlite:" + dbFilePath;
+    /**
+     * 写线程固定占用一个连接，其余连接供读取使用，因此连接池至少两个连接
+     */
+    private HikariDataSource createDataSource() {
+        String connectionString = "jdbc:sqlite:" + dbFilePath
+                + "?journal_mode=" + config.getJournalMode()
+                + "&synchronous=" + config.getSynchronous()
+                + "&busy_timeout=" + config.getBusyTimeoutMs();
         log.info("SQLite 连接字符串: {}", connectionString);
 
-        return DataSourceBuilder.create()
+        HikariDataSource hikari = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
                 .url(connectionString)
                 .driverClassName("org.sqlite.JDBC")
                 .build();
+        hikari.setPoolName("topic-mapping-sqlite");
+        hikari.setMaximumPoolSize(Math.max(2, config.getMaxPoolSize()));
+        return hikari;
     }
 
     private void ensureDbDirectoryExists() {
@@ -91,16 +239,30 @@ public class TopicMappingSqliteGateway implements TopicMappingGateway {
                 app_id TEXT NOT NULL,
                 metadata TEXT,
                 created_at INTEGER NOT NULL,
-                last_active_at INTEGER NOT NULL
+                last_active_at INTEGER NOT NULL,
+                version INTEGER NOT NULL DEFAULT 0
             )
         """;
 
         jdbcTemplate.execute(sql);
+        addVersionColumnIfMissing();
         log.info("话题映射表已就绪");
 
         createIndexIfNotExists();
     }
 
+    /**
+     * 旧版本创建的表没有 version 列，补齐后存量数据的版本为 0
+     */
+    private void addVersionColumnIfMissing() {
+        List<String> columns = jdbcTemplate.query("PRAGMA table_info(topic_mapping)",
+                (rs, rowNum) -> rs.getString("name"));
+        if (!columns.contains("version")) {
+            jdbcTemplate.execute("ALTER TABLE topic_mapping ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+            log.info("话题映射表已添加 version 列");
+        }
+    }
+
     private void createIndexIfNotExists() {
         String sql = """
             CREATE INDEX IF NOT EXISTS idx_topic_mapping_app_id
@@ -108,6 +270,10 @@ public class TopicMappingSqliteGateway implements TopicMappingGateway {
         """;
 
         jdbcTemplate.execute(sql);
+        jdbcTemplate.execute("""
+            CREATE INDEX IF NOT EXISTS idx_topic_mapping_last_active_at
+            ON topic_mapping(last_active_at)
+        """);
         log.info("话题映射索引已就绪");
     }
 
@@ -118,18 +284,7 @@ public class TopicMappingSqliteGateway implements TopicMappingGateway {
 
     @Override
     public void save(TopicMapping mapping) {
-        String sql = """
-            INSERT OR REPLACE INTO topic_mapping (topic_id, app_id, metadata, created_at, last_active_at)
-            VALUES (?, ?, ?, ?, ?)
-        """;
-
-        int updated = jdbcTemplate.update(sql,
-                mapping.getTopicId(),
-                mapping.getAppId(),
-                mapping.getMetadata(),
-                mapping.getCreatedAt(),
-                mapping.getLastActiveAt()
-        );
+        int updated = await(submit(WriteOp.save(List.of(mapping))));
 
         if (updated > 0) {
             log.info("话题映射已保存到 SQLite: topicId={}, appId={}, dbFile={}",
@@ -138,38 +293,455 @@ public class TopicMappingSqliteGateway implements TopicMappingGateway {
     }
 
     @Override
-    public Optional<TopicMapping> findByTopicId(String topicId) {
-        String sql = "SELECT topic_id, app_id, metadata, created_at, last_active_at FROM topic_mapping WHERE topic_id = ?";
+    public boolean compareAndSave(TopicMapping mapping) {
+        if (await(submit(WriteOp.compareAndSave(mapping))) == 0) {
+            log.debug("话题映射版本冲突: topicId={}, version={}", mapping.getTopicId(), mapping.getVersion());
+            return false;
+        }
+        mapping.setVersion(mapping.getVersion() + 1);
+        mapping.markMetadataPersisted();
+        return true;
+    }
 
-        try {
-            TopicMapping mapping = jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
-                TopicMapping m = new TopicMapping(
-                        rs.getString("topic_id"),
-                        rs.getString("app_id"),
-                        rs.getString("metadata")
-                );
-                return m;
-            }, topicId);
-
-            return Optional.ofNullable(mapping);
-        } catch (Exception e) {
-            log.debug("话题映射未找到: topicId={}", topicId);
-            return Optional.empty();
+    /**
+     * 批量写入，在同一个事务中提交，供缓存回写使用
+     */
+    @Override
+    public void saveAll(Collection<TopicMapping> mappings) {
+        if (mappings.isEmpty()) {
+            return;
         }
+
+        await(submit(WriteOp.save(List.copyOf(mappings))));
+        log.debug("批量保存话题映射到 SQLite: {} 条", mappings.size());
     }
 
+    /**
+     * 批量条件写入：全部排队后再等待，写线程会把它们合并到同一个事务中提交，供缓存回写使用
+     */
     @Override
-    public void delete(String topicId) {
-        String sql = "DELETE FROM topic_mapping WHERE topic_id = ?";
+    public List<TopicMapping> compareAndSaveAll(Collection<TopicMapping> mappings) {
+        List<TopicMapping> batch = List.copyOf(mappings);
+        List<CompletableFuture<Integer>> results = new ArrayList<>(batch.size());
+        for (TopicMapping mapping : batch) {
+            results.add(submit(WriteOp.compareAndSave(mapping)));
+        }
 
-        int deleted = jdbcTemplate.update(sql, topicId);
+        List<TopicMapping> conflicts = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            TopicMapping mapping = batch.get(i);
+            if (await(results.get(i)) == 0) {
+                log.debug("话题映射版本冲突: topicId={}, version={}", mapping.getTopicId(), mapping.getVersion());
+                conflicts.add(mapping);
+                continue;
+            }
+            mapping.setVersion(mapping.getVersion() + 1);
+            mapping.markMetadataPersisted();
+        }
+        log.debug("批量条件写入话题映射到 SQLite: {} 条，冲突 {} 条", batch.size(), conflicts.size());
+        return conflicts;
+    }
+
+    /**
+     * 查询失败（数据库被锁、I/O 错误等）直接抛出，不能当作话题不存在，否则会被未知话题缓存记下
+     */
+    @Override
+    public Optional<TopicMapping> findByTopicId(String topicId) {
+        return jdbcTemplate.query(SELECT_SQL, MAPPING_ROW_MAPPER, topicId).stream().findFirst();
+    }
+
+    @Override
+    public void delete(String topicId) {
+        int deleted = await(submit(WriteOp.delete(List.of(topicId), Long.MIN_VALUE)));
 
         if (deleted > 0) {
             log.info("话题映射已从 SQLite 删除: topicId={}, dbFile={}", topicId, dbFilePath);
         }
     }
 
+    @Override
+    public List<TopicMapping> findInactiveBefore(long cutoff, int limit) {
+        return jdbcTemplate.query(SELECT_INACTIVE_SQL, MAPPING_ROW_MAPPER, cutoff, limit);
+    }
+
+    @Override
+    public List<TopicMapping> scan(String afterTopicId, int limit) {
+        return jdbcTemplate.query(SELECT_PAGE_SQL, MAPPING_ROW_MAPPER, afterTopicId != null ? afterTopicId : "", limit);
+    }
+
+    @Override
+    public int deleteInactiveBefore(Collection<String> topicIds, long cutoff) {
+        if (topicIds.isEmpty()) {
+            return 0;
+        }
+
+        int deleted = await(submit(WriteOp.delete(List.copyOf(topicIds), cutoff)));
+        log.info("不活跃话题映射已从 SQLite 删除: {} 个", deleted);
+        return deleted;
+    }
+
     public String getDbFilePath() {
         return new File(dbFilePath).getAbsolutePath();
     }
+
+    /**
+     * 当前排队等待写入的操作数（用于监控）
+     */
+    public int getPendingWrites() {
+        return writeQueue.size();
+    }
+
+    private CompletableFuture<Integer> submit(WriteOp op) {
+        if (!running) {
+            throw new IllegalStateException("SQLite topic mapping writer is not running");
+        }
+        try {
+            writeQueue.put(op);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing topic mapping write", e);
+        }
+        return op.result;
+    }
+
+    private int await(CompletableFuture<Integer> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for topic mapping write", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to write topic mapping", e.getCause());
+        }
+    }
+
+    private void openWriteConnection() throws SQLException {
+        writeConnection = dataSource.getConnection();
+        writeConnection.setAutoCommit(false);
+        touchStatement = writeConnection.prepareStatement(TOUCH_SQL);
+        touchTrackedStatement = writeConnection.prepareStatement(TOUCH_TRACKED_SQL);
+        touchTrackedIfVersionStatement = writeConnection.prepareStatement(TOUCH_TRACKED_SQL + VERSION_CONDITION);
+        upsertStatement = writeConnection.prepareStatement(UPSERT_SQL);
+        insertIfAbsentStatement = writeConnection.prepareStatement(INSERT_IF_ABSENT_SQL);
+        updateIfVersionStatement = writeConnection.prepareStatement(UPDATE_IF_VERSION_SQL);
+        deleteStatement = writeConnection.prepareStatement(DELETE_SQL);
+        deleteInactiveStatement = writeConnection.prepareStatement(DELETE_INACTIVE_SQL);
+    }
+
+    private void startWriter() {
+        running = true;
+        writer = new Thread(this::writeLoop, "topic-mapping-sqlite-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 写线程主循环：阻塞取出一个操作，再顺带取出已排队的操作，合并为一个事务
+     * 停止后先排空队列再关闭连接
+     */
+    private void writeLoop() {
+        List<WriteOp> batch = new ArrayList<>(writeBatchSize);
+        while (running || !writeQueue.isEmpty()) {
+            try {
+                WriteOp first = writeQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                writeQueue.drainTo(batch, writeBatchSize - 1);
+                applyBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+
+        WriteOp abandoned;
+        while ((abandoned = writeQueue.poll()) != null) {
+            abandoned.result.completeExceptionally(new IllegalStateException("SQLite topic mapping writer stopped"));
+        }
+        closeWriteConnection();
+    }
+
+    /**
+     * 执行一批写操作并提交：每个操作前设置保存点，失败的操作回滚到自己的保存点，不影响同批其他操作；
+     * 只有提交本身失败时整批失败
+     */
+    private void applyBatch(List<WriteOp> batch) {
+        int[] results = new int[batch.size()];
+        Exception[] failures = new Exception[batch.size()];
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                Savepoint savepoint = writeConnection.setSavepoint();
+                try {
+                    results[i] = apply(batch.get(i));
+                } catch (SQLException | RuntimeException e) {
+                    writeConnection.rollback(savepoint);
+                    failures[i] = e;
+                }
+            }
+            writeConnection.commit();
+        } catch (Exception e) {
+            rollbackQuietly();
+            log.error("SQLite 话题映射写事务失败，回滚 {} 个写操作", batch.size(), e);
+            for (WriteOp op : batch) {
+                op.result.completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (failures[i] != null) {
+                log.error("SQLite 话题映射写操作失败，已回滚该操作，同批其他 {} 个写操作正常提交",
+                    batch.size() - 1, failures[i]);
+                batch.get(i).result.completeExceptionally(failures[i]);
+            } else {
+                batch.get(i).result.complete(results[i]);
+            }
+        }
+    }
+
+    private int apply(WriteOp op) throws SQLException {
+        if (op.deleteTopicIds != null) {
+            return delete(op.deleteTopicIds, op.inactiveBefore);
+        }
+
+        int updated = 0;
+        for (TopicMapping mapping : op.mappings) {
+            updated += op.conditional ? compareAndSet(mapping) : upsert(mapping);
+        }
+        return updated;
+    }
+
+    /**
+     * 条件写入：版本 0 只在话题不存在时插入；否则仅当存储中的版本等于 mapping.getVersion() 时更新，
+     * 能增量写回时只改修改过的键
+     *
+     * @return 影响行数，0 表示版本冲突（或话题已被删除）
+     */
+    private int compareAndSet(TopicMapping mapping) throws SQLException {
+        if (mapping.getVersion() == 0) {
+            insertIfAbsentStatement.setString(1, mapping.getTopicId());
+            insertIfAbsentStatement.setString(2, mapping.getAppId());
+            insertIfAbsentStatement.setString(3, mapping.getMetadata());
+            insertIfAbsentStatement.setLong(4, mapping.getCreatedAt());
+            insertIfAbsentStatement.setLong(5, mapping.getLastActiveAt());
+            return insertIfAbsentStatement.executeUpdate();
+        }
+
+        if (mapping.isMetadataTracked()) {
+            int patched = patch(mapping, true);
+            if (patched > 0) {
+                return patched;
+            }
+        }
+
+        updateIfVersionStatement.setString(1, mapping.getAppId());
+        updateIfVersionStatement.setString(2, mapping.getMetadata());
+        updateIfVersionStatement.setLong(3, mapping.getLastActiveAt());
+        updateIfVersionStatement.setString(4, mapping.getTopicId());
+        updateIfVersionStatement.setLong(5, mapping.getVersion());
+        return updateIfVersionStatement.executeUpdate();
+    }
+
+    /**
+     * 仅活跃时间变化时只改 last_active_at，不触碰 app_id 索引；
+     * 从本库加载的映射只写回 metadata 修改过的键；否则插入或更新变化的列
+     */
+    private int upsert(TopicMapping mapping) throws SQLException {
+        if (mapping.isMetadataTracked()) {
+            int patched = patch(mapping, false);
+            if (patched > 0) {
+                return patched;
+            }
+        } else {
+            touchStatement.setLong(1, mapping.getLastActiveAt());
+            touchStatement.setString(2, mapping.getTopicId());
+            touchStatement.setString(3, mapping.getAppId());
+            touchStatement.setString(4, mapping.getMetadata());
+            int touched = touchStatement.executeUpdate();
+            if (touched > 0) {
+                return touched;
+            }
+        }
+
+        upsertStatement.setString(1, mapping.getTopicId());
+        upsertStatement.setString(2, mapping.getAppId());
+        upsertStatement.setString(3, mapping.getMetadata());
+        upsertStatement.setLong(4, mapping.getCreatedAt());
+        upsertStatement.setLong(5, mapping.getLastActiveAt());
+        return upsertStatement.executeUpdate();
+    }
+
+    /**
+     * 增量写回：metadata 未修改时只更新 last_active_at，否则先 json_remove 已删除的路径、再 json_set 修改过的路径
+     * 返回 0 表示无法增量写回（话题不存在、应用变化、存量 metadata 不是合法 JSON 或键名无法表示为路径），
+     * 由调用方整体写入；conditional 为 true 时追加版本号条件
+     */
+    private int patch(TopicMapping mapping, boolean conditional) throws SQLException {
+        List<TopicMapping.MetadataChange> changes = mapping.getMetadataChanges();
+        if (changes.isEmpty()) {
+            PreparedStatement touch = conditional ? touchTrackedIfVersionStatement : touchTrackedStatement;
+            touch.setLong(1, mapping.getLastActiveAt());
+            touch.setString(2, mapping.getTopicId());
+            touch.setString(3, mapping.getAppId());
+            if (conditional) {
+                touch.setLong(4, mapping.getVersion());
+            }
+            return touch.executeUpdate();
+        }
+
+        List<String> removals = new ArrayList<>();
+        List<TopicMapping.MetadataChange> sets = new ArrayList<>();
+        for (TopicMapping.MetadataChange change : changes) {
+            String path = jsonPath(change);
+            if (path == null) {
+                return 0;
+            }
+            if (change.isRemoval()) {
+                removals.add(path);
+            } else {
+                sets.add(change);
+            }
+        }
+
+        PreparedStatement statement = patchStatement(removals.size(), sets.size(), conditional);
+        int index = 1;
+        statement.setLong(index++, mapping.getLastActiveAt());
+        for (String path : removals) {
+            statement.setString(index++, path);
+        }
+        for (TopicMapping.MetadataChange change : sets) {
+            statement.setString(index++, jsonPath(change));
+            statement.setString(index++, change.valueJson());
+        }
+        statement.setString(index++, mapping.getTopicId());
+        statement.setString(index++, mapping.getAppId());
+        if (conditional) {
+            statement.setLong(index, mapping.getVersion());
+        }
+        return statement.executeUpdate();
+    }
+
+    private PreparedStatement patchStatement(int removals, int sets, boolean conditional) throws SQLException {
+        String key = removals + ":" + sets + (conditional ? ":v" : "");
+        PreparedStatement statement = patchStatements.get(key);
+        if (statement != null) {
+            return statement;
+        }
+
+        String expression = "coalesce(metadata, '{}')";
+        if (removals > 0) {
+            expression = "json_remove(" + expression + ", ?".repeat(removals) + ")";
+        }
+        if (sets > 0) {
+            expression = "json_set(" + expression + ", ?, json(?)".repeat(sets) + ")";
+        }
+        statement = writeConnection.prepareStatement(
+            "UPDATE topic_mapping SET last_active_at = ?, version = version + 1, metadata = " + expression
+                + " WHERE topic_id = ? AND app_id = ? AND (metadata IS NULL OR json_valid(metadata))"
+                + (conditional ? VERSION_CONDITION : ""));
+        patchStatements.put(key, statement);
+        return statement;
+    }
+
+    /**
+     * 命名空间/键 对应的 SQLite JSON 路径，名称中含引号或反斜杠时返回 null
+     */
+    private static String jsonPath(TopicMapping.MetadataChange change) {
+        if (!isPlainName(change.namespace()) || (change.key() != null && !isPlainName(change.key()))) {
+            return null;
+        }
+        String path = "$.\"" + change.namespace() + "\"";
+        return change.key() != null ? path + ".\"" + change.key() + "\"" : path;
+    }
+
+    private static boolean isPlainName(String name) {
+        return name.indexOf('"') < 0 && name.indexOf('\\') < 0;
+    }
+
+    /**
+     * inactiveBefore 为 Long.MIN_VALUE 时无条件删除，否则只删除仍不活跃的话题
+     */
+    private int delete(List<String> topicIds, long inactiveBefore) throws SQLException {
+        int deleted = 0;
+        for (String topicId : topicIds) {
+            if (inactiveBefore == Long.MIN_VALUE) {
+                deleteStatement.setString(1, topicId);
+                deleted += deleteStatement.executeUpdate();
+            } else {
+                deleteInactiveStatement.setString(1, topicId);
+                deleteInactiveStatement.setLong(2, inactiveBefore);
+                deleted += deleteInactiveStatement.executeUpdate();
+            }
+        }
+        return deleted;
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            log.warn("关闭 SQLite 预编译语句失败", e);
+        }
+    }
+
+    private void rollbackQuietly() {
+        try {
+            writeConnection.rollback();
+        } catch (SQLException e) {
+            log.warn("SQLite 写事务回滚失败", e);
+        }
+    }
+
+    private void closeWriteConnection() {
+        try {
+            touchStatement.close();
+            touchTrackedStatement.close();
+            touchTrackedIfVersionStatement.close();
+            for (PreparedStatement statement : patchStatements.values()) {
+                statement.close();
+            }
+            patchStatements.clear();
+            upsertStatement.close();
+            insertIfAbsentStatement.close();
+            updateIfVersionStatement.close();
+            deleteStatement.close();
+            deleteInactiveStatement.close();
+            writeConnection.close();
+        } catch (SQLException e) {
+            log.warn("关闭 SQLite 写连接失败", e);
+        }
+    }
+
+    /**
+     * 写操作：保存一组映射（可按版本号条件写入），或删除一组话题（可限定仅删除不活跃的）
+     */
+    private static final class WriteOp {
+        private final List<TopicMapping> mappings;
+        private final boolean conditional;
+        private final List<String> deleteTopicIds;
+        private final long inactiveBefore;
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        private WriteOp(List<TopicMapping> mappings, boolean conditional, List<String> deleteTopicIds, long inactiveBefore) {
+            this.mappings = mappings;
+            this.conditional = conditional;
+            this.deleteTopicIds = deleteTopicIds;
+            this.inactiveBefore = inactiveBefore;
+        }
+
+        private static WriteOp save(List<TopicMapping> mappings) {
+            return new WriteOp(mappings, false, null, 0L);
+        }
+
+        private static WriteOp compareAndSave(TopicMapping mapping) {
+            return new WriteOp(List.of(mapping), true, null, 0L);
+        }
+
+        private static WriteOp delete(List<String> topicIds, long inactiveBefore) {
+            return new WriteOp(null, false, topicIds, inactiveBefore);
+        }
+    }
 }
@@ -0,0 +1,218 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 话题映射导出 / 导入 / 校验
+ *
+ * 格式为 NDJSON：每行一个映射，字段与归档段相同（Gson 序列化 TopicMapping）。
+ * - 导出按话题 ID 键集分页读取存储（{@link TopicMappingGateway#scan}），内存占用只与页大小有关，
+ *   每页一次独立查询，机器人可以同时读写
+ * - 导入每 batchSize 行调用一次 saveAll，SQLite / JDBC 存储在一个事务内写入；已存在的话题被覆盖，
+ *   重复导入结果不变，可以在切换前再导入一次追上导出后的变更
+ * - 校验统计条数和校验和；校验和是每条映射指纹之和，与顺序无关，
+ *   覆盖话题 ID、应用 ID、metadata、创建和活跃时间，不含存储各自维护的版本号
+ *
+ * 只导出热存储中的映射，已归档的话题（retention.archive-dir）不在导出和校验范围内。
+ * 归档段与存储类型无关，切换存储时保留归档目录即可，话题重新活跃时照常从归档恢复到新存储。
+ */
+@Slf4j
+public class TopicMappingTransfer {
+
+    public static final int DEFAULT_BATCH_SIZE = 5000;
+
+    private static final long PROGRESS_INTERVAL = 100_000;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Gson gson = new Gson();
+    private final TypeAdapter<TopicMapping> adapter = gson.getAdapter(TopicMapping.class);
+    private final int batchSize;
+
+    public TopicMappingTransfer() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    public TopicMappingTransfer(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * 把存储中的全部映射按话题 ID 顺序写成 NDJSON
+     */
+    public Summary export(TopicMappingGateway source, Writer out) throws IOException {
+        Digest digest = new Digest();
+        String after = null;
+        List<TopicMapping> page;
+        while (!(page = source.scan(after, batchSize)).isEmpty()) {
+            for (TopicMapping mapping : page) {
+                out.write(adapter.toJson(mapping));
+                out.write('\n');
+                digest.add(mapping);
+            }
+            after = page.get(page.size() - 1).getTopicId();
+            progress("导出", digest.count, page.size());
+        }
+        out.flush();
+        return digest.summary();
+    }
+
+    /**
+     * 逐行读取 NDJSON 并分批写入存储
+     */
+    public Summary importFrom(Reader in, TopicMappingGateway target) throws IOException {
+        Digest digest = new Digest();
+        List<TopicMapping> batch = new ArrayList<>(batchSize);
+        read(in, mapping -> {
+            batch.add(mapping);
+            digest.add(mapping);
+            if (batch.size() >= batchSize) {
+                target.saveAll(batch);
+                batch.clear();
+                progress("导入", digest.count, batchSize);
+            }
+        });
+        if (!batch.isEmpty()) {
+            target.saveAll(batch);
+        }
+        return digest.summary();
+    }
+
+    /**
+     * 不经过中间文件，直接把一个存储的映射分批写入另一个存储
+     */
+    public Summary copy(TopicMappingGateway source, TopicMappingGateway target) {
+        Digest digest = new Digest();
+        String after = null;
+        List<TopicMapping> page;
+        while (!(page = source.scan(after, batchSize)).isEmpty()) {
+            for (TopicMapping mapping : page) {
+                digest.add(mapping);
+                // 修改记录相对于源存储，目标存储需要整体写入
+                mapping.setMetadata(mapping.getMetadata());
+            }
+            target.saveAll(page);
+            after = page.get(page.size() - 1).getTopicId();
+            progress("复制", digest.count, page.size());
+        }
+        return digest.summary();
+    }
+
+    /**
+     * 统计存储中映射的条数和校验和
+     */
+    public Summary summarize(TopicMappingGateway store) {
+        Digest digest = new Digest();
+        String after = null;
+        List<TopicMapping> page;
+        while (!(page = store.scan(after, batchSize)).isEmpty()) {
+            page.forEach(digest::add);
+            after = page.get(page.size() - 1).getTopicId();
+        }
+        return digest.summary();
+    }
+
+    /**
+     * 统计 NDJSON 中映射的条数和校验和
+     */
+    public Summary summarize(Reader in) throws IOException {
+        Digest digest = new Digest();
+        read(in, digest::add);
+        return digest.summary();
+    }
+
+    private void read(Reader in, Consumer<TopicMapping> consumer) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader buffered ? buffered : new BufferedReader(in, 1 << 16);
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            TopicMapping mapping;
+            try {
+                mapping = adapter.fromJson(line);
+            } catch (JsonParseException | IOException e) {
+                throw new IllegalArgumentException("Invalid topic mapping at line " + lineNumber, e);
+            }
+            if (mapping == null || mapping.getTopicId() == null || mapping.getAppId() == null) {
+                throw new IllegalArgumentException("Topic mapping without topicId/appId at line " + lineNumber);
+            }
+            consumer.accept(mapping);
+        }
+    }
+
+    private static void progress(String action, long total, int step) {
+        if (total / PROGRESS_INTERVAL != (total - step) / PROGRESS_INTERVAL) {
+            log.info("话题映射{}进度: {} 条", action, total);
+        }
+    }
+
+    /**
+     * 单条映射的 64 位 FNV-1a 指纹，字段之间混入字节范围之外的分隔值，null 与空串可区分
+     */
+    static long fingerprint(TopicMapping mapping) {
+        long hash = FNV_OFFSET;
+        hash = mix(hash, mapping.getTopicId());
+        hash = mix(hash, mapping.getAppId());
+        hash = mix(hash, mapping.getMetadata());
+        hash = mix(hash, mapping.getCreatedAt());
+        return mix(hash, mapping.getLastActiveAt());
+    }
+
+    private static long mix(long hash, String value) {
+        if (value != null) {
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+            }
+        }
+        return (hash ^ (value == null ? 0x1ff : 0x100)) * FNV_PRIME;
+    }
+
+    private static long mix(long hash, long value) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static final class Digest {
+        private long count;
+        private long checksum;
+
+        private void add(TopicMapping mapping) {
+            count++;
+            checksum += fingerprint(mapping);
+        }
+
+        private Summary summary() {
+            return new Summary(count, checksum);
+        }
+    }
+
+    /**
+     * 条数与校验和
+     */
+    public record Summary(long count, long checksum) {
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", checksum=" + Long.toHexString(checksum);
+        }
+    }
+}
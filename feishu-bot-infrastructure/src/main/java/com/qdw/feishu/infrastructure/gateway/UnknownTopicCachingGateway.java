@@ -0,0 +1,177 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 未知话题缓存装饰器
+ *
+ * 不启用读写缓存（cache.enabled=false）时单独使用：记住不存在映射的话题（有界 LRU + TTL），
+ * 期间重复查询不访问底层存储；读写都直接交给底层存储，不缓存已存在的映射。
+ * 写入该话题前后都会失效对应记录，查询进行中先放占位，查询期间发生写入时未命中结果不会被记下。
+ *
+ * 其他实例新建的话题在记录过期前查不到，因此与读写缓存一样不用于 jdbc（多实例共享）存储。
+ */
+@Slf4j
+public class UnknownTopicCachingGateway implements TopicMappingGateway {
+
+    private final TopicMappingGateway delegate;
+    private final LongSupplier clock;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    /** 已确认不存在映射的话题，受自身锁保护 */
+    private final LinkedHashMap<String, UnknownEntry> unknown;
+
+    private final LongAdder hits = new LongAdder();
+
+    public UnknownTopicCachingGateway(TopicMappingGateway delegate, TopicMappingProperties.UnknownTopic config) {
+        this(delegate, config, System::currentTimeMillis);
+    }
+
+    UnknownTopicCachingGateway(TopicMappingGateway delegate, TopicMappingProperties.UnknownTopic config,
+                               LongSupplier clock) {
+        this.delegate = delegate;
+        this.clock = clock;
+        this.maxSize = Math.max(1, config.getMaxSize());
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, config.getTtlSeconds()));
+        this.unknown = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UnknownEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        log.info("未知话题缓存已启用（未启用读写缓存）: maxSize={}, ttl={}ms", maxSize, ttlMillis);
+    }
+
+    @Override
+    public void save(TopicMapping mapping) {
+        forget(mapping.getTopicId());
+        delegate.save(mapping);
+        forget(mapping.getTopicId());
+    }
+
+    @Override
+    public boolean compareAndSave(TopicMapping mapping) {
+        forget(mapping.getTopicId());
+        boolean saved = delegate.compareAndSave(mapping);
+        forget(mapping.getTopicId());
+        return saved;
+    }
+
+    @Override
+    public void saveAll(Collection<TopicMapping> mappings) {
+        mappings.forEach(mapping -> forget(mapping.getTopicId()));
+        delegate.saveAll(mappings);
+        mappings.forEach(mapping -> forget(mapping.getTopicId()));
+    }
+
+    @Override
+    public List<TopicMapping> compareAndSaveAll(Collection<TopicMapping> mappings) {
+        mappings.forEach(mapping -> forget(mapping.getTopicId()));
+        List<TopicMapping> conflicts = delegate.compareAndSaveAll(mappings);
+        mappings.forEach(mapping -> forget(mapping.getTopicId()));
+        return conflicts;
+    }
+
+    @Override
+    public Optional<TopicMapping> findByTopicId(String topicId) {
+        if (ttlMillis == 0) {
+            return delegate.findByTopicId(topicId);
+        }
+
+        long now = clock.getAsLong();
+        UnknownEntry lookup = new UnknownEntry(-1);
+        synchronized (unknown) {
+            UnknownEntry known = unknown.get(topicId);
+            if (known != null && known.confirmedAt >= 0 && now - known.confirmedAt < ttlMillis) {
+                hits.increment();
+                return Optional.empty();
+            }
+            // 先占位：查询期间若有写入，占位会被移除，未命中结果不会被记下
+            unknown.put(topicId, lookup);
+        }
+
+        Optional<TopicMapping> loaded;
+        try {
+            loaded = delegate.findByTopicId(topicId);
+        } catch (RuntimeException e) {
+            // 查询失败不能当作话题不存在，只移除占位
+            synchronized (unknown) {
+                unknown.remove(topicId, lookup);
+            }
+            throw e;
+        }
+        synchronized (unknown) {
+            if (loaded.isPresent()) {
+                unknown.remove(topicId, lookup);
+            } else {
+                unknown.replace(topicId, lookup, new UnknownEntry(now));
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public void delete(String topicId) {
+        delegate.delete(topicId);
+        forget(topicId);
+    }
+
+    @Override
+    public List<TopicMapping> findInactiveBefore(long cutoff, int limit) {
+        return delegate.findInactiveBefore(cutoff, limit);
+    }
+
+    @Override
+    public List<TopicMapping> scan(String afterTopicId, int limit) {
+        return delegate.scan(afterTopicId, limit);
+    }
+
+    @Override
+    public int deleteInactiveBefore(Collection<String> topicIds, long cutoff) {
+        return delegate.deleteInactiveBefore(topicIds, cutoff);
+    }
+
+    /**
+     * 命中未知话题缓存、未访问底层存储的查询次数
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public int getUnknownTopicCount() {
+        synchronized (unknown) {
+            return unknown.size();
+        }
+    }
+
+    private void forget(String topicId) {
+        synchronized (unknown) {
+            unknown.remove(topicId);
+        }
+    }
+
+    /**
+     * 未知话题记录；confirmedAt 为负表示查询进行中的占位。
+     * 不使用 record，以便按引用判断占位是否仍是同一个
+     */
+    private static final class UnknownEntry {
+        private final long confirmedAt;
+
+        private UnknownEntry(long confirmedAt) {
+            this.confirmedAt = confirmedAt;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.MessageListenerGateway.ConnectionStatus;
+import com.qdw.feishu.infrastructure.config.FeishuProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 飞书长连接监督器
+ *
+ * 职责：
+ * - 在独立线程中启动 SDK 长连接，只有在 start() 正常返回或在连接超时内未失败时才标记为 CONNECTED
+ * - 连接本身的存活由 SDK 的 ping/pong 维护；监督器只把连接线程异常退出视为连接丢失，
+ *   退出时立即检查，并每 heartbeat-interval 秒兜底检查一次。没有事件不代表连接失活，安静的机器人不会被断开
+ * - 重连前关闭上一个客户端，避免旧连接继续收消息
+ * - 使用带抖动的指数退避重连，连续失败达到 reconnect.max-attempts 后按 max-delay 间隔持续重试，不会放弃
+ * - 统计断线时长
+ */
+@Slf4j
+class WsConnectionSupervisor {
+
+    /**
+     * 长连接客户端，隔离 SDK 便于替换和测试
+     */
+    interface WsClient {
+
+        /**
+         * 建立连接；可能阻塞直到连接断开，也可能建立后立即返回
+         */
+        void start() throws Exception;
+
+        /**
+         * 关闭连接并释放资源，可重复调用
+         */
+        void close();
+    }
+
+    private final Supplier<WsClient> clientFactory;
+    private final FeishuProperties.Listener config;
+    private final AtomicReference<ConnectionStatus> connectionStatus;
+    private final Supplier<ScheduledExecutorService> schedulerFactory;
+    private final LongSupplier clock;
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+    private volatile ConnectAttempt currentAttempt;
+    private int consecutiveFailures;
+
+    /** 当前断线开始时间，0 表示未断线 */
+    private volatile long disconnectedSince;
+    /** 已结束的断线累计时长 */
+    private volatile long accumulatedDisconnectedMillis;
+
+    WsConnectionSupervisor(Supplier<WsClient> clientFactory,
+                           FeishuProperties.Listener config,
+                           AtomicReference<ConnectionStatus> connectionStatus) {
+        this(clientFactory, config, connectionStatus, () -> Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "feishu-ws-supervisor");
+            t.setDaemon(true);
+            return t;
+        }), System::currentTimeMillis);
+    }
+
+    WsConnectionSupervisor(Supplier<WsClient> clientFactory,
+                           FeishuProperties.Listener config,
+                           AtomicReference<ConnectionStatus> connectionStatus,
+                           Supplier<ScheduledExecutorService> schedulerFactory,
+                           LongSupplier clock) {
+        this.clientFactory = clientFactory;
+        this.config = config;
+        this.connectionStatus = connectionStatus;
+        this.schedulerFactory = schedulerFactory;
+        this.clock = clock;
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        consecutiveFailures = 0;
+        connectionStatus.set(ConnectionStatus.CONNECTING);
+
+        scheduler = schedulerFactory.get();
+        scheduler.execute(this::connect);
+
+        long interval = Math.max(1, config.getHeartbeatInterval());
+        scheduler.scheduleWithFixedDelay(this::checkLiveness, interval, interval, TimeUnit.SECONDS);
+    }
+
+    synchronized void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        ConnectAttempt attempt = currentAttempt;
+        if (attempt != null) {
+            attempt.close();
+            currentAttempt = null;
+        }
+        markDisconnectedEnd();
+        connectionStatus.set(ConnectionStatus.DISCONNECTED);
+    }
+
+    long getDisconnectedMillis() {
+        long since = disconnectedSince;
+        long current = since > 0 ? clock.getAsLong() - since : 0;
+        return accumulatedDisconnectedMillis + current;
+    }
+
+    /**
+     * 发起一次连接
+     * 先关闭上一个客户端；SDK 的 start() 可能阻塞也可能立即返回，因此在连接超时内等待连接线程：
+     * 线程抛出异常视为失败；正常返回或超时仍在运行视为连接成功。
+     */
+    void connect() {
+        if (!running) {
+            return;
+        }
+
+        ConnectAttempt previous = currentAttempt;
+        if (previous != null) {
+            previous.close();
+            currentAttempt = null;
+        }
+
+        ConnectAttempt attempt;
+        try {
+            attempt = new ConnectAttempt(clientFactory.get(), this::onConnectionError);
+        } catch (Exception e) {
+            log.error("Failed to build WebSocket client", e);
+            onFailure(e);
+            return;
+        }
+        currentAttempt = attempt;
+        attempt.thread.start();
+
+        try {
+            attempt.thread.join(Math.max(1, config.getTimeout().getConnect()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (attempt.error != null) {
+            onFailure(attempt.error);
+        } else {
+            onConnected();
+        }
+    }
+
+    /**
+     * 周期性存活检查：连接线程异常退出即视为连接丢失
+     */
+    void checkLiveness() {
+        if (!running || connectionStatus.get() != ConnectionStatus.CONNECTED) {
+            return;
+        }
+        ConnectAttempt attempt = currentAttempt;
+        if (attempt != null && attempt.error != null) {
+            log.warn("WebSocket connection lost: {}", attempt.error.getMessage());
+            onFailure(attempt.error);
+        }
+    }
+
+    /**
+     * 连接线程异常退出时立即触发存活检查，无需等待下一个检查周期
+     */
+    private void onConnectionError() {
+        ScheduledExecutorService current = scheduler;
+        if (running && current != null && !current.isShutdown()) {
+            current.execute(this::checkLiveness);
+        }
+    }
+
+    private void onConnected() {
+        consecutiveFailures = 0;
+        connectionStatus.set(ConnectionStatus.CONNECTED);
+        long outage = markDisconnectedEnd();
+        if (outage > 0) {
+            log.info("Feishu WebSocket reconnected after {} ms disconnected (total {} ms)",
+                outage, accumulatedDisconnectedMillis);
+        } else {
+            log.info("Feishu WebSocket connected");
+        }
+    }
+
+    private void onFailure(Throwable error) {
+        if (!running) {
+            return;
+        }
+        if (disconnectedSince == 0) {
+            disconnectedSince = clock.getAsLong();
+        }
+        ConnectAttempt attempt = currentAttempt;
+        if (attempt != null) {
+            attempt.close();
+        }
+
+        consecutiveFailures++;
+        int maxAttempts = config.getReconnect().getMaxAttempts();
+        long delay;
+        if (maxAttempts > 0 && consecutiveFailures > maxAttempts) {
+            delay = maxDelay();
+            if (consecutiveFailures == maxAttempts + 1) {
+                log.error("WebSocket reconnect failed {} times, keep retrying every {} ms",
+                    maxAttempts, delay, error);
+            }
+        } else {
+            delay = nextDelay(consecutiveFailures);
+        }
+        connectionStatus.set(ConnectionStatus.RECONNECTING);
+        log.warn("WebSocket connection failed (attempt {}), reconnecting in {} ms: {}",
+            consecutiveFailures, delay, error.getMessage());
+
+        ScheduledExecutorService current = scheduler;
+        if (current != null && !current.isShutdown()) {
+            current.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 计算带抖动的指数退避延迟：在 [base/2, base] 区间内随机，避免多实例同时重连
+     */
+    private long nextDelay(int attempt) {
+        long initial = Math.max(1, config.getReconnect().getInitialDelay());
+        int shift = Math.min(attempt - 1, 30);
+        long base = Math.min(maxDelay(), initial << shift);
+        long half = base / 2;
+        return half + ThreadLocalRandom.current().nextLong(base - half + 1);
+    }
+
+    private long maxDelay() {
+        return Math.max(Math.max(1, config.getReconnect().getInitialDelay()), config.getReconnect().getMaxDelay());
+    }
+
+    private long markDisconnectedEnd() {
+        long since = disconnectedSince;
+        if (since == 0) {
+            return 0;
+        }
+        long outage = clock.getAsLong() - since;
+        accumulatedDisconnectedMillis += outage;
+        disconnectedSince = 0;
+        return outage;
+    }
+
+    /**
+     * 一次连接尝试：持有客户端、连接线程及其失败原因
+     */
+    private static final class ConnectAttempt {
+        private final WsClient client;
+        private final Thread thread;
+        private volatile Throwable error;
+        private volatile boolean closed;
+
+        private ConnectAttempt(WsClient client, Runnable onError) {
+            this.client = client;
+            this.thread = new Thread(() -> {
+                try {
+                    client.start();
+                } catch (Throwable e) {
+                    if (!closed) {
+                        error = e;
+                        onError.run();
+                    }
+                }
+            }, "feishu-ws-listener");
+            this.thread.setDaemon(true);
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                client.close();
+            } catch (Exception e) {
+                log.warn("Failed to close WebSocket client: {}", e.getMessage());
+            }
+            thread.interrupt();
+        }
+    }
+}
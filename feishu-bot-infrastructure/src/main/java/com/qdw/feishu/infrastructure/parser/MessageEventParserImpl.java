@@ -1,6 +1,7 @@
 package com.qdw.feishu.infrastructure.parser;
 
 import com.google.gson.Gson;
+import com.lark.oapi.service.im.v1.model.EventMessage;
 import com.lark.oapi.service.im.v1.model.P2MessageReceiveV1;
 import com.lark.oapi.service.im.v1.model.P2MessageReceiveV1Data;
 import com.qdw.feishu.domain.gateway.MessageEventParser;
@@ -18,8 +19,8 @@ import org.springframework.stereotype.Component;
  * - 统一处理 content JSON 格式提取
  * 
  * 特点：
- * - 使用正则表达式提取 thread_id 和 root_id（飞书 SDK 未直接提供这些字段）
- * - 自动解析 JSON 格式的文本内容
+ * - 直接从 SDK 模型读取 thread_id 和 root_id，不再把事件重新序列化为 JSON
+ * - 单次扫描提取 content 中的 text 字段，仅在遇到非常规格式时回退到 Gson
  */
 @Slf4j
 @Component
@@ -48,9 +49,10 @@ public class MessageEventParserImpl implements MessageEventParser {
      */
     private Message parseMessageReceiveEvent(P2MessageReceiveV1 event) {
         P2MessageReceiveV1Data data = event.getEvent();
+        EventMessage eventMessage = data.getMessage();
 
         // 提取消息内容
-        String content = extractContent(data.getMessage().getContent());
+        String content = extractContent(eventMessage.getContent());
 
         // 创建发送者
         Sender sender = new Sender(
@@ -60,7 +62,7 @@ public class MessageEventParserImpl implements MessageEventParser {
 
         // 创建消息对象
         Message message = new Message(
-            data.getMessage().getMessageId(),
+            eventMessage.getMessageId(),
             content,
             sender
         );
@@ -69,10 +71,10 @@ public class MessageEventParserImpl implements MessageEventParser {
         extractEventId(event, message);
 
         // 提取话题信息
-        extractTopicInfo(event, message);
+        extractTopicInfo(eventMessage, message);
 
         // 设置 chatId
-        message.setChatId(data.getMessage().getChatId());
+        message.setChatId(eventMessage.getChatId());
 
         return message;
     }
@@ -87,6 +89,11 @@ public class MessageEventParserImpl implements MessageEventParser {
         }
 
         if (content.startsWith("{")) {
+            String text = extractTextField(content);
+            if (text != null) {
+                return text;
+            }
+            // 快速路径无法处理（如嵌套结构、非字符串 text），回退到完整解析
             try {
                 var json = gson.fromJson(content, com.google.gson.JsonObject.class);
                 if (json.has("text")) {
@@ -100,6 +107,125 @@ public class MessageEventParserImpl implements MessageEventParser {
         return content;
     }
 
+    /**
+     * 单次扫描提取顶层 "text" 字符串字段
+     * 飞书文本消息的 content 形如 {"text":"..."}，绝大多数情况无需构建 JSON 树
+     *
+     * @return text 字段值；无法识别时返回 null，由调用方回退到完整解析
+     */
+    static String extractTextField(String json) {
+        int len = json.length();
+        int i = 1;
+        while (i < len) {
+            i = skipWhitespace(json, i);
+            if (i >= len) {
+                return null;
+            }
+            char c = json.charAt(i);
+            if (c == '}') {
+                return null;
+            }
+            if (c == ',') {
+                i++;
+                continue;
+            }
+            if (c != '"') {
+                return null;
+            }
+
+            // 读取键
+            int keyStart = i + 1;
+            int keyEnd = json.indexOf('"', keyStart);
+            if (keyEnd < 0 || json.lastIndexOf('\\', keyEnd) >= keyStart) {
+                return null;
+            }
+            i = skipWhitespace(json, keyEnd + 1);
+            if (i >= len || json.charAt(i) != ':') {
+                return null;
+            }
+            i = skipWhitespace(json, i + 1);
+            if (i >= len || json.charAt(i) != '"') {
+                // 非字符串值（数组、对象等）交给完整解析器
+                return null;
+            }
+
+            boolean isText = keyEnd - keyStart == 4 && json.startsWith("text", keyStart);
+            StringBuilder value = isText ? new StringBuilder() : null;
+            i++;
+            int runStart = i;
+            while (i < len) {
+                c = json.charAt(i);
+                if (c == '"') {
+                    break;
+                }
+                if (c == '\\') {
+                    if (i + 1 >= len) {
+                        return null;
+                    }
+                    if (value != null) {
+                        value.append(json, runStart, i);
+                    }
+                    char esc = json.charAt(i + 1);
+                    int consumed = 2;
+                    char decoded;
+                    switch (esc) {
+                        case '"': decoded = '"'; break;
+                        case '\\': decoded = '\\'; break;
+                        case '/': decoded = '/'; break;
+                        case 'b': decoded = '\b'; break;
+                        case 'f': decoded = '\f'; break;
+                        case 'n': decoded = '\n'; break;
+                        case 'r': decoded = '\r'; break;
+                        case 't': decoded = '\t'; break;
+                        case 'u':
+                            if (i + 6 > len) {
+                                return null;
+                            }
+                            int code = 0;
+                            for (int k = i + 2; k < i + 6; k++) {
+                                int digit = Character.digit(json.charAt(k), 16);
+                                if (digit < 0) {
+                                    return null;
+                                }
+                                code = (code << 4) | digit;
+                            }
+                            decoded = (char) code;
+                            consumed = 6;
+                            break;
+                        default:
+                            return null;
+                    }
+                    if (value != null) {
+                        value.append(decoded);
+                    }
+                    i += consumed;
+                    runStart = i;
+                    continue;
+                }
+                i++;
+            }
+            if (i >= len) {
+                return null;
+            }
+            if (value != null) {
+                if (value.length() == 0) {
+                    // 无转义字符时直接截取，避免额外拷贝
+                    return json.substring(runStart, i);
+                }
+                return value.append(json, runStart, i).toString();
+            }
+            i++;
+        }
+        return null;
+    }
+
+    private static int skipWhitespace(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
     /**
      * 提取 eventId
      */
@@ -115,40 +241,23 @@ public class MessageEventParserImpl implements MessageEventParser {
 
     /**
      * 从飞书事件中提取话题信息
-     * 使用正则表达式解析 JSON，因为飞书 SDK 2.5.2 未直接提供这些字段
+     * 直接读取 SDK 模型字段，避免把整个事件重新序列化
      */
-    private void extractTopicInfo(P2MessageReceiveV1 event, Message message) {
-        try {
-            String eventJson = gson.toJson(event);
-
-            // 提取 thread_id
-            java.util.regex.Pattern threadIdPattern = 
-                java.util.regex.Pattern.compile("\"thread_id\"\\s*:\\s*\"([^\"]+)\"");
-            java.util.regex.Matcher threadMatcher = threadIdPattern.matcher(eventJson);
-
-            if (threadMatcher.find()) {
-                String threadId = threadMatcher.group(1);
-                message.setTopicId(threadId);
-                log.debug("Extracted threadId: {}", threadId);
-            }
-
-            // 提取 root_id
-            java.util.regex.Pattern rootIdPattern = 
-                java.util.regex.Pattern.compile("\"root_id\"\\s*:\\s*\"([^\"]+)\"");
-            java.util.regex.Matcher rootMatcher = rootIdPattern.matcher(eventJson);
-
-            if (rootMatcher.find()) {
-                String rootId = rootMatcher.group(1);
-                message.setRootId(rootId);
-                log.debug("Extracted rootId: {}", rootId);
-            }
+    private void extractTopicInfo(EventMessage eventMessage, Message message) {
+        String threadId = eventMessage.getThreadId();
+        if (threadId != null && !threadId.isEmpty()) {
+            message.setTopicId(threadId);
+            log.debug("Extracted threadId: {}", threadId);
+        }
 
-            if (message.getTopicId() == null && message.getRootId() == null) {
-                log.trace("No thread_id or root_id found, treating as normal message");
-            }
+        String rootId = eventMessage.getRootId();
+        if (rootId != null && !rootId.isEmpty()) {
+            message.setRootId(rootId);
+            log.debug("Extracted rootId: {}", rootId);
+        }
 
-        } catch (Exception e) {
-            log.warn("Failed to extract topic/root info", e);
+        if (message.getTopicId() == null && message.getRootId() == null) {
+            log.trace("No thread_id or root_id found, treating as normal message");
         }
     }
 }
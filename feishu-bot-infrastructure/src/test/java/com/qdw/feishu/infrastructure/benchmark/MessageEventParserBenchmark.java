@@ -0,0 +1,116 @@
+package com.qdw.feishu.infrastructure.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.lark.oapi.service.im.v1.model.P2MessageReceiveV1;
+import com.qdw.feishu.domain.message.Message;
+import com.qdw.feishu.infrastructure.parser.MessageEventParserImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 入站消息解析基准测试
+ *
+ * 对比旧实现（整事件 Gson 序列化 + 每次编译正则 + content 解析为 JsonObject）
+ * 与当前实现（直接读取 SDK 字段 + 单次扫描提取 text）的耗时与每次调用的分配量。
+ *
+ * 运行方式（需先执行 mvn test-compile）：
+ * 直接运行 main 方法，结果中 gc.alloc.rate.norm 即每个事件的分配字节数。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageEventParserBenchmark {
+
+    private static final String SAMPLE_EVENT = "{"
+        + "\"schema\":\"2.0\","
+        + "\"header\":{\"event_id\":\"5e3702a84e847582be8db7fb73283c02\","
+        + "\"event_type\":\"im.message.receive_v1\",\"create_time\":\"1608725989000\","
+        + "\"token\":\"rvaYgkR9nmMWRcKvBTs2Ed4BkZBRa6s7\",\"app_id\":\"cli_9f5343c580712544\","
+        + "\"tenant_key\":\"2ca1d211f64f6438\"},"
+        + "\"event\":{"
+        + "\"sender\":{\"sender_id\":{\"union_id\":\"on_8ed6aa67826108097d9ee143816345\","
+        + "\"user_id\":\"e33ggbyz\",\"open_id\":\"ou_84aad35d084aa403a838cf73ee18467\"},"
+        + "\"sender_type\":\"user\",\"tenant_key\":\"736588c9260f175e\"},"
+        + "\"message\":{\"message_id\":\"om_5ce6d572455d361153b7cb51da133945\","
+        + "\"root_id\":\"om_5ce6d572455d361153b7cb5xxfsdfsdfdsf\","
+        + "\"parent_id\":\"om_5ce6d572455d361153b7cb5xxfsdfsdfdsf\","
+        + "\"create_time\":\"1609073151345\",\"update_time\":\"1687343654666\","
+        + "\"chat_id\":\"oc_5ce6d572455d361153b7xx51da133945\","
+        + "\"thread_id\":\"omt_d4be107c616\","
+        + "\"chat_type\":\"group\",\"message_type\":\"text\","
+        + "\"content\":\"{\\\"text\\\":\\\"/oc chat 帮我看看 \\\\\\\"main\\\\\\\" 分支的构建\\\"}\","
+        + "\"mentions\":[{\"key\":\"@_user_1\",\"id\":{\"union_id\":\"on_8ed6aa67826108097d9ee143816345\","
+        + "\"user_id\":\"e33ggbyz\",\"open_id\":\"ou_84aad35d084aa403a838cf73ee18467\"},"
+        + "\"name\":\"Tom\",\"tenant_key\":\"736588c9260f175e\"}]}}"
+        + "}";
+
+    private final Gson gson = new Gson();
+    private MessageEventParserImpl parser;
+    private P2MessageReceiveV1 event;
+
+    @Setup
+    public void setup() {
+        parser = new MessageEventParserImpl();
+        event = gson.fromJson(SAMPLE_EVENT, P2MessageReceiveV1.class);
+    }
+
+    @Benchmark
+    public Message current() {
+        return parser.parse(event);
+    }
+
+    @Benchmark
+    public Message legacy() {
+        var data = event.getEvent();
+        String content = data.getMessage().getContent();
+        if (content.startsWith("{")) {
+            JsonObject json = gson.fromJson(content, JsonObject.class);
+            if (json.has("text")) {
+                content = json.get("text").getAsString();
+            }
+        }
+        Message message = new Message(data.getMessage().getMessageId(), content, null);
+        message.setEventId(event.getHeader().getEventId());
+
+        String eventJson = gson.toJson(event);
+        Matcher threadMatcher = Pattern.compile("\"thread_id\"\\s*:\\s*\"([^\"]+)\"").matcher(eventJson);
+        if (threadMatcher.find()) {
+            message.setTopicId(threadMatcher.group(1));
+        }
+        Matcher rootMatcher = Pattern.compile("\"root_id\"\\s*:\\s*\"([^\"]+)\"").matcher(eventJson);
+        if (rootMatcher.find()) {
+            message.setRootId(rootMatcher.group(1));
+        }
+        message.setChatId(data.getMessage().getChatId());
+        return message;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(MessageEventParserBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
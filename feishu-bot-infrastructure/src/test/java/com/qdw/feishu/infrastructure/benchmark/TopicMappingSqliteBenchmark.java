@@ -0,0 +1,176 @@
+package com.qdw.feishu.infrastructure.benchmark;
+
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import com.qdw.feishu.infrastructure.gateway.TopicMappingSqliteGateway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 话题映射 SQLite 写入吞吐基准测试（每秒映射数）
+ *
+ * 库中预置 rows 条映射后，对比：
+ * - legacyInsertOrReplace：旧实现，默认日志模式 + 每次 INSERT OR REPLACE 自动提交
+ * - touch：当前实现更新已有话题的活跃时间（单写线程组提交，只改 last_active_at）
+ * - insert：当前实现写入新话题
+ * - flushBatch：缓存回写路径，一次 saveAll 100 条
+ *
+ * 多线程并发写入以体现组提交的效果。
+ * 运行方式（需先执行 mvn test-compile）：直接运行 main 方法。预置 100 万行需要数十秒。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class TopicMappingSqliteBenchmark {
+
+    private static final int FLUSH_BATCH = 100;
+    private static final String APP_ID = "opencode";
+
+    @Param({"1000000"})
+    public int rows;
+
+    private Path dir;
+    private TopicMappingSqliteGateway gateway;
+    private JdbcTemplate legacy;
+    private final AtomicLong newTopicSeq = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("topic-mapping-bench");
+        Path seed = dir.resolve("seed.db");
+        populate(seed, rows);
+
+        Path legacyDb = dir.resolve("legacy.db");
+        Files.copy(seed, legacyDb);
+        legacy = new JdbcTemplate(DataSourceBuilder.create()
+            .url("jdbc:sqlite:" + legacyDb)
+            .driverClassName("org.sqlite.JDBC")
+            .build());
+
+        Path tunedDb = dir.resolve("tuned.db");
+        Files.move(seed, tunedDb);
+        TopicMappingProperties properties = new TopicMappingProperties();
+        properties.getSqlite().setPath(tunedDb.toString());
+        gateway = new TopicMappingSqliteGateway(properties);
+        gateway.init();
+        newTopicSeq.set(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        gateway.cleanup();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void legacyInsertOrReplace() {
+        TopicMapping mapping = existingMapping();
+        legacy.update("INSERT OR REPLACE INTO topic_mapping (topic_id, app_id, metadata, created_at, last_active_at) "
+                + "VALUES (?, ?, ?, ?, ?)",
+            mapping.getTopicId(), mapping.getAppId(), mapping.getMetadata(),
+            mapping.getCreatedAt(), mapping.getLastActiveAt());
+    }
+
+    @Benchmark
+    public void touch() {
+        gateway.save(existingMapping());
+    }
+
+    @Benchmark
+    public void insert() {
+        TopicMapping mapping = new TopicMapping("omt_" + newTopicSeq.getAndIncrement(), APP_ID);
+        gateway.save(mapping);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FLUSH_BATCH)
+    public void flushBatch() {
+        List<TopicMapping> batch = new ArrayList<>(FLUSH_BATCH);
+        for (int i = 0; i < FLUSH_BATCH; i++) {
+            batch.add(existingMapping());
+        }
+        gateway.saveAll(batch);
+    }
+
+    private TopicMapping existingMapping() {
+        TopicMapping mapping = new TopicMapping("omt_" + ThreadLocalRandom.current().nextInt(rows), APP_ID);
+        mapping.setCreatedAt(0L);
+        return mapping;
+    }
+
+    /**
+     * 以旧表结构预置数据，使用单个事务批量插入
+     */
+    private static void populate(Path db, int rows) throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + db)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE topic_mapping (topic_id TEXT PRIMARY KEY NOT NULL, "
+                    + "app_id TEXT NOT NULL, metadata TEXT, created_at INTEGER NOT NULL, "
+                    + "last_active_at INTEGER NOT NULL)");
+                statement.execute("CREATE INDEX idx_topic_mapping_app_id ON topic_mapping(app_id)");
+            }
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO topic_mapping VALUES (?, ?, NULL, 0, 0)")) {
+                for (int i = 0; i < rows; i++) {
+                    ps.setString(1, "omt_" + i);
+                    ps.setString(2, APP_ID);
+                    ps.addBatch();
+                    if (i % 10_000 == 9_999) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            connection.commit();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(TopicMappingSqliteBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,142 @@
+package com.qdw.feishu.infrastructure.benchmark;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import com.qdw.feishu.infrastructure.gateway.TopicMappingJdbcGateway;
+import com.qdw.feishu.infrastructure.gateway.TopicMappingMmapGateway;
+import com.qdw.feishu.infrastructure.gateway.TopicMappingSqliteGateway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 话题映射存储对比基准测试：SQLite、内存映射 KV 与 JDBC（H2 文件库）（每次操作耗时）
+ *
+ * 两种存储预置相同的 rows 条映射（带一段 OpenCode 会话 metadata），对比：
+ * - find：按话题 ID 随机查询已有映射
+ * - touch：更新已有话题的活跃时间
+ * - insert：写入新话题
+ *
+ * 运行方式（需先执行 mvn test-compile）：直接运行 main 方法。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class TopicMappingStoreBenchmark {
+
+    private static final String APP_ID = "opencode";
+    private static final String METADATA = "{\"opencode.sessionId\":\"ses_4f2a9c\",\"opencode.commandCount\":3}";
+    private static final int SEED_BATCH = 1000;
+
+    @Param({"sqlite", "mmap", "jdbc"})
+    public String storage;
+
+    @Param({"100000"})
+    public int rows;
+
+    private Path dir;
+    private TopicMappingGateway gateway;
+    private Runnable close;
+    private final AtomicLong newTopicSeq = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("topic-mapping-store-bench");
+        TopicMappingProperties properties = new TopicMappingProperties();
+        if ("sqlite".equals(storage)) {
+            properties.getSqlite().setPath(dir.resolve("topic-mappings.db").toString());
+            TopicMappingSqliteGateway sqlite = new TopicMappingSqliteGateway(properties);
+            sqlite.init();
+            gateway = sqlite;
+            close = sqlite::cleanup;
+        } else if ("jdbc".equals(storage)) {
+            properties.getJdbc().setUrl("jdbc:h2:file:" + dir.resolve("topic-mappings").toAbsolutePath());
+            TopicMappingJdbcGateway jdbc = new TopicMappingJdbcGateway(properties);
+            jdbc.init();
+            gateway = jdbc;
+            close = jdbc::cleanup;
+        } else {
+            properties.getMmap().setPath(dir.resolve("kv").toString());
+            TopicMappingMmapGateway mmap = new TopicMappingMmapGateway(properties);
+            mmap.init();
+            gateway = mmap;
+            close = mmap::cleanup;
+        }
+
+        List<TopicMapping> batch = new ArrayList<>(SEED_BATCH);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new TopicMapping("omt_" + i, APP_ID, METADATA));
+            if (batch.size() == SEED_BATCH) {
+                gateway.saveAll(batch);
+                batch.clear();
+            }
+        }
+        gateway.saveAll(batch);
+        newTopicSeq.set(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        close.run();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Optional<TopicMapping> find() {
+        return gateway.findByTopicId("omt_" + ThreadLocalRandom.current().nextInt(rows));
+    }
+
+    @Benchmark
+    public void touch() {
+        TopicMapping mapping = new TopicMapping(
+            "omt_" + ThreadLocalRandom.current().nextInt(rows), APP_ID, METADATA);
+        mapping.setCreatedAt(0L);
+        gateway.save(mapping);
+    }
+
+    @Benchmark
+    public void insert() {
+        gateway.save(new TopicMapping("omt_" + newTopicSeq.getAndIncrement(), APP_ID, METADATA));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(TopicMappingStoreBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,118 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.domain.model.TopicMetadata;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchivingTopicMappingGatewayTest {
+
+    @TempDir
+    Path dir;
+
+    private TopicMappingGatewayImpl hot;
+    private TopicMappingArchive archive;
+    private ArchivingTopicMappingGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        hot = openHot();
+        restart();
+    }
+
+    @AfterEach
+    void tearDown() {
+        hot.saveMappingsOnShutdown();
+    }
+
+    private TopicMappingGatewayImpl openHot() {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        properties.getFile().setPath(dir.resolve("mappings.json").toString());
+        TopicMappingGatewayImpl store = new TopicMappingGatewayImpl(properties);
+        store.loadMappings();
+        return store;
+    }
+
+    /**
+     * 重新加载归档目录，模拟进程重启
+     */
+    private void restart() {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        properties.getRetention().setArchiveDir(dir.resolve("archive").toString());
+        archive = new TopicMappingArchive(properties);
+        archive.init();
+        gateway = new ArchivingTopicMappingGateway(hot, archive);
+    }
+
+    /**
+     * 与归档任务相同的顺序：先写归档段，再从热存储删除
+     */
+    private void archive(String topicId) {
+        TopicMapping mapping = hot.findByTopicId(topicId).orElseThrow();
+        archive.append(List.of(mapping));
+        assertEquals(1, hot.deleteInactiveBefore(List.of(topicId), Long.MAX_VALUE));
+    }
+
+    @Test
+    @DisplayName("热数据未命中时从归档恢复并写回热存储")
+    void testFind_restoresArchivedMapping() {
+        TopicMapping mapping = new TopicMapping("omt_1", "opencode");
+        TopicMetadata.of(mapping).set("sessionId", "ses_1");
+        hot.save(mapping);
+        archive("omt_1");
+        assertTrue(hot.findByTopicId("omt_1").isEmpty());
+
+        TopicMapping restored = gateway.findByTopicId("omt_1").orElseThrow();
+
+        assertEquals("ses_1", TopicMetadata.of(restored).getString("sessionId").orElseThrow());
+        assertEquals(1, restored.getVersion());
+        TopicMapping stored = hot.findByTopicId("omt_1").orElseThrow();
+        assertEquals("ses_1", TopicMetadata.of(stored).getString("sessionId").orElseThrow());
+    }
+
+    @Test
+    @DisplayName("删除归档中的话题（包括已恢复的话题）后重启，不会再被恢复")
+    void testDelete_notResurrectedAfterRestart() {
+        hot.save(new TopicMapping("omt_archived", "opencode"));
+        hot.save(new TopicMapping("omt_restored", "opencode"));
+        archive("omt_archived");
+        archive("omt_restored");
+        assertTrue(gateway.findByTopicId("omt_restored").isPresent());
+
+        gateway.delete("omt_archived");
+        gateway.delete("omt_restored");
+        assertTrue(gateway.findByTopicId("omt_archived").isEmpty());
+
+        restart();
+        assertTrue(gateway.findByTopicId("omt_archived").isEmpty());
+        assertTrue(gateway.findByTopicId("omt_restored").isEmpty());
+        assertTrue(hot.findByTopicId("omt_restored").isEmpty());
+    }
+
+    @Test
+    @DisplayName("恢复后再次归档的话题从较新的段中恢复，重启后同样如此")
+    void testReArchivedAfterRestore_foundInNewerSegment() {
+        hot.save(new TopicMapping("omt_1", "opencode", "{\"v\":1}"));
+        archive("omt_1");
+
+        TopicMapping restored = gateway.findByTopicId("omt_1").orElseThrow();
+        restored.setMetadata("{\"v\":2}");
+        assertTrue(gateway.compareAndSave(restored));
+        archive("omt_1");
+
+        assertEquals("{\"v\":2}", gateway.findByTopicId("omt_1").orElseThrow().getMetadata());
+        archive("omt_1");
+
+        restart();
+        assertEquals("{\"v\":2}", gateway.findByTopicId("omt_1").orElseThrow().getMetadata());
+    }
+}
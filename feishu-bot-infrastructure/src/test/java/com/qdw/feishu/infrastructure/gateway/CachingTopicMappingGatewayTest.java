@@ -0,0 +1,197 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.domain.model.TopicMetadata;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingTopicMappingGatewayTest {
+
+    private final VersionedStore store = new VersionedStore();
+    private final CachingTopicMappingGateway gateway = new CachingTopicMappingGateway(
+        store, new TopicMappingProperties.Cache(), new TopicMappingProperties.UnknownTopic());
+    private final long later = System.currentTimeMillis() + 60_000;
+
+    private TopicMapping saveDirty(long lastActiveAt) {
+        gateway.save(new TopicMapping("omt_1", "opencode", "{\"a\":1}"));
+        TopicMapping mapping = gateway.findByTopicId("omt_1").orElseThrow();
+        mapping.setLastActiveAt(lastActiveAt);
+        gateway.save(mapping);
+        assertEquals(1, gateway.getDirtyCount());
+        return mapping;
+    }
+
+    @Test
+    @DisplayName("有未回写的脏数据时条件写入合并后一次提交，不会因提前盲写而必然冲突")
+    void testCompareAndSave_mergesPendingChange() {
+        saveDirty(later);
+
+        TopicMapping mapping = gateway.findByTopicId("omt_1").orElseThrow();
+        mapping.setMetadata("{\"a\":2}");
+        assertTrue(gateway.compareAndSave(mapping));
+
+        TopicMapping stored = store.get("omt_1");
+        assertEquals(2, stored.getVersion());
+        assertEquals(later, stored.getLastActiveAt());
+        assertEquals("{\"a\":2}", stored.getMetadata());
+        assertEquals(2, mapping.getVersion());
+        assertEquals(0, gateway.getDirtyCount());
+        assertEquals(1, store.blindSaves);
+    }
+
+    @Test
+    @DisplayName("只更新活跃时间时延迟回写，元数据变化（如会话 ID）立即连同已积累的活跃时间写入存储")
+    void testSave_writesMetadataThrough() {
+        saveDirty(later);
+        assertNotEquals(later, store.get("omt_1").getLastActiveAt());
+
+        TopicMapping mapping = gateway.findByTopicId("omt_1").orElseThrow();
+        TopicMetadata.of(mapping).set("sessionId", "ses_1");
+        gateway.save(mapping);
+
+        TopicMapping stored = store.get("omt_1");
+        assertEquals("ses_1", TopicMetadata.of(stored).getString("sessionId").orElseThrow());
+        assertEquals(later, stored.getLastActiveAt());
+        assertEquals(0, gateway.getDirtyCount());
+        assertEquals(1, store.blindSaves);
+
+        TopicMapping replaced = gateway.findByTopicId("omt_1").orElseThrow();
+        replaced.setMetadata("{\"a\":3}");
+        gateway.save(replaced);
+        assertEquals("{\"a\":3}", store.get("omt_1").getMetadata());
+        assertEquals(0, gateway.getDirtyCount());
+    }
+
+    @Test
+    @DisplayName("回写时存储已被其他写入者更新，重放脏数据到最新版本上而不是覆盖")
+    void testFlush_rebasesOnConcurrentWrite() {
+        saveDirty(later);
+
+        TopicMapping external = store.findByTopicId("omt_1").orElseThrow();
+        external.setMetadata("{\"b\":1}");
+        assertTrue(store.compareAndSave(external));
+
+        gateway.flush();
+
+        TopicMapping stored = store.get("omt_1");
+        assertEquals("{\"b\":1}", stored.getMetadata());
+        assertEquals(later, stored.getLastActiveAt());
+        assertEquals(3, stored.getVersion());
+        assertEquals(0, gateway.getDirtyCount());
+
+        TopicMapping cached = gateway.findByTopicId("omt_1").orElseThrow();
+        cached.setLastActiveAt(later + 1);
+        assertTrue(gateway.compareAndSave(cached));
+    }
+
+    @Test
+    @DisplayName("回写时话题已被删除，丢弃脏数据，不会把话题写回存储")
+    void testFlush_discardsDeletedTopic() {
+        saveDirty(later);
+        store.delete("omt_1");
+
+        gateway.flush();
+
+        assertNull(store.get("omt_1"));
+        assertEquals(0, gateway.getDirtyCount());
+        assertTrue(gateway.findByTopicId("omt_1").isEmpty());
+    }
+
+    @Test
+    @DisplayName("归档删除跳过有未回写修改的话题，删除后缓存不再返回已归档的话题")
+    void testDeleteInactiveBefore_skipsDirtyAndInvalidatesCache() {
+        gateway.save(new TopicMapping("omt_2", "opencode"));
+        assertTrue(gateway.findByTopicId("omt_2").isPresent());
+        saveDirty(later);
+
+        int deleted = gateway.deleteInactiveBefore(List.of("omt_1", "omt_2"), Long.MAX_VALUE);
+
+        assertEquals(1, deleted);
+        assertNull(store.get("omt_2"));
+        assertNotNull(store.get("omt_1"));
+        assertTrue(gateway.findByTopicId("omt_2").isEmpty());
+        assertTrue(gateway.findByTopicId("omt_1").isPresent());
+    }
+
+    /**
+     * 与真实存储一致的版本语义：每次写入版本加一，条件写入比较版本
+     */
+    private static final class VersionedStore implements TopicMappingGateway {
+        private final Map<String, TopicMapping> mappings = new ConcurrentHashMap<>();
+        private int blindSaves;
+
+        private TopicMapping get(String topicId) {
+            return mappings.get(topicId);
+        }
+
+        @Override
+        public synchronized void save(TopicMapping mapping) {
+            blindSaves++;
+            TopicMapping current = mappings.get(mapping.getTopicId());
+            TopicMapping stored = mapping.copy();
+            stored.setVersion(current != null ? current.getVersion() + 1 : 1);
+            mappings.put(mapping.getTopicId(), stored);
+        }
+
+        @Override
+        public synchronized boolean compareAndSave(TopicMapping mapping) {
+            TopicMapping current = mappings.get(mapping.getTopicId());
+            long version = current != null ? current.getVersion() : 0;
+            if (version != mapping.getVersion()) {
+                return false;
+            }
+            mapping.setVersion(version + 1);
+            mapping.markMetadataPersisted();
+            mappings.put(mapping.getTopicId(), mapping.copy());
+            return true;
+        }
+
+        @Override
+        public Optional<TopicMapping> findByTopicId(String topicId) {
+            TopicMapping current = mappings.get(topicId);
+            if (current == null) {
+                return Optional.empty();
+            }
+            TopicMapping copy = current.copy();
+            copy.markMetadataPersisted();
+            return Optional.of(copy);
+        }
+
+        @Override
+        public void delete(String topicId) {
+            mappings.remove(topicId);
+        }
+
+        @Override
+        public int deleteInactiveBefore(Collection<String> topicIds, long cutoff) {
+            int deleted = 0;
+            for (String topicId : topicIds) {
+                if (mappings.remove(topicId) != null) {
+                    deleted++;
+                }
+            }
+            return deleted;
+        }
+
+        @Override
+        public List<TopicMapping> scan(String afterTopicId, int limit) {
+            return mappings.values().stream()
+                .filter(m -> afterTopicId == null || m.getTopicId().compareTo(afterTopicId) > 0)
+                .sorted(Comparator.comparing(TopicMapping::getTopicId))
+                .limit(limit)
+                .map(TopicMapping::copy)
+                .toList();
+        }
+    }
+}
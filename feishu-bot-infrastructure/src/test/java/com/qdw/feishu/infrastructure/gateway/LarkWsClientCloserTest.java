@@ -0,0 +1,32 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.lark.oapi.event.EventDispatcher;
+import com.lark.oapi.ws.Client;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 针对 pom 中锁定的 SDK 版本校验反射依赖的内部成员，SDK 升级后成员变化时在此失败
+ */
+class LarkWsClientCloserTest {
+
+    @Test
+    @DisplayName("当前 SDK 版本支持显式关闭长连接客户端")
+    void testSupportedByPinnedSdk() {
+        assertTrue(LarkWsClientCloser.isSupported());
+    }
+
+    @Test
+    @DisplayName("关闭未启动的客户端不抛异常，可重复关闭")
+    void testCloseUnstartedClient() {
+        Client client = new Client.Builder("cli_test", "secret")
+            .eventHandler(EventDispatcher.newBuilder("", "").build())
+            .autoReconnect(true)
+            .build();
+
+        assertDoesNotThrow(() -> LarkWsClientCloser.close(client));
+        assertDoesNotThrow(() -> LarkWsClientCloser.close(client));
+    }
+}
@@ -0,0 +1,163 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.JournalEntry;
+import com.qdw.feishu.domain.message.Message;
+import com.qdw.feishu.domain.message.Sender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MmapMessageJournalGatewayTest {
+
+    @TempDir
+    Path dir;
+
+    private MmapMessageJournalGateway journal;
+
+    @AfterEach
+    void tearDown() {
+        if (journal != null) {
+            journal.shutdown();
+        }
+    }
+
+    private MmapMessageJournalGateway open() {
+        if (journal != null) {
+            journal.shutdown();
+        }
+        journal = new MmapMessageJournalGateway(dir.toString(), 1024 * 1024, "none", 10);
+        journal.init();
+        return journal;
+    }
+
+    private static Message message(String id, String content) {
+        Message message = new Message();
+        message.setEventId("ev_" + id);
+        message.setMessageId("om_" + id);
+        message.setContent(content);
+        message.setTopicId("omt_1");
+        message.setChatId("oc_1");
+        message.setSender(new Sender("ou_1", "user"));
+        return message;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("journal-")).sorted().toList();
+        }
+    }
+
+    @Test
+    @DisplayName("重启后只恢复未完成的消息，按写入顺序返回且内容完整")
+    void testRecoverPending_onlyIncomplete() {
+        open();
+        long first = journal.append(message("1", "第一条\n带换行"));
+        long second = journal.append(message("2", "second"));
+        long third = journal.append(message("3", "third"));
+        journal.complete(second);
+
+        open();
+        List<JournalEntry> pending = journal.recoverPending();
+
+        assertEquals(2, pending.size());
+        assertEquals(first, pending.get(0).getSequence());
+        assertEquals(third, pending.get(1).getSequence());
+        Message recovered = pending.get(0).getMessage();
+        assertEquals("ev_1", recovered.getEventId());
+        assertEquals("om_1", recovered.getMessageId());
+        assertEquals("第一条\n带换行", recovered.getContent());
+        assertEquals("omt_1", recovered.getTopicId());
+        assertEquals("oc_1", recovered.getChatId());
+        assertEquals("ou_1", recovered.getSender().getOpenId());
+        assertEquals(0, pending.get(0).getAttempts());
+
+        assertTrue(journal.recoverPending().isEmpty());
+        assertTrue(journal.append(message("4", "fourth")) > third);
+    }
+
+    @Test
+    @DisplayName("崩溃时写了一半的尾部记录被丢弃，之前的记录正常恢复")
+    void testRecoverPending_truncatesTornTail() throws IOException {
+        open();
+        journal.append(message("1", "intact"));
+        journal.append(message("2", "torn"));
+        journal.shutdown();
+        journal = null;
+
+        Path segment = segmentFiles().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 0);
+            int secondRecord = length.flip().getInt();
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), secondRecord + 20);
+        }
+
+        open();
+        List<JournalEntry> pending = journal.recoverPending();
+
+        assertEquals(1, pending.size());
+        assertEquals("intact", pending.get(0).getMessage().getContent());
+    }
+
+    @Test
+    @DisplayName("每次重放开始都计入重放次数，转入死信后不再恢复")
+    void testAttemptsAndDeadLetter() throws IOException {
+        open();
+        long sequence = journal.append(message("1", "poison"));
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            open();
+            List<JournalEntry> pending = journal.recoverPending();
+            assertEquals(1, pending.size());
+            assertEquals(attempt, pending.get(0).getAttempts());
+            journal.recordAttempt(sequence);
+        }
+
+        open();
+        JournalEntry entry = journal.recoverPending().get(0);
+        assertEquals(3, entry.getAttempts());
+        journal.deadLetter(entry);
+
+        String deadLetters = Files.readString(dir.resolve("dead-letter.log"));
+        assertTrue(deadLetters.contains("messageId=om_1"));
+        assertTrue(deadLetters.contains("attempts=3"));
+        assertTrue(deadLetters.contains("content=poison"));
+
+        open();
+        assertTrue(journal.recoverPending().isEmpty());
+    }
+
+    @Test
+    @DisplayName("段写满后滚动到新段，旧段中的消息全部完成后删除")
+    void testSegmentsDeletedWhenCompleted() throws IOException {
+        open();
+        String content = "x".repeat(4000);
+        long[] sequences = new long[600];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = journal.append(message(String.valueOf(i), content));
+        }
+        assertTrue(segmentFiles().size() >= 3);
+
+        for (int i = 0; i < sequences.length - 1; i++) {
+            journal.complete(sequences[i]);
+        }
+        assertEquals(1, segmentFiles().size());
+
+        open();
+        List<JournalEntry> pending = journal.recoverPending();
+        assertEquals(1, pending.size());
+        assertEquals(sequences[sequences.length - 1], pending.get(0).getSequence());
+    }
+}
@@ -0,0 +1,146 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenCodeResponseCacheTest {
+
+    private static final Duration TTL = Duration.ofSeconds(5);
+
+    private final AtomicLong now = new AtomicLong(10_000);
+    private final OpenCodeResponseCache cache = new OpenCodeResponseCache(now::get);
+    private final List<CompletableFuture<HttpResponse<String>>> requests = new ArrayList<>();
+
+    /**
+     * 每次调用发起一个新请求，由测试决定何时完成
+     */
+    private final Supplier<CompletableFuture<HttpResponse<String>>> loader = () -> {
+        CompletableFuture<HttpResponse<String>> request = new CompletableFuture<>();
+        requests.add(request);
+        return request;
+    };
+
+    private CompletableFuture<HttpResponse<String>> get() {
+        return cache.get("/session", TTL, loader);
+    }
+
+    @Test
+    @DisplayName("200 响应在有效期内直接返回，过期后重新加载；非 200 响应不缓存")
+    void testTtlExpiry() {
+        CompletableFuture<HttpResponse<String>> first = get();
+        requests.get(0).complete(new FakeResponse(200, "v1"));
+        assertEquals("v1", first.join().body());
+
+        now.addAndGet(4_999);
+        CompletableFuture<HttpResponse<String>> cached = get();
+        assertEquals(1, requests.size());
+        assertEquals("v1", cached.join().body());
+
+        now.addAndGet(1);
+        CompletableFuture<HttpResponse<String>> expired = get();
+        assertEquals(2, requests.size());
+        requests.get(1).complete(new FakeResponse(500, "error"));
+        assertEquals(500, expired.join().statusCode());
+
+        get();
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    @DisplayName("TTL 为 0 时每次都发起请求，不合并也不缓存")
+    void testZeroTtl_bypassesCache() {
+        cache.get("/session", Duration.ZERO, loader);
+        cache.get("/session", Duration.ZERO, loader);
+        requests.forEach(request -> request.complete(new FakeResponse(200, "v1")));
+        cache.get("/session", Duration.ZERO, loader);
+
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    @DisplayName("同一 key 的并发请求只加载一次，所有等待者拿到同一响应")
+    void testSingleFlight() {
+        CompletableFuture<HttpResponse<String>> first = get();
+        CompletableFuture<HttpResponse<String>> second = get();
+        assertEquals(1, requests.size());
+
+        FakeResponse response = new FakeResponse(200, "v1");
+        requests.get(0).complete(response);
+
+        assertSame(response, first.join());
+        assertSame(response, second.join());
+        CompletableFuture<HttpResponse<String>> cached = get();
+        assertEquals(1, requests.size());
+        assertSame(response, cached.join());
+    }
+
+    @Test
+    @DisplayName("加载期间清空缓存：之后的请求重新加载，失效前发起的请求结果不写入缓存")
+    void testInvalidateDuringLoad() {
+        CompletableFuture<HttpResponse<String>> stale = get();
+        cache.invalidateAll();
+
+        CompletableFuture<HttpResponse<String>> fresh = get();
+        assertEquals(2, requests.size());
+        assertNotSame(stale, fresh);
+
+        requests.get(1).complete(new FakeResponse(200, "fresh"));
+        requests.get(0).complete(new FakeResponse(200, "stale"));
+        assertEquals("stale", stale.join().body());
+        assertEquals("fresh", fresh.join().body());
+
+        CompletableFuture<HttpResponse<String>> cached = get();
+        assertEquals(2, requests.size());
+        assertEquals("fresh", cached.join().body());
+    }
+
+    private record FakeResponse(int statusCode, String body) implements HttpResponse<String> {
+
+        @Override
+        public HttpRequest request() {
+            return null;
+        }
+
+        @Override
+        public Optional<HttpResponse<String>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return HttpHeaders.of(Map.of(), (name, value) -> true);
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return null;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.domain.model.TopicMetadata;
+import com.qdw.feishu.domain.model.opencode.OpenCodeMetadata;
+import com.qdw.feishu.infrastructure.config.OpenCodeProperties;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenCodeSessionSqliteGatewayTest {
+
+    @TempDir
+    Path dir;
+
+    private CountingTopicMappingGateway topics;
+    private OpenCodeSessionSqliteGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        properties.getFile().setPath(dir.resolve("mappings.json").toString());
+        topics = new CountingTopicMappingGateway(properties);
+        topics.loadMappings();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (gateway != null) {
+            gateway.cleanup();
+        }
+        topics.saveMappingsOnShutdown();
+    }
+
+    /**
+     * 关闭当前实例后重新打开同一个数据库文件，模拟进程重启
+     */
+    private OpenCodeSessionSqliteGateway restart() {
+        if (gateway != null) {
+            gateway.cleanup();
+        }
+        OpenCodeProperties properties = new OpenCodeProperties();
+        properties.getSession().setSqlitePath(dir.resolve("sessions.db").toString());
+        gateway = new OpenCodeSessionSqliteGateway(properties, topics);
+        gateway.init();
+        return gateway;
+    }
+
+    private void saveTopic(String topicId, String sessionId, boolean initialized) {
+        TopicMapping mapping = new TopicMapping(topicId, "opencode");
+        TopicMetadata metadata = TopicMetadata.of(mapping);
+        if (sessionId != null) {
+            metadata.set(OpenCodeSessionGatewayImpl.KEY_SESSION_ID, sessionId)
+                .set(OpenCodeSessionGatewayImpl.KEY_LAST_COMMAND, "ls")
+                .set(OpenCodeSessionGatewayImpl.KEY_COMMAND_COUNT, 3);
+        }
+        if (initialized) {
+            metadata.set(OpenCodeSessionGatewayImpl.KEY_EXPLICITLY_INITIALIZED, true);
+        }
+        topics.save(mapping);
+    }
+
+    @Test
+    @DisplayName("首次启动从话题映射导入会话和显式初始化状态，之后启动不再扫描话题映射")
+    void testInit_importsOnce() {
+        saveTopic("omt_session", "ses_1", false);
+        saveTopic("omt_initialized", null, true);
+        saveTopic("omt_plain", null, false);
+
+        restart();
+
+        assertEquals("ses_1", gateway.getSessionId("omt_session").orElseThrow());
+        OpenCodeMetadata metadata = gateway.getMetadata("omt_session").orElseThrow();
+        assertEquals("ls", metadata.getLastCommand());
+        assertEquals(3, metadata.getCommandCount());
+        assertTrue(gateway.isExplicitlyInitialized("omt_initialized"));
+        assertTrue(gateway.getMetadata("omt_plain").isEmpty());
+
+        int scans = topics.scans;
+        saveTopic("omt_later", "ses_later", false);
+        restart();
+        assertEquals(scans, topics.scans);
+        assertTrue(gateway.getSessionId("omt_later").isEmpty());
+    }
+
+    @Test
+    @DisplayName("没有可导入的会话时同样记录导入标记，会话表为空也不会在每次启动时重新扫描")
+    void testInit_emptyImportNotRepeated() {
+        restart();
+        int scans = topics.scans;
+        assertTrue(scans > 0);
+
+        restart();
+        restart();
+
+        assertEquals(scans, topics.scans);
+    }
+
+    @Test
+    @DisplayName("导入失败不记录标记，下次启动重试")
+    void testInit_retriesFailedImport() {
+        saveTopic("omt_session", "ses_1", false);
+        topics.failScan = true;
+
+        restart();
+        assertTrue(gateway.getSessionId("omt_session").isEmpty());
+
+        topics.failScan = false;
+        restart();
+        assertEquals("ses_1", gateway.getSessionId("omt_session").orElseThrow());
+    }
+
+    @Test
+    @DisplayName("保存会话与元数据为插入或更新，更新会话不改变创建时间和显式初始化状态")
+    void testUpserts() {
+        restart();
+        gateway.saveSession("omt_1", "ses_1");
+        long createdAt = gateway.getMetadata("omt_1").orElseThrow().getSessionCreatedAt();
+        gateway.setExplicitlyInitialized("omt_1");
+
+        gateway.updateSession("omt_1", "ses_2");
+        OpenCodeMetadata updated = gateway.getMetadata("omt_1").orElseThrow();
+        assertEquals("ses_2", updated.getSessionId());
+        assertEquals(createdAt, updated.getSessionCreatedAt());
+        assertTrue(gateway.isExplicitlyInitialized("omt_1"));
+
+        OpenCodeMetadata metadata = new OpenCodeMetadata();
+        metadata.setSessionId("ses_3");
+        metadata.setLastCommand("git status");
+        metadata.setCommandCount(7);
+        metadata.setSessionCreatedAt(100L);
+        metadata.setLastActiveAt(200L);
+        gateway.saveMetadata("omt_1", metadata);
+        gateway.saveMetadata("omt_2", metadata);
+
+        assertEquals(metadata, gateway.getMetadata("omt_1").orElseThrow());
+        assertEquals(metadata, gateway.getMetadata("omt_2").orElseThrow());
+        assertTrue(gateway.isExplicitlyInitialized("omt_1"));
+        assertFalse(gateway.isExplicitlyInitialized("omt_2"));
+
+        gateway.deleteSession("omt_1");
+        assertTrue(gateway.getSessionId("omt_1").isEmpty());
+        assertEquals(7, gateway.getMetadata("omt_1").orElseThrow().getCommandCount());
+    }
+
+    @Test
+    @DisplayName("清除显式初始化状态保留会话，对不存在的话题不创建记录")
+    void testClearExplicitlyInitialized() {
+        restart();
+        gateway.setExplicitlyInitialized("omt_1");
+        gateway.saveSession("omt_1", "ses_1");
+        assertTrue(gateway.isExplicitlyInitialized("omt_1"));
+
+        gateway.clearExplicitlyInitialized("omt_1");
+        gateway.clearExplicitlyInitialized("omt_missing");
+
+        assertFalse(gateway.isExplicitlyInitialized("omt_1"));
+        assertEquals("ses_1", gateway.getSessionId("omt_1").orElseThrow());
+        assertTrue(gateway.getMetadata("omt_missing").isEmpty());
+
+        restart();
+        assertFalse(gateway.isExplicitlyInitialized("omt_1"));
+    }
+
+    /**
+     * 记录 scan 调用次数，可模拟扫描失败
+     */
+    private static final class CountingTopicMappingGateway extends TopicMappingGatewayImpl {
+        private int scans;
+        private boolean failScan;
+
+        private CountingTopicMappingGateway(TopicMappingProperties properties) {
+            super(properties);
+        }
+
+        @Override
+        public List<TopicMapping> scan(String afterTopicId, int limit) {
+            scans++;
+            if (failScan) {
+                throw new IllegalStateException("scan failed");
+            }
+            return super.scan(afterTopicId, limit);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicMappingArchiveSweeperTest {
+
+    private static final long NOW = TimeUnit.DAYS.toMillis(1000);
+
+    @TempDir
+    Path dir;
+
+    private final TopicMappingProperties properties = new TopicMappingProperties();
+    private TopicMappingGatewayImpl hot;
+    private TopicMappingArchive archive;
+
+    @BeforeEach
+    void setUp() {
+        properties.getFile().setPath(dir.resolve("mappings.json").toString());
+        properties.getRetention().setArchiveDir(dir.resolve("archive").toString());
+        properties.getRetention().setTtlDays(90);
+        hot = new TopicMappingGatewayImpl(properties);
+        hot.loadMappings();
+        archive = new TopicMappingArchive(properties);
+        archive.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        hot.saveMappingsOnShutdown();
+    }
+
+    private void save(String topicId, long inactiveDays) {
+        TopicMapping mapping = new TopicMapping(topicId, "opencode");
+        mapping.setLastActiveAt(NOW - TimeUnit.DAYS.toMillis(inactiveDays));
+        hot.save(mapping);
+    }
+
+    @Test
+    @DisplayName("分批归档超过 TTL 的话题，先写归档再从热存储删除，活跃话题保留")
+    void testSweep_archivesExpiredInBatches() {
+        properties.getRetention().setBatchSize(2);
+        save("omt_1", 200);
+        save("omt_2", 150);
+        save("omt_3", 100);
+        save("omt_fresh", 10);
+        TopicMappingArchiveSweeper sweeper = new TopicMappingArchiveSweeper(hot, archive, properties, () -> NOW);
+
+        assertEquals(3, sweeper.sweep());
+
+        assertEquals(3, archive.size());
+        assertEquals(List.of("omt_fresh"), hot.scan(null, 10).stream().map(TopicMapping::getTopicId).toList());
+        assertTrue(archive.find("omt_2").isPresent());
+        assertEquals(3, sweeper.getArchivedCount());
+        assertEquals(0, sweeper.sweep());
+    }
+
+    @Test
+    @DisplayName("查出不活跃话题后、删除前重新活跃的话题保留在热存储中")
+    void testSweep_keepsTopicReactivatedBeforeDelete() {
+        save("omt_reactivated", 200);
+        save("omt_idle", 100);
+        TopicMappingGateway racing = new ReactivatingGateway(hot, "omt_reactivated");
+        TopicMappingArchiveSweeper sweeper = new TopicMappingArchiveSweeper(racing, archive, properties, () -> NOW);
+
+        assertEquals(1, sweeper.sweep());
+
+        TopicMapping kept = hot.findByTopicId("omt_reactivated").orElseThrow();
+        assertEquals(NOW, kept.getLastActiveAt());
+        assertTrue(hot.findByTopicId("omt_idle").isEmpty());
+        assertTrue(archive.find("omt_idle").isPresent());
+    }
+
+    /**
+     * 在 findInactiveBefore 返回后更新指定话题的活跃时间，模拟归档期间收到新消息
+     */
+    private static final class ReactivatingGateway implements TopicMappingGateway {
+        private final TopicMappingGateway delegate;
+        private final String topicId;
+
+        private ReactivatingGateway(TopicMappingGateway delegate, String topicId) {
+            this.delegate = delegate;
+            this.topicId = topicId;
+        }
+
+        @Override
+        public List<TopicMapping> findInactiveBefore(long cutoff, int limit) {
+            List<TopicMapping> inactive = delegate.findInactiveBefore(cutoff, limit);
+            delegate.update(topicId, mapping -> mapping.setLastActiveAt(NOW));
+            return inactive;
+        }
+
+        @Override
+        public int deleteInactiveBefore(Collection<String> topicIds, long cutoff) {
+            return delegate.deleteInactiveBefore(topicIds, cutoff);
+        }
+
+        @Override
+        public void save(TopicMapping mapping) {
+            delegate.save(mapping);
+        }
+
+        @Override
+        public boolean compareAndSave(TopicMapping mapping) {
+            return delegate.compareAndSave(mapping);
+        }
+
+        @Override
+        public Optional<TopicMapping> findByTopicId(String topicId) {
+            return delegate.findByTopicId(topicId);
+        }
+
+        @Override
+        public void delete(String topicId) {
+            delegate.delete(topicId);
+        }
+
+        @Override
+        public List<TopicMapping> scan(String afterTopicId, int limit) {
+            return delegate.scan(afterTopicId, limit);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicMappingArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    private TopicMappingArchive open() {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        properties.getRetention().setArchiveDir(dir.toString());
+        TopicMappingArchive archive = new TopicMappingArchive(properties);
+        archive.init();
+        return archive;
+    }
+
+    @Test
+    @DisplayName("同一话题归档多次时返回最新段中的版本，重启后不变")
+    void testFind_newestSegmentWins() {
+        TopicMappingArchive archive = open();
+        archive.append(List.of(new TopicMapping("omt_1", "opencode", "{\"v\":1}"),
+            new TopicMapping("omt_2", "bash")));
+        archive.append(List.of(new TopicMapping("omt_1", "opencode", "{\"v\":2}")));
+
+        assertEquals("{\"v\":2}", archive.find("omt_1").orElseThrow().getMetadata());
+
+        TopicMappingArchive restarted = open();
+        assertEquals(2, restarted.size());
+        assertEquals("{\"v\":2}", restarted.find("omt_1").orElseThrow().getMetadata());
+        assertEquals("bash", restarted.find("omt_2").orElseThrow().getAppId());
+        assertTrue(restarted.find("omt_missing").isEmpty());
+    }
+
+    @Test
+    @DisplayName("删除记录只作用于已有的段，之后重新归档的话题重启后仍可找到")
+    void testForget_onlyOlderSegments() {
+        TopicMappingArchive archive = open();
+        archive.append(List.of(new TopicMapping("omt_1", "opencode", "{\"v\":1}")));
+        archive.forget("omt_1");
+        assertTrue(archive.find("omt_1").isEmpty());
+        assertTrue(open().find("omt_1").isEmpty());
+
+        archive.append(List.of(new TopicMapping("omt_1", "opencode", "{\"v\":2}")));
+        assertEquals("{\"v\":2}", open().find("omt_1").orElseThrow().getMetadata());
+    }
+
+    @Test
+    @DisplayName("启动时清理崩溃留下的临时段文件")
+    void testInit_removesTemporarySegments() throws IOException {
+        Path tmp = dir.resolve("segment-0000000001.ndjson.gz.tmp");
+        Files.writeString(tmp, "partial");
+
+        TopicMappingArchive archive = open();
+
+        assertFalse(Files.exists(tmp));
+        assertEquals(0, archive.size());
+        archive.append(List.of(new TopicMapping("omt_1", "opencode")));
+        assertTrue(open().find("omt_1").isPresent());
+    }
+}
@@ -0,0 +1,84 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicMappingGatewayImplTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<TopicMappingGatewayImpl> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(TopicMappingGatewayImpl::saveMappingsOnShutdown);
+    }
+
+    private TopicMappingProperties properties() {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        properties.getFile().setPath(dir.resolve("mappings.json").toString());
+        properties.getFile().setCompactThreshold(5);
+        return properties;
+    }
+
+    private TopicMappingGatewayImpl open() {
+        TopicMappingGatewayImpl gateway = new TopicMappingGatewayImpl(properties());
+        gateway.loadMappings();
+        opened.add(gateway);
+        return gateway;
+    }
+
+    @Test
+    @DisplayName("未正常关闭时从快照和变更日志恢复全部映射，包括后台压缩期间写入的记录")
+    void testRecoverAcrossCompaction() {
+        TopicMappingGatewayImpl gateway = open();
+        for (int i = 0; i < 23; i++) {
+            gateway.save(new TopicMapping("omt_" + i, "app_" + i));
+        }
+        gateway.delete("omt_3");
+        TopicMapping updated = gateway.findByTopicId("omt_4").orElseThrow();
+        updated.setAppId("app_new");
+        assertTrue(gateway.compareAndSave(updated));
+
+        TopicMappingGatewayImpl recovered = TopicMappingGatewayImpl.openReadOnly(properties());
+
+        assertEquals(22, recovered.scan(null, 100).size());
+        assertTrue(recovered.findByTopicId("omt_3").isEmpty());
+        TopicMapping mapping = recovered.findByTopicId("omt_4").orElseThrow();
+        assertEquals("app_new", mapping.getAppId());
+        assertEquals(2, mapping.getVersion());
+    }
+
+    @Test
+    @DisplayName("上次压缩未完成留下的 .log.prev 在下次压缩时保留并合并，重启后不丢记录")
+    void testPendingPrevLogKept() throws IOException {
+        Path prev = dir.resolve("mappings.json.log.prev");
+        Files.writeString(prev, "{\"op\":\"put\",\"mapping\":{\"topicId\":\"omt_prev\",\"appId\":\"app\",\"version\":1}}\n");
+
+        TopicMappingGatewayImpl gateway = open();
+        assertTrue(gateway.findByTopicId("omt_prev").isPresent());
+        for (int i = 0; i < 12; i++) {
+            gateway.save(new TopicMapping("omt_" + i, "app"));
+        }
+        gateway.saveMappingsOnShutdown();
+        opened.clear();
+
+        assertFalse(Files.exists(prev));
+        TopicMappingGatewayImpl recovered = open();
+        assertTrue(recovered.findByTopicId("omt_prev").isPresent());
+        assertEquals(13, recovered.scan(null, 100).size());
+    }
+}
@@ -0,0 +1,111 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.domain.model.TopicMetadata;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicMappingJdbcGatewayTest {
+
+    private TopicMappingJdbcGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        properties.getJdbc().setUrl("jdbc:h2:mem:topic_mapping_" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        properties.getJdbc().setMaxPoolSize(4);
+        gateway = new TopicMappingJdbcGateway(properties);
+        gateway.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.cleanup();
+    }
+
+    @Test
+    @DisplayName("条件写入：版本 0 只能插入一次，版本不匹配时失败，成功后版本加一")
+    void testCompareAndSave_versionCheck() {
+        TopicMapping created = new TopicMapping("omt_1", "opencode", "{}");
+        assertTrue(gateway.compareAndSave(created));
+        assertEquals(1, created.getVersion());
+        assertFalse(gateway.compareAndSave(new TopicMapping("omt_1", "bash", "{}")));
+
+        TopicMapping first = gateway.findByTopicId("omt_1").orElseThrow();
+        TopicMapping second = gateway.findByTopicId("omt_1").orElseThrow();
+        first.setAppId("bash");
+        assertTrue(gateway.compareAndSave(first));
+        assertEquals(2, first.getVersion());
+        second.setAppId("opencode");
+        assertFalse(gateway.compareAndSave(second));
+
+        TopicMapping stored = gateway.findByTopicId("omt_1").orElseThrow();
+        assertEquals("bash", stored.getAppId());
+        assertEquals(2, stored.getVersion());
+    }
+
+    @Test
+    @DisplayName("普通保存同样递增版本，之前读取的副本条件写入失败，update 重读后重放修改")
+    void testSave_invalidatesStaleCopy() {
+        gateway.save(new TopicMapping("omt_1", "opencode", "{}"));
+        TopicMapping stale = gateway.findByTopicId("omt_1").orElseThrow();
+        assertEquals(1, stale.getVersion());
+
+        gateway.save(new TopicMapping("omt_1", "opencode", "{\"opencode\":{\"count\":1}}"));
+        TopicMetadata.of(stale).set("sessionId", "ses_1");
+        assertFalse(gateway.compareAndSave(stale));
+
+        gateway.update("omt_1", latest -> TopicMetadata.of(latest).set("sessionId", "ses_1"));
+        TopicMapping stored = gateway.findByTopicId("omt_1").orElseThrow();
+        TopicMetadata metadata = TopicMetadata.of(stored);
+        assertEquals("ses_1", metadata.getString("sessionId").orElseThrow());
+        assertEquals(1, metadata.getInt("count").orElseThrow());
+        assertEquals(3, stored.getVersion());
+    }
+
+    @Test
+    @DisplayName("多个写入者基于同一版本并发条件写入，只有一个成功")
+    void testCompareAndSave_concurrentWritersOneWins() throws Exception {
+        gateway.save(new TopicMapping("omt_1", "opencode", "{}"));
+        int writers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                TopicMapping copy = gateway.findByTopicId("omt_1").orElseThrow();
+                copy.setMetadata("{\"writer\":" + i + "}");
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return gateway.compareAndSave(copy);
+                }));
+            }
+            start.countDown();
+
+            int succeeded = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(10, TimeUnit.SECONDS)) {
+                    succeeded++;
+                }
+            }
+            assertEquals(1, succeeded);
+            assertEquals(2, gateway.findByTopicId("omt_1").orElseThrow().getVersion());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicMappingMmapGatewayTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<TopicMappingMmapGateway> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(TopicMappingMmapGateway::cleanup);
+    }
+
+    /**
+     * 不关闭已打开的实例直接重新打开，模拟进程崩溃后重启
+     */
+    private TopicMappingMmapGateway open() {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        TopicMappingProperties.Mmap mmap = properties.getMmap();
+        mmap.setPath(dir.toString());
+        mmap.setSegmentSize(1024 * 1024);
+        mmap.setFsync("none");
+        mmap.setCompactGarbageRatio(0.5);
+        mmap.setCompactIntervalSeconds(3600);
+        TopicMappingMmapGateway gateway = new TopicMappingMmapGateway(properties);
+        gateway.init();
+        opened.add(gateway);
+        return gateway;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("kv-")).sorted().toList();
+        }
+    }
+
+    /**
+     * 按长度字段跳过已写入的记录，返回最后一条完整记录之后的偏移
+     */
+    private static int endOf(FileChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        int position = 0;
+        while (true) {
+            length.clear();
+            channel.read(length, position);
+            int recordSize = length.flip().getInt();
+            if (recordSize == 0) {
+                return position;
+            }
+            position += recordSize;
+        }
+    }
+
+    @Test
+    @DisplayName("崩溃后重启恢复写入、条件写入和删除，丢弃写了一半的尾部记录并可继续追加")
+    void testRecover_afterCrashWithTornTail() throws IOException {
+        TopicMappingMmapGateway gateway = open();
+        gateway.save(new TopicMapping("omt_1", "opencode", "{\"a\":1}"));
+        gateway.save(new TopicMapping("omt_2", "opencode"));
+        gateway.save(new TopicMapping("omt_3", "bash"));
+        TopicMapping updated = gateway.findByTopicId("omt_2").orElseThrow();
+        updated.setAppId("bash");
+        assertTrue(gateway.compareAndSave(updated));
+        gateway.delete("omt_3");
+
+        try (FileChannel channel = FileChannel.open(segmentFiles().get(0),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(16);
+            torn.putInt(64).putInt(0xBADC0DE).put((byte) 1).putInt(5).flip();
+            channel.write(torn, endOf(channel));
+        }
+
+        TopicMappingMmapGateway recovered = open();
+        assertEquals(2, recovered.size());
+        assertEquals("{\"a\":1}", recovered.findByTopicId("omt_1").orElseThrow().getMetadata());
+        TopicMapping mapping = recovered.findByTopicId("omt_2").orElseThrow();
+        assertEquals("bash", mapping.getAppId());
+        assertEquals(2, mapping.getVersion());
+        assertTrue(recovered.findByTopicId("omt_3").isEmpty());
+
+        recovered.save(new TopicMapping("omt_4", "opencode"));
+        TopicMappingMmapGateway reopened = open();
+        assertEquals(3, reopened.size());
+        assertTrue(reopened.findByTopicId("omt_4").isPresent());
+    }
+
+    @Test
+    @DisplayName("按最后活跃时间升序查找不活跃话题，反映更新和删除，重启后索引重建")
+    void testFindInactiveBefore_ordersByLastActive() {
+        TopicMappingMmapGateway gateway = open();
+        for (int i = 1; i <= 5; i++) {
+            TopicMapping mapping = new TopicMapping("omt_" + i, "opencode");
+            mapping.setLastActiveAt(1000L * (6 - i));
+            gateway.save(mapping);
+        }
+        TopicMapping touched = gateway.findByTopicId("omt_5").orElseThrow();
+        touched.setLastActiveAt(10_000);
+        assertTrue(gateway.compareAndSave(touched));
+        gateway.delete("omt_3");
+
+        assertEquals(List.of("omt_4", "omt_2"), topicIds(gateway.findInactiveBefore(5000, 2)));
+        assertEquals(List.of("omt_4", "omt_2", "omt_1"), topicIds(gateway.findInactiveBefore(5001, 10)));
+        assertEquals(List.of("omt_4", "omt_2", "omt_1"), topicIds(open().findInactiveBefore(5001, 10)));
+    }
+
+    private static List<String> topicIds(List<TopicMapping> mappings) {
+        return mappings.stream().map(TopicMapping::getTopicId).toList();
+    }
+
+    @Test
+    @DisplayName("压缩删除失效数据多的段，保留更早段中话题对应的删除记录，重启后数据不变")
+    void testCompact_keepsDeleteTombstones() throws IOException {
+        String large = "k".repeat(600 * 1024);
+        String medium = "y".repeat(300 * 1024);
+        TopicMappingMmapGateway gateway = open();
+        // 段 1：keep、removed、y 的第一个版本
+        gateway.save(new TopicMapping("omt_keep", "opencode", large));
+        gateway.save(new TopicMapping("omt_removed", "opencode", "{}"));
+        gateway.save(new TopicMapping("omt_y", "opencode", medium + 1));
+        // 段 2：y 的三个版本和 removed 的删除记录；段 3：y 的最新版本
+        gateway.save(new TopicMapping("omt_y", "opencode", medium + 2));
+        gateway.delete("omt_removed");
+        gateway.save(new TopicMapping("omt_y", "opencode", medium + 3));
+        gateway.save(new TopicMapping("omt_y", "opencode", medium + 4));
+        gateway.save(new TopicMapping("omt_y", "opencode", medium + 5));
+        assertEquals(3, gateway.getSegmentCount());
+
+        gateway.compact();
+
+        assertEquals(1, gateway.getCompactedSegmentCount());
+        assertEquals(2, gateway.getSegmentCount());
+        assertEquals(2, segmentFiles().size());
+
+        TopicMappingMmapGateway recovered = open();
+        assertEquals(2, recovered.size());
+        assertTrue(recovered.findByTopicId("omt_removed").isEmpty());
+        assertEquals(large, recovered.findByTopicId("omt_keep").orElseThrow().getMetadata());
+        TopicMapping y = recovered.findByTopicId("omt_y").orElseThrow();
+        assertEquals(medium + 5, y.getMetadata());
+        assertEquals(5, y.getVersion());
+    }
+}
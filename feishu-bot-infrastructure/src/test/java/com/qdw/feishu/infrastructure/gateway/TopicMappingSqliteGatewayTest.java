@@ -0,0 +1,143 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.domain.model.TopicMetadata;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicMappingSqliteGatewayTest {
+
+    @TempDir
+    Path dir;
+
+    private TopicMappingSqliteGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        gateway = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.cleanup();
+    }
+
+    private TopicMappingSqliteGateway open() {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        properties.getSqlite().setPath(dir.resolve("mappings.db").toString());
+        properties.getSqlite().setBusyTimeoutMs(10000);
+        TopicMappingSqliteGateway store = new TopicMappingSqliteGateway(properties);
+        store.init();
+        return store;
+    }
+
+    @Test
+    @DisplayName("增量写回只修改变化的键：并发写入的其他键保留，删除的键被移除，重启后不变")
+    void testSave_patchesOnlyChangedKeys() {
+        gateway.save(new TopicMapping("omt_1", "opencode",
+            "{\"opencode\":{\"sessionId\":\"ses_1\",\"count\":1},\"bash\":{\"cwd\":\"/tmp\"}}"));
+        TopicMapping first = gateway.findByTopicId("omt_1").orElseThrow();
+        TopicMapping second = gateway.findByTopicId("omt_1").orElseThrow();
+
+        TopicMetadata.of(second).set("model", "gpt");
+        gateway.save(second);
+        TopicMetadata.of(first).set("sessionId", "ses_2").remove("count");
+        gateway.save(first);
+
+        gateway.cleanup();
+        gateway = open();
+        TopicMapping stored = gateway.findByTopicId("omt_1").orElseThrow();
+        TopicMetadata metadata = TopicMetadata.of(stored);
+        assertEquals("ses_2", metadata.getString("sessionId").orElseThrow());
+        assertEquals("gpt", metadata.getString("model").orElseThrow());
+        assertFalse(metadata.has("count"));
+        assertTrue(stored.getMetadata().contains("\"bash\":{\"cwd\":\"/tmp\"}"));
+        assertEquals(3, stored.getVersion());
+    }
+
+    @Test
+    @DisplayName("同一事务中某个写操作失败只回滚它自己，同批其他写操作正常提交")
+    void testBatch_failedOpDoesNotRollBackNeighbours() throws Exception {
+        gateway.save(new TopicMapping("omt_blocker", "opencode"));
+        TopicMapping blocker = gateway.findByTopicId("omt_blocker").orElseThrow();
+        TopicMapping bad = new TopicMapping("omt_bad", "opencode");
+        bad.setAppId(null);
+        List<TopicMapping> batch = List.of(
+            new TopicMapping("omt_1", "opencode"), bad, new TopicMapping("omt_2", "bash"));
+
+        try (Connection lock = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("mappings.db"));
+             Statement statement = lock.createStatement()) {
+            // 持有写锁让写线程卡在第一个操作上，随后排队的三个操作会被合并到同一个事务
+            statement.execute("BEGIN EXCLUSIVE");
+            Thread blocked = new Thread(() -> gateway.save(blocker));
+            blocked.start();
+            awaitCondition(() -> blocked.getState() == Thread.State.WAITING && gateway.getPendingWrites() == 0);
+
+            CompletableFuture<List<TopicMapping>> conflicts = CompletableFuture.supplyAsync(
+                () -> gateway.compareAndSaveAll(batch));
+            awaitCondition(() -> gateway.getPendingWrites() == batch.size());
+            statement.execute("COMMIT");
+
+            blocked.join(TimeUnit.SECONDS.toMillis(10));
+            Exception failure = assertThrows(Exception.class, () -> conflicts.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(RuntimeException.class, failure.getCause());
+        }
+
+        assertTrue(gateway.findByTopicId("omt_1").isPresent());
+        assertEquals("bash", gateway.findByTopicId("omt_2").orElseThrow().getAppId());
+        assertTrue(gateway.findByTopicId("omt_bad").isEmpty());
+        assertEquals(2, gateway.findByTopicId("omt_blocker").orElseThrow().getVersion());
+    }
+
+    @Test
+    @DisplayName("条件写入：新话题只能插入一次，基于旧版本的整体写入和增量写入都冲突，不修改存储")
+    void testCompareAndSave_conflicts() {
+        TopicMapping created = new TopicMapping("omt_1", "opencode", "{}");
+        assertTrue(gateway.compareAndSave(created));
+        assertEquals(1, created.getVersion());
+        assertFalse(gateway.compareAndSave(new TopicMapping("omt_1", "bash", "{}")));
+
+        TopicMapping first = gateway.findByTopicId("omt_1").orElseThrow();
+        TopicMapping second = gateway.findByTopicId("omt_1").orElseThrow();
+        TopicMapping replaced = gateway.findByTopicId("omt_1").orElseThrow();
+        TopicMetadata.of(first).set("sessionId", "ses_1");
+        assertTrue(gateway.compareAndSave(first));
+        assertEquals(2, first.getVersion());
+
+        TopicMetadata.of(second).set("sessionId", "ses_2");
+        assertFalse(gateway.compareAndSave(second));
+        replaced.setMetadata("{\"opencode\":{\"sessionId\":\"ses_3\"}}");
+        assertFalse(gateway.compareAndSave(replaced));
+        assertEquals(List.of(second), gateway.compareAndSaveAll(List.of(second)));
+
+        TopicMapping stored = gateway.findByTopicId("omt_1").orElseThrow();
+        assertEquals("ses_1", TopicMetadata.of(stored).getString("sessionId").orElseThrow());
+        assertEquals(2, stored.getVersion());
+        TopicMetadata.of(stored).set("sessionId", "ses_4");
+        assertTrue(gateway.compareAndSave(stored));
+        assertEquals(3, gateway.findByTopicId("omt_1").orElseThrow().getVersion());
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待条件超时");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.google.gson.Gson;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.domain.model.TopicMetadata;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicMappingTransferTest {
+
+    private static final Gson GSON = new Gson();
+
+    @TempDir
+    Path dir;
+
+    /** 小批量，覆盖跨页读取和分批写入 */
+    private final TopicMappingTransfer transfer = new TopicMappingTransfer(3);
+    private final List<Runnable> closers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        closers.forEach(Runnable::run);
+    }
+
+    private TopicMappingGatewayImpl openFile() {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        properties.getFile().setPath(dir.resolve("mappings.json").toString());
+        TopicMappingGatewayImpl gateway = new TopicMappingGatewayImpl(properties);
+        gateway.loadMappings();
+        closers.add(gateway::saveMappingsOnShutdown);
+        return gateway;
+    }
+
+    private TopicMappingSqliteGateway openSqlite() {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        properties.getSqlite().setPath(dir.resolve("mappings.db").toString());
+        TopicMappingSqliteGateway gateway = new TopicMappingSqliteGateway(properties);
+        gateway.init();
+        closers.add(gateway::cleanup);
+        return gateway;
+    }
+
+    private TopicMappingMmapGateway openMmap() {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        properties.getMmap().setPath(dir.resolve("kv").toString());
+        properties.getMmap().setSegmentSize(1024 * 1024);
+        properties.getMmap().setFsync("none");
+        TopicMappingMmapGateway gateway = new TopicMappingMmapGateway(properties);
+        gateway.init();
+        closers.add(gateway::cleanup);
+        return gateway;
+    }
+
+    /**
+     * 覆盖空 metadata、多字节字符和不同时间戳的映射，条数超过一页
+     */
+    private static List<TopicMapping> sampleMappings() {
+        List<TopicMapping> mappings = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            TopicMapping mapping = new TopicMapping("omt_" + i, i % 2 == 0 ? "opencode" : "bash");
+            if (i % 3 != 0) {
+                TopicMetadata.of(mapping).set("sessionId", "ses_" + i);
+                TopicMetadata.of(mapping).set("title", "话题 " + i);
+                // 生成完整的 metadata 字符串并清空修改记录，与从存储读出的映射一致
+                mapping.setMetadata(mapping.getMetadata());
+            }
+            mapping.setCreatedAt(1_700_000_000_000L + i);
+            mapping.setLastActiveAt(1_700_000_100_000L + i * 1000L);
+            mappings.add(mapping);
+        }
+        return mappings;
+    }
+
+    private static String ndjson(List<TopicMapping> mappings) {
+        StringBuilder out = new StringBuilder();
+        for (TopicMapping mapping : mappings) {
+            out.append(GSON.toJson(mapping)).append('\n');
+        }
+        return out.toString();
+    }
+
+    @Test
+    @DisplayName("校验和与顺序无关，任一字段变化都会改变校验和")
+    void testChecksum_orderIndependent() throws IOException {
+        List<TopicMapping> mappings = sampleMappings();
+        String forward = ndjson(mappings);
+        List<TopicMapping> reversed = new ArrayList<>(mappings);
+        Collections.reverse(reversed);
+
+        TopicMappingTransfer.Summary expected = transfer.summarize(new StringReader(forward));
+        assertEquals(8, expected.count());
+        assertEquals(expected, transfer.summarize(new StringReader(ndjson(reversed))));
+
+        mappings.get(5).setLastActiveAt(mappings.get(5).getLastActiveAt() + 1);
+        assertNotEquals(expected, transfer.summarize(new StringReader(ndjson(mappings))));
+
+        TopicMapping withoutMetadata = new TopicMapping("omt_x", "opencode", null);
+        TopicMapping emptyMetadata = withoutMetadata.copy();
+        emptyMetadata.setMetadata("");
+        assertNotEquals(TopicMappingTransfer.fingerprint(withoutMetadata), TopicMappingTransfer.fingerprint(emptyMetadata));
+    }
+
+    @Test
+    @DisplayName("导出按话题 ID 顺序逐行写出，导入后存储内容与导出一致")
+    void testExportImport() throws IOException {
+        TopicMappingMmapGateway source = openMmap();
+        source.saveAll(sampleMappings());
+
+        StringWriter out = new StringWriter();
+        TopicMappingTransfer.Summary exported = transfer.export(source, out);
+        String[] lines = out.toString().split("\n");
+        assertEquals(8, lines.length);
+        assertTrue(lines[0].contains("\"omt_0\""));
+        assertTrue(lines[7].contains("\"omt_7\""));
+
+        TopicMappingGatewayImpl target = openFile();
+        TopicMappingTransfer.Summary imported = transfer.importFrom(new StringReader(out.toString()), target);
+        assertEquals(exported, imported);
+        assertEquals(exported, transfer.summarize(target));
+        assertEquals(transfer.summarize(source), transfer.summarize(target));
+        assertEquals("ses_4", TopicMetadata.of(target.findByTopicId("omt_4").orElseThrow())
+            .getString("sessionId").orElseThrow());
+    }
+
+    @Test
+    @DisplayName("导入遇到无效行时报告行号")
+    void testImport_invalidLine() {
+        String input = "{\"topicId\":\"omt_1\",\"appId\":\"opencode\"}\n\n{\"appId\":\"bash\"}\n";
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+            () -> transfer.importFrom(new StringReader(input), openFile()));
+        assertTrue(error.getMessage().contains("line 3"));
+    }
+
+    @Test
+    @DisplayName("分页复制后目标存储与源存储条数和校验和一致")
+    void testCopy() {
+        TopicMappingGatewayImpl source = openFile();
+        source.saveAll(sampleMappings());
+
+        TopicMappingMmapGateway target = openMmap();
+        TopicMappingTransfer.Summary copied = transfer.copy(source, target);
+
+        assertEquals(8, copied.count());
+        assertEquals(transfer.summarize(source), copied);
+        assertEquals(copied, transfer.summarize(target));
+    }
+
+    @Test
+    @DisplayName("往返迁移 file → NDJSON → sqlite，条数和校验和不变")
+    void testRoundTrip_fileToSqlite() throws IOException {
+        TopicMappingGatewayImpl file = openFile();
+        file.saveAll(sampleMappings());
+        Path exportFile = dir.resolve("file.ndjson");
+
+        TopicMappingTransfer.Summary exported;
+        try (Writer out = Files.newBufferedWriter(exportFile, StandardCharsets.UTF_8)) {
+            exported = transfer.export(file, out);
+        }
+        TopicMappingSqliteGateway sqlite = openSqlite();
+        try (Reader in = Files.newBufferedReader(exportFile, StandardCharsets.UTF_8)) {
+            assertEquals(exported, transfer.importFrom(in, sqlite));
+        }
+
+        assertEquals(transfer.summarize(file), transfer.summarize(sqlite));
+    }
+
+    @Test
+    @DisplayName("往返迁移 sqlite → NDJSON → mmap，重启后条数和校验和不变")
+    void testRoundTrip_sqliteToMmap() throws IOException {
+        TopicMappingSqliteGateway sqlite = openSqlite();
+        sqlite.saveAll(sampleMappings());
+        Path exportFile = dir.resolve("sqlite.ndjson");
+
+        TopicMappingTransfer.Summary exported;
+        try (Writer out = Files.newBufferedWriter(exportFile, StandardCharsets.UTF_8)) {
+            exported = transfer.export(sqlite, out);
+        }
+        TopicMappingMmapGateway mmap = openMmap();
+        try (Reader in = Files.newBufferedReader(exportFile, StandardCharsets.UTF_8)) {
+            transfer.importFrom(in, mmap);
+        }
+        mmap.cleanup();
+
+        TopicMappingTransfer.Summary expected = transfer.summarize(sqlite);
+        assertEquals(expected, exported);
+        assertEquals(expected, transfer.summarize(openMmap()));
+    }
+}
@@ -0,0 +1,130 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.domain.model.TopicMapping;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnknownTopicCachingGatewayTest {
+
+    private final CountingStore store = new CountingStore();
+    private final TopicMappingProperties.UnknownTopic config = new TopicMappingProperties.UnknownTopic();
+    private long now = TimeUnit.DAYS.toMillis(1);
+    private final UnknownTopicCachingGateway gateway = new UnknownTopicCachingGateway(store, config, () -> now);
+
+    @Test
+    @DisplayName("未知话题在 TTL 内重复查询不访问存储，过期后重新查询")
+    void testFind_remembersUnknownTopicUntilTtl() {
+        assertTrue(gateway.findByTopicId("omt_missing").isEmpty());
+        assertTrue(gateway.findByTopicId("omt_missing").isEmpty());
+        assertEquals(1, store.lookups);
+        assertEquals(1, gateway.getHitCount());
+
+        now += TimeUnit.SECONDS.toMillis(config.getTtlSeconds());
+        assertTrue(gateway.findByTopicId("omt_missing").isEmpty());
+        assertEquals(2, store.lookups);
+    }
+
+    @Test
+    @DisplayName("保存、条件写入和批量写入立即失效未知话题记录，已存在的映射每次都从存储读取")
+    void testWrite_invalidatesUnknownTopic() {
+        gateway.findByTopicId("omt_1");
+        gateway.findByTopicId("omt_2");
+        gateway.findByTopicId("omt_3");
+
+        gateway.save(new TopicMapping("omt_1", "opencode"));
+        assertTrue(gateway.compareAndSave(new TopicMapping("omt_2", "opencode")));
+        gateway.saveAll(List.of(new TopicMapping("omt_3", "opencode")));
+
+        assertTrue(gateway.findByTopicId("omt_1").isPresent());
+        assertTrue(gateway.findByTopicId("omt_2").isPresent());
+        assertTrue(gateway.findByTopicId("omt_3").isPresent());
+        assertTrue(gateway.findByTopicId("omt_1").isPresent());
+        assertEquals(7, store.lookups);
+        assertEquals(0, gateway.getUnknownTopicCount());
+    }
+
+    @Test
+    @DisplayName("查询期间话题被创建时不记录未命中结果")
+    void testFind_concurrentSaveNotRecordedAsUnknown() {
+        store.duringLookup = () -> gateway.save(new TopicMapping("omt_1", "opencode"));
+
+        assertTrue(gateway.findByTopicId("omt_1").isEmpty());
+
+        store.duringLookup = null;
+        assertTrue(gateway.findByTopicId("omt_1").isPresent());
+    }
+
+    @Test
+    @DisplayName("查询失败不记为未知话题")
+    void testFind_failureNotRecordedAsUnknown() {
+        store.failLookup = true;
+        assertThrows(IllegalStateException.class, () -> gateway.findByTopicId("omt_1"));
+
+        store.failLookup = false;
+        store.save(new TopicMapping("omt_1", "opencode"));
+        assertTrue(gateway.findByTopicId("omt_1").isPresent());
+        assertEquals(0, gateway.getUnknownTopicCount());
+    }
+
+    @Test
+    @DisplayName("TTL 为 0 时不缓存未命中结果")
+    void testFind_disabledWithZeroTtl() {
+        config.setTtlSeconds(0);
+        UnknownTopicCachingGateway disabled = new UnknownTopicCachingGateway(store, config, () -> now);
+
+        disabled.findByTopicId("omt_missing");
+        disabled.findByTopicId("omt_missing");
+
+        assertEquals(2, store.lookups);
+        assertEquals(0, disabled.getUnknownTopicCount());
+    }
+
+    /**
+     * 记录查询次数，可在查询返回前插入一次写入或让查询失败
+     */
+    private static final class CountingStore implements TopicMappingGateway {
+        private final Map<String, TopicMapping> mappings = new ConcurrentHashMap<>();
+        private int lookups;
+        private boolean failLookup;
+        private Runnable duringLookup;
+
+        @Override
+        public void save(TopicMapping mapping) {
+            mappings.put(mapping.getTopicId(), mapping.copy());
+        }
+
+        @Override
+        public Optional<TopicMapping> findByTopicId(String topicId) {
+            lookups++;
+            if (failLookup) {
+                throw new IllegalStateException("database is locked");
+            }
+            Optional<TopicMapping> result = Optional.ofNullable(mappings.get(topicId)).map(TopicMapping::copy);
+            if (duringLookup != null) {
+                duringLookup.run();
+            }
+            return result;
+        }
+
+        @Override
+        public void delete(String topicId) {
+            mappings.remove(topicId);
+        }
+
+        @Override
+        public List<TopicMapping> scan(String afterTopicId, int limit) {
+            return new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.qdw.feishu.infrastructure.gateway;
+
+import com.qdw.feishu.domain.gateway.MessageListenerGateway.ConnectionStatus;
+import com.qdw.feishu.infrastructure.config.FeishuProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WsConnectionSupervisorTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final AtomicReference<ConnectionStatus> status = new AtomicReference<>(ConnectionStatus.DISCONNECTED);
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final List<FakeClient> clients = new ArrayList<>();
+    private final FeishuProperties.Listener config = new FeishuProperties.Listener();
+
+    private boolean failConnect;
+    /** 非空时客户端 start() 阻塞直到计数归零，然后抛出异常，模拟连接线程在运行中退出 */
+    private CountDownLatch dropConnection;
+    private WsConnectionSupervisor supervisor;
+
+    @BeforeEach
+    void setUp() {
+        config.setHeartbeatInterval(30);
+        config.getTimeout().setConnect(50);
+        config.getReconnect().setInitialDelay(100);
+        config.getReconnect().setMaxDelay(1000);
+        config.getReconnect().setMaxAttempts(2);
+
+        supervisor = new WsConnectionSupervisor(() -> {
+            FakeClient client = new FakeClient(failConnect, dropConnection);
+            clients.add(client);
+            return client;
+        }, config, status, () -> scheduler, now::get);
+    }
+
+    private void connect() {
+        scheduler.delays.clear();
+        supervisor.connect();
+    }
+
+    @Test
+    @DisplayName("长时间没有收到事件的连接不会被判定为失活")
+    void testQuietConnectionStaysConnected() {
+        dropConnection = new CountDownLatch(1);
+        supervisor.start();
+        scheduler.runPending();
+        assertEquals(ConnectionStatus.CONNECTED, status.get());
+
+        for (int i = 0; i < 10; i++) {
+            now.addAndGet(3_600_000);
+            supervisor.checkLiveness();
+        }
+
+        assertEquals(ConnectionStatus.CONNECTED, status.get());
+        assertEquals(1, clients.size());
+        assertFalse(clients.get(0).closed);
+        assertTrue(scheduler.delays.isEmpty());
+        dropConnection.countDown();
+    }
+
+    @Test
+    @DisplayName("连接线程异常退出时立即检查，关闭旧客户端并重连")
+    void testConnectionThreadDeathReconnects() throws InterruptedException {
+        dropConnection = new CountDownLatch(1);
+        supervisor.start();
+        scheduler.runPending();
+        assertEquals(ConnectionStatus.CONNECTED, status.get());
+
+        dropConnection.countDown();
+        scheduler.awaitPending();
+        scheduler.runPending();
+
+        assertEquals(ConnectionStatus.RECONNECTING, status.get());
+        assertTrue(clients.get(0).closed);
+        assertEquals(1, scheduler.delays.size());
+
+        dropConnection = null;
+        now.addAndGet(500);
+        connect();
+        assertEquals(ConnectionStatus.CONNECTED, status.get());
+        assertEquals(2, clients.size());
+        assertFalse(clients.get(1).closed);
+        assertEquals(500, supervisor.getDisconnectedMillis());
+    }
+
+    @Test
+    @DisplayName("连续失败超过最大次数后按最大延迟持续重试，不会放弃")
+    void testKeepsRetryingAtMaxDelay() {
+        failConnect = true;
+        supervisor.start();
+        scheduler.delays.clear();
+        scheduler.runPending();
+
+        for (int attempt = 1; attempt <= 6; attempt++) {
+            assertEquals(ConnectionStatus.RECONNECTING, status.get());
+            assertEquals(1, scheduler.delays.size());
+            long delay = scheduler.delays.get(0);
+            if (attempt > 2) {
+                assertEquals(1000, delay);
+            } else {
+                assertTrue(delay <= 100L << (attempt - 1));
+            }
+            connect();
+        }
+
+        failConnect = false;
+        connect();
+        assertEquals(ConnectionStatus.CONNECTED, status.get());
+        for (int i = 0; i < clients.size() - 1; i++) {
+            assertTrue(clients.get(i).closed);
+        }
+    }
+
+    @Test
+    @DisplayName("停止时关闭当前客户端")
+    void testStopClosesClient() {
+        supervisor.start();
+        scheduler.runPending();
+
+        supervisor.stop();
+
+        assertEquals(ConnectionStatus.DISCONNECTED, status.get());
+        assertTrue(clients.get(0).closed);
+        assertTrue(scheduler.isShutdown());
+    }
+
+    private static final class FakeClient implements WsConnectionSupervisor.WsClient {
+        private final boolean fail;
+        private final CountDownLatch drop;
+        private volatile boolean closed;
+
+        private FakeClient(boolean fail, CountDownLatch drop) {
+            this.fail = fail;
+            this.drop = drop;
+        }
+
+        @Override
+        public void start() throws InterruptedException {
+            if (fail) {
+                throw new IllegalStateException("connect refused");
+            }
+            if (drop != null) {
+                drop.await();
+                throw new IllegalStateException("connection reset");
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * 只记录任务不执行的调度器，由测试手动推进
+     */
+    private static final class ManualScheduler extends ScheduledThreadPoolExecutor {
+        private final List<Runnable> pending = new CopyOnWriteArrayList<>();
+        private final List<Long> delays = new ArrayList<>();
+
+        private ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            pending.add(command);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            delays.add(unit.toMillis(delay));
+            return null;
+        }
+
+        @Override
+        public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+            return null;
+        }
+
+        /**
+         * 等待其他线程提交任务（如连接线程退出时触发的存活检查）
+         */
+        private void awaitPending() throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (pending.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+
+        private void runPending() {
+            List<Runnable> tasks = new ArrayList<>(pending);
+            pending.clear();
+            tasks.forEach(Runnable::run);
+        }
+    }
+}
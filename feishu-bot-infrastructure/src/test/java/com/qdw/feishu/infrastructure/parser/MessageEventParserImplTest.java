@@ -0,0 +1,75 @@
+package com.qdw.feishu.infrastructure.parser;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageEventParserImplTest {
+
+    @Test
+    @DisplayName("普通文本消息直接提取 text 字段")
+    void testExtractTextField_plain() {
+        assertEquals("hello", MessageEventParserImpl.extractTextField("{\"text\":\"hello\"}"));
+        assertEquals("hello", MessageEventParserImpl.extractTextField("{ \"text\" : \"hello\" }"));
+        assertEquals("", MessageEventParserImpl.extractTextField("{\"text\":\"\"}"));
+    }
+
+    @Test
+    @DisplayName("text 前的其他字符串字段被跳过，包括值中含有转义引号的字段")
+    void testExtractTextField_skipsOtherFields() {
+        assertEquals("hi", MessageEventParserImpl.extractTextField(
+            "{\"title\":\"a \\\"quoted\\\" title\",\"text\":\"hi\"}"));
+        assertEquals("hi", MessageEventParserImpl.extractTextField(
+            "{\"textual\":\"no\",\"tex\":\"no\",\"text\":\"hi\"}"));
+    }
+
+    @Test
+    @DisplayName("解码转义引号、反斜杠和控制字符")
+    void testExtractTextField_escapes() {
+        assertEquals("say \"hi\"", MessageEventParserImpl.extractTextField("{\"text\":\"say \\\"hi\\\"\"}"));
+        assertEquals("a\\b/c", MessageEventParserImpl.extractTextField("{\"text\":\"a\\\\b\\/c\"}"));
+        assertEquals("line1\nline2\ttab\r", MessageEventParserImpl.extractTextField(
+            "{\"text\":\"line1\\nline2\\ttab\\r\"}"));
+        assertEquals("\\", MessageEventParserImpl.extractTextField("{\"text\":\"\\\\\"}"));
+    }
+
+    @Test
+    @DisplayName("解码 \\uXXXX 转义，包括中文和代理对")
+    void testExtractTextField_unicodeEscapes() {
+        assertEquals("你好", MessageEventParserImpl.extractTextField("{\"text\":\"\\u4f60\\u597D\"}"));
+        assertEquals("x😀y", MessageEventParserImpl.extractTextField("{\"text\":\"x\\ud83d\\ude00y\"}"));
+        assertEquals("@_user_1 你好", MessageEventParserImpl.extractTextField("{\"text\":\"@_user_1 你好\"}"));
+    }
+
+    @Test
+    @DisplayName("非法的 \\u 转义交给完整解析器")
+    void testExtractTextField_invalidUnicodeEscape() {
+        assertNull(MessageEventParserImpl.extractTextField("{\"text\":\"\\u12\"}"));
+        assertNull(MessageEventParserImpl.extractTextField("{\"text\":\"\\u+04A\"}"));
+        assertNull(MessageEventParserImpl.extractTextField("{\"text\":\"\\uzzzz\"}"));
+        assertNull(MessageEventParserImpl.extractTextField("{\"text\":\"\\q\"}"));
+    }
+
+    @Test
+    @DisplayName("嵌套对象、数组和非字符串值交给完整解析器")
+    void testExtractTextField_nestedFallsBack() {
+        assertNull(MessageEventParserImpl.extractTextField("{\"content\":{\"text\":\"inner\"},\"text\":\"outer\"}"));
+        assertNull(MessageEventParserImpl.extractTextField("{\"mentions\":[\"a\"],\"text\":\"hi\"}"));
+        assertNull(MessageEventParserImpl.extractTextField("{\"text\":123}"));
+        assertNull(MessageEventParserImpl.extractTextField("{\"text\":null}"));
+    }
+
+    @Test
+    @DisplayName("格式错误或没有 text 字段时返回 null")
+    void testExtractTextField_malformed() {
+        assertNull(MessageEventParserImpl.extractTextField("{"));
+        assertNull(MessageEventParserImpl.extractTextField("{}"));
+        assertNull(MessageEventParserImpl.extractTextField("{\"text\":\"unterminated"));
+        assertNull(MessageEventParserImpl.extractTextField("{\"text\":\"trailing backslash\\"));
+        assertNull(MessageEventParserImpl.extractTextField("{\"text\" \"missing colon\"}"));
+        assertNull(MessageEventParserImpl.extractTextField("{text:\"unquoted key\"}"));
+        assertNull(MessageEventParserImpl.extractTextField("{\"te\\\"xt\":\"escaped key\"}"));
+        assertNull(MessageEventParserImpl.extractTextField("{\"image_key\":\"img_v2_xxx\"}"));
+    }
+}
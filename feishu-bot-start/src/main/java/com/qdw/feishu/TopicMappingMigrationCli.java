@@ -0,0 +1,203 @@
+package com.qdw.feishu;
+
+import com.qdw.feishu.domain.gateway.TopicMappingGateway;
+import com.qdw.feishu.infrastructure.config.TopicMappingProperties;
+import com.qdw.feishu.infrastructure.gateway.TopicMappingGatewayImpl;
+import com.qdw.feishu.infrastructure.gateway.TopicMappingJdbcGateway;
+import com.qdw.feishu.infrastructure.gateway.TopicMappingMmapGateway;
+import com.qdw.feishu.infrastructure.gateway.TopicMappingSqliteGateway;
+import com.qdw.feishu.infrastructure.gateway.TopicMappingTransfer;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 话题映射迁移命令行工具，不启动 Spring 容器，直接打开指定的存储
+ *
+ * 用法（打包后）：
+ * <pre>
+ * java -cp feishu-bot-start.jar -Dloader.main=com.qdw.feishu.TopicMappingMigrationCli \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher &lt;命令&gt; ...
+ *
+ *   export &lt;存储&gt; &lt;文件.ndjson&gt;     导出为 NDJSON
+ *   import &lt;文件.ndjson&gt; &lt;存储&gt;     导入 NDJSON（覆盖已有话题）
+ *   copy   &lt;源存储&gt; &lt;目标存储&gt;     直接复制，完成后校验
+ *   verify &lt;存储或文件&gt; &lt;存储或文件&gt; 比较条数和校验和，不一致时退出码为 1
+ * </pre>
+ *
+ * 存储写法：sqlite:&lt;数据库文件&gt;、file:&lt;快照文件&gt;、mmap:&lt;段目录&gt;，或 jdbc: 开头的连接地址
+ * （用户名、密码通过 -Dfeishu.topic-mapping.jdbc.username / password 指定）。
+ *
+ * 机器人运行时可以读取 sqlite、jdbc 存储和 file 存储（只读加载）；mmap 段文件只能由一个进程打开，
+ * 导出 mmap 存储前需要先停止机器人。
+ *
+ * 只迁移热存储；启用 retention 时已归档的话题留在 archive-dir 中，迁移后保留该目录，
+ * 话题重新活跃时会从归档恢复到新存储。
+ */
+public final class TopicMappingMigrationCli {
+
+    private static final String BATCH_SIZE_PROPERTY = "feishu.topic-mapping.transfer.batch-size";
+
+    private TopicMappingMigrationCli() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoggingSystem loggingSystem = LoggingSystem.get(TopicMappingMigrationCli.class.getClassLoader());
+        loggingSystem.beforeInitialize();
+        loggingSystem.setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.INFO);
+
+        System.exit(run(args));
+    }
+
+    /**
+     * 执行命令并返回退出码：0 成功，1 校验不一致，2 参数错误
+     */
+    static int run(String... args) throws Exception {
+        if (args.length != 3) {
+            usage();
+            return 2;
+        }
+
+        TopicMappingTransfer transfer = new TopicMappingTransfer(
+            Integer.getInteger(BATCH_SIZE_PROPERTY, TopicMappingTransfer.DEFAULT_BATCH_SIZE));
+        long start = System.nanoTime();
+        boolean ok;
+        switch (args[0]) {
+            case "export" -> ok = export(transfer, args[1], Paths.get(args[2]));
+            case "import" -> ok = importFile(transfer, Paths.get(args[1]), args[2]);
+            case "copy" -> ok = copy(transfer, args[1], args[2]);
+            case "verify" -> ok = verify(transfer, args[1], args[2]);
+            default -> {
+                usage();
+                return 2;
+            }
+        }
+        System.out.printf("耗时 %d ms%n", (System.nanoTime() - start) / 1_000_000);
+        return ok ? 0 : 1;
+    }
+
+    private static boolean export(TopicMappingTransfer transfer, String source, Path file) throws Exception {
+        try (Store store = open(source, false);
+             Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            TopicMappingTransfer.Summary summary = transfer.export(store.gateway, out);
+            System.out.println("已导出 " + file + ": " + summary);
+        }
+        return true;
+    }
+
+    private static boolean importFile(TopicMappingTransfer transfer, Path file, String target) throws Exception {
+        try (Store store = open(target, true);
+             Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            TopicMappingTransfer.Summary summary = transfer.importFrom(in, store.gateway);
+            System.out.println("已导入 " + target + ": " + summary);
+        }
+        return true;
+    }
+
+    private static boolean copy(TopicMappingTransfer transfer, String source, String target) throws Exception {
+        try (Store from = open(source, false); Store to = open(target, true)) {
+            TopicMappingTransfer.Summary copied = transfer.copy(from.gateway, to.gateway);
+            TopicMappingTransfer.Summary written = transfer.summarize(to.gateway);
+            System.out.println("已复制: " + copied);
+            System.out.println("目标存储: " + written);
+            return report(copied, written);
+        }
+    }
+
+    private static boolean verify(TopicMappingTransfer transfer, String left, String right) throws Exception {
+        TopicMappingTransfer.Summary a = summarize(transfer, left);
+        TopicMappingTransfer.Summary b = summarize(transfer, right);
+        System.out.println(left + ": " + a);
+        System.out.println(right + ": " + b);
+        return report(a, b);
+    }
+
+    private static TopicMappingTransfer.Summary summarize(TopicMappingTransfer transfer, String operand) throws Exception {
+        if (!isStore(operand)) {
+            try (Reader in = Files.newBufferedReader(Paths.get(operand), StandardCharsets.UTF_8)) {
+                return transfer.summarize(in);
+            }
+        }
+        try (Store store = open(operand, false)) {
+            return transfer.summarize(store.gateway);
+        }
+    }
+
+    private static boolean report(TopicMappingTransfer.Summary expected, TopicMappingTransfer.Summary actual) {
+        boolean match = expected.equals(actual);
+        // 源存储在运行中的机器人里继续被修改时，校验和不一致是预期的，可再导入一次后重新校验
+        System.out.println(match ? "校验通过" : "校验不一致");
+        return match;
+    }
+
+    private static boolean isStore(String spec) {
+        return spec.startsWith("jdbc:") || spec.startsWith("sqlite:")
+            || spec.startsWith("file:") || spec.startsWith("mmap:");
+    }
+
+    /**
+     * 按写法打开存储；writable 为 false 时 file 存储只读加载，不影响正在运行的机器人
+     */
+    private static Store open(String spec, boolean writable) {
+        TopicMappingProperties properties = new TopicMappingProperties();
+        if (spec.startsWith("jdbc:")) {
+            TopicMappingProperties.Jdbc jdbc = properties.getJdbc();
+            jdbc.setUrl(spec);
+            jdbc.setUsername(System.getProperty("feishu.topic-mapping.jdbc.username", jdbc.getUsername()));
+            jdbc.setPassword(System.getProperty("feishu.topic-mapping.jdbc.password", jdbc.getPassword()));
+            TopicMappingJdbcGateway gateway = new TopicMappingJdbcGateway(properties);
+            gateway.init();
+            return new Store(gateway, gateway::cleanup);
+        }
+
+        String location = spec.substring(spec.indexOf(':') + 1);
+        if (spec.startsWith("sqlite:")) {
+            properties.getSqlite().setPath(location);
+            TopicMappingSqliteGateway gateway = new TopicMappingSqliteGateway(properties);
+            gateway.init();
+            return new Store(gateway, gateway::cleanup);
+        }
+        if (spec.startsWith("file:")) {
+            properties.getFile().setPath(location);
+            if (!writable) {
+                return new Store(TopicMappingGatewayImpl.openReadOnly(properties), () -> { });
+            }
+            // 导入期间不做中途压缩，关闭时一次写出快照
+            properties.getFile().setCompactThreshold(Integer.MAX_VALUE);
+            TopicMappingGatewayImpl gateway = new TopicMappingGatewayImpl(properties);
+            gateway.loadMappings();
+            return new Store(gateway, gateway::saveMappingsOnShutdown);
+        }
+        if (spec.startsWith("mmap:")) {
+            properties.getMmap().setPath(location);
+            TopicMappingMmapGateway gateway = new TopicMappingMmapGateway(properties);
+            gateway.init();
+            return new Store(gateway, gateway::cleanup);
+        }
+        throw new IllegalArgumentException("Unknown topic mapping store: " + spec);
+    }
+
+    private static void usage() {
+        System.err.println("""
+            用法: TopicMappingMigrationCli <命令> <参数1> <参数2>
+              export <存储> <文件.ndjson>
+              import <文件.ndjson> <存储>
+              copy   <源存储> <目标存储>
+              verify <存储或文件> <存储或文件>
+            存储: sqlite:<数据库文件> | file:<快照文件> | mmap:<段目录> | jdbc:<连接地址>
+            """);
+    }
+
+    private record Store(TopicMappingGateway gateway, Runnable closer) implements AutoCloseable {
+        @Override
+        public void close() {
+            closer.run();
+        }
+    }
+}
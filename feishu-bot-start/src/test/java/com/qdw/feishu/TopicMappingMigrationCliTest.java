@@ -0,0 +1,57 @@
+package com.qdw.feishu;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicMappingMigrationCliTest {
+
+    private static final String FIRST = "{\"topicId\":\"omt_1\",\"appId\":\"opencode\",\"createdAt\":1,\"lastActiveAt\":2}";
+    private static final String SECOND = "{\"topicId\":\"omt_2\",\"appId\":\"bash\",\"metadata\":\"{}\",\"createdAt\":3,\"lastActiveAt\":4}";
+
+    @TempDir
+    Path dir;
+
+    private Path write(String name, String... lines) throws Exception {
+        Path file = dir.resolve(name);
+        Files.write(file, String.join("\n", lines).concat("\n").getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    @DisplayName("verify：内容相同（顺序不同）退出码为 0，不一致为 1")
+    void testVerify_exitCode() throws Exception {
+        Path a = write("a.ndjson", FIRST, SECOND);
+        Path b = write("b.ndjson", SECOND, FIRST);
+        Path c = write("c.ndjson", FIRST);
+
+        assertEquals(0, TopicMappingMigrationCli.run("verify", a.toString(), b.toString()));
+        assertEquals(1, TopicMappingMigrationCli.run("verify", a.toString(), c.toString()));
+    }
+
+    @Test
+    @DisplayName("import 到 mmap 存储后 export，再与原文件 verify，退出码为 0")
+    void testImportExportVerify() throws Exception {
+        Path source = write("source.ndjson", FIRST, SECOND);
+        String store = "mmap:" + dir.resolve("kv");
+        Path exported = dir.resolve("exported.ndjson");
+
+        assertEquals(0, TopicMappingMigrationCli.run("import", source.toString(), store));
+        assertEquals(0, TopicMappingMigrationCli.run("export", store, exported.toString()));
+        assertEquals(0, TopicMappingMigrationCli.run("verify", store, source.toString()));
+        assertEquals(0, TopicMappingMigrationCli.run("verify", exported.toString(), source.toString()));
+    }
+
+    @Test
+    @DisplayName("参数错误时退出码为 2")
+    void testUsage_exitCode() throws Exception {
+        assertEquals(2, TopicMappingMigrationCli.run("verify", "a.ndjson"));
+        assertEquals(2, TopicMappingMigrationCli.run("move", "a", "b"));
+    }
+}